@@ -25,10 +25,31 @@ public class GameWindow {
 	private GameState currentState;
 	boolean pausing = false;
 	
+	/** The name of the system property used to set the tick rate */
+	public static final String TICK_RATE_PROPERTY = "asteroids.tickRate";
+	/** The number of game updates per second if none is specified */
+	private static final int DEFAULT_TICK_RATE = 100;
+	/** 
+	 * The longest frame we'll try to catch up on (in nanoseconds). Any 
+	 * longer and the game just runs slow for that frame rather than 
+	 * running more and more updates to catch up.
+	 */
+	private static final long MAX_FRAME_TIME = 250 * 1000000L;
+	
+	/** The length of each game update in milliseconds */
+	private int tickLength;
+	/** 
+	 * How far between the last two updates the game should be rendered,
+	 * 0 being the previous update and 1 the latest
+	 */
+	private float interpolation = 1;
+	
 	/**
 	 * Create a new game window
 	 */
 	public GameWindow() {
+		tickLength = getConfiguredTickLength();
+		
 		try {
 			// find out what the current bits per pixel of the desktop is
 			int currentBpp = Display.getDisplayMode().getBitsPerPixel();
@@ -65,13 +86,34 @@ public class GameWindow {
 	}	
 
 	/**
-	 * Get the current time in milliseconds based on the LWJGL
-	 * high res system clock.
+	 * Get how far between the last two game updates the current frame is 
+	 * being rendered. Game states can use this to blend between the last 
+	 * two updates so movement looks smooth whatever the frame rate.
+	 * 
+	 * @return The fraction of the way from the previous update to the 
+	 * latest, 0 to 1
+	 */
+	public float getInterpolation() {
+		return interpolation;
+	}
+	
+	/**
+	 * @return The length of each game update in milliseconds
+	 */
+	public int getTickLength() {
+		return tickLength;
+	}
+	
+	/**
+	 * Get the length of each game update from the tick rate given in the
+	 * system properties. Updates are passed to the game states in whole
+	 * milliseconds so the rate is rounded to the nearest that gives that.
 	 * 
-	 * @return The time in milliseconds based on the LWJGL high res clock
+	 * @return The length of each game update in milliseconds
 	 */
-	private long getTime() {
-		return (Sys.getTime() * 1000) / Sys.getTimerResolution();
+	public static int getConfiguredTickLength() {
+		int tickRate = Integer.getInteger(TICK_RATE_PROPERTY, DEFAULT_TICK_RATE).intValue();
+		return Math.max(1, Math.round(1000.0f / Math.max(1, tickRate)));
 	}
 	
 	/**
@@ -167,11 +209,15 @@ public class GameWindow {
 	
 	/**
 	 * The main game loop which is cycled rendering and updating the
-	 * registered game states
+	 * registered game states. The game is always updated in steps of the
+	 * same length, however often it's rendered. Time left over that isn't
+	 * enough for a whole step is carried over into the next frame.
 	 */
 	public void gameLoop() {
 		boolean gameRunning = true;
-		long lastLoop = getTime();
+		long tickTime = tickLength * 1000000L;
+		long lastLoop = System.nanoTime();
+		long accumulator = 0;
 		
 		currentState.enter(this);
 		
@@ -179,33 +225,34 @@ public class GameWindow {
 		// the current game state
 		while (gameRunning) {
 			// calculate how long it was since we last came round this loop
-			// and hold on to it so we can let the updating/rendering routine
-			// know how much time to update by
-			int delta = (int) (getTime() - lastLoop);
-			lastLoop = getTime();
+			// and add it on to the time waiting to be simulated
+			long now = System.nanoTime();
+			long frameTime = now - lastLoop;
+			lastLoop = now;
+			if (frameTime > MAX_FRAME_TIME) {
+				frameTime = MAX_FRAME_TIME;
+			}
 			if (Keyboard.getEventKey() == Keyboard.KEY_ESCAPE) {
 				pausing = !pausing; // toggle
 			}
-			if (pausing) delta = 0;
+			if (pausing) frameTime = 0;
+			accumulator += frameTime;
 			
 			// clear the screen and the buffer used to maintain the appearance
 			// of depth in the 3D world (the depth buffer)
 			GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
 			
 			// cause the game state that we're currently running to update
-			// based on the amount of time passed
-			int remainder = delta % 10;
-			int step = delta / 10;
-			for (int i=0;i<step;i++) {
-				currentState.update(this, 10);
-			}
-			if (remainder != 0) {
-				currentState.update(this, remainder);
+			// once for each whole step of time that has passed
+			while (accumulator >= tickTime) {
+				currentState.update(this, tickLength);
+				accumulator -= tickTime;
 			}
+			interpolation = accumulator / (float) tickTime;
 			
 			// cause the game state that we're currently running to be 
 			// render
-			currentState.render(this,delta);
+			currentState.render(this,(int) (frameTime / 1000000));
 			
 			// finally tell the display to cause an update. We've now
 			// rendered out scene we just want to get it on the screen
@@ -0,0 +1,106 @@
+package org.newdawn.asteroids;
+
+import java.io.IOException;
+
+import org.newdawn.asteroids.collision.ContactCache;
+import org.newdawn.asteroids.entity.EntityBudget;
+import org.newdawn.asteroids.entity.EntityPools;
+import org.newdawn.asteroids.input.BotInput;
+import org.newdawn.asteroids.schedule.Phase;
+import org.newdawn.asteroids.schedule.PhaseScheduler;
+import org.newdawn.asteroids.util.GameRandom;
+
+/**
+ * Runs the game logic without a window, OpenGL, OpenAL or anyone at the
+ * controls. The player's ship is flown by a bot and the game is stepped
+ * as fast as it will go, restarting whenever the bot loses. This lets us
+ * measure how quickly the game can be updated, and soak test it, on 
+ * machines without a display.
+ * 
+ * Usage: java org.newdawn.asteroids.HeadlessGame [ticks] [seed]
+ * 
+ * The length of each tick is taken from the same tick rate property as
+ * the windowed game, see GameWindow.getConfiguredTickLength()
+ * 
+ * @author Drew Murphy
+ */
+public class HeadlessGame {
+	/** The number of ticks run if none is given */
+	private static final int DEFAULT_TICKS = 100000;
+	/** The number of ticks between progress reports */
+	private static final int REPORT_INTERVAL = 10000;
+	
+	/**
+	 * The entry point for running the game headless
+	 * 
+	 * @param argv The number of ticks to run followed by the seed for
+	 * the game and the bot, both optional
+	 * @throws IOException Indicates a failure to load the game's resources
+	 */
+	public static void main(String argv[]) throws IOException {
+		long ticks = argv.length > 0 ? Long.parseLong(argv[0]) : DEFAULT_TICKS;
+		long seed = argv.length > 1 ? Long.parseLong(argv[1]) : 0;
+		
+		int tick = GameWindow.getConfiguredTickLength();
+		
+		// the bot and the game each get their own stream from the seed
+		// so the same seed always plays out the same game
+		GameRandom seeds = new GameRandom(seed);
+		InGameState game = new InGameState(true, new BotInput(seeds.nextLong()), seeds.nextLong());
+		game.init(null);
+		game.enter(null);
+		
+		long start = System.nanoTime();
+		long lastReport = start;
+		for (long i=1;i<=ticks;i++) {
+			game.update(null, tick);
+			
+			if (i % REPORT_INTERVAL == 0) {
+				long now = System.nanoTime();
+				System.out.println(String.format("tick %d: %d entities, %.0f ticks/s", 
+						i, game.getEntityCount(), 
+						REPORT_INTERVAL / ((now - lastReport) / 1000000000.0)));
+				lastReport = now;
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1000000000.0;
+		
+		System.out.println(String.format("%d ticks in %.3f s: %.0f ticks/s (%.1fx real time)", 
+				ticks, seconds, ticks / seconds, (ticks * tick) / (seconds * 1000)));
+		System.out.println(String.format("games played: %d, final score: %d, entities: %d",
+				game.getGamesPlayed(), game.getScore(), game.getEntityCount()));
+		
+		EntityPools pools = game.getPools();
+		System.out.println(String.format("pools: %d reused, %d created (shots %d/%d, rocks %d/%d, ammo %d/%d)",
+				pools.getHits(), pools.getMisses(),
+				pools.getShots().getHits(), pools.getShots().getMisses(),
+				pools.getRocks().getHits(), pools.getRocks().getMisses(),
+				pools.getAmmo().getHits(), pools.getAmmo().getMisses()));
+		
+		ContactCache contacts = game.getContacts();
+		System.out.println(String.format("contacts: %d overlap tests, %d reused",
+				contacts.getTested(), contacts.getReused()));
+		System.out.println(String.format("solver: %d rock contacts solved", game.getSolver().getSolved()));
+		
+		EntityBudget budget = game.getBudget();
+		for (int i=0;i<EntityBudget.CATEGORIES;i++) {
+			System.out.println(String.format("budget %s: %d refused, %d aged out, %d merged",
+					EntityBudget.getName(i), budget.getRefused(i), 
+					budget.getAgedOut(i), budget.getMerged(i)));
+		}
+		
+		// where the time of each tick went, phase by phase
+		PhaseScheduler scheduler = game.getScheduler();
+		long total = 0;
+		for (int i=0;i<scheduler.getPhaseCount();i++) {
+			total += scheduler.getPhase(i).getTotalTime();
+		}
+		for (int i=0;i<scheduler.getPhaseCount();i++) {
+			Phase phase = scheduler.getPhase(i);
+			System.out.println(String.format("phase %-11s %8.2f us/tick %5.1f%%%s",
+					phase.getName(), phase.getTotalTime() / (1000.0 * Math.max(1, phase.getRuns())),
+					(100.0 * phase.getTotalTime()) / Math.max(1, total),
+					scheduler.isConcurrent(i) ? " (could run alongside the phase before)" : ""));
+		}
+	}
+}
@@ -3,20 +3,50 @@ package org.newdawn.asteroids;
 import java.io.IOException;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.Random;
 
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
+import org.newdawn.asteroids.collision.Broadphase;
+import org.newdawn.asteroids.collision.Broadphases;
+import org.newdawn.asteroids.collision.CollisionDispatch;
+import org.newdawn.asteroids.collision.ContactCache;
+import org.newdawn.asteroids.collision.ContactList;
+import org.newdawn.asteroids.collision.ContactSolver;
+import org.newdawn.asteroids.collision.Narrowphase;
+import org.newdawn.asteroids.collision.Narrowphases;
+import org.newdawn.asteroids.collision.PairList;
+import org.newdawn.asteroids.collision.ParallelCollision;
+import org.newdawn.asteroids.collision.SweptCollision;
+import org.newdawn.asteroids.entity.AbstractEntity;
 import org.newdawn.asteroids.entity.Ammo;
+import org.newdawn.asteroids.entity.BlackHole;
 import org.newdawn.asteroids.entity.Entity;
+import org.newdawn.asteroids.entity.EntityBudget;
+import org.newdawn.asteroids.entity.EntityList;
 import org.newdawn.asteroids.entity.EntityManager;
+import org.newdawn.asteroids.entity.EntityPools;
+import org.newdawn.asteroids.entity.EntityStore;
+import org.newdawn.asteroids.entity.EntityTable;
+import org.newdawn.asteroids.entity.EntityType;
+import org.newdawn.asteroids.entity.GameEventListener;
+import org.newdawn.asteroids.entity.GameEvents;
+import org.newdawn.asteroids.entity.GravityField;
+import org.newdawn.asteroids.entity.MortonOrder;
+import org.newdawn.asteroids.entity.ParallelUpdate;
 import org.newdawn.asteroids.entity.Player;
 import org.newdawn.asteroids.entity.Rock;
+import org.newdawn.asteroids.entity.SpatialIndex;
+import org.newdawn.asteroids.entity.TimingWheel;
 import org.newdawn.asteroids.gui.BitmapFont;
+import org.newdawn.asteroids.input.LwjglInput;
+import org.newdawn.asteroids.input.PlayerInput;
 import org.newdawn.asteroids.model.ObjLoader;
 import org.newdawn.asteroids.model.ObjModel;
+import org.newdawn.asteroids.schedule.Phase;
+import org.newdawn.asteroids.schedule.PhaseScheduler;
 import org.newdawn.asteroids.sound.Sound;
 import org.newdawn.asteroids.sound.SoundLoader;
+import org.newdawn.asteroids.util.GameRandom;
 import org.newdawn.spaceinvaders.lwjgl.Texture;
 import org.newdawn.spaceinvaders.lwjgl.TextureLoader;
 
@@ -26,7 +56,7 @@ import org.newdawn.spaceinvaders.lwjgl.TextureLoader;
  * 
  * @author Drew Murphy, Kevin Glass
  */
-public class InGameState implements GameState, EntityManager {
+public class InGameState implements GameState, EntityManager, GameEventListener {
 	public static final String NAME = "ingame";
 
 	/** The texture to be applied to the background */
@@ -74,11 +104,66 @@ public class InGameState implements GameState, EntityManager {
 	/** The ship the player controls in-game */
 	private Player player;
 	
-	private ArrayList<Entity> entities = new ArrayList<Entity>();
+	private EntityList entities = new EntityList();
 	private ArrayList <Entity>addList = new ArrayList<Entity>();
 	private ArrayList <Entity>removeList = new ArrayList<Entity>();
+	/** The store holding the movement state of the entities in the game */
+	private EntityStore store = new EntityStore();
 	
 	private ArrayList <Texture> shipTextures = new ArrayList<Texture>();
+	
+	/** The broadphase used to find the entities close enough to possibly collide */
+	private Broadphase broadphase = Broadphases.create();
+	/** The candidate collision pairs found by the broadphase */
+	private PairList pairs = new PairList();
+	/** The candidate pairs whose types interact, waiting for the proper test */
+	private PairList candidates = new PairList();
+	/** The test of the candidate pairs, when there are enough to batch */
+	private Narrowphase narrowphase = Narrowphases.create();
+	/** The candidate pairs found to be touching by the batch test */
+	private PairList hits = new PairList();
+	/** The collision check along the path of fast moving entities */
+	private SweptCollision sweep = new SweptCollision(EntityType.ROCK);
+	/** The impacts found along the path of fast moving entities */
+	private PairList impacts = new PairList();
+	/** The pairs touching from one tick to the next, so contacts begin and end once */
+	private ContactCache contacts = new ContactCache();
+	/** The pairs found touching this tick, waiting for their collisions to be handed out */
+	private ContactList touching = new ContactList();
+	/** The filter and response table collisions are handed out through */
+	private CollisionDispatch dispatch = new CollisionDispatch();
+	/** The solver that bounces touching rocks off each other */
+	private ContactSolver solver = new ContactSolver();
+	/** The pools that shots, rocks and ammo drops are reused from */
+	private EntityPools pools = new EntityPools();
+	/** The limits on how many of each kind of entity can be in the game */
+	private EntityBudget budget = EntityBudget.create();
+	/** The index of where the entities are, answering the spatial queries */
+	private SpatialIndex spatial = new SpatialIndex(SPATIAL_CELL_SIZE);
+	/** True if the entities have moved since the spatial index was built */
+	private volatile boolean spatialStale = true;
+	/** The sort that keeps entities near each other in the play area near each other in memory */
+	private MortonOrder spatialOrder = new MortonOrder();
+	/** The stage that updates the entities, across threads if there are many */
+	private ParallelUpdate updater = ParallelUpdate.create(this);
+	/** The pull of the big rocks and black holes, null unless the game is played with gravity wells */
+	private GravityField gravity = GravityField.create(updater.getPool());
+	/** The search for touching pairs across threads, used when there are many entities */
+	private ParallelCollision collision = new ParallelCollision(updater.getPool(), broadphase, dispatch, sweep, narrowphase);
+	/** True if this tick's touching pairs are being found across threads */
+	private boolean spreadCollision;
+	/** The phases each tick is run through, with how long each takes */
+	private PhaseScheduler scheduler = new PhaseScheduler();
+	/** The events of the current update, drained once it's complete */
+	private GameEvents events = new GameEvents();
+	/** The sounds to be played once the events are drained, each only once */
+	private Sound[] pendingSounds = new Sound[16];
+	/** The gain each waiting sound is played at */
+	private float[] pendingGains = new float[16];
+	/** The number of sounds waiting to be played */
+	private int pendingSoundCount;
+	/** The firing mode the HUD should show once the events are drained, -1 if unchanged */
+	private int pendingAmmoType = -1;
 
 	/** The OpenGL material properties applied to everything in the game */
 	private FloatBuffer material;
@@ -99,7 +184,16 @@ public class InGameState implements GameState, EntityManager {
 	private final int LIFE_THRESHOLD = 25000;
 	
 	private final int AMMO_LOCKOUT = 250;
-	private int toAmmoSpawn = AMMO_LOCKOUT;
+	/** The number of candidate pairs at which they're tested in a batch rather than through the contact cache */
+	private static final int BATCH_NARROWPHASE = 256;
+	/** The size of the cells in the index answering the spatial queries */
+	private static final float SPATIAL_CELL_SIZE = 4;
+	/** The timer that must run out before more ammo can be spawned */
+	private int ammoLockout = TimingWheel.NONE;
+	/** The handles of the entities in the game */
+	private EntityTable table = new EntityTable();
+	/** The lifetimes and cooldowns in the game */
+	private TimingWheel timers = new TimingWheel(this);
 	
 	/** The current String associated with the equipped ammo type. For GUI use. */
 	private String ammoType = "NORMAL";
@@ -138,10 +232,41 @@ public class InGameState implements GameState, EntityManager {
 	private int level;
 	private int gameOverTimeout;
 	
+	/** True if the game is running without a window, sound or player */
+	private boolean headless;
+	/** The source of the commands controlling the player's ship */
+	private PlayerInput input;
+	/** The number of games that have been started in this state */
+	private int gamesPlayed;
+	/** The source each game's random numbers are split from */
+	private GameRandom sessionRandom;
+	/** The source of random numbers for the current game */
+	private GameRandom random = new GameRandom(0);
+	
 	/**
 	 * Create a new game state
 	 */
 	public InGameState() {
+		this(false, new LwjglInput(), GameRandom.getSessionSeed());
+	}
+	
+	/**
+	 * Create a new game state
+	 * 
+	 * @param headless True if the game is to be run without a window. No
+	 * textures or models will be loaded and the state must not be rendered.
+	 * @param input The source of the commands controlling the player's ship
+	 * @param seed The seed for the random numbers used through the session. 
+	 * Each game started takes its own stream from this, so a session played
+	 * with the same seed and input plays out the same.
+	 */
+	public InGameState(boolean headless, PlayerInput input, long seed) {
+		this.headless = headless;
+		this.input = input;
+		
+		sessionRandom = new GameRandom(seed);
+		events.addListener(this);
+		createPhases();
 	}
 
 	/**
@@ -189,18 +314,24 @@ public class InGameState implements GameState, EntityManager {
 	 * @see org.newdawn.asteroids.GameState#init(org.newdawn.asteroids.GameWindow)
 	 */
 	public void init(GameWindow window) throws IOException {
-		defineLight();
+		// running headless there's no OpenGL to load textures and models
+		// into, so they're all left empty. The sounds are still loaded, 
+		// the sound loader hands out silent sounds if it's not initialised
+		TextureLoader loader = null;
+		if (!headless) {
+			defineLight();
+			loader = new TextureLoader();
+		}
 		
-		TextureLoader loader = new TextureLoader();
-		background = loader.getTexture("res/bg.jpg");
-		shotTexture = loader.getTexture("res/shot.png");
+		background = getTexture(loader, "res/bg.jpg");
+		shotTexture = getTexture(loader, "res/shot.png");
 		
-		shipTexture = loader.getTexture("res/spaceship.png");
-		shipTexture_2 = loader.getTexture("res/spaceship_2.png");
-		shipTexture_3 = loader.getTexture("res/spaceship_3.png");
-		shipTexture_4 = loader.getTexture("res/spaceship_4.png");
-		shipTexture_5 = loader.getTexture("res/spaceship_5.png");
-		shipTexture_6 = loader.getTexture("res/spaceship_6.png");
+		shipTexture = getTexture(loader, "res/spaceship.png");
+		shipTexture_2 = getTexture(loader, "res/spaceship_2.png");
+		shipTexture_3 = getTexture(loader, "res/spaceship_3.png");
+		shipTexture_4 = getTexture(loader, "res/spaceship_4.png");
+		shipTexture_5 = getTexture(loader, "res/spaceship_5.png");
+		shipTexture_6 = getTexture(loader, "res/spaceship_6.png");
 		
 		shipTextures.add(shipTexture);
 		shipTextures.add(shipTexture_2);
@@ -209,28 +340,30 @@ public class InGameState implements GameState, EntityManager {
 		shipTextures.add(shipTexture_5);
 		shipTextures.add(shipTexture_6);
 		
-		shipModel = ObjLoader.loadObj("res/spaceship.obj");
+		shipModel = getModel("res/spaceship.obj");
 		
-		rockTexture = loader.getTexture("res/rock.jpg");
-		rockModel = ObjLoader.loadObj("res/rock.obj");
+		rockTexture = getTexture(loader, "res/rock.jpg");
+		rockModel = getModel("res/rock.obj");
 		
-		shellTexture = loader.getTexture("res/shell.png");
-		shellModel = ObjLoader.loadObj("res/shell.obj");
+		shellTexture = getTexture(loader, "res/shell.png");
+		shellModel = getModel("res/shell.obj");
 		
-		shieldTexture = loader.getTexture("res/shield_pickup.png");
-		shieldModel = ObjLoader.loadObj("res/shield_pickup.obj");
+		shieldTexture = getTexture(loader, "res/shield_pickup.png");
+		shieldModel = getModel("res/shield_pickup.obj");
 		
-		laserTexture = loader.getTexture("res/laser.png");
-		laserModel = ObjLoader.loadObj("res/laser.obj");
+		laserTexture = getTexture(loader, "res/laser.png");
+		laserModel = getModel("res/laser.obj");
 		
-		multiTexture = loader.getTexture("res/multi.png");
-		multiModel = ObjLoader.loadObj("res/multi.obj");
+		multiTexture = getTexture(loader, "res/multi.png");
+		multiModel = getModel("res/multi.obj");
 		
-		shrapnelTexture = loader.getTexture("res/shrapnel.png");
-		shrapnelModel = ObjLoader.loadObj("res/shrapnel.obj");
+		shrapnelTexture = getTexture(loader, "res/shrapnel.png");
+		shrapnelModel = getModel("res/shrapnel.obj");
 		
-		Texture fontTexture = loader.getTexture("res/spaceage.png");
-		font = new BitmapFont(fontTexture, 32, 32);
+		Texture fontTexture = getTexture(loader, "res/spaceage.png");
+		if (!headless) {
+			font = new BitmapFont(fontTexture, 32, 32);
+		}
 		
 		gun= SoundLoader.get().getOgg("res/gun.ogg");
 		
@@ -278,6 +411,9 @@ public class InGameState implements GameState, EntityManager {
 		// position the view a way back from the models so we
 		// can see them
 		GL11.glTranslatef(0,0,-50);
+		
+		// render the entities part way between the last two updates
+		store.setInterpolation(window.getInterpolation());
 
 		// loop through all entities in the game rendering them
 		for (int i=0;i<entities.size();i++) {
@@ -361,45 +497,291 @@ public class InGameState implements GameState, EntityManager {
 	 * @see org.newdawn.asteroids.GameState#update(org.newdawn.asteroids.GameWindow, int)
 	 */
 	public void update(GameWindow window, int delta) {
-		
-		toAmmoSpawn -= delta;
-		
 		if (gameOver) {
 			gameOverTimeout -= delta;
 			if (gameOverTimeout < 0) {
-				window.changeToState(MenuState.NAME);
+				if (window != null) {
+					window.changeToState(MenuState.NAME);
+				} else {
+					// there's no menu to go back to when running 
+					// headless so just start another game
+					enter(window);
+				}
 			}
 		}
 		
-		for (int i=0;i<entities.size();i++) {
-			Entity entity = (Entity) entities.get(i);
+		// the rest of the tick is run through its phases, see createPhases()
+		scheduler.run(delta);
+	}
+	
+	/**
+	 * Set up the phases a tick is made of, in the order they run. Each 
+	 * phase declares what it reads and writes, so neighbouring phases 
+	 * that don't touch the same things can run at the same time.
+	 */
+	private void createPhases() {
+		scheduler.add(new Phase("broadphase", Phase.ENTITIES | Phase.STATE, Phase.CHANGES | Phase.PAIRS | Phase.CONTACTS) {
+			public void run(int delta) {
+				findPairs();
+			}
+		});
+		scheduler.add(new Phase("narrowphase", Phase.ENTITIES | Phase.STATE | Phase.PAIRS, Phase.CONTACTS) {
+			public void run(int delta) {
+				findContacts();
+			}
+		});
+		scheduler.add(new Phase("response", Phase.ENTITIES | Phase.CONTACTS, 
+				Phase.CHANGES | Phase.STATE | Phase.TIMERS | Phase.SCORE | Phase.RANDOM) {
+			public void run(int delta) {
+				respond();
+			}
+		});
+		scheduler.add(new Phase("spawn", 0, Phase.ENTITIES | Phase.CHANGES | Phase.STATE | Phase.TIMERS) {
+			public void run(int delta) {
+				applyChanges();
+			}
+		});
+		scheduler.add(new Phase("lifetime", Phase.ENTITIES, Phase.CHANGES | Phase.STATE | Phase.TIMERS | Phase.SCORE) {
+			public void run(int delta) {
+				// expire the lifetimes and cooldowns that have run out, 
+				// only the timers that expire cost anything
+				timers.advance(delta);
+			}
+		});
+		scheduler.add(new Phase("input", Phase.DISPLAY | Phase.ENTITIES, Phase.INPUT) {
+			public void run(int delta) {
+				// the input only moves on while there's a ship for it to control
+				if (entities.contains(player)) {
+					input.update(delta);
+				}
+			}
+		});
+		scheduler.add(new Phase("ai", Phase.ENTITIES | Phase.INPUT, 
+				Phase.CHANGES | Phase.STATE | Phase.TIMERS | Phase.SCORE | Phase.RANDOM) {
+			public void run(int delta) {
+				// record where everything is before it moves, for rendering
+				// and for the swept collision checks next tick
+				store.beginTick();
+				
+				// loop through all the entities in the game causing them
+				// to update (i.e. move, shoot, etc)
+				updater.update(entities, delta);
+			}
+		});
+		if (gravity != null) {
+			scheduler.add(new Phase("gravity", Phase.ENTITIES, Phase.STATE) {
+				public void run(int delta) {
+					// the heavy entities pull everything towards them 
+					// before it moves
+					gravity.apply(store, delta);
+				}
+			});
+		}
+		scheduler.add(new Phase("integrate", Phase.ENTITIES, Phase.STATE) {
+			public void run(int delta) {
+				// now everything has had its chance to change direction, move
+				// all the entities in one go
+				updater.integrate(store, delta);
+				spatialStale = true;
+			}
+		});
+		scheduler.add(new Phase("scoring", Phase.DISPLAY, 
+				Phase.ENTITIES | Phase.CHANGES | Phase.STATE | Phase.TIMERS | Phase.SCORE | Phase.RANDOM) {
+			public void run(int delta) {
+				score();
+			}
+		});
+	}
+	
+	/**
+	 * Start a tick by finding the pairs of entities near enough to each
+	 * other that they might be touching
+	 */
+	private void findPairs() {
+		// nothing has been used up yet this tick
+		entities.nextGeneration();
+		
+		dispatch.prepare(entities);
+		contacts.beginTick();
+		hits.clear();
+		touching.clear();
+		
+		spreadCollision = collision.isWorthwhile(entities.size());
+		if (spreadCollision) {
+			// too many entities for one thread, the pairs are found
+			// across all of them by the narrowphase
+			collision.prepare(entities);
+			return;
+		}
+		
+		// only check the pairs of entities that are near each other
+		// according to the broadphase, there's no chance of the rest colliding
+		pairs.clear();
+		candidates.clear();
+		broadphase.findPairs(entities, pairs);
+		
+		for (int i=0;i<pairs.size();i++) {
+			int first = pairs.getFirst(i);
+			int second = pairs.getSecond(i);
+			
+			// skip pairs that pass straight through each other (i.e. two
+			// shots) before going to the trouble of a distance test
+			if (!dispatch.interacts(first, second)) {
+				continue;
+			}
 			
-			for (int j=i+1;j<entities.size();j++) {
-				Entity other = (Entity) entities.get(j);
+			Entity entity = (Entity) entities.get(first);
+			Entity other = (Entity) entities.get(second);
+			
+			// fast moving entities are checked along their path below
+			if (sweep.handles(entity, other)) {
+				continue;
+			}
+			
+			candidates.add(first, second);
+		}
+	}
+	
+	/**
+	 * Test the pairs found by the broadphase, and the paths of the fast 
+	 * moving entities, for the pairs that are really touching. Nothing is
+	 * told about the collisions yet, every contact is found before any
+	 * response runs, so a response moving or bouncing an entity can't 
+	 * change what's found touching this tick.
+	 */
+	private void findContacts() {
+		if (spreadCollision) {
+			// the touching pairs are found across all the threads and
+			// come back in the same order
+			collision.findHits(hits);
+		} else if (candidates.size() < BATCH_NARROWPHASE) {
+			// a handful of pairs, most of which haven't moved enough
+			// since last tick for their test to need repeating
+			for (int i=0;i<candidates.size();i++) {
+				int first = candidates.getFirst(i);
+				int second = candidates.getSecond(i);
 				
-				if (entity.collides(other)) {
-					entity.collide(this, other);
-					other.collide(this, entity);
+				// pairs that were already touching last tick are only told
+				// the contact is carrying on, not hit all over again
+				int contact = contacts.test(entities.get(first), entities.get(second));
+				if (contact != ContactCache.NONE) {
+					touching.add(first, second, contact);
 				}
 			}
+		} else {
+			// enough pairs that testing them all in one go is quicker
+			narrowphase.prepare(entities);
+			narrowphase.findHits(candidates, hits);
+		}
+		touch(hits);
+		
+		// check the fast moving entities (shots) along the whole path they
+		// moved last tick so they can't pass straight through small rocks
+		impacts.clear();
+		sweep.findImpacts(entities, impacts);
+		touch(impacts);
+	}
+	
+	/**
+	 * Note the pairs found touching without going through the contact
+	 * cache's test, so they're told whether the contact is new
+	 * 
+	 * @param found The pairs found touching
+	 */
+	private void touch(PairList found) {
+		for (int i=0;i<found.size();i++) {
+			int first = found.getFirst(i);
+			int second = found.getSecond(i);
+			int contact = contacts.touch(entities.get(first), entities.get(second));
+			if (contact != ContactCache.NONE) {
+				touching.add(first, second, contact);
+			}
+		}
+	}
+	
+	/**
+	 * Hand out the collisions found this tick, in the order they were 
+	 * found, bounce the rocks that are touching off each other and let 
+	 * anything that's stopped touching know
+	 */
+	private void respond() {
+		for (int i=0;i<touching.size();i++) {
+			int first = touching.getFirst(i);
+			int second = touching.getSecond(i);
+			if (dispatch.isSolved(first, second)) {
+				solver.add(entities, first, second);
+			} else {
+				dispatch.collide(this, entities, first, second, touching.getContact(i));
+			}
 		}
+		// the rocks are bounced all together once every contact is in,
+		// after anything else they hit has had its say
+		solver.solve();
 		
+		// the ends are told even if the other entity has since left the game
+		int ended = contacts.findEnded();
+		for (int i=0;i<ended;i++) {
+			Entity low = table.get(contacts.getEndedHandle(i, false));
+			Entity high = table.get(contacts.getEndedHandle(i, true));
+			int lowType = contacts.getEndedType(i, false);
+			int highType = contacts.getEndedType(i, true);
+			
+			CollisionDispatch.end(this, low, lowType, high, highType);
+			CollisionDispatch.end(this, high, highType, low, lowType);
+		}
+	}
+	
+	/**
+	 * Take the entities that have left the game out of it and put the 
+	 * ones that have entered in
+	 */
+	private void applyChanges() {
+		for (int i=0;i<removeList.size();i++) {
+			unstore(removeList.get(i));
+		}
+		for (int i=0;i<addList.size();i++) {
+			store(addList.get(i));
+		}
+		// the entity list takes the removed entities out in one pass,
+		// keeping the rest in the order they were in
 		entities.removeAll(removeList);
 		entities.addAll(addList);
 		
+		// anything that's really left the game can be reused
+		for (int i=0;i<removeList.size();i++) {
+			Entity entity = removeList.get(i);
+			if (!entities.contains(entity)) {
+				pools.free(entity);
+			}
+		}
+		
 		removeList.clear();
 		addList.clear();
+		budget.recount(entities);
 		
-		// loop through all the entities in the game causing them
-		// to update (i.e. move, shoot, etc)
-		int rockCount = 0;
+		// every so often put the entities of a large game back in order
+		// of where they are, so neighbours are read from memory together
+		spatialOrder.tick(entities, store);
+		spatialStale = true;
+	}
+	
+	/**
+	 * React to everything that happened this tick, moving on a level once
+	 * the rocks are cleared and giving out extra lives
+	 */
+	private void score() {
+		// react to everything that happened this update in one go, 
+		// so each sound is played and the HUD is rebuilt at most once
+		events.drain();
+		playSounds();
+		if (pendingAmmoType >= 0) {
+			updateAmmoType(pendingAmmoType);
+			pendingAmmoType = -1;
+		}
 		
+		int rockCount = 0;
 		for (int i=0;i<entities.size();i++) {
-			Entity entity = (Entity) entities.get(i);
-			
-			entity.update(this, delta);
-			
-			if (entity instanceof Rock) {
+			if (entities.get(i) instanceof Rock) {
 				rockCount++;
 			}
 		}
@@ -407,6 +789,9 @@ public class InGameState implements GameState, EntityManager {
 		if (rockCount == 0) {
 			level++;
 			spawnRocks(level);
+			if (gravity != null) {
+				spawnHoles(gravity.getHoles());
+			}
 			level_up.play(1.0f, 1.0f, false);
 		}
 		
@@ -415,21 +800,31 @@ public class InGameState implements GameState, EntityManager {
 			toNextLife = LIFE_THRESHOLD;
 			extra_life.play(1.0f, 1.0f, false);
 		}
-		
-		
-		
 	}
 
 	/**
 	 * @see org.newdawn.asteroids.GameState#enter(org.newdawn.asteroids.GameWindow)
 	 */
 	public void enter(GameWindow window) {
+		for (int i=0;i<entities.size();i++) {
+			pools.free(entities.get(i));
+		}
 		entities.clear();
+		store.clear();
+		events.clear();
+		timers.clear();
+		table.clear();
+		contacts.clear();
+		ammoLockout = timers.schedule(AMMO_LOCKOUT, null, 0);
+		pendingSoundCount = 0;
+		pendingAmmoType = -1;
+		sessionRandom.split(random);
 		
 		music.play(1.0f, 1.0f, true);
 		
-		player = new Player(shipTextures, shipModel, shotTexture);
+		player = new Player(shipTextures, shipModel, shotTexture, input);
 		entities.add(player);
+		store(player);
 		
 		life = 4;
 		score = 0;
@@ -445,8 +840,14 @@ public class InGameState implements GameState, EntityManager {
 		shrapnelAmmo = 0;
 		
 		gameOver = false;
+		gamesPlayed++;
 		
 		spawnRocks(level);
+		if (gravity != null) {
+			spawnHoles(gravity.getHoles());
+		}
+		budget.recount(entities);
+		spatialStale = true;
 	}
 
 	/**
@@ -459,13 +860,15 @@ public class InGameState implements GameState, EntityManager {
 		int fails = 0;
 		
 		for (int i=0;i<count;i++) {
-			float xp = (float) (-20 + (Math.random() * 40));
-			float yp = (float) (-20 + (Math.random() * 40));
+			float xp = random.nextFloat(-20, 20);
+			float yp = random.nextFloat(-20, 20);
 			
-			Rock rock = new Rock(rockTexture, rockModel, xp, yp, 3);
+			Rock rock = pools.obtainRock(random, rockTexture, rockModel, xp, yp, 3);
 			if (!rock.collides(player)) {
 				entities.add(rock);
+				store(rock);
 			} else {
+				pools.free(rock);
 				i--;
 				fails++;
 			}
@@ -476,12 +879,404 @@ public class InGameState implements GameState, EntityManager {
 		}
 	}
 	
+	/**
+	 * Place black holes around the play area, far enough from the player's
+	 * ship to give it a chance to get away. Any left from the last level
+	 * are taken away first, so each level gets a fresh set.
+	 * 
+	 * @param count The number of black holes to be placed
+	 */
+	private void spawnHoles(int count) {
+		ArrayList<Entity> holes = new ArrayList<Entity>();
+		for (int i=0;i<entities.size();i++) {
+			Entity entity = entities.get(i);
+			if (entity instanceof BlackHole) {
+				unstore(entity);
+				holes.add(entity);
+			}
+		}
+		entities.removeAll(holes);
+		
+		for (int i=0;i<count;i++) {
+			float angle = (float) Math.toRadians(random.nextFloat(0, 360));
+			float distance = random.nextFloat(10, 20);
+			float xp = player.getX() + ((float) Math.cos(angle) * distance);
+			float yp = player.getY() + ((float) Math.sin(angle) * distance);
+			
+			// the ship can be anywhere by the time a level is cleared, so
+			// bring holes placed off the edge back on the other side
+			if (xp < -AbstractEntity.HALF_WIDTH) {
+				xp += AbstractEntity.PLAY_AREA_WIDTH;
+			}
+			if (xp > AbstractEntity.HALF_WIDTH) {
+				xp -= AbstractEntity.PLAY_AREA_WIDTH;
+			}
+			if (yp < -AbstractEntity.HALF_HEIGHT) {
+				yp += AbstractEntity.PLAY_AREA_HEIGHT;
+			}
+			if (yp > AbstractEntity.HALF_HEIGHT) {
+				yp -= AbstractEntity.PLAY_AREA_HEIGHT;
+			}
+			
+			BlackHole hole = new BlackHole(rockModel, xp, yp);
+			entities.add(hole);
+			store(hole);
+		}
+	}
+	
+	/**
+	 * Load a texture, unless we're running headless
+	 * 
+	 * @param loader The loader to load the texture through, null if headless
+	 * @param ref The reference to the texture to load
+	 * @return The texture loaded, or null if running headless
+	 * @throws IOException Indicates a failure to load the texture
+	 */
+	private Texture getTexture(TextureLoader loader, String ref) throws IOException {
+		if (loader == null) {
+			return null;
+		}
+		
+		return loader.getTexture(ref);
+	}
+	
+	/**
+	 * Load a model, unless we're running headless
+	 * 
+	 * @param ref The reference to the model to load
+	 * @return The model loaded, or null if running headless
+	 * @throws IOException Indicates a failure to load the model
+	 */
+	private ObjModel getModel(String ref) throws IOException {
+		if (headless) {
+			return null;
+		}
+		
+		return ObjLoader.loadObj(ref);
+	}
+	
+	/**
+	 * @return The number of entities currently in the game
+	 */
+	public int getEntityCount() {
+		return entities.size();
+	}
+	
+	/**
+	 * @return The player's current score
+	 */
+	public int getScore() {
+		return score;
+	}
+	
+	/**
+	 * @return The number of games started since this state was created
+	 */
+	public int getGamesPlayed() {
+		return gamesPlayed;
+	}
+	
+	/**
+	 * @return The limits on the entities in the game, and how often 
+	 * they've been hit
+	 */
+	public EntityBudget getBudget() {
+		return budget;
+	}
+	
+	/**
+	 * @return The pairs of entities in contact, and how often their
+	 * overlap tests were saved
+	 */
+	public ContactCache getContacts() {
+		return contacts;
+	}
+	
+	/**
+	 * @return The solver that bounces touching rocks off each other, and 
+	 * how many contacts it has solved
+	 */
+	public ContactSolver getSolver() {
+		return solver;
+	}
+	
+	/**
+	 * @return The phases each tick is run through, and how long each has
+	 * taken
+	 */
+	public PhaseScheduler getScheduler() {
+		return scheduler;
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#getPools()
+	 */
+	public EntityPools getPools() {
+		return pools;
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#getTimers()
+	 */
+	public TimingWheel getTimers() {
+		return timers;
+	}
+	
+	/**
+	 * Get the index answering the spatial queries, building it if the
+	 * entities have moved since it was last built. The index is only built
+	 * when something asks for it, so a tick without queries pays nothing.
+	 * Queries can come from several threads at once while the entities
+	 * are updated in parallel, so only the first of them builds it.
+	 * 
+	 * @return The index of where the entities are
+	 */
+	private SpatialIndex getSpatialIndex() {
+		if (spatialStale) {
+			synchronized (spatial) {
+				if (spatialStale) {
+					spatial.build(entities);
+					spatialStale = false;
+				}
+			}
+		}
+		
+		return spatial;
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#queryRadius(float, float, float, int, org.newdawn.asteroids.entity.Entity[])
+	 */
+	public int queryRadius(float x, float y, float radius, int layers, Entity[] results) {
+		return getSpatialIndex().queryRadius(x, y, radius, layers, results);
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#queryNearest(float, float, int, org.newdawn.asteroids.entity.Entity)
+	 */
+	public Entity queryNearest(float x, float y, int type, Entity ignore) {
+		return getSpatialIndex().queryNearest(x, y, type, ignore);
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#raycast(float, float, float, float, float, int, org.newdawn.asteroids.entity.Entity[], float[])
+	 */
+	public int raycast(float x, float y, float dirX, float dirY, float distance, int layers, Entity[] hits, float[] distances) {
+		return getSpatialIndex().raycast(x, y, dirX, dirY, distance, layers, hits, distances);
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#getRandom()
+	 */
+	public GameRandom getRandom() {
+		return random;
+	}
+	
+	/**
+	 * Place an entity's state into the entity store so it gets moved
+	 * along with everything else
+	 * 
+	 * @param entity The entity being added to the game
+	 */
+	private void store(Entity entity) {
+		if (entity instanceof AbstractEntity) {
+			AbstractEntity added = (AbstractEntity) entity;
+			if (!store.contains(added)) {
+				store.add(added);
+				table.add(added);
+				added.added(this);
+			}
+		}
+	}
+	
+	/**
+	 * Take an entity's state back out of the entity store
+	 * 
+	 * @param entity The entity being removed from the game
+	 */
+	private void unstore(Entity entity) {
+		if (entity instanceof AbstractEntity) {
+			AbstractEntity removed = (AbstractEntity) entity;
+			if (store.contains(removed)) {
+				store.remove(removed);
+				table.remove(removed.getHandle());
+				removed.removed(this);
+			}
+		}
+	}
+	
 	/**
 	 * @see org.newdawn.asteroids.GameState#leave(org.newdawn.asteroids.GameWindow)
 	 */
 	public void leave(GameWindow window) {
 	}
 
+	/**
+	 * @see org.newdawn.asteroids.entity.GameEventListener#eventFired(int, int, int)
+	 */
+	public void eventFired(int type, int a, int b) {
+		switch (type) {
+		case GameEvents.ROCK_DESTROYED:
+			queueSound(split, 1.0f);
+			score += (4 - a) * 100;
+			toNextLife -= (4 - a) * 100;
+			break;
+		case GameEvents.SHOT_FIRED:
+			shotFiredEvent(a);
+			break;
+		case GameEvents.AMMO_CHANGED:
+			if (b != 0) {
+				queueSound(getPickupSound(a), (a <= 2) ? 0.5f : 1.0f);
+			}
+			pendingAmmoType = a;
+			break;
+		case GameEvents.AMMO_TYPE_CHANGED:
+			pendingAmmoType = a;
+			break;
+		case GameEvents.SUCCESSFUL_SHOT:
+			successfulShots++;
+			break;
+		case GameEvents.OUT_OF_AMMO:
+			queueSound(low_ammo, 1.0f);
+			break;
+		case GameEvents.SHIELD_DOWN:
+			queueSound(shield_down, 1.0f);
+			break;
+		}
+	}
+	
+	/**
+	 * Count the shots taken when the player fires and queue the sound of
+	 * the weapon
+	 * 
+	 * @param mode The firing mode the player fired with
+	 */
+	private void shotFiredEvent(int mode) {
+		switch (mode) {
+		case 0:
+			queueSound(gun, 0.5f);
+			shotsTaken++;
+			break;
+		case 1:
+			queueSound(shotgun, 0.5f);
+			shotsTaken = shotsTaken + 3;
+			break;
+		case 2:
+			queueSound(shield_up, 1.0f);
+			break;
+		case 3:
+			queueSound(laser, 1.0f);
+			shotsTaken++;
+			break;
+		case 4:
+			queueSound(multi, 1.0f);
+			shotsTaken= shotsTaken + 4;
+			break;
+		case 5:
+			queueSound(shrapnel, 1.0f);
+			shotsTaken++;
+			break;
+		}
+	}
+	
+	/**
+	 * Get the sound played when ammo for a firing mode is picked up
+	 * 
+	 * @param mode The firing mode the ammo is for
+	 * @return The pickup sound, or null if there isn't one
+	 */
+	private Sound getPickupSound(int mode) {
+		switch(mode) {
+		case 1:
+			return shotgun_pickup;
+		case 2:
+			return shield_pickup;
+		case 3:
+			return laser_pickup;
+		case 4:
+			return multi_pickup;
+		case 5:
+			return shrapnel_pickup;
+		default:
+			return null;
+		}
+	}
+	
+	/**
+	 * Queue a sound to be played at the end of the update. A sound queued
+	 * several times in one update is only played once.
+	 * 
+	 * @param sound The sound to queue
+	 * @param gain The gain to play the sound at
+	 */
+	private void queueSound(Sound sound, float gain) {
+		if (sound == null) {
+			return;
+		}
+		for (int i=0;i<pendingSoundCount;i++) {
+			if (pendingSounds[i] == sound) {
+				return;
+			}
+		}
+		if (pendingSoundCount == pendingSounds.length) {
+			Sound[] grown = new Sound[pendingSounds.length * 2];
+			float[] grownGains = new float[pendingSounds.length * 2];
+			System.arraycopy(pendingSounds, 0, grown, 0, pendingSoundCount);
+			System.arraycopy(pendingGains, 0, grownGains, 0, pendingSoundCount);
+			pendingSounds = grown;
+			pendingGains = grownGains;
+		}
+		
+		pendingSounds[pendingSoundCount] = sound;
+		pendingGains[pendingSoundCount] = gain;
+		pendingSoundCount++;
+	}
+	
+	/**
+	 * Play all the sounds queued during the update
+	 */
+	private void playSounds() {
+		for (int i=0;i<pendingSoundCount;i++) {
+			pendingSounds[i].play(1.0f, pendingGains[i], false);
+			pendingSounds[i] = null;
+		}
+		pendingSoundCount = 0;
+	}
+	
+	/**
+	 * Rebuild the ammo type and amount shown on the HUD
+	 * 
+	 * @param mode The firing mode to show
+	 */
+	private void updateAmmoType(int mode) {
+		switch(mode) {
+		case 0:
+			ammoType = "NORMAL";
+			ammoAmount = "";
+			break;
+		case 1:
+			ammoType = "SHOTGUN:";
+			ammoAmount = shotgunAmmo + "";
+			break;
+		case 2:
+			ammoType = "SHIELD:";
+			ammoAmount = shieldAmmo + "";
+			break;
+		case 3:
+			ammoType = "LASER:";
+			ammoAmount = laserAmmo + "";
+			break;
+		case 4:
+			ammoType = "MULTI-SHOT:";
+			ammoAmount = multiAmmo + "";
+			break;
+		case 5:
+			ammoType = "SHRAPNEL:";
+			ammoAmount = shrapnelAmmo + "";
+			break;
+		}
+	}
+	
 	/**
 	 * @see org.newdawn.asteroids.entity.EntityManager#removeEntity(org.newdawn.asteroids.entity.Entity)
 	 */
@@ -489,92 +1284,89 @@ public class InGameState implements GameState, EntityManager {
 		removeList.add(entity);
 	}
 
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#removeEntity(int)
+	 */
+	public void removeEntity(int handle) {
+		Entity entity = table.get(handle);
+		if (entity != null) {
+			removeList.add(entity);
+		}
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#getEntity(int)
+	 */
+	public Entity getEntity(int handle) {
+		return table.get(handle);
+	}
+	
 	/**
 	 * @see org.newdawn.asteroids.entity.EntityManager#addEntity(org.newdawn.asteroids.entity.Entity)
 	 */
 	public void addEntity(Entity entity) {
-		addList.add(entity);
+		// over budget the entity might be turned away or folded into 
+		// another, in which case it can go straight back to its pool
+		if (budget.admit(this, entities, addList, entity)) {
+			addList.add(entity);
+		} else {
+			pools.free(entity);
+		}
 	}
 
 	/**
 	 * @see org.newdawn.asteroids.entity.EntityManager#rockDestroyed(int)
 	 */
 	public void rockDestroyed(int size) {
-		split.play(1.0f,1.0f, false);
-		score += (4 - size) * 100;
-		toNextLife -= (4 - size) * 100;
+		events.push(GameEvents.ROCK_DESTROYED, size, 0);
 	}
 
 	/**
 	 * @see org.newdawn.asteroids.entity.EntityManager#playerHit()
 	 */
 	public void playerHit() {
+		// a ship that's been destroyed leaves with this tick's changes, 
+		// so it can't fire or pick anything up once it's been hit
 		life--;
 		if (life < 0) {
 			gameOver = true;
 			gameOverTimeout = 3000;
 			removeEntity(player);
 		}
+		events.push(GameEvents.PLAYER_HIT);
 	}
 
 	/**
 	 * @see org.newdawn.asteroids.entity.EntityManager#shotFired()
 	 */
 	public void shotFired(int mode) {
-		switch (mode) {
-		case 0:
-			gun.play(1.0f,0.5f, false);
-			shotsTaken++;
-			break;
-		case 1:
-			shotgun.play(1.0f,0.5f, false);
-			shotsTaken = shotsTaken + 3;
-			break;
-		case 2:
-			shield_up.play(1.0f, 1.0f, false);
-			break;
-		case 3:
-			laser.play(1.0f, 1.0f, false);
-			shotsTaken++;
-			break;
-		case 4:
-			multi.play(1.0f, 1.0f, false);
-			shotsTaken= shotsTaken + 4;
-			break;
-		case 5:
-			shrapnel.play(1.0f, 1.0f, false);
-			shotsTaken++;
-			break;
-		}
+		events.push(GameEvents.SHOT_FIRED, mode, 0);
 	}
 	
 	/**
 	 * @see org.newdawn.asteroids.entity.EntityManager#updateAmmo()
 	 */
 	public void updateAmmo(int mode, int delta, boolean pickup) {
+		// the count itself changes straight away so the player sees what's
+		// left, it's only the sound and HUD that wait for the events
 		switch(mode) {
 		case 1:
 			shotgunAmmo = shotgunAmmo + delta;
-			if (pickup) shotgun_pickup.play(1.0f,0.5f, false);
 			break;
 		case 2:
 			shieldAmmo = shieldAmmo + delta;
-			if (pickup) shield_pickup.play(1.0f,0.5f, false);
 			break;
 		case 3:
 			laserAmmo = laserAmmo + delta;
-			if (pickup) laser_pickup.play(1.0f, 1.0f, false);
 			break;
 		case 4:
 			multiAmmo = multiAmmo + delta;
-			if (pickup) multi_pickup.play(1.0f, 1.0f, false);
 			break;
 		case 5:
 			shrapnelAmmo = shrapnelAmmo + delta;
-			if (pickup) shrapnel_pickup.play(1.0f, 1.0f, false);
 			break;
 		}
-		setAmmoType(mode);
+		events.push(GameEvents.AMMO_CHANGED, mode, pickup ? 1 : 0);
 	}
 	
 	/**
@@ -601,32 +1393,7 @@ public class InGameState implements GameState, EntityManager {
 	 * @see org.newdawn.asteroids.entity.EntityManager#setAmmoType()
 	 */
 	public void setAmmoType(int mode) {
-		switch(mode) {
-		case 0:
-			ammoType = "NORMAL";
-			ammoAmount = "";
-			break;
-		case 1:
-			ammoType = "SHOTGUN:";
-			ammoAmount = shotgunAmmo + "";
-			break;
-		case 2:
-			ammoType = "SHIELD:";
-			ammoAmount = shieldAmmo + "";
-			break;
-		case 3:
-			ammoType = "LASER:";
-			ammoAmount = laserAmmo + "";
-			break;
-		case 4:
-			ammoType = "MULTI-SHOT:";
-			ammoAmount = multiAmmo + "";
-			break;
-		case 5:
-			ammoType = "SHRAPNEL:";
-			ammoAmount = shrapnelAmmo + "";
-			break;
-		}
+		events.push(GameEvents.AMMO_TYPE_CHANGED, mode, 0);
 	}
 	
 	/**
@@ -640,22 +1407,29 @@ public class InGameState implements GameState, EntityManager {
 	 * @see org.newdawn.asteroids.entity.EntityManager#successfulShot()
 	 */
 	public void successfulShot() {
-		successfulShots++;
+		events.push(GameEvents.SUCCESSFUL_SHOT);
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#consume(org.newdawn.asteroids.entity.Entity)
+	 */
+	public boolean consume(Entity entity) {
+		return entities.consume(entity);
 	}
 	
 	/**
 	 * @see org.newdawn.asteroids.entity.EntityManager#spawnAmmo()
 	 */
 	public void spawnAmmo(float x, float y) {
-		toAmmoSpawn = AMMO_LOCKOUT;
-		Random r = new Random();
-		float i = r.nextFloat();
+		timers.cancel(ammoLockout);
+		ammoLockout = timers.schedule(AMMO_LOCKOUT, null, 0);
+		float i = random.nextFloat();
 		Ammo toSpawn;
-		if (i > 0 && i < 0.4f) toSpawn = new Ammo(shellTexture, 1, shellModel, x, y, 1);
-		else if (i >= 0.4f && i < 0.6f) toSpawn = new Ammo(shieldTexture, 2, shieldModel, x, y, 1);
-		else if (i >= 0.6f && i < 0.75f) toSpawn = new Ammo(laserTexture, 3, laserModel, x, y, 1);
-		else if (i >= 0.75f && i < 0.9f) toSpawn = new Ammo(multiTexture, 4, multiModel, x, y ,1);
-		else toSpawn = new Ammo(shrapnelTexture, 5, shrapnelModel, x, y ,1);
+		if (i > 0 && i < 0.4f) toSpawn = pools.obtainAmmo(random, shellTexture, 1, shellModel, x, y, 1);
+		else if (i >= 0.4f && i < 0.6f) toSpawn = pools.obtainAmmo(random, shieldTexture, 2, shieldModel, x, y, 1);
+		else if (i >= 0.6f && i < 0.75f) toSpawn = pools.obtainAmmo(random, laserTexture, 3, laserModel, x, y, 1);
+		else if (i >= 0.75f && i < 0.9f) toSpawn = pools.obtainAmmo(random, multiTexture, 4, multiModel, x, y ,1);
+		else toSpawn = pools.obtainAmmo(random, shrapnelTexture, 5, shrapnelModel, x, y ,1);
 		
 		addEntity(toSpawn);
 	}
@@ -664,21 +1438,20 @@ public class InGameState implements GameState, EntityManager {
 	 * @see org.newdawn.asteroids.entity.EntityManager#outOfAmmo()
 	 */
 	public void outOfAmmo() {
-		low_ammo.play(1.0f, 1.0f, false);
+		events.push(GameEvents.OUT_OF_AMMO);
 	}
 	
 	/**
 	 * @see org.newdawn.asteroids.entity.EntityManager#readyToSpawn()
 	 */
 	public boolean readyToSpawn() {
-		if (toAmmoSpawn <= 0) return true;
-		else return false;
+		return !timers.isPending(ammoLockout);
 	}
 	
 	/**
 	 * @see org.newdawn.asteroids.entity.EntityManager#shieldDown()
 	 */
 	public void shieldDown() {
-		shield_down.play(1.0f, 1.0f, false);
+		events.push(GameEvents.SHIELD_DOWN);
 	}
 }
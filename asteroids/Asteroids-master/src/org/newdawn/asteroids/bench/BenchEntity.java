@@ -0,0 +1,52 @@
+package org.newdawn.asteroids.bench;
+
+import org.newdawn.asteroids.entity.AbstractEntity;
+import org.newdawn.asteroids.entity.Entity;
+import org.newdawn.asteroids.entity.EntityManager;
+
+/**
+ * A bare entity used to fill benchmark scenes. It drifts around the play
+ * area like a rock but has no model, texture or collision response so
+ * only the cost of the code being measured shows up.
+ *
+ * @author Drew Murphy
+ */
+class BenchEntity extends AbstractEntity {
+	/** The radius of the collision circle of this entity */
+	private float size;
+
+	/**
+	 * Create a new benchmark entity
+	 *
+	 * @param x The initial x position
+	 * @param y The initial y position
+	 * @param vx The x component of the velocity
+	 * @param vy The y component of the velocity
+	 * @param size The radius of the collision circle
+	 */
+	BenchEntity(float x, float y, float vx, float vy, float size) {
+		setPosition(x, y);
+		setVelocity(vx, vy);
+
+		this.size = size;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.Entity#render()
+	 */
+	public void render() {
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.Entity#getSize()
+	 */
+	public float getSize() {
+		return size;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.Entity#collide(org.newdawn.asteroids.entity.EntityManager, org.newdawn.asteroids.entity.Entity)
+	 */
+	public void collide(EntityManager manager, Entity other) {
+	}
+}
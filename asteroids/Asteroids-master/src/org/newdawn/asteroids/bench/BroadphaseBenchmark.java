@@ -0,0 +1,164 @@
+package org.newdawn.asteroids.bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.newdawn.asteroids.collision.Broadphase;
+import org.newdawn.asteroids.collision.BruteForceBroadphase;
+import org.newdawn.asteroids.collision.PairList;
+import org.newdawn.asteroids.collision.SpatialHash;
+import org.newdawn.asteroids.collision.SweepAndPrune;
+import org.newdawn.asteroids.entity.AbstractEntity;
+import org.newdawn.asteroids.entity.Entity;
+
+/**
+ * Compares the broadphase implementations on scenes of drifting entities.
+ * For each scene the entities are moved by a 10 ms step between collision
+ * passes, just as the game would, so the sweep and prune gets to make use
+ * of the sorted order from the pass before.
+ *
+ * The play area is fixed in size so the entities in the larger scenes are
+ * shrunk to keep roughly the same number of neighbours per entity as the
+ * 1000 entity scene. The brute force reference is skipped for scenes too
+ * large for it to hold every pair.
+ *
+ * Nothing is rendered so no display is needed to run this.
+ *
+ * @author Drew Murphy
+ */
+public class BroadphaseBenchmark {
+	/** The number of collision passes timed for each scene */
+	private static final int PASSES = 20;
+	/** The largest scene the brute force broadphase is run on */
+	private static final int BRUTE_FORCE_LIMIT = 5000;
+	/** The scene that the entity sizes are scaled relative to */
+	private static final int REFERENCE_COUNT = 1000;
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The entity counts to run scenes for, a default set
+	 * of scenes is used if none are given
+	 */
+	public static void main(String argv[]) {
+		int[] counts = new int[] {10, 1000, 50000};
+		if (argv.length > 0) {
+			counts = new int[argv.length];
+			for (int i=0;i<argv.length;i++) {
+				counts[i] = Integer.parseInt(argv[i]);
+			}
+		}
+
+		// run every scene once first so the timings aren't dominated
+		// by the JIT compiling the code under test
+		for (int i=0;i<counts.length;i++) {
+			run(counts[i], false);
+		}
+
+		System.out.println("entities  broadphase    pair tests  contacts   ms/pass");
+		for (int i=0;i<counts.length;i++) {
+			run(counts[i], true);
+		}
+	}
+
+	/**
+	 * Run a single scene through each of the broadphases
+	 *
+	 * @param count The number of entities in the scene
+	 * @param report True if the results should be printed
+	 */
+	private static void run(int count, boolean report) {
+		float scale = scale(count);
+		long contacts = -1;
+
+		if (count <= BRUTE_FORCE_LIMIT) {
+			contacts = run(count, "brute", new BruteForceBroadphase(), contacts, report);
+		} else if (report) {
+			long tests = ((long) count * (count - 1)) / 2;
+			System.out.println(String.format("%8d  %-10s %13d %9s %9s", count, "brute", tests, "-", "skipped"));
+		}
+		contacts = run(count, "grid", new SpatialHash(4 * scale), contacts, report);
+		run(count, "sap", new SweepAndPrune(), contacts, report);
+	}
+
+	/**
+	 * Run a single scene through a single broadphase
+	 *
+	 * @param count The number of entities in the scene
+	 * @param name The name to report the broadphase under
+	 * @param broadphase The broadphase to measure
+	 * @param expected The number of contacts other broadphases found in
+	 * the last pass, or -1 if this is the first to run
+	 * @param report True if the results should be printed
+	 * @return The number of contacts found in the last pass
+	 */
+	private static long run(int count, String name, Broadphase broadphase, long expected, boolean report) {
+		ArrayList<Entity> entities = createScene(count, scale(count), 1234);
+		PairList pairs = new PairList();
+		long contacts = 0;
+		long time = 0;
+
+		for (int p=0;p<PASSES;p++) {
+			for (int i=0;i<entities.size();i++) {
+				entities.get(i).update(null, 10);
+			}
+
+			long start = System.nanoTime();
+			contacts = 0;
+			pairs.clear();
+			broadphase.findPairs(entities, pairs);
+			for (int i=0;i<pairs.size();i++) {
+				if (entities.get(pairs.getFirst(i)).collides(entities.get(pairs.getSecond(i)))) {
+					contacts++;
+				}
+			}
+			time += System.nanoTime() - start;
+		}
+
+		if ((expected != -1) && (contacts != expected)) {
+			throw new RuntimeException(name+" found "+contacts+" contacts, expected "+expected);
+		}
+		if (report) {
+			System.out.println(String.format("%8d  %-10s %13d %9d %9.3f",
+					count, name, pairs.size(), contacts, time / (PASSES * 1000000.0)));
+		}
+
+		return contacts;
+	}
+
+	/**
+	 * Get the amount entities are scaled by in a scene, chosen so that
+	 * each entity has about as many neighbours as in the reference scene
+	 *
+	 * @param count The number of entities in the scene
+	 * @return The scale to apply to the entities
+	 */
+	static float scale(int count) {
+		return (float) Math.min(1, Math.sqrt(REFERENCE_COUNT / (double) count));
+	}
+
+	/**
+	 * Create a field of drifting entities spread over the play area
+	 *
+	 * @param count The number of entities to create
+	 * @param scale The scale applied to the size of the entities
+	 * @param seed The seed for the positions, velocities and sizes
+	 * @return The list of entities created
+	 */
+	static ArrayList<Entity> createScene(int count, float scale, long seed) {
+		Random random = new Random(seed);
+		ArrayList<Entity> entities = new ArrayList<Entity>();
+
+		for (int i=0;i<count;i++) {
+			float x = (random.nextFloat() - 0.5f) * AbstractEntity.PLAY_AREA_WIDTH;
+			float y = (random.nextFloat() - 0.5f) * AbstractEntity.PLAY_AREA_HEIGHT;
+			float vx = -4 + (random.nextFloat() * 8);
+			float vy = -4 + (random.nextFloat() * 8);
+			float size = (1 + random.nextInt(3)) * 0.5f * scale;
+
+			entities.add(new BenchEntity(x, y, vx, vy, size));
+		}
+
+		return entities;
+	}
+}
@@ -0,0 +1,101 @@
+package org.newdawn.asteroids.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import org.newdawn.asteroids.collision.CollisionDispatch;
+import org.newdawn.asteroids.collision.Narrowphases;
+import org.newdawn.asteroids.collision.PairList;
+import org.newdawn.asteroids.collision.ParallelCollision;
+import org.newdawn.asteroids.collision.SpatialHash;
+import org.newdawn.asteroids.collision.SweptCollision;
+import org.newdawn.asteroids.entity.Entity;
+import org.newdawn.asteroids.entity.EntityType;
+
+/**
+ * Times the search for touching pairs spread across different numbers of
+ * threads, on a large field of drifting entities. Every thread count must
+ * find exactly the same pairs in exactly the same order as one thread.
+ *
+ * @author Drew Murphy
+ */
+public class CollisionBenchmark {
+	/** The number of collision passes timed for each thread count */
+	private static final int PASSES = 20;
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The number of entities followed by the thread counts to
+	 * try, 100000 entities on 1, 2, 4 and 8 threads if not given
+	 */
+	public static void main(String argv[]) {
+		int count = argv.length > 0 ? Integer.parseInt(argv[0]) : 100000;
+		int[] threads = new int[] {1, 2, 4, 8};
+		if (argv.length > 1) {
+			threads = new int[argv.length - 1];
+			for (int i=1;i<argv.length;i++) {
+				threads[i - 1] = Integer.parseInt(argv[i]);
+			}
+		}
+
+		float scale = BroadphaseBenchmark.scale(count);
+		ArrayList<Entity> entities = BroadphaseBenchmark.createScene(count, scale, 1234);
+		CollisionDispatch dispatch = new CollisionDispatch();
+		dispatch.prepare(entities);
+
+		PairList expected = null;
+		double single = 0;
+		System.out.println(String.format("%d entities", count));
+		System.out.println("threads      hits   ms/pass  speedup");
+		for (int t=0;t<threads.length;t++) {
+			ForkJoinPool pool = threads[t] > 1 ? new ForkJoinPool(threads[t]) : null;
+			ParallelCollision collision = new ParallelCollision(pool, new SpatialHash(4 * scale), dispatch,
+					new SweptCollision(EntityType.ROCK), Narrowphases.create());
+
+			PairList hits = new PairList();
+			double time = 0;
+
+			// once round to warm up, once round to measure
+			for (int round=0;round<2;round++) {
+				long start = System.nanoTime();
+				for (int p=0;p<PASSES;p++) {
+					hits.clear();
+					collision.prepare(entities);
+					collision.findHits(hits);
+				}
+				time = (System.nanoTime() - start) / (PASSES * 1000000.0);
+			}
+
+			if (expected == null) {
+				expected = hits;
+				single = time;
+			} else {
+				check(expected, hits, threads[t]);
+			}
+
+			System.out.println(String.format("%7d %9d %9.3f %7.2fx", threads[t], hits.size(), time, single / time));
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Check that a thread count found the same pairs as the first
+	 *
+	 * @param expected The pairs found by the first thread count
+	 * @param hits The pairs found by this thread count
+	 * @param threads The number of threads used
+	 */
+	private static void check(PairList expected, PairList hits, int threads) {
+		if (hits.size() != expected.size()) {
+			throw new RuntimeException(threads+" threads found "+hits.size()+" hits, expected "+expected.size());
+		}
+		for (int i=0;i<hits.size();i++) {
+			if ((hits.getFirst(i) != expected.getFirst(i)) || (hits.getSecond(i) != expected.getSecond(i))) {
+				throw new RuntimeException(threads+" threads found hit "+i+" out of order");
+			}
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package org.newdawn.asteroids.bench;
+
+import java.util.ArrayList;
+
+import org.newdawn.asteroids.collision.ContactSolver;
+import org.newdawn.asteroids.collision.PairList;
+import org.newdawn.asteroids.collision.SpatialHash;
+import org.newdawn.asteroids.entity.AbstractEntity;
+import org.newdawn.asteroids.entity.Entity;
+
+/**
+ * Measures what bouncing a dense field of rocks off each other costs next
+ * to finding the rocks that are touching, and how well the field holds
+ * together. The entities are sized to cover about half the play area, so
+ * most of them are bumping into something, then run for a number of ticks
+ * with the contact solver and again with the old response of pushing each
+ * entity straight away from whatever it touched.
+ *
+ * Along with the time of each, the energy of the field at the end is
+ * given as a fraction of what it started with, along with the fastest
+ * entity and how far the touching pairs overlap on average. A solver that
+ * holds up keeps the energy close to where it was (a little under, as
+ * touches too slow to bounce are let go of) without anything being flung
+ * off or sinking into its neighbours.
+ *
+ * @author Drew Murphy
+ */
+public class ContactSolverBenchmark {
+	/** The number of ticks each field is run for */
+	private static final int TICKS = 600;
+	/** The length of each tick in milliseconds */
+	private static final int DELTA = 16;
+	/** The size of the entities next to the other benchmarks, chosen so they cover about half the play area */
+	private static final float DENSITY = 0.6f;
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The numbers of entities to try, 2000, 5000 and 10000 if
+	 * not given
+	 */
+	public static void main(String argv[]) {
+		int[] counts = new int[] {2000, 5000, 10000};
+		if (argv.length > 0) {
+			counts = new int[argv.length];
+			for (int i=0;i<argv.length;i++) {
+				counts[i] = Integer.parseInt(argv[i]);
+			}
+		}
+
+		// once round to warm up, once round to measure
+		run(counts[0], true, false);
+		run(counts[0], false, false);
+		for (int i=0;i<counts.length;i++) {
+			System.out.println(String.format("%d entities", counts[i]));
+			System.out.println("response  contacts/tick  find ms/tick  respond ms/tick  energy  max speed  mean overlap");
+			run(counts[i], true, true);
+			run(counts[i], false, true);
+		}
+	}
+
+	/**
+	 * Run a field for a number of ticks
+	 *
+	 * @param count The number of entities in the field
+	 * @param solve True if the contact solver should be used, false for the
+	 * old response
+	 * @param report True if the results should be printed
+	 */
+	private static void run(int count, boolean solve, boolean report) {
+		float scale = BroadphaseBenchmark.scale(count) * DENSITY;
+		ArrayList<Entity> scene = BroadphaseBenchmark.createScene(count, scale, 1234);
+		SpatialHash grid = new SpatialHash(4 * scale);
+		PairList pairs = new PairList();
+		PairList touching = new PairList();
+		ContactSolver solver = new ContactSolver();
+
+		double startEnergy = energy(scene);
+		long contacts = 0;
+		long findTime = 0;
+		long respondTime = 0;
+		for (int t=0;t<TICKS;t++) {
+			for (int i=0;i<scene.size();i++) {
+				scene.get(i).update(null, DELTA);
+			}
+
+			long start = System.nanoTime();
+			pairs.clear();
+			touching.clear();
+			grid.findPairs(scene, pairs);
+			for (int i=0;i<pairs.size();i++) {
+				if (scene.get(pairs.getFirst(i)).collides(scene.get(pairs.getSecond(i)))) {
+					touching.add(pairs.getFirst(i), pairs.getSecond(i));
+				}
+			}
+			long found = System.nanoTime();
+			findTime += found - start;
+
+			if (solve) {
+				for (int i=0;i<touching.size();i++) {
+					solver.add(scene, touching.getFirst(i), touching.getSecond(i));
+				}
+				solver.solve();
+			} else {
+				for (int i=0;i<touching.size();i++) {
+					push(scene.get(touching.getFirst(i)), scene.get(touching.getSecond(i)));
+					push(scene.get(touching.getSecond(i)), scene.get(touching.getFirst(i)));
+				}
+			}
+			respondTime += System.nanoTime() - found;
+			contacts += touching.size();
+		}
+
+		if (report) {
+			System.out.println(String.format("%-8s %14.1f %13.3f %16.3f %7.3f %10.2f %13.4f",
+					solve ? "solver" : "push", contacts / (double) TICKS,
+					findTime / (TICKS * 1000000.0), respondTime / (TICKS * 1000000.0),
+					energy(scene) / startEnergy, maxSpeed(scene), meanOverlap(scene, grid)));
+		}
+	}
+
+	/**
+	 * The old response to touching something, heading straight away from it
+	 *
+	 * @param entity The entity to push
+	 * @param other The entity it's touching
+	 */
+	private static void push(Entity entity, Entity other) {
+		((AbstractEntity) entity).setVelocity(entity.getX() - other.getX(), entity.getY() - other.getY());
+	}
+
+	/**
+	 * Get the kinetic energy of a field, with the mass of each entity
+	 * taken from its size as the solver does
+	 *
+	 * @param scene The entities in the field
+	 * @return The total kinetic energy
+	 */
+	private static double energy(ArrayList<Entity> scene) {
+		double total = 0;
+		for (int i=0;i<scene.size();i++) {
+			AbstractEntity entity = (AbstractEntity) scene.get(i);
+			float vx = entity.getVelocityX();
+			float vy = entity.getVelocityY();
+			float size = entity.getSize();
+			total += 0.5 * size * size * ((vx * vx) + (vy * vy));
+		}
+
+		return total;
+	}
+
+	/**
+	 * Get the speed of the fastest entity in a field
+	 *
+	 * @param scene The entities in the field
+	 * @return The fastest speed in units per second
+	 */
+	private static double maxSpeed(ArrayList<Entity> scene) {
+		double max = 0;
+		for (int i=0;i<scene.size();i++) {
+			AbstractEntity entity = (AbstractEntity) scene.get(i);
+			float vx = entity.getVelocityX();
+			float vy = entity.getVelocityY();
+			max = Math.max(max, Math.sqrt((vx * vx) + (vy * vy)));
+		}
+
+		return max;
+	}
+
+	/**
+	 * Get how far the touching pairs of a field overlap on average
+	 *
+	 * @param scene The entities in the field
+	 * @param grid The broadphase to find the pairs with
+	 * @return The mean overlap of the touching pairs
+	 */
+	private static double meanOverlap(ArrayList<Entity> scene, SpatialHash grid) {
+		PairList pairs = new PairList();
+		grid.findPairs(scene, pairs);
+
+		double total = 0;
+		int touching = 0;
+		for (int i=0;i<pairs.size();i++) {
+			Entity a = scene.get(pairs.getFirst(i));
+			Entity b = scene.get(pairs.getSecond(i));
+			if (a.collides(b)) {
+				float dx = a.getX() - b.getX();
+				float dy = a.getY() - b.getY();
+				total += a.getSize() + b.getSize() - Math.sqrt((dx * dx) + (dy * dy));
+				touching++;
+			}
+		}
+
+		return touching == 0 ? 0 : total / touching;
+	}
+}
@@ -0,0 +1,88 @@
+package org.newdawn.asteroids.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.newdawn.asteroids.entity.Entity;
+import org.newdawn.asteroids.entity.EntityList;
+
+/**
+ * Compares removing a batch of entities each tick from an ArrayList,
+ * as the game used to, against the entity list. Each tick a random
+ * batch is removed and the same number of new entities added, as shots
+ * expiring and rocks splitting would do.
+ *
+ * @author Drew Murphy
+ */
+public class EntityListBenchmark {
+	/** The number of ticks timed for each list */
+	private static final int TICKS = 100;
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The number of entities in the list and the number removed
+	 * each tick, 50000 and 500 if not given
+	 */
+	public static void main(String argv[]) {
+		int count = argv.length > 0 ? Integer.parseInt(argv[0]) : 50000;
+		int batch = argv.length > 1 ? Integer.parseInt(argv[1]) : 500;
+
+		// once round to warm up, once round to measure. Both lists are
+		// fed the same random batches so should end up the same.
+		double arrayTime = 0;
+		double entityTime = 0;
+		for (int round=0;round<2;round++) {
+			ArrayList<Entity> array = new ArrayList<Entity>();
+			EntityList list = new EntityList();
+			array.addAll(BroadphaseBenchmark.createScene(count, 1, 1234));
+			list.addAll(BroadphaseBenchmark.createScene(count, 1, 1234));
+
+			arrayTime = run(array, batch);
+			entityTime = run(list, batch);
+
+			if (array.size() != list.size()) {
+				throw new RuntimeException("Lists ended up different sizes");
+			}
+			for (int i=0;i<array.size();i++) {
+				if (array.get(i).getX() != list.get(i).getX()) {
+					throw new RuntimeException("Entity "+i+" ended up in a different place in the list");
+				}
+			}
+		}
+
+		System.out.println(String.format("%d entities, %d removed per tick: ArrayList %.3f ms, EntityList %.3f ms",
+				count, batch, arrayTime, entityTime));
+	}
+
+	/**
+	 * Run a number of ticks of removing and adding entities
+	 *
+	 * @param entities The list to remove from and add to
+	 * @param batch The number of entities to remove each tick
+	 * @return The average time taken per tick in milliseconds
+	 */
+	private static double run(List<Entity> entities, int batch) {
+		Random random = new Random(4321);
+		ArrayList<Entity> removeList = new ArrayList<Entity>();
+		ArrayList<Entity> addList = new ArrayList<Entity>();
+		long time = 0;
+
+		for (int t=0;t<TICKS;t++) {
+			removeList.clear();
+			for (int i=0;i<batch;i++) {
+				removeList.add(entities.get(random.nextInt(entities.size())));
+			}
+			addList.clear();
+			addList.addAll(BroadphaseBenchmark.createScene(batch, 1, t));
+
+			long start = System.nanoTime();
+			entities.removeAll(removeList);
+			entities.addAll(addList);
+			time += System.nanoTime() - start;
+		}
+
+		return time / (TICKS * 1000000.0);
+	}
+}
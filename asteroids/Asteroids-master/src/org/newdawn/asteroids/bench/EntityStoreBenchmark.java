@@ -0,0 +1,63 @@
+package org.newdawn.asteroids.bench;
+
+import java.util.ArrayList;
+
+import org.newdawn.asteroids.entity.AbstractEntity;
+import org.newdawn.asteroids.entity.Entity;
+import org.newdawn.asteroids.entity.EntityStore;
+
+/**
+ * Compares moving entities one at a time through Entity.update() against
+ * moving them all in one pass over the entity store's arrays.
+ *
+ * @author Drew Murphy
+ */
+public class EntityStoreBenchmark {
+	/** The number of updates timed for each approach */
+	private static final int UPDATES = 200;
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The number of entities to move, 50000 if not given
+	 */
+	public static void main(String argv[]) {
+		int count = argv.length > 0 ? Integer.parseInt(argv[0]) : 50000;
+
+		ArrayList<Entity> separate = BroadphaseBenchmark.createScene(count, 1, 1234);
+		ArrayList<Entity> stored = BroadphaseBenchmark.createScene(count, 1, 1234);
+		EntityStore store = new EntityStore(count);
+		for (int i=0;i<stored.size();i++) {
+			store.add((AbstractEntity) stored.get(i));
+		}
+
+		// once round to warm up, once round to measure
+		double separateTime = 0;
+		double storeTime = 0;
+		for (int round=0;round<2;round++) {
+			long start = System.nanoTime();
+			for (int u=0;u<UPDATES;u++) {
+				for (int i=0;i<separate.size();i++) {
+					separate.get(i).update(null, 10);
+				}
+			}
+			separateTime = (System.nanoTime() - start) / (UPDATES * 1000000.0);
+
+			start = System.nanoTime();
+			for (int u=0;u<UPDATES;u++) {
+				store.integrate(10);
+			}
+			storeTime = (System.nanoTime() - start) / (UPDATES * 1000000.0);
+		}
+
+		// both approaches should have ended up in the same place
+		for (int i=0;i<count;i++) {
+			if ((separate.get(i).getX() != stored.get(i).getX()) || (separate.get(i).getY() != stored.get(i).getY())) {
+				throw new RuntimeException("Entity "+i+" ended up in a different position");
+			}
+		}
+
+		System.out.println(String.format("%d entities: entity updates %.3f ms, store integrate %.3f ms",
+				count, separateTime, storeTime));
+	}
+}
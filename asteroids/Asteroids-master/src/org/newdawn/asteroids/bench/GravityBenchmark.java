@@ -0,0 +1,287 @@
+package org.newdawn.asteroids.bench;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.newdawn.asteroids.collision.PairList;
+import org.newdawn.asteroids.collision.SpatialHash;
+import org.newdawn.asteroids.entity.AbstractEntity;
+import org.newdawn.asteroids.entity.EntityList;
+import org.newdawn.asteroids.entity.EntityStore;
+import org.newdawn.asteroids.entity.GravityField;
+import org.newdawn.asteroids.entity.MortonOrder;
+
+/**
+ * Measures what the gravity wells cost against the time there is for a
+ * tick at the game's default 100 ticks a second. Two fields are tried,
+ * one where only the biggest third of the bodies pull, as only the big
+ * rocks do in the game, and one where every body pulls on every other,
+ * the worst case for the mode. Each field is run through a whole tick for
+ * a number of ticks at each of a range of opening angles, on one thread
+ * and then across the pool. A tick is the gravity, the move, the Z-order
+ * sort the game keeps large stores in and the collision pass, each timed
+ * on its own, and it's their total that's set against the time there is.
+ *
+ * The accuracy at each angle is checked by working out the exact pull on
+ * a sample of the bodies one pair at a time, which also gives an idea of
+ * what the pull would cost without the tree.
+ *
+ * @author Drew Murphy
+ */
+public class GravityBenchmark {
+	/** The number of ticks timed at each opening angle */
+	private static final int TICKS = 20;
+	/** The length of each tick in milliseconds */
+	private static final int DELTA = 16;
+	/** The time there is for each tick at 100 ticks a second, in milliseconds */
+	private static final double BUDGET = 10;
+	/** The number of bodies the exact pull is worked out for */
+	private static final int SAMPLE = 500;
+	/** The opening angles tried */
+	private static final float[] THETAS = new float[] {0.3f, 0.5f, 0.7f, 1.0f};
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The number of bodies, 20000 if not given, and the number
+	 * of threads, the number of processors if not given
+	 */
+	public static void main(String argv[]) {
+		int count = argv.length > 0 ? Integer.parseInt(argv[0]) : 20000;
+		int threads = argv.length > 1 ? Integer.parseInt(argv[1]) : Runtime.getRuntime().availableProcessors();
+		ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+
+		// once round to warm up, once round to measure
+		run(count, true, null, false);
+		run(count, true, pool, false);
+		System.out.println(String.format("%d bodies, %d threads, %.0f ms a tick", count, threads, BUDGET));
+		for (int heavy=0;heavy<2;heavy++) {
+			boolean all = heavy == 1;
+			System.out.println(all ? "every body pulling" : "the biggest third pulling");
+			System.out.println("theta  threads   nodes  gravity     move     sort  collide    total  budget  mean error  max error");
+			run(count, all, null, true);
+			if (pool != null) {
+				run(count, all, pool, true);
+			}
+			System.out.println(String.format("exact pull, one pair at a time: %.1f ms a tick on one thread", exact(count, all)));
+		}
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Run the field through the gravity at each opening angle
+	 *
+	 * @param count The number of bodies in the field
+	 * @param all True if every body should pull, false for the biggest third
+	 * @param pool The pool to spread the work across, or null for one thread
+	 * @param report True if the results should be printed
+	 */
+	private static void run(int count, boolean all, ForkJoinPool pool, boolean report) {
+		for (int t=0;t<THETAS.length;t++) {
+			GravityField field = new GravityField(pool, THETAS[t], 0);
+
+			double[] error = error(count, all, field);
+
+			EntityList list = new EntityList(count);
+			EntityStore store = createStore(count, all, list);
+			MortonOrder order = new MortonOrder();
+			SpatialHash grid = new SpatialHash(4 * BroadphaseBenchmark.scale(count));
+			PairList pairs = new PairList();
+			long[] times = new long[4];
+			for (int i=0;i<TICKS;i++) {
+				long start = System.nanoTime();
+				field.apply(store, DELTA);
+				long applied = System.nanoTime();
+				store.integrate(DELTA);
+				long moved = System.nanoTime();
+				order.tick(list, store);
+				long sorted = System.nanoTime();
+				collide(list, grid, pairs);
+				long collided = System.nanoTime();
+
+				times[0] += applied - start;
+				times[1] += moved - applied;
+				times[2] += sorted - moved;
+				times[3] += collided - sorted;
+			}
+
+			if (report) {
+				double total = 0;
+				double[] ms = new double[times.length];
+				for (int i=0;i<times.length;i++) {
+					ms[i] = times[i] / (TICKS * 1000000.0);
+					total += ms[i];
+				}
+				System.out.println(String.format("%5.1f %8d %7d %8.3f %8.3f %8.3f %8.3f %8.3f %6.0f%% %10.4f %10.4f",
+						THETAS[t], pool == null ? 1 : pool.getParallelism(), field.getNodeCount(),
+						ms[0], ms[1], ms[2], ms[3], total, (total * 100) / BUDGET, error[0], error[1]));
+			}
+		}
+	}
+
+	/**
+	 * Compare the pull on a sample of the bodies with the exact pull
+	 *
+	 * @param count The number of bodies in the field
+	 * @param all True if every body should pull, false for the biggest third
+	 * @param field The gravity to check
+	 * @return The mean and the largest error, each as a fraction of the
+	 * exact pull
+	 */
+	private static double[] error(int count, boolean all, GravityField field) {
+		EntityStore store = createStore(count, all, new EntityList(count));
+		float[] vx = new float[count];
+		float[] vy = new float[count];
+		for (int i=0;i<count;i++) {
+			vx[i] = store.get(i).getVelocityX();
+			vy[i] = store.get(i).getVelocityY();
+		}
+
+		// over a second the change in velocity is the pull itself
+		field.apply(store, 1000);
+
+		double total = 0;
+		double max = 0;
+		double[] pull = new double[2];
+		for (int s=0;s<SAMPLE;s++) {
+			int i = (int) (((long) s * count) / SAMPLE);
+			exact(store, i, pull);
+
+			double dx = (store.get(i).getVelocityX() - vx[i]) - pull[0];
+			double dy = (store.get(i).getVelocityY() - vy[i]) - pull[1];
+			double error = Math.sqrt((dx * dx) + (dy * dy)) / Math.sqrt((pull[0] * pull[0]) + (pull[1] * pull[1]));
+			total += error;
+			max = Math.max(max, error);
+		}
+
+		return new double[] {total / SAMPLE, max};
+	}
+
+	/**
+	 * Time the exact pull on a sample of the bodies, scaled up to the time
+	 * it would take for every body
+	 *
+	 * @param count The number of bodies in the field
+	 * @param all True if every body should pull, false for the biggest third
+	 * @return The time the exact pull would take each tick, in milliseconds
+	 */
+	private static double exact(int count, boolean all) {
+		EntityStore store = createStore(count, all, new EntityList(count));
+		double[] pull = new double[2];
+
+		long start = System.nanoTime();
+		for (int s=0;s<SAMPLE;s++) {
+			exact(store, (int) (((long) s * count) / SAMPLE), pull);
+		}
+
+		return ((System.nanoTime() - start) / 1000000.0) * count / SAMPLE;
+	}
+
+	/**
+	 * Work out the exact pull on a body from every other, one at a time
+	 *
+	 * @param store The store holding the bodies
+	 * @param index The slot of the body being pulled
+	 * @param pull The array the x and y components of the pull are written to
+	 */
+	private static void exact(EntityStore store, int index, double[] pull) {
+		double softening = GravityField.SOFTENING * GravityField.SOFTENING;
+		double x = store.get(index).getX();
+		double y = store.get(index).getY();
+
+		pull[0] = 0;
+		pull[1] = 0;
+		for (int i=0;i<store.size();i++) {
+			AbstractEntity other = store.get(i);
+			double dx = other.getX() - x;
+			double dy = other.getY() - y;
+			double softened = (dx * dx) + (dy * dy) + softening;
+			double strength = (GravityField.STRENGTH * other.getGravity()) / (softened * Math.sqrt(softened));
+			pull[0] += dx * strength;
+			pull[1] += dy * strength;
+		}
+	}
+
+	/**
+	 * Run the grid and the overlap test over the field, as the game does
+	 * each tick alongside the gravity
+	 *
+	 * @param list The bodies, in the same order as the store
+	 * @param grid The broadphase to find the pairs with
+	 * @param pairs The list the pairs are found into
+	 */
+	private static void collide(EntityList list, SpatialHash grid, PairList pairs) {
+		pairs.clear();
+		grid.findPairs(list, pairs);
+		for (int i=0;i<pairs.size();i++) {
+			list.get(pairs.getFirst(i)).collides(list.get(pairs.getSecond(i)));
+		}
+	}
+
+	/**
+	 * Create a store full of bodies spread over the play area, the same
+	 * every time. The store is sorted into Z-order, as the game keeps it
+	 * once there are this many entities.
+	 *
+	 * @param count The number of bodies to create
+	 * @param all True if every body should pull, false for the biggest third
+	 * @param list The list to add the bodies to, in the same order
+	 * @return The store holding the bodies
+	 */
+	private static EntityStore createStore(int count, boolean all, EntityList list) {
+		float scale = BroadphaseBenchmark.scale(count);
+		Random random = new Random(1234);
+		EntityStore store = new EntityStore(count);
+
+		for (int i=0;i<count;i++) {
+			float x = (random.nextFloat() - 0.5f) * AbstractEntity.PLAY_AREA_WIDTH;
+			float y = (random.nextFloat() - 0.5f) * AbstractEntity.PLAY_AREA_HEIGHT;
+			float vx = -4 + (random.nextFloat() * 8);
+			float vy = -4 + (random.nextFloat() * 8);
+			int steps = 1 + random.nextInt(3);
+			float size = steps * 0.5f * scale;
+
+			Body body = new Body(x, y, vx, vy, size, (all || (steps == 3)) ? size * size : 0);
+			store.add(body);
+			list.add(body);
+		}
+		new MortonOrder().sort(list, store);
+
+		return store;
+	}
+
+	/**
+	 * A benchmark entity that pulls on the others, as a big rock does
+	 *
+	 * @author Drew Murphy
+	 */
+	private static class Body extends BenchEntity {
+		/** The mass the body pulls with */
+		private float gravity;
+
+		/**
+		 * Create a new body
+		 *
+		 * @param x The initial x position
+		 * @param y The initial y position
+		 * @param vx The x component of the velocity
+		 * @param vy The y component of the velocity
+		 * @param size The radius of the collision circle
+		 * @param gravity The mass the body pulls with, 0 if it doesn't
+		 */
+		Body(float x, float y, float vx, float vy, float size, float gravity) {
+			super(x, y, vx, vy, size);
+
+			this.gravity = gravity;
+		}
+
+		/**
+		 * @see org.newdawn.asteroids.entity.AbstractEntity#getGravity()
+		 */
+		public float getGravity() {
+			return gravity;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package org.newdawn.asteroids.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.newdawn.asteroids.collision.PairList;
+import org.newdawn.asteroids.collision.SpatialHash;
+import org.newdawn.asteroids.entity.AbstractEntity;
+import org.newdawn.asteroids.entity.Entity;
+import org.newdawn.asteroids.entity.EntityList;
+import org.newdawn.asteroids.entity.EntityStore;
+import org.newdawn.asteroids.entity.MortonOrder;
+
+/**
+ * Measures what sorting the entities into Z-order costs and what it saves
+ * the collision pass. A field of entities is created in a random order,
+ * timed through the grid and the overlap test, sorted from scratch, timed
+ * again, then left to drift with a sort every MortonOrder.INTERVAL ticks
+ * so the cost of keeping it in order can be seen.
+ *
+ * There's no portable way to count the processor's cache misses from
+ * Java, so the benchmark also plays the position reads of the overlap
+ * tests through a model of a 32 KB, 8 way cache with 64 byte lines and
+ * counts the misses of that instead.
+ *
+ * @author Drew Murphy
+ */
+public class MortonOrderBenchmark {
+	/** The number of collision passes timed for each order */
+	private static final int PASSES = 10;
+	/** The number of ticks the entities drift for */
+	private static final int DRIFT_TICKS = 320;
+	/** The length of each tick in milliseconds */
+	private static final int DELTA = 16;
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The number of entities, 100000 if not given
+	 */
+	public static void main(String argv[]) {
+		int count = argv.length > 0 ? Integer.parseInt(argv[0]) : 100000;
+
+		// once round to warm up, once round to measure
+		run(count, false);
+		run(count, true);
+	}
+
+	/**
+	 * Run the scene through the sorts
+	 *
+	 * @param count The number of entities in the scene
+	 * @param report True if the results should be printed
+	 */
+	private static void run(int count, boolean report) {
+		float scale = BroadphaseBenchmark.scale(count);
+		ArrayList<Entity> scene = BroadphaseBenchmark.createScene(count, scale, 1234);
+		EntityList list = new EntityList(count);
+		EntityStore store = new EntityStore(count);
+		for (int i=0;i<scene.size();i++) {
+			list.add(scene.get(i));
+			store.add((AbstractEntity) scene.get(i));
+		}
+
+		SpatialHash grid = new SpatialHash(4 * scale);
+		MortonOrder order = new MortonOrder();
+		if (report) {
+			System.out.println(String.format("%d entities", count));
+			System.out.println("order                  pairs  contacts   ms/pass  misses/pair");
+		}
+		measure("spawn", list, grid, report);
+
+		long start = System.nanoTime();
+		int moved = order.sort(list, store);
+		double first = (System.nanoTime() - start) / 1000000.0;
+		check(list, store);
+		measure("sorted", list, grid, report);
+
+		double resort = 0;
+		long resortMoved = 0;
+		for (int t=1;t<=DRIFT_TICKS;t++) {
+			store.integrate(DELTA);
+			if (t % MortonOrder.INTERVAL == 0) {
+				start = System.nanoTime();
+				resortMoved += order.sort(list, store);
+				resort += System.nanoTime() - start;
+			}
+		}
+		check(list, store);
+		measure("drifted and resorted", list, grid, report);
+
+		if (report) {
+			int sorts = DRIFT_TICKS / MortonOrder.INTERVAL;
+			System.out.println(String.format("first sort: %.3f ms, %d entities moved", first, moved));
+			System.out.println(String.format("sort every %d ticks: %.3f ms, %.0f entities moved on average",
+					MortonOrder.INTERVAL, resort / (sorts * 1000000.0), resortMoved / (double) sorts));
+		}
+	}
+
+	/**
+	 * Time the collision pass over the entities in their current order
+	 *
+	 * @param name The name of the order to report
+	 * @param list The entities to check
+	 * @param grid The broadphase to find the pairs with
+	 * @param report True if the results should be printed
+	 */
+	private static void measure(String name, EntityList list, SpatialHash grid, boolean report) {
+		PairList pairs = new PairList();
+		long contacts = 0;
+
+		long start = System.nanoTime();
+		for (int p=0;p<PASSES;p++) {
+			contacts = 0;
+			pairs.clear();
+			grid.findPairs(list, pairs);
+			for (int i=0;i<pairs.size();i++) {
+				if (list.get(pairs.getFirst(i)).collides(list.get(pairs.getSecond(i)))) {
+					contacts++;
+				}
+			}
+		}
+		double time = (System.nanoTime() - start) / (PASSES * 1000000.0);
+
+		// the list and store are in the same order, so the index in the
+		// list is the slot whose position is read
+		CacheModel cache = new CacheModel();
+		for (int i=0;i<pairs.size();i++) {
+			cache.read(0, pairs.getFirst(i));
+			cache.read(1, pairs.getFirst(i));
+			cache.read(0, pairs.getSecond(i));
+			cache.read(1, pairs.getSecond(i));
+		}
+
+		if (report) {
+			System.out.println(String.format("%-20s %7d %9d %9.3f %12.3f",
+					name, pairs.size(), contacts, time, cache.getMisses() / (double) Math.max(1, pairs.size())));
+		}
+	}
+
+	/**
+	 * Check that the list and the store were sorted into the same order
+	 *
+	 * @param list The sorted list
+	 * @param store The sorted store
+	 */
+	private static void check(EntityList list, EntityStore store) {
+		for (int i=0;i<list.size();i++) {
+			if (list.get(i) != store.get(i)) {
+				throw new RuntimeException("list and store differ at "+i);
+			}
+		}
+	}
+
+	/**
+	 * A model of a set associative cache with least recently used
+	 * replacement, counting the misses of the reads played through it
+	 *
+	 * @author Drew Murphy
+	 */
+	private static class CacheModel {
+		/** The size of each line in bytes, as a power of two */
+		private static final int LINE_BITS = 6;
+		/** The number of sets */
+		private static final int SETS = 64;
+		/** The number of lines in each set */
+		private static final int WAYS = 8;
+
+		/** The line held in each way of each set, most recently used first, -1 if empty */
+		private long[] lines = new long[SETS * WAYS];
+		/** The number of reads that missed */
+		private long misses;
+
+		/**
+		 * Create a new, empty cache
+		 */
+		CacheModel() {
+			Arrays.fill(lines, -1);
+		}
+
+		/**
+		 * Read a float from one of the store's arrays
+		 *
+		 * @param array The array being read, each is taken to be far from
+		 * the others in memory
+		 * @param index The index read
+		 */
+		void read(int array, int index) {
+			long line = ((((long) array) << 32) + (index * 4L)) >>> LINE_BITS;
+			int base = (int) (line % SETS) * WAYS;
+
+			int way = 0;
+			while ((way < WAYS - 1) && (lines[base + way] != line)) {
+				way++;
+			}
+			if (lines[base + way] != line) {
+				misses++;
+			}
+
+			// move the line to the front of its set
+			for (int i=way;i>0;i--) {
+				lines[base + i] = lines[base + i - 1];
+			}
+			lines[base] = line;
+		}
+
+		/**
+		 * @return The number of reads that missed
+		 */
+		long getMisses() {
+			return misses;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package org.newdawn.asteroids.bench;
+
+import java.util.ArrayList;
+
+import org.newdawn.asteroids.collision.Narrowphase;
+import org.newdawn.asteroids.collision.Narrowphases;
+import org.newdawn.asteroids.collision.PairList;
+import org.newdawn.asteroids.collision.SpatialHash;
+import org.newdawn.asteroids.entity.Entity;
+
+/**
+ * Compares the narrowphase implementations on the candidate pairs the
+ * grid finds in fields of rocks. The pairs are found once per scene and
+ * then tested over and over, so only the narrowphase is timed.
+ *
+ * The vector narrowphase is only run if it's available, which means it
+ * must have been compiled (the "compile-vector" build target) and the JVM
+ * started with "--add-modules jdk.incubator.vector".
+ *
+ * @author Drew Murphy
+ */
+public class NarrowphaseBenchmark {
+	/** The number of passes over the pairs timed for each scene */
+	private static final int PASSES = 50;
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The entity counts to run scenes for, a default set
+	 * of scenes is used if none are given
+	 */
+	public static void main(String argv[]) {
+		int[] counts = new int[] {1000, 10000, 100000};
+		if (argv.length > 0) {
+			counts = new int[argv.length];
+			for (int i=0;i<argv.length;i++) {
+				counts[i] = Integer.parseInt(argv[i]);
+			}
+		}
+
+		Narrowphase scalar = Narrowphases.create(Narrowphases.SCALAR);
+		Narrowphase vector = null;
+		try {
+			vector = Narrowphases.create(Narrowphases.VECTOR);
+		} catch (IllegalArgumentException e) {
+			System.out.println("vector narrowphase not available, only timing scalar");
+		}
+
+		// once round to warm up, once round to measure
+		for (int round=0;round<2;round++) {
+			if (round == 1) {
+				System.out.println("entities  narrowphase       pairs      hits   ns/pair  speedup");
+			}
+			for (int i=0;i<counts.length;i++) {
+				run(counts[i], scalar, vector, round == 1);
+			}
+		}
+	}
+
+	/**
+	 * Run a single scene through the narrowphases
+	 *
+	 * @param count The number of entities in the scene
+	 * @param scalar The scalar narrowphase
+	 * @param vector The vector narrowphase, or null if it isn't available
+	 * @param report True if the results should be printed
+	 */
+	private static void run(int count, Narrowphase scalar, Narrowphase vector, boolean report) {
+		float scale = BroadphaseBenchmark.scale(count);
+		ArrayList<Entity> entities = BroadphaseBenchmark.createScene(count, scale, 1234);
+		PairList candidates = new PairList();
+		new SpatialHash(4 * scale).findPairs(entities, candidates);
+
+		PairList scalarHits = new PairList();
+		double scalarTime = time(scalar, entities, candidates, scalarHits);
+		if (report) {
+			print(count, "scalar", candidates.size(), scalarHits.size(), scalarTime, 1);
+		}
+
+		if (vector != null) {
+			PairList vectorHits = new PairList();
+			double vectorTime = time(vector, entities, candidates, vectorHits);
+
+			// both must find exactly the same pairs in the same order
+			if (vectorHits.size() != scalarHits.size()) {
+				throw new RuntimeException("vector found "+vectorHits.size()+" hits, expected "+scalarHits.size());
+			}
+			for (int i=0;i<vectorHits.size();i++) {
+				if ((vectorHits.getFirst(i) != scalarHits.getFirst(i)) || (vectorHits.getSecond(i) != scalarHits.getSecond(i))) {
+					throw new RuntimeException("vector hit "+i+" differs from scalar");
+				}
+			}
+
+			if (report) {
+				print(count, "vector", candidates.size(), vectorHits.size(), vectorTime, scalarTime / vectorTime);
+			}
+		}
+	}
+
+	/**
+	 * Time a narrowphase over a set of candidate pairs
+	 *
+	 * @param narrowphase The narrowphase to time
+	 * @param entities The entities in the scene
+	 * @param candidates The pairs to test
+	 * @param hits The list to leave the hits of the last pass in
+	 * @return The time taken per pass in nanoseconds
+	 */
+	private static double time(Narrowphase narrowphase, ArrayList<Entity> entities, PairList candidates, PairList hits) {
+		narrowphase.prepare(entities);
+
+		long start = System.nanoTime();
+		for (int p=0;p<PASSES;p++) {
+			hits.clear();
+			narrowphase.findHits(candidates, hits);
+		}
+
+		return (System.nanoTime() - start) / (double) PASSES;
+	}
+
+	/**
+	 * Print the results for one narrowphase
+	 *
+	 * @param count The number of entities in the scene
+	 * @param name The name of the narrowphase
+	 * @param pairs The number of candidate pairs tested
+	 * @param hits The number of pairs found touching
+	 * @param time The time taken per pass in nanoseconds
+	 * @param speedup The speed relative to the scalar narrowphase
+	 */
+	private static void print(int count, String name, int pairs, int hits, double time, double speedup) {
+		System.out.println(String.format("%8d  %-11s %11d %9d %9.3f %7.2fx",
+				count, name, pairs, hits, time / Math.max(1, pairs), speedup));
+	}
+}
@@ -0,0 +1,188 @@
+package org.newdawn.asteroids.bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.newdawn.asteroids.entity.AbstractEntity;
+import org.newdawn.asteroids.entity.Entity;
+import org.newdawn.asteroids.entity.EntityType;
+import org.newdawn.asteroids.entity.SpatialIndex;
+
+/**
+ * Compares answering radius and nearest queries with the spatial index
+ * against checking every entity in the game, on scenes of increasing size.
+ * The index should take about the same time per query however many
+ * entities there are, where checking every entity grows with the scene.
+ * Rays cast through the index are timed too, there being no simple scan
+ * to compare them against.
+ *
+ * @author Drew Murphy
+ */
+public class SpatialQueryBenchmark {
+	/** The number of queries of each kind timed for each scene */
+	private static final int QUERIES = 2000;
+	/** The radius of the area queries */
+	private static final float RADIUS = 3;
+	/** The length of the rays cast */
+	private static final float RAY_LENGTH = 20;
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The entity counts to run scenes for, a default set
+	 * of scenes is used if none are given
+	 */
+	public static void main(String argv[]) {
+		int[] counts = new int[] {100, 1000, 10000, 100000};
+		if (argv.length > 0) {
+			counts = new int[argv.length];
+			for (int i=0;i<argv.length;i++) {
+				counts[i] = Integer.parseInt(argv[i]);
+			}
+		}
+
+		// once round to warm up, once round to measure
+		for (int round=0;round<2;round++) {
+			if (round == 1) {
+				System.out.println("entities     build   radius/scan  nearest/scan  raycast (us)");
+			}
+			for (int i=0;i<counts.length;i++) {
+				run(counts[i], round == 1);
+			}
+		}
+	}
+
+	/**
+	 * Run the queries over a single scene
+	 *
+	 * @param count The number of entities in the scene
+	 * @param report True if the results should be printed
+	 */
+	private static void run(int count, boolean report) {
+		ArrayList<Entity> entities = BroadphaseBenchmark.createScene(count, BroadphaseBenchmark.scale(count), 1234);
+		SpatialIndex index = new SpatialIndex(4 * BroadphaseBenchmark.scale(count));
+		Entity[] results = new Entity[count];
+		Entity[] hits = new Entity[8];
+		float[] distances = new float[hits.length];
+		int layers = EntityType.getLayer(EntityType.OTHER);
+
+		long start = System.nanoTime();
+		index.build(entities);
+		long build = System.nanoTime() - start;
+
+		float[] points = createPoints(QUERIES);
+
+		start = System.nanoTime();
+		long indexed = 0;
+		for (int q=0;q<QUERIES;q++) {
+			indexed += index.queryRadius(points[q * 2], points[(q * 2) + 1], RADIUS, layers, results);
+		}
+		long radiusTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		long scanned = 0;
+		for (int q=0;q<QUERIES;q++) {
+			scanned += scanRadius(entities, points[q * 2], points[(q * 2) + 1]);
+		}
+		long radiusScanTime = System.nanoTime() - start;
+
+		if (indexed != scanned) {
+			throw new RuntimeException("Index found "+indexed+" entities in range, expected "+scanned);
+		}
+
+		start = System.nanoTime();
+		for (int q=0;q<QUERIES;q++) {
+			index.queryNearest(points[q * 2], points[(q * 2) + 1], EntityType.OTHER, null);
+		}
+		long nearestTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int q=0;q<QUERIES;q++) {
+			scanNearest(entities, points[q * 2], points[(q * 2) + 1]);
+		}
+		long nearestScanTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int q=0;q<QUERIES;q++) {
+			// aim each ray at the next point along
+			int next = (q + 1) % QUERIES;
+			float dx = points[next * 2] - points[q * 2];
+			float dy = points[(next * 2) + 1] - points[(q * 2) + 1];
+			index.raycast(points[q * 2], points[(q * 2) + 1], dx, dy, RAY_LENGTH, layers, hits, distances);
+		}
+		long raycastTime = System.nanoTime() - start;
+
+		if (report) {
+			System.out.println(String.format("%8d %9.1f %6.2f/%-7.2f %6.2f/%-7.2f %7.2f",
+					count, build / 1000.0,
+					radiusTime / (QUERIES * 1000.0), radiusScanTime / (QUERIES * 1000.0),
+					nearestTime / (QUERIES * 1000.0), nearestScanTime / (QUERIES * 1000.0),
+					raycastTime / (QUERIES * 1000.0)));
+		}
+	}
+
+	/**
+	 * Count the entities in range of a point by checking every one
+	 *
+	 * @param entities The entities in the scene
+	 * @param x The x coordinate of the point
+	 * @param y The y coordinate of the point
+	 * @return The number of entities in range
+	 */
+	private static int scanRadius(ArrayList<Entity> entities, float x, float y) {
+		int found = 0;
+		for (int i=0;i<entities.size();i++) {
+			Entity entity = entities.get(i);
+			float dx = SpatialIndex.wrapX(entity.getX() - x);
+			float dy = SpatialIndex.wrapY(entity.getY() - y);
+			float range = RADIUS + entity.getSize();
+			if ((dx * dx) + (dy * dy) <= range * range) {
+				found++;
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Find the entity nearest a point by checking every one
+	 *
+	 * @param entities The entities in the scene
+	 * @param x The x coordinate of the point
+	 * @param y The y coordinate of the point
+	 * @return The nearest entity
+	 */
+	private static Entity scanNearest(ArrayList<Entity> entities, float x, float y) {
+		Entity best = null;
+		float bestDistance = Float.MAX_VALUE;
+		for (int i=0;i<entities.size();i++) {
+			Entity entity = entities.get(i);
+			float dx = SpatialIndex.wrapX(entity.getX() - x);
+			float dy = SpatialIndex.wrapY(entity.getY() - y);
+			float distance = (dx * dx) + (dy * dy);
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				best = entity;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Create a set of points to query around, spread over the play area
+	 *
+	 * @param count The number of points to create
+	 * @return The x and y coordinates of the points, one after the other
+	 */
+	private static float[] createPoints(int count) {
+		Random random = new Random(4321);
+		float[] points = new float[count * 2];
+		for (int i=0;i<count;i++) {
+			points[i * 2] = (random.nextFloat() - 0.5f) * AbstractEntity.PLAY_AREA_WIDTH;
+			points[(i * 2) + 1] = (random.nextFloat() - 0.5f) * AbstractEntity.PLAY_AREA_HEIGHT;
+		}
+
+		return points;
+	}
+}
@@ -0,0 +1,29 @@
+package org.newdawn.asteroids.collision;
+
+import java.util.List;
+
+import org.newdawn.asteroids.entity.Entity;
+
+/**
+ * The description of the first stage of collision detection. A broadphase
+ * cheaply cuts the set of all pairs of entities down to those that might
+ * possibly be touching. Only these candidates are then given the proper
+ * (and more expensive) collision test.
+ * 
+ * @author Drew Murphy
+ */
+public interface Broadphase {
+	/**
+	 * Find the pairs of entities that might be colliding. Implementations
+	 * must report every pair that could pass Entity.collides() and must
+	 * report them ordered by the index of the first entity and then the
+	 * index of the second, i.e. the order a nested loop over the list 
+	 * would visit them in. This keeps the collision callbacks in the same 
+	 * order whichever broadphase is in use.
+	 * 
+	 * @param entities The entities to check, in their current positions
+	 * @param pairs The list to add the candidate pairs to. This is not
+	 * cleared first.
+	 */
+	public void findPairs(List<? extends Entity> entities, PairList pairs);
+}
@@ -0,0 +1,56 @@
+package org.newdawn.asteroids.collision;
+
+/**
+ * Creates the broadphase implementations by name, so the one in use can
+ * be picked when the game is started. The name is read from the 
+ * "asteroids.broadphase" system property, i.e.
+ * 
+ * java -Dasteroids.broadphase=sap org.newdawn.asteroids.GameWindow
+ * 
+ * @author Drew Murphy
+ */
+public class Broadphases {
+	/** The name of the system property used to pick the broadphase */
+	public static final String PROPERTY = "asteroids.broadphase";
+	/** The name of the uniform grid broadphase */
+	public static final String GRID = "grid";
+	/** The name of the sweep and prune broadphase */
+	public static final String SWEEP_AND_PRUNE = "sap";
+	/** The name of the reference brute force broadphase */
+	public static final String BRUTE_FORCE = "brute";
+	
+	/** The size of the cells in the grid broadphase */
+	private static final float CELL_SIZE = 4;
+	
+	/**
+	 * Create the broadphase named in the system properties, falling back
+	 * to the grid if none is specified.
+	 * 
+	 * @return The broadphase to be used
+	 */
+	public static Broadphase create() {
+		return create(System.getProperty(PROPERTY, GRID));
+	}
+	
+	/**
+	 * Create a broadphase by name
+	 * 
+	 * @param name The name of the broadphase to create
+	 * @return The broadphase requested
+	 * @throws IllegalArgumentException Indicates the name given isn't 
+	 * a known broadphase
+	 */
+	public static Broadphase create(String name) {
+		if (GRID.equals(name)) {
+			return new SpatialHash(CELL_SIZE);
+		}
+		if (SWEEP_AND_PRUNE.equals(name)) {
+			return new SweepAndPrune();
+		}
+		if (BRUTE_FORCE.equals(name)) {
+			return new BruteForceBroadphase();
+		}
+		
+		throw new IllegalArgumentException("Unknown broadphase: "+name);
+	}
+}
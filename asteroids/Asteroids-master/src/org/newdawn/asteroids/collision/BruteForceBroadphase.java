@@ -0,0 +1,29 @@
+package org.newdawn.asteroids.collision;
+
+import java.util.List;
+
+import org.newdawn.asteroids.entity.Entity;
+
+/**
+ * The simplest possible broadphase, every pair of entities is a candidate.
+ * This is what the game originally did and is kept as a reference to check
+ * and measure the other implementations against. The number of pairs grows
+ * with the square of the number of entities so it should only be used for
+ * small scenes.
+ * 
+ * @author Drew Murphy
+ */
+public class BruteForceBroadphase implements Broadphase {
+	/**
+	 * @see org.newdawn.asteroids.collision.Broadphase#findPairs(java.util.List, org.newdawn.asteroids.collision.PairList)
+	 */
+	public void findPairs(List<? extends Entity> entities, PairList pairs) {
+		int count = entities.size();
+		
+		for (int i=0;i<count;i++) {
+			for (int j=i+1;j<count;j++) {
+				pairs.add(i, j);
+			}
+		}
+	}
+}
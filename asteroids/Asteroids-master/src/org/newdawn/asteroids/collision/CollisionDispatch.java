@@ -0,0 +1,173 @@
+package org.newdawn.asteroids.collision;
+
+import java.util.List;
+
+import org.newdawn.asteroids.entity.AbstractEntity;
+import org.newdawn.asteroids.entity.Entity;
+import org.newdawn.asteroids.entity.EntityManager;
+import org.newdawn.asteroids.entity.EntityType;
+
+/**
+ * Filters the pairs found by the broadphase down to the ones whose types
+ * interact, and hands out the collisions between them to the entities
+ * that respond to them.
+ *
+ * The type of every entity is looked up once per update, so checking a
+ * pair is a couple of array reads rather than a distance test. When a pair
+ * does collide a table indexed by the two types says which of them do
+ * anything about it (i.e. a rock bounces off an ammo drop but the drop
+ * doesn't care), and only those entities are told.
+ *
+ * Contacts are handed out as they're reported by the contact cache, so
+ * an entity's collide() is only called when it first touches another.
+ *
+ * Some pairs of types are solved as solid bodies rather than handed out
+ * (i.e. rocks bouncing off each other). Those pairs are gathered into a
+ * ContactSolver by the caller instead of going through collide().
+ *
+ * @author Drew Murphy
+ */
+public class CollisionDispatch {
+	/** True where an entity of the first type responds to hitting the second, indexed by (first * COUNT) + second */
+	private static final boolean[] RESPONDS = new boolean[EntityType.COUNT * EntityType.COUNT];
+	/** True where the two types bounce off each other through the contact solver, indexed by (first * COUNT) + second */
+	private static final boolean[] SOLVED = new boolean[EntityType.COUNT * EntityType.COUNT];
+
+	static {
+		for (int i=0;i<EntityType.COUNT;i++) {
+			respond(EntityType.OTHER, i);
+			respond(i, EntityType.OTHER);
+			respond(EntityType.ROCK, i);
+		}
+
+		respond(EntityType.PLAYER, EntityType.ROCK);
+		respond(EntityType.PLAYER, EntityType.AMMO);
+		respond(EntityType.SHOT, EntityType.ROCK);
+		respond(EntityType.SHIELD, EntityType.ROCK);
+		respond(EntityType.AMMO, EntityType.PLAYER);
+
+		SOLVED[(EntityType.ROCK * EntityType.COUNT) + EntityType.ROCK] = true;
+	}
+
+	/** The type of each entity in the list being checked */
+	private int[] types = new int[64];
+
+	/**
+	 * Mark one type as responding to hitting another
+	 *
+	 * @param type The type that responds
+	 * @param other The type it responds to
+	 */
+	private static void respond(int type, int other) {
+		RESPONDS[(type * EntityType.COUNT) + other] = true;
+	}
+
+	/**
+	 * Check if an entity of one type responds to hitting one of another
+	 *
+	 * @param type The type of entity hit
+	 * @param other The type of entity it was hit by
+	 * @return True if the entity's collide() should be called
+	 */
+	public static boolean responds(int type, int other) {
+		return RESPONDS[(type * EntityType.COUNT) + other];
+	}
+
+	/**
+	 * Check if a pair of touching entities should be bounced off each
+	 * other by the contact solver rather than told about the collision
+	 *
+	 * @param a The index of the first entity
+	 * @param b The index of the second entity
+	 * @return True if the pair should be added to the contact solver
+	 */
+	public boolean isSolved(int a, int b) {
+		return SOLVED[(types[a] * EntityType.COUNT) + types[b]];
+	}
+
+	/**
+	 * Look up the types of the entities the pairs about to be checked were
+	 * found in
+	 *
+	 * @param entities The entities the broadphase was run over
+	 */
+	public void prepare(List<? extends Entity> entities) {
+		int size = entities.size();
+		if (types.length < size) {
+			types = new int[Math.max(size, types.length * 2)];
+		}
+
+		for (int i=0;i<size;i++) {
+			types[i] = EntityType.of(entities.get(i));
+		}
+	}
+
+	/**
+	 * Check if two entities could have anything to do with each other
+	 *
+	 * @param a The index of the first entity
+	 * @param b The index of the second entity
+	 * @return True if the pair is worth testing for collision
+	 */
+	public boolean interacts(int a, int b) {
+		return EntityType.interacts(types[a], types[b]);
+	}
+
+	/**
+	 * Tell the entities of a pair that are touching about it, if they
+	 * respond to each other. When the pair first touch their collide()
+	 * is called, after that they're told the contact is carrying on.
+	 *
+	 * @param manager The manager the entities are notified with
+	 * @param entities The entities the pair was found in
+	 * @param a The index of the first entity
+	 * @param b The index of the second entity
+	 * @param contact ContactCache.BEGIN if the pair have just started
+	 * touching, ContactCache.STAY if they were touching already
+	 */
+	public void collide(EntityManager manager, List<? extends Entity> entities, int a, int b, int contact) {
+		int typeA = types[a];
+		int typeB = types[b];
+		Entity entity = entities.get(a);
+		Entity other = entities.get(b);
+
+		if (responds(typeA, typeB)) {
+			notify(manager, entity, other, contact);
+		}
+		if (responds(typeB, typeA)) {
+			notify(manager, other, entity, contact);
+		}
+	}
+
+	/**
+	 * Tell an entity that it has stopped touching another, if it
+	 * responds to that type of entity
+	 *
+	 * @param manager The manager the entity is notified with
+	 * @param entity The entity to tell, or null if it's left the game
+	 * @param type The type of the entity to tell
+	 * @param other The entity no longer touched, or null if it's left the game
+	 * @param otherType The type of the entity no longer touched
+	 */
+	public static void end(EntityManager manager, Entity entity, int type, Entity other, int otherType) {
+		if ((entity instanceof AbstractEntity) && responds(type, otherType)) {
+			((AbstractEntity) entity).contactEnd(manager, other);
+		}
+	}
+
+	/**
+	 * Tell a single entity about a contact
+	 *
+	 * @param manager The manager the entity is notified with
+	 * @param entity The entity to tell
+	 * @param other The entity it's touching
+	 * @param contact The stage the contact is at
+	 */
+	private static void notify(EntityManager manager, Entity entity, Entity other, int contact) {
+		if (contact == ContactCache.BEGIN) {
+			entity.collide(manager, other);
+		} else if (entity instanceof AbstractEntity) {
+			((AbstractEntity) entity).contactStay(manager, other);
+		}
+	}
+}
@@ -0,0 +1,404 @@
+package org.newdawn.asteroids.collision;
+
+import java.util.Arrays;
+
+import org.newdawn.asteroids.entity.AbstractEntity;
+import org.newdawn.asteroids.entity.Entity;
+import org.newdawn.asteroids.entity.EntityTable;
+import org.newdawn.asteroids.entity.EntityType;
+
+/**
+ * Remembers which pairs of entities were touching from one update to the
+ * next, so a collision can be reported as beginning, carrying on or
+ * ending rather than as a fresh hit every update the two overlap. Without
+ * this a shield resting on a rock would be drained again every update,
+ * and two rocks drifting through each other would flip their spin back
+ * and forth until they parted.
+ *
+ * Pairs are keyed by the handles of the two entities, so an entity that
+ * leaves the game and is reused from a pool doesn't inherit the contacts
+ * of its last life. Entities without a handle can't be remembered and are
+ * reported as beginning a contact every update they touch, as they always
+ * were.
+ *
+ * The cache also saves repeating the overlap test for a pair that has
+ * barely moved. After testing a pair it notes how far the two were from
+ * touching (or from parting), and until they've moved further than that
+ * relative to each other the answer can't have changed. This relies on
+ * the entities using the circle test of AbstractEntity.collides().
+ *
+ * Each update the pairs are found afresh, in the order they're tested,
+ * and looked up against the pairs of the update before. Any pair touching
+ * then that isn't touching now has ended, and the ends are reported in
+ * the order the pairs were found in the update before, so the game plays
+ * out the same every time.
+ *
+ * @author Drew Murphy
+ */
+public class ContactCache {
+	/** The pair isn't touching */
+	public static final int NONE = 0;
+	/** The pair has just started touching */
+	public static final int BEGIN = 1;
+	/** The pair was touching last update and still is */
+	public static final int STAY = 2;
+
+	/** The pairs found this update */
+	private Contacts current = new Contacts();
+	/** The pairs found last update */
+	private Contacts previous = new Contacts();
+
+	/** The index in last update's pairs of each pair found to have ended */
+	private int[] ended = new int[16];
+
+	/** The number of overlap tests skipped because the pair had barely moved */
+	private long reused;
+	/** The number of overlap tests run */
+	private long tested;
+
+	/**
+	 * Start a new update. The pairs found in the update just finished
+	 * become the ones the coming update is compared against.
+	 */
+	public void beginTick() {
+		Contacts swap = previous;
+		previous = current;
+		current = swap;
+		current.clear();
+	}
+
+	/**
+	 * Test whether a pair of entities found by the broadphase is touching,
+	 * reusing the last test if the two have barely moved since
+	 *
+	 * @param a The first entity of the pair
+	 * @param b The second entity of the pair
+	 * @return NONE if the pair isn't touching, BEGIN if it's just started,
+	 * STAY if it was touching last update too
+	 */
+	public int test(Entity a, Entity b) {
+		int handleA = handle(a);
+		int handleB = handle(b);
+		if ((handleA == EntityTable.NONE) || (handleB == EntityTable.NONE)) {
+			tested++;
+			return a.collides(b) ? BEGIN : NONE;
+		}
+
+		long key = key(handleA, handleB);
+		int index = current.find(key);
+		if (index != -1) {
+			// already tested this update, which only happens if the
+			// broadphase reports the same pair twice. The swept check
+			// runs after every test, so it can't have got here first.
+			return NONE;
+		}
+
+		float rx = a.getX() - b.getX();
+		float ry = a.getY() - b.getY();
+		int before = previous.find(key);
+		boolean touching;
+
+		index = current.add(key, handleA < handleB ? EntityType.of(a) : EntityType.of(b),
+				handleA < handleB ? EntityType.of(b) : EntityType.of(a));
+		if ((before != -1) && previous.isSettled(before, rx, ry)) {
+			touching = previous.touching[before];
+			current.anchor(index, previous.anchorX[before], previous.anchorY[before], previous.slack[before]);
+			reused++;
+		} else {
+			touching = a.collides(b);
+			float range = a.getSize() + b.getSize();
+			float slack = Math.abs((float) Math.sqrt((rx * rx) + (ry * ry)) - range);
+			current.anchor(index, rx, ry, slack);
+			tested++;
+		}
+
+		current.touching[index] = touching;
+		if (!touching) {
+			return NONE;
+		}
+
+		return (before != -1) && previous.touching[before] ? STAY : BEGIN;
+	}
+
+	/**
+	 * Record that a pair of entities is touching without testing it, i.e.
+	 * a shot found to have hit a rock along its path
+	 *
+	 * @param a The first entity of the pair
+	 * @param b The second entity of the pair
+	 * @return BEGIN if the pair has just started touching, STAY if it was
+	 * touching last update too, NONE if it's already been reported
+	 * touching this update
+	 */
+	public int touch(Entity a, Entity b) {
+		int handleA = handle(a);
+		int handleB = handle(b);
+		if ((handleA == EntityTable.NONE) || (handleB == EntityTable.NONE)) {
+			return BEGIN;
+		}
+
+		long key = key(handleA, handleB);
+		int index = current.find(key);
+		if (index != -1) {
+			if (current.touching[index]) {
+				return NONE;
+			}
+		} else {
+			index = current.add(key, handleA < handleB ? EntityType.of(a) : EntityType.of(b),
+					handleA < handleB ? EntityType.of(b) : EntityType.of(a));
+		}
+
+		// there's nothing to reuse for a hit along a path
+		current.anchor(index, 0, 0, -1);
+		current.touching[index] = true;
+
+		int before = previous.find(key);
+		return (before != -1) && previous.touching[before] ? STAY : BEGIN;
+	}
+
+	/**
+	 * Find the pairs that were touching last update but aren't now. This
+	 * should be called once all the pairs of the update have been tested.
+	 * The pairs can then be read back with getEndedHandle() and
+	 * getEndedType().
+	 *
+	 * @return The number of pairs that have ended
+	 */
+	public int findEnded() {
+		int found = 0;
+		for (int i=0;i<previous.count;i++) {
+			if (!previous.touching[i]) {
+				continue;
+			}
+
+			int now = current.find(previous.key[i]);
+			if ((now == -1) || !current.touching[now]) {
+				if (found == ended.length) {
+					ended = Arrays.copyOf(ended, found * 2);
+				}
+				ended[found++] = i;
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Get the handle of one of the entities of a pair that has ended
+	 *
+	 * @param index The index of the ended pair
+	 * @param second False for the entity with the lower handle, true for
+	 * the one with the higher handle
+	 * @return The handle of the entity, which may be stale if it has left
+	 * the game
+	 */
+	public int getEndedHandle(int index, boolean second) {
+		long pair = previous.key[ended[index]];
+		return second ? (int) pair : (int) (pair >>> 32);
+	}
+
+	/**
+	 * Get the type of one of the entities of a pair that has ended, which
+	 * is still known after the entity has left the game
+	 *
+	 * @param index The index of the ended pair
+	 * @param second False for the entity with the lower handle, true for
+	 * the one with the higher handle
+	 * @return The type of the entity
+	 */
+	public int getEndedType(int index, boolean second) {
+		return second ? previous.typeHigh[ended[index]] : previous.typeLow[ended[index]];
+	}
+
+	/**
+	 * Forget every pair, i.e. when a new game starts
+	 */
+	public void clear() {
+		current.clear();
+		previous.clear();
+	}
+
+	/**
+	 * @return The number of overlap tests skipped because the pair had barely moved
+	 */
+	public long getReused() {
+		return reused;
+	}
+
+	/**
+	 * @return The number of overlap tests run
+	 */
+	public long getTested() {
+		return tested;
+	}
+
+	/**
+	 * Get the handle of an entity
+	 *
+	 * @param entity The entity
+	 * @return The handle of the entity, or NONE if it doesn't have one
+	 */
+	private static int handle(Entity entity) {
+		if (entity instanceof AbstractEntity) {
+			return ((AbstractEntity) entity).getHandle();
+		}
+
+		return EntityTable.NONE;
+	}
+
+	/**
+	 * Get the key of a pair, which is the same whichever way round the
+	 * pair is given
+	 *
+	 * @param a The handle of the first entity
+	 * @param b The handle of the second entity
+	 * @return The key of the pair
+	 */
+	private static long key(int a, int b) {
+		int low = Math.min(a, b);
+		int high = Math.max(a, b);
+		return (((long) low) << 32) | (high & 0xffffffffL);
+	}
+
+	/**
+	 * The pairs found in a single update, in the order they were found,
+	 * with a hash table for looking them up by key
+	 *
+	 * @author Drew Murphy
+	 */
+	private static class Contacts {
+		/** The key of each pair */
+		long[] key = new long[64];
+		/** The type of the entity with the lower handle in each pair */
+		int[] typeLow = new int[64];
+		/** The type of the entity with the higher handle in each pair */
+		int[] typeHigh = new int[64];
+		/** True if each pair is touching */
+		boolean[] touching = new boolean[64];
+		/** The x offset between the entities of each pair when last tested */
+		float[] anchorX = new float[64];
+		/** The y offset between the entities of each pair when last tested */
+		float[] anchorY = new float[64];
+		/** How far the entities of each pair can move from the anchor without the test changing, negative if unknown */
+		float[] slack = new float[64];
+		/** The number of pairs */
+		int count;
+
+		/** The index plus one of the pair in each bucket, 0 for an empty bucket */
+		int[] table = new int[128];
+
+		/**
+		 * Remove every pair
+		 */
+		void clear() {
+			count = 0;
+			Arrays.fill(table, 0);
+		}
+
+		/**
+		 * Find a pair by key
+		 *
+		 * @param pair The key of the pair
+		 * @return The index of the pair, or -1 if it's not there
+		 */
+		int find(long pair) {
+			int mask = table.length - 1;
+			for (int bucket=hash(pair) & mask;table[bucket] != 0;bucket=(bucket + 1) & mask) {
+				if (key[table[bucket] - 1] == pair) {
+					return table[bucket] - 1;
+				}
+			}
+
+			return -1;
+		}
+
+		/**
+		 * Add a pair that isn't already there
+		 *
+		 * @param pair The key of the pair
+		 * @param low The type of the entity with the lower handle
+		 * @param high The type of the entity with the higher handle
+		 * @return The index of the pair
+		 */
+		int add(long pair, int low, int high) {
+			if (count == key.length) {
+				int capacity = count * 2;
+				key = Arrays.copyOf(key, capacity);
+				typeLow = Arrays.copyOf(typeLow, capacity);
+				typeHigh = Arrays.copyOf(typeHigh, capacity);
+				touching = Arrays.copyOf(touching, capacity);
+				anchorX = Arrays.copyOf(anchorX, capacity);
+				anchorY = Arrays.copyOf(anchorY, capacity);
+				slack = Arrays.copyOf(slack, capacity);
+
+				// keep the table no more than half full
+				table = new int[capacity * 2];
+				for (int i=0;i<count;i++) {
+					insert(i);
+				}
+			}
+
+			key[count] = pair;
+			typeLow[count] = low;
+			typeHigh[count] = high;
+			touching[count] = false;
+			insert(count);
+			return count++;
+		}
+
+		/**
+		 * Note the offset a pair was tested at
+		 *
+		 * @param index The index of the pair
+		 * @param x The x offset between the entities
+		 * @param y The y offset between the entities
+		 * @param distance How far they can move from the offset without
+		 * the test changing, negative if unknown
+		 */
+		void anchor(int index, float x, float y, float distance) {
+			anchorX[index] = x;
+			anchorY[index] = y;
+			slack[index] = distance;
+		}
+
+		/**
+		 * Check if a pair has moved little enough since it was tested that
+		 * the test would come out the same
+		 *
+		 * @param index The index of the pair
+		 * @param x The current x offset between the entities
+		 * @param y The current y offset between the entities
+		 * @return True if the last test still holds
+		 */
+		boolean isSettled(int index, float x, float y) {
+			float dx = x - anchorX[index];
+			float dy = y - anchorY[index];
+			return (slack[index] > 0) && ((dx * dx) + (dy * dy) < slack[index] * slack[index]);
+		}
+
+		/**
+		 * Place a pair in the hash table
+		 *
+		 * @param index The index of the pair
+		 */
+		private void insert(int index) {
+			int mask = table.length - 1;
+			int bucket = hash(key[index]) & mask;
+			while (table[bucket] != 0) {
+				bucket = (bucket + 1) & mask;
+			}
+			table[bucket] = index + 1;
+		}
+
+		/**
+		 * Spread the bits of a key over a bucket index
+		 *
+		 * @param pair The key of the pair
+		 * @return The hash of the key
+		 */
+		private static int hash(long pair) {
+			long h = pair * 0x9E3779B97F4A7C15L;
+			return (int) (h >>> 32);
+		}
+	}
+}
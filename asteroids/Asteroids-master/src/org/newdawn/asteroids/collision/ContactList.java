@@ -0,0 +1,87 @@
+package org.newdawn.asteroids.collision;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of the pairs of entities found touching in an update,
+ * each with whether the contact has just begun or is carrying on from the
+ * update before. The pairs are held as the indices of the two entities in
+ * the entity list, in the order the collisions are to be handed out.
+ *
+ * @author Drew Murphy
+ * @see ContactCache
+ */
+public class ContactList {
+	/** The index of the first entity in each pair */
+	private int[] first = new int[64];
+	/** The index of the second entity in each pair */
+	private int[] second = new int[64];
+	/** The kind of contact of each pair, ContactCache.BEGIN or ContactCache.STAY */
+	private int[] contact = new int[64];
+	/** The number of pairs currently held */
+	private int size;
+
+	/**
+	 * Add a pair to the list
+	 *
+	 * @param a The index of the first entity
+	 * @param b The index of the second entity
+	 * @param kind The kind of contact, ContactCache.BEGIN or ContactCache.STAY
+	 */
+	public void add(int a, int b, int kind) {
+		if (size == first.length) {
+			first = Arrays.copyOf(first, size * 2);
+			second = Arrays.copyOf(second, size * 2);
+			contact = Arrays.copyOf(contact, size * 2);
+		}
+
+		first[size] = a;
+		second[size] = b;
+		contact[size] = kind;
+		size++;
+	}
+
+	/**
+	 * Get the index of the first entity of a pair
+	 *
+	 * @param index The index of the pair
+	 * @return The index of the first entity
+	 */
+	public int getFirst(int index) {
+		return first[index];
+	}
+
+	/**
+	 * Get the index of the second entity of a pair
+	 *
+	 * @param index The index of the pair
+	 * @return The index of the second entity
+	 */
+	public int getSecond(int index) {
+		return second[index];
+	}
+
+	/**
+	 * Get the kind of contact of a pair
+	 *
+	 * @param index The index of the pair
+	 * @return ContactCache.BEGIN or ContactCache.STAY
+	 */
+	public int getContact(int index) {
+		return contact[index];
+	}
+
+	/**
+	 * @return The number of pairs in the list
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Remove all the pairs from the list, keeping the space allocated
+	 */
+	public void clear() {
+		size = 0;
+	}
+}
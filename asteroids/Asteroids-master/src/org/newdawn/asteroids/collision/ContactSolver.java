@@ -0,0 +1,334 @@
+package org.newdawn.asteroids.collision;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.newdawn.asteroids.entity.AbstractEntity;
+import org.newdawn.asteroids.entity.Entity;
+
+/**
+ * Bounces entities that are touching off each other like solid circles,
+ * the heavier of the two being pushed the least. The mass of each entity
+ * comes from its size, so a big rock barely notices a small one while a
+ * small rock is sent flying.
+ *
+ * The contacts of a tick are gathered up first and then solved together.
+ * The positions, velocities and masses of the entities involved are copied
+ * into arrays, and the contacts are worked through a few times over, each
+ * time nudging the velocities of the pair until they're parting at the
+ * right speed. Working through them more than once lets a push through
+ * one contact carry on through the next, so a rock wedged between two
+ * others ends up with a sensible velocity rather than whatever the last
+ * contact said. Pairs that are only just touching or are parting already
+ * are left alone, which is what keeps rocks resting against each other
+ * from jittering.
+ *
+ * Solving the contacts one after another like this is only an
+ * approximation, and in a tight cluster of rocks it can hand out more
+ * energy than the rocks came in with, which left alone builds up until
+ * the cluster flies apart. The contacts are gathered into islands of
+ * entities touching each other, and any island that ends up with more
+ * energy than it started with has its velocities scaled back down. Rocks
+ * bounce off each other without losing anything, so the field stays
+ * lively, while the islands can never gain.
+ *
+ * Velocity alone can't separate entities that are already overlapping
+ * (i.e. the two halves of a rock that's just split), so once the
+ * velocities are solved the entities are also moved apart by part of
+ * their overlap. The moves for every contact are worked out from where
+ * the entities were at the start and added up, so the order the contacts
+ * come in doesn't matter for them.
+ *
+ * The contacts are solved in the order they were added, so the game plays
+ * out the same every time. Only entities based on AbstractEntity can be
+ * solved, as their velocity needs to be set.
+ *
+ * @author Drew Murphy
+ */
+public class ContactSolver {
+	/** The fraction of the speed two entities hit each other at that they part at */
+	public static final float RESTITUTION = 1;
+	/** The speed (units per second) below which two entities meeting don't bounce */
+	public static final float RESTING_SPEED = 0.25f;
+	/** The overlap that's allowed to remain between two entities */
+	public static final float SLOP = 0.01f;
+	/** The fraction of the overlap between two entities that's corrected each tick */
+	public static final float CORRECTION = 0.4f;
+	/** The number of times the contacts are worked through */
+	public static final int ITERATIONS = 8;
+
+	/** The body of each entity index, -1 if the entity isn't in a contact */
+	private int[] bodyOf = new int[0];
+	/** The entity of each body */
+	private AbstractEntity[] entity = new AbstractEntity[64];
+	/** The index in the entity list of each body */
+	private int[] entityIndex = new int[64];
+	/** The x position of each body */
+	private float[] x = new float[64];
+	/** The y position of each body */
+	private float[] y = new float[64];
+	/** The x component of the velocity of each body */
+	private float[] vx = new float[64];
+	/** The y component of the velocity of each body */
+	private float[] vy = new float[64];
+	/** One over the mass of each body */
+	private float[] inverseMass = new float[64];
+	/** The body the island of each body is joined through, itself if it's the root */
+	private int[] island = new int[64];
+	/** The energy of each island before the contacts were solved, held by the root body */
+	private float[] energyBefore = new float[64];
+	/** The energy of each island after the contacts were solved, held by the root body */
+	private float[] energyAfter = new float[64];
+	/** The x distance each body is to be moved to correct its overlaps */
+	private float[] moveX = new float[64];
+	/** The y distance each body is to be moved to correct its overlaps */
+	private float[] moveY = new float[64];
+	/** The number of bodies */
+	private int bodyCount;
+
+	/** The first body of each contact */
+	private int[] first = new int[64];
+	/** The second body of each contact */
+	private int[] second = new int[64];
+	/** The x component of the direction from the second body to the first */
+	private float[] normalX = new float[64];
+	/** The y component of the direction from the second body to the first */
+	private float[] normalY = new float[64];
+	/** The distance the bodies of each contact overlap by */
+	private float[] depth = new float[64];
+	/** The speed the bodies of each contact should part at */
+	private float[] target = new float[64];
+	/** The impulse applied so far to the bodies of each contact */
+	private float[] impulse = new float[64];
+	/** The mass the impulse of each contact acts against */
+	private float[] mass = new float[64];
+	/** The number of contacts */
+	private int count;
+
+	/** The number of contacts solved over all ticks */
+	private long solved;
+	/** The number of times a body was slowed to keep its island from gaining energy */
+	private long clamped;
+
+	/**
+	 * Add a pair of touching entities to be solved
+	 *
+	 * @param entities The entities the pair was found in
+	 * @param a The index of the first entity
+	 * @param b The index of the second entity
+	 */
+	public void add(List<? extends Entity> entities, int a, int b) {
+		Entity entityA = entities.get(a);
+		Entity entityB = entities.get(b);
+		if (!(entityA instanceof AbstractEntity) || !(entityB instanceof AbstractEntity)) {
+			return;
+		}
+
+		if (bodyOf.length < entities.size()) {
+			int old = bodyOf.length;
+			bodyOf = Arrays.copyOf(bodyOf, Math.max(entities.size(), old * 2));
+			Arrays.fill(bodyOf, old, bodyOf.length, -1);
+		}
+		int bodyA = body((AbstractEntity) entityA, a);
+		int bodyB = body((AbstractEntity) entityB, b);
+		island[root(bodyA)] = root(bodyB);
+
+		if (count == first.length) {
+			int capacity = count * 2;
+			first = Arrays.copyOf(first, capacity);
+			second = Arrays.copyOf(second, capacity);
+			normalX = Arrays.copyOf(normalX, capacity);
+			normalY = Arrays.copyOf(normalY, capacity);
+			depth = Arrays.copyOf(depth, capacity);
+			target = Arrays.copyOf(target, capacity);
+			impulse = Arrays.copyOf(impulse, capacity);
+			mass = Arrays.copyOf(mass, capacity);
+		}
+
+		float dx = x[bodyA] - x[bodyB];
+		float dy = y[bodyA] - y[bodyB];
+		float distance = (float) Math.sqrt((dx * dx) + (dy * dy));
+		float nx = 1;
+		float ny = 0;
+		if (distance > 0) {
+			nx = dx / distance;
+			ny = dy / distance;
+		}
+
+		// only pairs closing in fast enough bounce, the rest just stop
+		// closing in
+		float closing = ((vx[bodyA] - vx[bodyB]) * nx) + ((vy[bodyA] - vy[bodyB]) * ny);
+		float inverse = inverseMass[bodyA] + inverseMass[bodyB];
+
+		first[count] = bodyA;
+		second[count] = bodyB;
+		normalX[count] = nx;
+		normalY[count] = ny;
+		depth[count] = entityA.getSize() + entityB.getSize() - distance;
+		target[count] = closing < -RESTING_SPEED ? -RESTITUTION * closing : 0;
+		impulse[count] = 0;
+		mass[count] = inverse > 0 ? 1 / inverse : 0;
+		count++;
+	}
+
+	/**
+	 * Solve all the contacts added since the last solve, setting the
+	 * velocities and positions of the entities involved
+	 */
+	public void solve() {
+		for (int i=0;i<bodyCount;i++) {
+			energyBefore[root(i)] += energy(i);
+		}
+
+		for (int pass=0;pass<ITERATIONS;pass++) {
+			for (int i=0;i<count;i++) {
+				int a = first[i];
+				int b = second[i];
+				float nx = normalX[i];
+				float ny = normalY[i];
+
+				// push the pair apart until they part at the target
+				// speed, but never pull them together
+				float parting = ((vx[a] - vx[b]) * nx) + ((vy[a] - vy[b]) * ny);
+				float change = (target[i] - parting) * mass[i];
+				float total = Math.max(0, impulse[i] + change);
+				change = total - impulse[i];
+				impulse[i] = total;
+
+				vx[a] += nx * change * inverseMass[a];
+				vy[a] += ny * change * inverseMass[a];
+				vx[b] -= nx * change * inverseMass[b];
+				vy[b] -= ny * change * inverseMass[b];
+			}
+		}
+
+		// the cheapest way to keep the islands from gaining energy is to
+		// compare their totals from before and after
+		for (int i=0;i<bodyCount;i++) {
+			energyAfter[root(i)] += energy(i);
+		}
+		for (int i=0;i<bodyCount;i++) {
+			int root = root(i);
+			if (energyAfter[root] > energyBefore[root]) {
+				float scale = (float) Math.sqrt(energyBefore[root] / energyAfter[root]);
+				vx[i] *= scale;
+				vy[i] *= scale;
+				clamped++;
+			}
+		}
+
+		for (int i=0;i<count;i++) {
+			float correction = Math.max(0, depth[i] - SLOP) * CORRECTION * mass[i];
+			int a = first[i];
+			int b = second[i];
+
+			moveX[a] += normalX[i] * correction * inverseMass[a];
+			moveY[a] += normalY[i] * correction * inverseMass[a];
+			moveX[b] -= normalX[i] * correction * inverseMass[b];
+			moveY[b] -= normalY[i] * correction * inverseMass[b];
+		}
+
+		for (int i=0;i<bodyCount;i++) {
+			entity[i].setVelocity(vx[i], vy[i]);
+			entity[i].setPosition(x[i] + moveX[i], y[i] + moveY[i]);
+
+			energyBefore[i] = 0;
+			energyAfter[i] = 0;
+
+			bodyOf[entityIndex[i]] = -1;
+			entity[i] = null;
+		}
+
+		solved += count;
+		bodyCount = 0;
+		count = 0;
+	}
+
+	/**
+	 * @return The number of contacts solved over all ticks
+	 */
+	public long getSolved() {
+		return solved;
+	}
+
+	/**
+	 * @return The number of times a body was slowed to keep its island from
+	 * gaining energy
+	 */
+	public long getClamped() {
+		return clamped;
+	}
+
+	/**
+	 * Get the energy of a body as it's currently moving, left doubled as
+	 * only the energies of islands are compared
+	 *
+	 * @param body The body to get the energy of
+	 * @return Twice the kinetic energy of the body
+	 */
+	private float energy(int body) {
+		float mass = inverseMass[body] > 0 ? 1 / inverseMass[body] : 0;
+		return mass * ((vx[body] * vx[body]) + (vy[body] * vy[body]));
+	}
+
+	/**
+	 * Find the root body of the island a body is in, shortening the path
+	 * to it on the way
+	 *
+	 * @param body The body to find the island of
+	 * @return The root body of the island
+	 */
+	private int root(int body) {
+		while (island[body] != body) {
+			island[body] = island[island[body]];
+			body = island[body];
+		}
+
+		return body;
+	}
+
+	/**
+	 * Get the body of an entity, copying it in if it isn't already
+	 *
+	 * @param added The entity to get the body of
+	 * @param index The index of the entity in the entity list
+	 * @return The index of the entity's body
+	 */
+	private int body(AbstractEntity added, int index) {
+		if (bodyOf[index] != -1) {
+			return bodyOf[index];
+		}
+
+		if (bodyCount == x.length) {
+			int capacity = bodyCount * 2;
+			entity = Arrays.copyOf(entity, capacity);
+			entityIndex = Arrays.copyOf(entityIndex, capacity);
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			vx = Arrays.copyOf(vx, capacity);
+			vy = Arrays.copyOf(vy, capacity);
+			inverseMass = Arrays.copyOf(inverseMass, capacity);
+			island = Arrays.copyOf(island, capacity);
+			energyBefore = Arrays.copyOf(energyBefore, capacity);
+			energyAfter = Arrays.copyOf(energyAfter, capacity);
+			moveX = Arrays.copyOf(moveX, capacity);
+			moveY = Arrays.copyOf(moveY, capacity);
+		}
+
+		int body = bodyCount++;
+		float radius = added.getSize();
+		entity[body] = added;
+		entityIndex[body] = index;
+		x[body] = added.getX();
+		y[body] = added.getY();
+		vx[body] = added.getVelocityX();
+		vy[body] = added.getVelocityY();
+		inverseMass[body] = radius > 0 ? 1 / (radius * radius) : 0;
+		island[body] = body;
+		moveX[body] = 0;
+		moveY[body] = 0;
+		bodyOf[index] = body;
+
+		return body;
+	}
+}
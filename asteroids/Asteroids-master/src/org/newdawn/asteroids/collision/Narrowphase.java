@@ -0,0 +1,78 @@
+package org.newdawn.asteroids.collision;
+
+import java.util.List;
+
+import org.newdawn.asteroids.entity.Entity;
+
+/**
+ * The second stage of collision detection, the proper test of the pairs
+ * the broadphase found might be touching. The tests are done in a batch
+ * over the whole list of candidates rather than a pair at a time through
+ * Entity.collides(), with the positions and sizes of the entities copied
+ * into plain arrays first so the test is a few array reads and multiplies
+ * per pair.
+ * 
+ * The test is the same circle test as AbstractEntity.collides(), done in
+ * the same order, so a pair touches in the batch exactly when it would
+ * have touched tested on its own.
+ * 
+ * @author Drew Murphy
+ */
+public abstract class Narrowphase {
+	/** The x position of each entity */
+	protected float[] x = new float[64];
+	/** The y position of each entity */
+	protected float[] y = new float[64];
+	/** The collision radius of each entity */
+	protected float[] radius = new float[64];
+	
+	/**
+	 * Copy out the positions and sizes of the entities the pairs about
+	 * to be tested were found in
+	 * 
+	 * @param entities The entities the broadphase was run over
+	 */
+	public void prepare(List<? extends Entity> entities) {
+		int size = entities.size();
+		if (x.length < size) {
+			int length = Math.max(size, x.length * 2);
+			x = new float[length];
+			y = new float[length];
+			radius = new float[length];
+		}
+		
+		for (int i=0;i<size;i++) {
+			Entity entity = entities.get(i);
+			x[i] = entity.getX();
+			y[i] = entity.getY();
+			radius[i] = entity.getSize();
+		}
+	}
+	
+	/**
+	 * Test a list of candidate pairs, keeping those that touch
+	 * 
+	 * @param candidates The pairs to test, as indices into the entities 
+	 * last prepared
+	 * @param hits The list to add the pairs that touch to, in the order 
+	 * they were in the candidates. This is not cleared first.
+	 */
+	public abstract void findHits(PairList candidates, PairList hits);
+	
+	/**
+	 * Test a single pair
+	 * 
+	 * @param a The index of the first entity
+	 * @param b The index of the second entity
+	 * @return True if the pair touch
+	 */
+	protected boolean touches(int a, int b) {
+		// exactly the sums AbstractEntity.collides() does, so the
+		// answer is the same to the last bit
+		float range = radius[b] + radius[a];
+		float dx = x[a] - x[b];
+		float dy = y[a] - y[b];
+		
+		return ((dx * dx) + (dy * dy)) <= (range * range);
+	}
+}
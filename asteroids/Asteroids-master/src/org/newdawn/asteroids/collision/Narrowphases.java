@@ -0,0 +1,96 @@
+package org.newdawn.asteroids.collision;
+
+/**
+ * Creates the narrowphase implementations by name, so the one in use can
+ * be picked when the game is started. The name is read from the 
+ * "asteroids.narrowphase" system property, i.e.
+ * 
+ * java -Dasteroids.narrowphase=scalar org.newdawn.asteroids.GameWindow
+ * 
+ * The vector narrowphase is built on the incubating Vector API, which
+ * isn't part of the normal build. It's compiled separately (the 
+ * "compile-vector" build target) and the JVM has to be started with
+ * "--add-modules jdk.incubator.vector" for it to load. By default it's 
+ * used if it's there and the scalar one if not.
+ * 
+ * @author Drew Murphy
+ */
+public class Narrowphases {
+	/** The name of the system property used to pick the narrowphase */
+	public static final String PROPERTY = "asteroids.narrowphase";
+	/** The name of the plain narrowphase */
+	public static final String SCALAR = "scalar";
+	/** The name of the narrowphase using the Vector API */
+	public static final String VECTOR = "vector";
+	/** The name for using the vector narrowphase if it's available */
+	public static final String AUTO = "auto";
+	
+	/** The class of the vector narrowphase, looked up by name so the game builds without it */
+	private static final String VECTOR_CLASS = "org.newdawn.asteroids.collision.VectorNarrowphase";
+	/** The number of pairs the vector narrowphase is tried out on before being used */
+	private static final int SELF_TEST_PAIRS = 64;
+	
+	/**
+	 * Create the narrowphase named in the system properties, using the
+	 * vector one if it's available and none is specified
+	 * 
+	 * @return The narrowphase to be used
+	 */
+	public static Narrowphase create() {
+		return create(System.getProperty(PROPERTY, AUTO));
+	}
+	
+	/**
+	 * Create a narrowphase by name
+	 * 
+	 * @param name The name of the narrowphase to create
+	 * @return The narrowphase requested
+	 * @throws IllegalArgumentException Indicates the name given isn't 
+	 * a known narrowphase, or the vector narrowphase was asked for and
+	 * can't be loaded
+	 */
+	public static Narrowphase create(String name) {
+		if (SCALAR.equals(name)) {
+			return new ScalarNarrowphase();
+		}
+		if (VECTOR.equals(name)) {
+			Narrowphase vector = createVector();
+			if (vector == null) {
+				throw new IllegalArgumentException("The vector narrowphase isn't available, "+
+						"it needs to be compiled and the JVM started with --add-modules jdk.incubator.vector");
+			}
+			return vector;
+		}
+		if (AUTO.equals(name)) {
+			Narrowphase vector = createVector();
+			return vector != null ? vector : new ScalarNarrowphase();
+		}
+		
+		throw new IllegalArgumentException("Unknown narrowphase: "+name);
+	}
+	
+	/**
+	 * Try to load the vector narrowphase
+	 * 
+	 * @return The vector narrowphase, or null if it isn't available
+	 */
+	private static Narrowphase createVector() {
+		try {
+			Narrowphase vector = (Narrowphase) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+			
+			// the Vector API classes are only linked when first used, so
+			// give it enough pairs to fill the vectors to be sure it
+			// really works
+			PairList pairs = new PairList(SELF_TEST_PAIRS);
+			for (int i=0;i<SELF_TEST_PAIRS;i++) {
+				pairs.add(0, 0);
+			}
+			vector.findHits(pairs, new PairList(SELF_TEST_PAIRS));
+			return vector;
+		} catch (Exception e) {
+			return null;
+		} catch (LinkageError e) {
+			return null;
+		}
+	}
+}
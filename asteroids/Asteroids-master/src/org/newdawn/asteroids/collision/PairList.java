@@ -0,0 +1,146 @@
+package org.newdawn.asteroids.collision;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of candidate collision pairs. Each pair is held as the
+ * indices of the two entities in the list the broadphase was built from,
+ * with the first index always the lower of the two. The list is reused
+ * from update to update so it only allocates while it is still growing.
+ *
+ * @author Drew Murphy
+ */
+public class PairList {
+	/** The index of the first entity in each pair */
+	private int[] first;
+	/** The index of the second entity in each pair */
+	private int[] second;
+	/** The number of pairs currently held */
+	private int size;
+
+	/**
+	 * Create a new, empty pair list
+	 */
+	public PairList() {
+		this(64);
+	}
+
+	/**
+	 * Create a new, empty pair list
+	 *
+	 * @param capacity The number of pairs to make space for initially
+	 */
+	public PairList(int capacity) {
+		first = new int[Math.max(1, capacity)];
+		second = new int[first.length];
+	}
+
+	/**
+	 * Add a pair to the list
+	 *
+	 * @param a The index of the first entity (the lower index)
+	 * @param b The index of the second entity (the higher index)
+	 */
+	public void add(int a, int b) {
+		if (size == first.length) {
+			int[] newFirst = new int[size * 2];
+			int[] newSecond = new int[size * 2];
+			System.arraycopy(first, 0, newFirst, 0, size);
+			System.arraycopy(second, 0, newSecond, 0, size);
+			first = newFirst;
+			second = newSecond;
+		}
+
+		first[size] = a;
+		second[size] = b;
+		size++;
+	}
+
+	/**
+	 * Add all the pairs of another list to the end of this one
+	 *
+	 * @param other The list of pairs to add
+	 */
+	public void addAll(PairList other) {
+		for (int i=0;i<other.size;i++) {
+			add(other.first[i], other.second[i]);
+		}
+	}
+
+	/**
+	 * Sort the pairs at the end of the list, which all share the same first
+	 * entity, by their second entity and drop any repeats
+	 *
+	 * @param from The index of the first pair to sort
+	 */
+	void sortSeconds(int from) {
+		if (size - from < 2) {
+			return;
+		}
+
+		Arrays.sort(second, from, size);
+		int kept = from + 1;
+		for (int i=from+1;i<size;i++) {
+			if (second[i] != second[kept - 1]) {
+				second[kept++] = second[i];
+			}
+		}
+		size = kept;
+	}
+
+	/**
+	 * Remove all the pairs from the list
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return The number of pairs in the list
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the index of the first entity in a pair
+	 *
+	 * @param pair The index of the pair
+	 * @return The index of the first (lower) entity in the pair
+	 */
+	public int getFirst(int pair) {
+		return first[pair];
+	}
+
+	/**
+	 * Get the index of the second entity in a pair
+	 *
+	 * @param pair The index of the pair
+	 * @return The index of the second (higher) entity in the pair
+	 */
+	public int getSecond(int pair) {
+		return second[pair];
+	}
+
+	/**
+	 * Get the array the first index of each pair is held in, for the
+	 * narrowphase to read the pairs in bulk. The array is replaced when
+	 * the list grows, so it shouldn't be held on to.
+	 *
+	 * @return The first indices, valid up to size()
+	 */
+	int[] getFirstIndices() {
+		return first;
+	}
+
+	/**
+	 * Get the array the second index of each pair is held in, for the
+	 * narrowphase to read the pairs in bulk. The array is replaced when
+	 * the list grows, so it shouldn't be held on to.
+	 *
+	 * @return The second indices, valid up to size()
+	 */
+	int[] getSecondIndices() {
+		return second;
+	}
+}
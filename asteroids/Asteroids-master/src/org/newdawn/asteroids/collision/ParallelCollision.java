@@ -0,0 +1,143 @@
+package org.newdawn.asteroids.collision;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.newdawn.asteroids.entity.Entity;
+import org.newdawn.asteroids.util.ChunkedWork;
+
+/**
+ * Finds the colliding pairs of entities across several threads, for games
+ * with too many entities to check on one.
+ *
+ * Once the grid has been built it's only read, so the search for pairs
+ * can be split up. The entities are cut into fixed size chunks and each
+ * chunk finds the pairs whose first entity is in it, filters them by
+ * type and against the swept check, and runs the narrowphase over what's
+ * left, all into its own lists. The grid already reports each entity's
+ * pairs in order of the second entity, so joining the chunks' hits in
+ * chunk order gives exactly the order the pairs would have been found in
+ * on one thread. Only then are the collisions handed out, on the calling
+ * thread, so the responses happen in the same order however many threads
+ * there are.
+ *
+ * @author Drew Murphy
+ */
+public class ParallelCollision {
+	/** The pool the tasks are run on, null if running on one thread */
+	private ForkJoinPool pool;
+	/** The grid the pairs are found in, null if the broadphase isn't one */
+	private SpatialHash grid;
+	/** The filter on the types of entity that interact */
+	private CollisionDispatch dispatch;
+	/** The check of fast moving entities, whose pairs are left to it */
+	private SweptCollision sweep;
+	/** The proper test of the candidate pairs */
+	private Narrowphase narrowphase;
+
+	/** The entities being checked in the current pass */
+	private List<? extends Entity> entities;
+	/** The chunks the entities are cut into */
+	private ChunkedWork<Chunk> chunks = new ChunkedWork<Chunk>() {
+		protected Chunk createChunk() {
+			return new Chunk();
+		}
+	};
+
+	/**
+	 * Create a new parallel collision stage
+	 *
+	 * @param pool The pool to run the tasks on, or null to run on the
+	 * calling thread
+	 * @param broadphase The broadphase of the game. Only the grid can be
+	 * searched in parallel, with any other the pass is never split.
+	 * @param dispatch The filter on the types of entity that interact
+	 * @param sweep The check of fast moving entities
+	 * @param narrowphase The proper test of the candidate pairs
+	 */
+	public ParallelCollision(ForkJoinPool pool, Broadphase broadphase, CollisionDispatch dispatch, SweptCollision sweep, Narrowphase narrowphase) {
+		this.pool = pool;
+		if (broadphase instanceof SpatialHash) {
+			grid = (SpatialHash) broadphase;
+		}
+		this.dispatch = dispatch;
+		this.sweep = sweep;
+		this.narrowphase = narrowphase;
+	}
+
+	/**
+	 * Check if it's worth splitting a pass over a given number of entities
+	 *
+	 * @param count The number of entities in the game
+	 * @return True if the pass should be run across threads
+	 */
+	public boolean isWorthwhile(int count) {
+		return (pool != null) && (grid != null) && (count >= ChunkedWork.THRESHOLD);
+	}
+
+	/**
+	 * Get ready to find the touching pairs among a set of entities, by
+	 * building the grid and taking a copy of where they are for the
+	 * narrowphase. The dispatch must have been prepared with the entities
+	 * first.
+	 *
+	 * @param entities The entities in the game
+	 */
+	public void prepare(List<? extends Entity> entities) {
+		this.entities = entities;
+		grid.build(entities);
+		narrowphase.prepare(entities);
+	}
+
+	/**
+	 * Find the pairs of the entities last prepared that are touching
+	 *
+	 * @param hits The list to add the touching pairs to, in the order they
+	 * would be found on one thread. This is not cleared first.
+	 */
+	public void findHits(PairList hits) {
+		chunks.split(entities.size());
+		chunks.run(pool);
+
+		for (int i=0;i<chunks.size();i++) {
+			hits.addAll(chunks.get(i).hits);
+		}
+		this.entities = null;
+	}
+
+	/**
+	 * The task that finds the hits of a single chunk of entities
+	 */
+	private class Chunk extends ChunkedWork.ChunkTask {
+		/** The version of the serialised form, which is never used */
+		private static final long serialVersionUID = 1L;
+
+		/** The pairs found by the grid */
+		private PairList pairs = new PairList();
+		/** The pairs whose types interact and aren't left to the swept check */
+		private PairList candidates = new PairList();
+		/** The pairs found to be touching */
+		private PairList hits = new PairList();
+
+		/**
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute() {
+			pairs.clear();
+			candidates.clear();
+			hits.clear();
+
+			grid.findPairs(start, end, pairs);
+			for (int i=0;i<pairs.size();i++) {
+				int first = pairs.getFirst(i);
+				int second = pairs.getSecond(i);
+
+				if (dispatch.interacts(first, second) && !sweep.handles(entities.get(first), entities.get(second))) {
+					candidates.add(first, second);
+				}
+			}
+
+			narrowphase.findHits(candidates, hits);
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package org.newdawn.asteroids.collision;
+
+/**
+ * The plain narrowphase, testing one pair after another. This is used
+ * wherever the vector narrowphase isn't available.
+ * 
+ * @author Drew Murphy
+ */
+public class ScalarNarrowphase extends Narrowphase {
+	/**
+	 * @see org.newdawn.asteroids.collision.Narrowphase#findHits(org.newdawn.asteroids.collision.PairList, org.newdawn.asteroids.collision.PairList)
+	 */
+	public void findHits(PairList candidates, PairList hits) {
+		for (int i=0;i<candidates.size();i++) {
+			int a = candidates.getFirst(i);
+			int b = candidates.getSecond(i);
+			if (touches(a, b)) {
+				hits.add(a, b);
+			}
+		}
+	}
+}
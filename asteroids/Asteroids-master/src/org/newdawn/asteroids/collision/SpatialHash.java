@@ -0,0 +1,321 @@
+package org.newdawn.asteroids.collision;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.newdawn.asteroids.entity.AbstractEntity;
+import org.newdawn.asteroids.entity.Entity;
+
+/**
+ * A uniform grid laid over the play area used to cut down the number of
+ * entity pairs that need a proper collision test. Each entity is placed
+ * in every cell its bounding box touches and only entities sharing a cell
+ * are reported as candidate pairs.
+ *
+ * The play area wraps round at the edges, so the grid does too. A bounding
+ * box hanging off one side of the play area is placed in the cells on the
+ * other side.
+ *
+ * Pairs are reported in exactly the order the old nested loop over the
+ * entity list would have tested them (by the index of the first entity,
+ * then by the index of the second) so the collide() callbacks happen in
+ * the same order as they always have.
+ *
+ * @author Drew Murphy
+ */
+public class SpatialHash implements Broadphase {
+	/** The number of columns of cells across the play area */
+	private int columns;
+	/** The number of rows of cells down the play area */
+	private int rows;
+	/** The width of a single cell */
+	private float cellWidth;
+	/** The height of a single cell */
+	private float cellHeight;
+
+	/** The first entry in each cell, -1 for an empty cell */
+	private int[] cellHead;
+	/** The next entry in the same cell as each entry, -1 at the end */
+	private int[] entryNext;
+	/** The index of the entity each entry refers to */
+	private int[] entryEntity;
+	/** The number of entries currently in use */
+	private int entryCount;
+
+	/** The x position of each entity at the time the grid was built */
+	private float[] x = new float[0];
+	/** The y position of each entity at the time the grid was built */
+	private float[] y = new float[0];
+	/** The collision radius of each entity at the time the grid was built */
+	private float[] radius = new float[0];
+	/** The number of entities the grid was built from */
+	private int count;
+
+	/** The query that last collected each entity as a candidate */
+	private int[] mark = new int[0];
+	/** The scratch list of candidates for the entity being queried */
+	private int[] candidates = new int[16];
+	/** The mark used by the current box query, counting down from -2 */
+	private int queryMark = -1;
+
+	/**
+	 * Create a new grid over the play area
+	 *
+	 * @param cellSize The approximate size of each cell. This is adjusted
+	 * so a whole number of cells fit across and down the play area. It
+	 * should be around the size of the largest entity in the game.
+	 */
+	public SpatialHash(float cellSize) {
+		columns = Math.max(1, (int) (AbstractEntity.PLAY_AREA_WIDTH / cellSize));
+		rows = Math.max(1, (int) (AbstractEntity.PLAY_AREA_HEIGHT / cellSize));
+		cellWidth = AbstractEntity.PLAY_AREA_WIDTH / (float) columns;
+		cellHeight = AbstractEntity.PLAY_AREA_HEIGHT / (float) rows;
+
+		cellHead = new int[columns * rows];
+		entryNext = new int[64];
+		entryEntity = new int[64];
+	}
+
+	/**
+	 * Rebuild the grid from the current positions of a list of entities.
+	 * This should be called each update before finding pairs since
+	 * everything will have moved.
+	 *
+	 * @param entities The entities to place in the grid
+	 */
+	public void build(List<? extends Entity> entities) {
+		count = entities.size();
+		if (x.length < count) {
+			int length = Math.max(count, x.length * 2);
+			x = new float[length];
+			y = new float[length];
+			radius = new float[length];
+			mark = new int[length];
+		}
+
+		Arrays.fill(cellHead, -1);
+		entryCount = 0;
+		queryMark = -1;
+
+		for (int i=0;i<count;i++) {
+			Entity entity = entities.get(i);
+			x[i] = entity.getX();
+			y[i] = entity.getY();
+			radius[i] = entity.getSize();
+			mark[i] = -1;
+
+			int c0 = column(x[i] - radius[i]);
+			int c1 = column(x[i] + radius[i]);
+			int r0 = row(y[i] - radius[i]);
+			int r1 = row(y[i] + radius[i]);
+
+			if (c1 - c0 >= columns) {
+				c0 = 0;
+				c1 = columns - 1;
+			}
+			if (r1 - r0 >= rows) {
+				r0 = 0;
+				r1 = rows - 1;
+			}
+
+			for (int r=r0;r<=r1;r++) {
+				int rowStart = wrap(r, rows) * columns;
+				for (int c=c0;c<=c1;c++) {
+					insert(rowStart + wrap(c, columns), i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.collision.Broadphase#findPairs(java.util.List, org.newdawn.asteroids.collision.PairList)
+	 */
+	public void findPairs(List<? extends Entity> entities, PairList pairs) {
+		build(entities);
+		findPairs(pairs);
+	}
+
+	/**
+	 * Find all the pairs of entities whose bounding boxes share a cell in
+	 * the grid as it was last built. The pairs are added to the list given 
+	 * in the order the nested loop over the entity list would have visited 
+	 * them.
+	 *
+	 * @param pairs The list to add the candidate pairs to. This is not
+	 * cleared first.
+	 */
+	public void findPairs(PairList pairs) {
+		findPairs(0, count, pairs);
+	}
+
+	/**
+	 * Find the pairs of entities whose bounding boxes share a cell in the
+	 * grid as it was last built, for a range of first entities. Only the
+	 * list given is written to, so several ranges can be searched at once
+	 * on different threads. Searching consecutive ranges into lists and
+	 * joining them in order gives the same pairs as searching everything.
+	 *
+	 * @param start The index of the first entity to find the pairs of
+	 * @param end The index after the last entity to find the pairs of
+	 * @param pairs The list to add the candidate pairs to, in the order
+	 * the nested loop over the entity list would have visited them. This
+	 * is not cleared first.
+	 */
+	public void findPairs(int start, int end, PairList pairs) {
+		for (int i=start;i<end;i++) {
+			int from = pairs.size();
+
+			int c0 = column(x[i] - radius[i]);
+			int c1 = column(x[i] + radius[i]);
+			int r0 = row(y[i] - radius[i]);
+			int r1 = row(y[i] + radius[i]);
+
+			if (c1 - c0 >= columns) {
+				c0 = 0;
+				c1 = columns - 1;
+			}
+			if (r1 - r0 >= rows) {
+				r0 = 0;
+				r1 = rows - 1;
+			}
+
+			for (int r=r0;r<=r1;r++) {
+				int rowStart = wrap(r, rows) * columns;
+				for (int c=c0;c<=c1;c++) {
+					for (int e=cellHead[rowStart + wrap(c, columns)];e != -1;e=entryNext[e]) {
+						int j = entryEntity[e];
+
+						// only pairs with a later entity are reported, the
+						// earlier ones were reported when we queried them
+						if (j > i) {
+							pairs.add(i, j);
+						}
+					}
+				}
+			}
+
+			// an entity sharing several cells with this one has been
+			// added once for each of them
+			pairs.sortSeconds(from);
+		}
+	}
+
+	/**
+	 * Find all the entities whose bounding boxes share a cell with a given
+	 * box, based on the grid as it was last built. The box may hang off the
+	 * edges of the play area, in which case the cells on the other side
+	 * are searched too. The results can be read back with getFound() and
+	 * are valid until the next query.
+	 *
+	 * @param minX The left edge of the box
+	 * @param minY The bottom edge of the box
+	 * @param maxX The right edge of the box
+	 * @param maxY The top edge of the box
+	 * @return The number of entities found
+	 */
+	public int query(float minX, float minY, float maxX, float maxY) {
+		int stamp = --queryMark;
+		int found = 0;
+
+		int c0 = column(minX);
+		int c1 = column(maxX);
+		int r0 = row(minY);
+		int r1 = row(maxY);
+
+		if (c1 - c0 >= columns) {
+			c0 = 0;
+			c1 = columns - 1;
+		}
+		if (r1 - r0 >= rows) {
+			r0 = 0;
+			r1 = rows - 1;
+		}
+
+		for (int r=r0;r<=r1;r++) {
+			int rowStart = wrap(r, rows) * columns;
+			for (int c=c0;c<=c1;c++) {
+				for (int e=cellHead[rowStart + wrap(c, columns)];e != -1;e=entryNext[e]) {
+					int j = entryEntity[e];
+
+					if (mark[j] != stamp) {
+						mark[j] = stamp;
+						if (found == candidates.length) {
+							candidates = Arrays.copyOf(candidates, found * 2);
+						}
+						candidates[found++] = j;
+					}
+				}
+			}
+		}
+
+		Arrays.sort(candidates, 0, found);
+		return found;
+	}
+
+	/**
+	 * Get one of the entities found by the last query
+	 *
+	 * @param index The index of the result to retrieve
+	 * @return The index, in the list the grid was built from, of the entity
+	 */
+	public int getFound(int index) {
+		return candidates[index];
+	}
+
+	/**
+	 * @return The number of entities the grid was last built from
+	 */
+	public int getEntityCount() {
+		return count;
+	}
+
+	/**
+	 * Add an entity into a cell
+	 *
+	 * @param cell The index of the cell to add to
+	 * @param entity The index of the entity being added
+	 */
+	private void insert(int cell, int entity) {
+		if (entryCount == entryNext.length) {
+			entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+			entryEntity = Arrays.copyOf(entryEntity, entryCount * 2);
+		}
+
+		entryEntity[entryCount] = entity;
+		entryNext[entryCount] = cellHead[cell];
+		cellHead[cell] = entryCount;
+		entryCount++;
+	}
+
+	/**
+	 * Get the unwrapped column a given x coordinate falls in
+	 *
+	 * @param x The x coordinate to locate
+	 * @return The column, which may be off either side of the grid
+	 */
+	private int column(float x) {
+		return (int) Math.floor((x + AbstractEntity.HALF_WIDTH) / cellWidth);
+	}
+
+	/**
+	 * Get the unwrapped row a given y coordinate falls in
+	 *
+	 * @param y The y coordinate to locate
+	 * @return The row, which may be off the top or bottom of the grid
+	 */
+	private int row(float y) {
+		return (int) Math.floor((y + AbstractEntity.HALF_HEIGHT) / cellHeight);
+	}
+
+	/**
+	 * Wrap a row or column back onto the grid
+	 *
+	 * @param value The row or column to wrap
+	 * @param size The number of rows or columns in the grid
+	 * @return The wrapped row or column
+	 */
+	private static int wrap(int value, int size) {
+		value %= size;
+		return value < 0 ? value + size : value;
+	}
+}
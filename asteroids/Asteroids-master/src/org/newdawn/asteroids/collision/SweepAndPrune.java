@@ -0,0 +1,236 @@
+package org.newdawn.asteroids.collision;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.newdawn.asteroids.entity.Entity;
+
+/**
+ * A broadphase that keeps the entities sorted along the X axis by the left
+ * edge of their bounding box. Sweeping along the sorted list only entities
+ * whose extents overlap on X need to be compared, and of those only the
+ * ones that also overlap on Y are reported.
+ *
+ * Entities move very little between updates so the sorted order from the
+ * last update is kept and only needs a few swaps to be put right again. An
+ * insertion sort over a list that is nearly sorted is close to linear.
+ *
+ * Note that the sweep doesn't consider the play area wrapping round. The
+ * collision test itself is a plain distance check so a pair that only
+ * touches across the edge of the play area would never collide anyway.
+ *
+ * @author Drew Murphy
+ */
+public class SweepAndPrune implements Broadphase {
+	/**
+	 * The number of new entities above which the whole list is re-sorted
+	 * rather than insertion sorting the new entities into place
+	 */
+	private static final int RESORT_THRESHOLD = 64;
+
+	/** The entities in the order they appeared in the list last update */
+	private Entity[] last = new Entity[0];
+	/** The number of entities in the list last update */
+	private int lastCount;
+	/** The indices of the entities sorted by the left edge of their bounds */
+	private int[] order = new int[0];
+	/** The new index of each entity from last update, -1 if it's gone */
+	private int[] remap = new int[0];
+
+	/** The left edge of each entity's bounds */
+	private float[] minX = new float[0];
+	/** The right edge of each entity's bounds */
+	private float[] maxX = new float[0];
+	/** The bottom edge of each entity's bounds */
+	private float[] minY = new float[0];
+	/** The top edge of each entity's bounds */
+	private float[] maxY = new float[0];
+
+	/** The scratch buffer for sorting the pairs found */
+	private long[] found = new long[64];
+	/** The scratch buffer for full sorts of the entity list */
+	private long[] keys = new long[0];
+
+	/**
+	 * @see org.newdawn.asteroids.collision.Broadphase#findPairs(java.util.List, org.newdawn.asteroids.collision.PairList)
+	 */
+	public void findPairs(List<? extends Entity> entities, PairList pairs) {
+		int count = entities.size();
+		ensureCapacity(count);
+
+		for (int i=0;i<count;i++) {
+			Entity entity = entities.get(i);
+			float x = entity.getX();
+			float y = entity.getY();
+			float size = entity.getSize();
+
+			minX[i] = x - size;
+			maxX[i] = x + size;
+			minY[i] = y - size;
+			maxY[i] = y + size;
+		}
+
+		int added = carryOrder(entities);
+		if (added > RESORT_THRESHOLD) {
+			fullSort(count);
+		} else {
+			insertionSort(count);
+		}
+
+		sweep(count, pairs);
+	}
+
+	/**
+	 * Carry the sorted order over from the last update to this one. The
+	 * game only ever removes entities from its list and appends new ones to
+	 * the end, so walking the old and new lists together tells us where
+	 * each surviving entity has moved to. Anything else just means more
+	 * entities are treated as new.
+	 *
+	 * @param entities The current list of entities
+	 * @return The number of entities not carried over from the last update
+	 */
+	private int carryOrder(List<? extends Entity> entities) {
+		int count = entities.size();
+		int next = 0;
+
+		for (int i=0;i<lastCount;i++) {
+			if ((next < count) && (last[i] == entities.get(next))) {
+				remap[i] = next++;
+			} else {
+				remap[i] = -1;
+			}
+		}
+
+		int kept = 0;
+		for (int i=0;i<lastCount;i++) {
+			int index = remap[order[i]];
+			if (index != -1) {
+				order[kept++] = index;
+			}
+		}
+		for (int i=next;i<count;i++) {
+			order[kept++] = i;
+		}
+
+		for (int i=0;i<count;i++) {
+			last[i] = entities.get(i);
+		}
+		for (int i=count;i<lastCount;i++) {
+			last[i] = null;
+		}
+		lastCount = count;
+
+		return count - next;
+	}
+
+	/**
+	 * Sort the entities by the left edge of their bounds, assuming that
+	 * they're very nearly in order already
+	 *
+	 * @param count The number of entities to sort
+	 */
+	private void insertionSort(int count) {
+		for (int i=1;i<count;i++) {
+			int index = order[i];
+			float key = minX[index];
+
+			int j = i - 1;
+			while ((j >= 0) && (minX[order[j]] > key)) {
+				order[j+1] = order[j];
+				j--;
+			}
+			order[j+1] = index;
+		}
+	}
+
+	/**
+	 * Sort the entities by the left edge of their bounds from scratch
+	 *
+	 * @param count The number of entities to sort
+	 */
+	private void fullSort(int count) {
+		if (keys.length < count) {
+			keys = new long[order.length];
+		}
+
+		// pack the sort key into the top half of a long with the index
+		// in the bottom half so the built in sort can do the work
+		for (int i=0;i<count;i++) {
+			keys[i] = ((long) sortableBits(minX[i]) << 32) | i;
+		}
+		Arrays.sort(keys, 0, count);
+		for (int i=0;i<count;i++) {
+			order[i] = (int) keys[i];
+		}
+	}
+
+	/**
+	 * Sweep along the sorted list finding the pairs that overlap on both
+	 * axes. These are then sorted into the order the broadphase contract
+	 * requires and added to the pair list.
+	 *
+	 * @param count The number of entities
+	 * @param pairs The list to add the pairs to
+	 */
+	private void sweep(int count, PairList pairs) {
+		int foundCount = 0;
+
+		for (int i=0;i<count;i++) {
+			int a = order[i];
+			float right = maxX[a];
+
+			for (int j=i+1;j<count;j++) {
+				int b = order[j];
+				if (minX[b] > right) {
+					break;
+				}
+				if ((minY[b] > maxY[a]) || (maxY[b] < minY[a])) {
+					continue;
+				}
+
+				if (foundCount == found.length) {
+					found = Arrays.copyOf(found, foundCount * 2);
+				}
+				found[foundCount++] = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+			}
+		}
+
+		Arrays.sort(found, 0, foundCount);
+		for (int i=0;i<foundCount;i++) {
+			pairs.add((int) (found[i] >>> 32), (int) found[i]);
+		}
+	}
+
+	/**
+	 * Make sure the working arrays can hold a given number of entities
+	 *
+	 * @param count The number of entities that need to be held
+	 */
+	private void ensureCapacity(int count) {
+		if (order.length >= count) {
+			return;
+		}
+
+		int length = Math.max(count, order.length * 2);
+		last = Arrays.copyOf(last, length);
+		order = Arrays.copyOf(order, length);
+		remap = new int[length];
+		minX = new float[length];
+		maxX = new float[length];
+		minY = new float[length];
+		maxY = new float[length];
+	}
+
+	/**
+	 * Convert a float to an int that sorts in the same order as the
+	 * float does
+	 *
+	 * @param value The value to convert
+	 * @return An int which sorts in the same order as the value given
+	 */
+	private static int sortableBits(float value) {
+		int bits = Float.floatToIntBits(value);
+		return bits < 0 ? bits ^ 0x7fffffff : bits;
+	}
+}
@@ -0,0 +1,283 @@
+package org.newdawn.asteroids.collision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.newdawn.asteroids.entity.AbstractEntity;
+import org.newdawn.asteroids.entity.Entity;
+
+/**
+ * Collision detection for entities that move too far in a single tick to
+ * be caught by checking where they end up. A fast shot can be on one side
+ * of a small rock at the start of a tick and clean through it by the end,
+ * never overlapping it at the point the normal collision check happens.
+ *
+ * Instead the circle of each swept entity is moved along the line from
+ * where it started the tick to where it ended up, and tested against the
+ * circles of the target entities (moving the same way). Where they touch
+ * the time of impact is worked out, as a fraction of the way through the
+ * tick. Entities that stop at the first thing they hit only report the
+ * earliest impact, others report everything they passed through in the
+ * order they hit it.
+ *
+ * If an entity wraps round the edge of the play area during the tick
+ * there's no sensible path to sweep along, so it's only tested where it
+ * ended up.
+ *
+ * @author Drew Murphy
+ */
+public class SweptCollision {
+	/** The type of entity that swept entities are tested against */
+	private int targetType;
+	/** The grid used to find the targets near the path of an entity */
+	private SpatialHash grid = new SpatialHash(4);
+	/** The targets in the list being processed */
+	private ArrayList<Entity> targets = new ArrayList<Entity>();
+	/** The index in the entity list of each target */
+	private int[] targetIndex = new int[64];
+	/** The furthest any target moved over the tick */
+	private float furthestMove;
+
+	/** The targets hit by the entity being processed */
+	private int[] hitTarget = new int[16];
+	/** The time of impact with each target hit by the entity being processed */
+	private float[] hitTime = new float[16];
+
+	/** The time of impact of each impact reported */
+	private float[] times = new float[64];
+	/** The number of impacts reported */
+	private int impactCount;
+
+	/**
+	 * Create a new swept collision test
+	 *
+	 * @param targetType The type of entity swept entities are tested
+	 * against
+	 * @see org.newdawn.asteroids.entity.EntityType
+	 */
+	public SweptCollision(int targetType) {
+		this.targetType = targetType;
+	}
+
+	/**
+	 * Check if a pair of entities is handled by the swept test, in which
+	 * case it shouldn't also be tested in the normal way
+	 *
+	 * @param entity The first entity in the pair
+	 * @param other The second entity in the pair
+	 * @return True if the swept test deals with this pair
+	 */
+	public boolean handles(Entity entity, Entity other) {
+		return (isSwept(entity) && isTarget(other)) || (isSwept(other) && isTarget(entity));
+	}
+
+	/**
+	 * Find the impacts between swept entities and targets over the last
+	 * tick. Impacts are reported in order of the swept entity's index in
+	 * the list, then in the order they happened.
+	 *
+	 * @param entities The entities in the game
+	 * @param impacts The list to add the impacts to, as pairs of the index
+	 * of the swept entity and the index of the target hit. This is not
+	 * cleared first.
+	 */
+	public void findImpacts(List<? extends Entity> entities, PairList impacts) {
+		impactCount = 0;
+		targets.clear();
+		furthestMove = 0;
+
+		for (int i=0;i<entities.size();i++) {
+			Entity entity = entities.get(i);
+			if (isTarget(entity)) {
+				AbstractEntity target = (AbstractEntity) entity;
+				if (targets.size() == targetIndex.length) {
+					targetIndex = Arrays.copyOf(targetIndex, targetIndex.length * 2);
+				}
+				targetIndex[targets.size()] = i;
+				targets.add(target);
+
+				if (!wrapped(target)) {
+					float dx = target.getX() - target.getPreviousX();
+					float dy = target.getY() - target.getPreviousY();
+					furthestMove = Math.max(furthestMove, Math.max(Math.abs(dx), Math.abs(dy)));
+				}
+			}
+		}
+		if (targets.isEmpty()) {
+			return;
+		}
+		grid.build(targets);
+
+		for (int i=0;i<entities.size();i++) {
+			Entity entity = entities.get(i);
+			if (isSwept(entity)) {
+				sweep(i, (AbstractEntity) entity, impacts);
+			}
+		}
+	}
+
+	/**
+	 * Get the time of impact of one of the impacts reported by the last
+	 * call to findImpacts()
+	 *
+	 * @param index The index of the impact in the list it was reported to,
+	 * counting from the first impact added by findImpacts()
+	 * @return The time of impact, from 0 at the start of the tick to 1 at
+	 * the end of it
+	 */
+	public float getTime(int index) {
+		return times[index];
+	}
+
+	/**
+	 * Find the targets hit by a single swept entity
+	 *
+	 * @param index The index of the swept entity in the list
+	 * @param entity The swept entity
+	 * @param impacts The list to add the impacts to
+	 */
+	private void sweep(int index, AbstractEntity entity, PairList impacts) {
+		float x1 = entity.getX();
+		float y1 = entity.getY();
+		float x0 = x1;
+		float y0 = y1;
+		if (!wrapped(entity)) {
+			x0 = entity.getPreviousX();
+			y0 = entity.getPreviousY();
+		}
+
+		float size = entity.getSize();
+		float margin = size + furthestMove;
+		int found = grid.query(Math.min(x0, x1) - margin, Math.min(y0, y1) - margin,
+							   Math.max(x0, x1) + margin, Math.max(y0, y1) + margin);
+
+		int hits = 0;
+		for (int k=0;k<found;k++) {
+			int t = grid.getFound(k);
+			AbstractEntity target = (AbstractEntity) targets.get(t);
+
+			float tx1 = target.getX();
+			float ty1 = target.getY();
+			float tx0 = tx1;
+			float ty0 = ty1;
+			if (!wrapped(target)) {
+				tx0 = target.getPreviousX();
+				ty0 = target.getPreviousY();
+			}
+
+			float time = timeOfImpact(x0, y0, x1, y1, tx0, ty0, tx1, ty1, size + target.getSize());
+			if (time < 0) {
+				continue;
+			}
+
+			// keep the hits in order of time, targets hit at the same
+			// time stay in the order of the entity list
+			if (hits == hitTarget.length) {
+				hitTarget = Arrays.copyOf(hitTarget, hits * 2);
+				hitTime = Arrays.copyOf(hitTime, hits * 2);
+			}
+			int h = hits++;
+			while ((h > 0) && (hitTime[h-1] > time)) {
+				hitTarget[h] = hitTarget[h-1];
+				hitTime[h] = hitTime[h-1];
+				h--;
+			}
+			hitTarget[h] = t;
+			hitTime[h] = time;
+		}
+
+		if ((hits > 1) && entity.isStoppedOnImpact()) {
+			hits = 1;
+		}
+		for (int h=0;h<hits;h++) {
+			if (impactCount == times.length) {
+				times = Arrays.copyOf(times, impactCount * 2);
+			}
+			times[impactCount++] = hitTime[h];
+			impacts.add(index, targetIndex[hitTarget[h]]);
+		}
+	}
+
+	/**
+	 * Work out when two circles moving in straight lines first touch. The
+	 * test is done from the point of view of the second circle, so it's a
+	 * single moving circle against a still one.
+	 *
+	 * @param ax0 The x position of the first circle at the start
+	 * @param ay0 The y position of the first circle at the start
+	 * @param ax1 The x position of the first circle at the end
+	 * @param ay1 The y position of the first circle at the end
+	 * @param bx0 The x position of the second circle at the start
+	 * @param by0 The y position of the second circle at the start
+	 * @param bx1 The x position of the second circle at the end
+	 * @param by1 The y position of the second circle at the end
+	 * @param range The sum of the radii of the circles
+	 * @return The time they first touch, from 0 at the start to 1 at the
+	 * end, or -1 if they don't touch
+	 */
+	public static float timeOfImpact(float ax0, float ay0, float ax1, float ay1,
+									 float bx0, float by0, float bx1, float by1, float range) {
+		float sx = ax0 - bx0;
+		float sy = ay0 - by0;
+		float c = (sx*sx) + (sy*sy) - (range*range);
+		if (c <= 0) {
+			// already touching at the start
+			return 0;
+		}
+
+		float ex = ax1 - bx1;
+		float ey = ay1 - by1;
+		float dx = ex - sx;
+		float dy = ey - sy;
+		float a = (dx*dx) + (dy*dy);
+		float b = (sx*dx) + (sy*dy);
+
+		// only circles moving towards each other can meet
+		if ((a > 0) && (b < 0)) {
+			float discriminant = (b*b) - (a*c);
+			if (discriminant >= 0) {
+				float time = (-b - (float) Math.sqrt(discriminant)) / a;
+				if (time <= 1) {
+					return time;
+				}
+			}
+		}
+
+		// rounding can put a touch right at the end just past it, so
+		// fall back on the same test as a normal collision
+		return ((ex*ex) + (ey*ey) <= (range*range)) ? 1 : -1;
+	}
+
+	/**
+	 * Check if an entity should be swept
+	 *
+	 * @param entity The entity to check
+	 * @return True if the entity should be swept
+	 */
+	private boolean isSwept(Entity entity) {
+		return (entity instanceof AbstractEntity) && ((AbstractEntity) entity).isSwept();
+	}
+
+	/**
+	 * Check if an entity is one swept entities are tested against
+	 *
+	 * @param entity The entity to check
+	 * @return True if the entity is a target
+	 */
+	private boolean isTarget(Entity entity) {
+		return (entity instanceof AbstractEntity) && (((AbstractEntity) entity).getType() == targetType);
+	}
+
+	/**
+	 * Check if an entity wrapped round the edge of the play area during
+	 * the last tick
+	 *
+	 * @param entity The entity to check
+	 * @return True if the entity wrapped round
+	 */
+	private static boolean wrapped(AbstractEntity entity) {
+		return (Math.abs(entity.getX() - entity.getPreviousX()) > AbstractEntity.HALF_WIDTH)
+			|| (Math.abs(entity.getY() - entity.getPreviousY()) > AbstractEntity.HALF_HEIGHT);
+	}
+}
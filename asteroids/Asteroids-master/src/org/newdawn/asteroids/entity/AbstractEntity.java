@@ -13,35 +13,62 @@ package org.newdawn.asteroids.entity;
  */
 public abstract class AbstractEntity implements Entity {
 	/** The width of the play area - determined by trying things until it felt right */
-	private static final int PLAY_AREA_WIDTH = 56;
+	public static final int PLAY_AREA_WIDTH = 56;
 	/** Half the width of the player area */
-	private static final int HALF_WIDTH = PLAY_AREA_WIDTH / 2;
+	public static final int HALF_WIDTH = PLAY_AREA_WIDTH / 2;
 	/** The height of the play area - determined by trying things until it felt right */
-	private static final int PLAY_AREA_HEIGHT = 46;
+	public static final int PLAY_AREA_HEIGHT = 46;
 	/** Half the height of the player area */
-	private static final int HALF_HEIGHT = PLAY_AREA_HEIGHT / 2;
+	public static final int HALF_HEIGHT = PLAY_AREA_HEIGHT / 2;
 	
 	/** The current rotation on the Z axis of this entity */
-	protected float rotationZ;
+	float rotationZ;
 	
 	/** The x position of this entity */
-	protected float positionX = 0;
+	float positionX = 0;
 	/** The y position of this entity */
-	protected float positionY = 0;
+	float positionY = 0;
 	
 	/** The X component of the velocity of this entity */
-	protected float velocityX = 0;
+	float velocityX = 0;
 	/** The y component of the velocity of this entity */
-	protected float velocityY = 0;
+	float velocityY = 0;
+	
+	/** The speed this entity spins at in degrees per millisecond */
+	float spin = 0;
+	
+	/** 
+	 * The store holding the state of this entity, or null if the fields 
+	 * above hold it 
+	 */
+	EntityStore store;
+	/** The slot in the store that holds the state of this entity */
+	int slot = -1;
+
+	/** The entity list holding this entity, or null if it's in none */
+	EntityList list;
+	/** The index of this entity in the list holding it */
+	int index = -1;
+	/** True if this entity is waiting in a pool to be reused */
+	boolean pooled;
+	/** The handle of this entity in the game's entity table, NONE while it's not in the game */
+	int handle = EntityTable.NONE;
 	
 	/**
 	 * @see org.newdawn.asteroids.entity.Entity#update(org.newdawn.asteroids.entity.EntityManager, int)
 	 */
 	public void update(EntityManager manager, int delta) {
+		// entities held in a store are all moved in one go by the
+		// store once everything has been updated
+		if (store != null) {
+			return;
+		}
+		
 		// update the position of this entity based on its current
 		// velocity. 
 		positionX += (velocityX * delta) / 1000.0f;
 		positionY += (velocityY * delta) / 1000.0f;
+		rotationZ += spin * delta;
 		
 		// if we move off either side of the player area, then come back on
 		// the other side. In asteroids all entities have this behaviour
@@ -60,18 +87,310 @@ public abstract class AbstractEntity implements Entity {
 		}
 	}
 	
+	/**
+	 * Put this entity back at the origin, still and unrotated, so it can be 
+	 * set up afresh when it's reused from a pool
+	 */
+	void reset() {
+		setPosition(0, 0);
+		setVelocity(0, 0);
+		setRotation(0);
+		setSpin(0);
+	}
+	
+	/**
+	 * Notification that this entity has just entered the game, i.e. so
+	 * it can schedule the timers it needs
+	 * 
+	 * @param manager The manager of the game the entity is in
+	 */
+	public void added(EntityManager manager) {
+	}
+	
+	/**
+	 * Notification that this entity has just left the game, i.e. so it
+	 * can cancel any timers still waiting
+	 * 
+	 * @param manager The manager of the game the entity was in
+	 */
+	public void removed(EntityManager manager) {
+	}
+	
+	/**
+	 * Notification that this entity is still touching an entity it
+	 * collided with in an earlier update. collide() is only called when
+	 * the two first touch, this is called every update after that until
+	 * they part.
+	 *
+	 * @param manager The manager of the game the entity is in
+	 * @param other The entity still being touched
+	 */
+	public void contactStay(EntityManager manager, Entity other) {
+	}
+	
+	/**
+	 * Notification that this entity has stopped touching an entity it
+	 * collided with
+	 *
+	 * @param manager The manager of the game the entity is in
+	 * @param other The entity no longer being touched, or null if it has
+	 * left the game
+	 */
+	public void contactEnd(EntityManager manager, Entity other) {
+	}
+
+	/**
+	 * Get the handle other entities can use to refer to this one. The 
+	 * handle is only given out once the entity has entered the game.
+	 * 
+	 * @return The handle of this entity, or EntityTable.NONE if it isn't
+	 * in the game
+	 * @see EntityTable
+	 */
+	public int getHandle() {
+		return handle;
+	}
+	
+	/**
+	 * Get the type of this entity
+	 * 
+	 * @return The type of this entity
+	 * @see EntityType
+	 */
+	public int getType() {
+		return EntityType.OTHER;
+	}
+
+	/**
+	 * Check if this entity can be updated at the same time as other
+	 * entities on another thread. This is only true of entities whose
+	 * update changes nothing but their own state and talks to the game
+	 * only through the entity manager it's given.
+	 *
+	 * @return True if this entity can be updated in parallel
+	 */
+	public boolean isIndependent() {
+		return false;
+	}
+
+	/**
+	 * Check if this entity moves fast enough that it needs to be checked 
+	 * for collisions along the whole path it moved over the last tick,
+	 * rather than just where it ended up
+	 *
+	 * @return True if collisions should be checked along this entity's path
+	 */
+	public boolean isSwept() {
+		return false;
+	}
+
+	/**
+	 * Check if this entity stops at the first thing it hits along its path.
+	 * Entities that don't stop hit everything along the path.
+	 *
+	 * @return True if only the first thing hit along the path counts
+	 * @see #isSwept()
+	 */
+	public boolean isStoppedOnImpact() {
+		return true;
+	}
+
+	/**
+	 * Get the number of particles this entity carries, which count against
+	 * the game's particle budget
+	 *
+	 * @return The most particles this entity can have at once
+	 * @see EntityBudget
+	 */
+	public int getParticleCount() {
+		return 0;
+	}
+
+	/**
+	 * Get the mass this entity pulls everything else towards it with when
+	 * the game is played with gravity wells
+	 *
+	 * @return The mass of the entity's pull, 0 if it doesn't pull anything
+	 * @see GravityField
+	 */
+	public float getGravity() {
+		return 0;
+	}
+
+	/**
+	 * Take in another entity of the same type that's being added while the
+	 * game is over budget, so this entity stands in for both. The other
+	 * entity is thrown away afterwards.
+	 *
+	 * @param other The entity to take in
+	 * @return True if the entity was taken in, false if the two can't be
+	 * combined
+	 * @see EntityBudget#MERGE
+	 */
+	public boolean absorb(AbstractEntity other) {
+		return false;
+	}
+
 	/**
 	 * @see org.newdawn.asteroids.entity.Entity#getX()
 	 */
 	public float getX() {
-		return positionX;
+		return store == null ? positionX : store.positionX[slot];
 	}
 	
 	/**
 	 * @see org.newdawn.asteroids.entity.Entity#getY()
 	 */
 	public float getY() {
-		return positionY;
+		return store == null ? positionY : store.positionY[slot];
+	}
+	
+	/**
+	 * Get the x coordinate this entity was at before it last moved. An 
+	 * entity that isn't in a store doesn't keep track of this, so its
+	 * current position is given instead.
+	 * 
+	 * @return The x coordinate of this entity before it last moved
+	 */
+	public float getPreviousX() {
+		return store == null ? positionX : store.previousX[slot];
+	}
+	
+	/**
+	 * Get the y coordinate this entity was at before it last moved
+	 * 
+	 * @return The y coordinate of this entity before it last moved
+	 * @see #getPreviousX()
+	 */
+	public float getPreviousY() {
+		return store == null ? positionY : store.previousY[slot];
+	}
+	
+	/**
+	 * Get the x coordinate this entity should be rendered at. This is
+	 * blended between the last two ticks so movement looks smooth however
+	 * often the game is rendered.
+	 * 
+	 * @return The x coordinate to render this entity at
+	 */
+	protected float getRenderX() {
+		if (store == null) {
+			return positionX;
+		}
+		return store.interpolate(store.previousX[slot], store.positionX[slot], HALF_WIDTH);
+	}
+	
+	/**
+	 * Get the y coordinate this entity should be rendered at
+	 * 
+	 * @return The y coordinate to render this entity at
+	 * @see #getRenderX()
+	 */
+	protected float getRenderY() {
+		if (store == null) {
+			return positionY;
+		}
+		return store.interpolate(store.previousY[slot], store.positionY[slot], HALF_HEIGHT);
+	}
+	
+	/**
+	 * Get the rotation this entity should be rendered at
+	 * 
+	 * @return The rotation to render this entity at in degrees
+	 * @see #getRenderX()
+	 */
+	protected float getRenderRotation() {
+		if (store == null) {
+			return rotationZ;
+		}
+		return store.interpolateRotation(store.previousRotation[slot], store.rotationZ[slot]);
+	}
+	
+	/**
+	 * Set the position of this entity
+	 * 
+	 * @param x The new x position
+	 * @param y The new y position
+	 */
+	public void setPosition(float x, float y) {
+		if (store == null) {
+			positionX = x;
+			positionY = y;
+		} else {
+			store.positionX[slot] = x;
+			store.positionY[slot] = y;
+		}
+	}
+	
+	/**
+	 * @return The x component of the velocity of this entity
+	 */
+	public float getVelocityX() {
+		return store == null ? velocityX : store.velocityX[slot];
+	}
+	
+	/**
+	 * @return The y component of the velocity of this entity
+	 */
+	public float getVelocityY() {
+		return store == null ? velocityY : store.velocityY[slot];
+	}
+	
+	/**
+	 * Set the velocity of this entity
+	 * 
+	 * @param vx The x component of the velocity
+	 * @param vy The y component of the velocity
+	 */
+	public void setVelocity(float vx, float vy) {
+		if (store == null) {
+			velocityX = vx;
+			velocityY = vy;
+		} else {
+			store.velocityX[slot] = vx;
+			store.velocityY[slot] = vy;
+		}
+	}
+	
+	/**
+	 * @return The rotation of this entity on the Z axis in degrees
+	 */
+	public float getRotation() {
+		return store == null ? rotationZ : store.rotationZ[slot];
+	}
+	
+	/**
+	 * Set the rotation of this entity on the Z axis
+	 * 
+	 * @param rotation The new rotation in degrees
+	 */
+	protected void setRotation(float rotation) {
+		if (store == null) {
+			rotationZ = rotation;
+		} else {
+			store.rotationZ[slot] = rotation;
+		}
+	}
+	
+	/**
+	 * @return The speed this entity spins at in degrees per millisecond
+	 */
+	protected float getSpin() {
+		return store == null ? spin : store.spin[slot];
+	}
+	
+	/**
+	 * Set the speed that this entity spins at. The rotation is updated
+	 * along with the position each update.
+	 * 
+	 * @param spin The speed of rotation in degrees per millisecond
+	 */
+	protected void setSpin(float spin) {
+		if (store == null) {
+			this.spin = spin;
+		} else {
+			store.spin[slot] = spin;
+		}
 	}
 	
 	/**
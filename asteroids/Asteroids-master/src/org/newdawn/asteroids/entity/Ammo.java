@@ -2,6 +2,7 @@ package org.newdawn.asteroids.entity;
 
 import org.lwjgl.opengl.GL11;
 import org.newdawn.asteroids.model.ObjModel;
+import org.newdawn.asteroids.util.GameRandom;
 import org.newdawn.spaceinvaders.lwjgl.Texture;
 
 /**
@@ -12,7 +13,7 @@ import org.newdawn.spaceinvaders.lwjgl.Texture;
  * @author Drew Murphy
  *
  */
-public class Ammo extends AbstractEntity {
+public class Ammo extends AbstractEntity implements TimerListener {
 	/**The texture to be applied to the model*/
 	private Texture texture;
 	/**The model to be rendered*/
@@ -23,17 +24,20 @@ public class Ammo extends AbstractEntity {
 	private int ammoDelta;
 	/**The size of the ammo drop*/
 	private int size;
-	/**The rotation speed of the ammo*/
-	private float rotateSpeed = (float) (Math.random() * 0.5f) + 1;
 	/**The length of time that the ammo stays active */
 	private final int LIFE = 20000;
-	/**The length of time remaining */
+	/**The length of time the drop stays once it's in the game */
 	private int lifeRemaining = LIFE;
+	/**The timer that ends the drop's life */
+	private int expiry = TimingWheel.NONE;
+	/**The timers the drop's life is counted on, null while it's not in the game */
+	private TimingWheel timers;
 	
 	/**
 	 * Create an ammo drop at a specified location with a random velocity. Done randomly when
 	 * a rock is destroyed.
 	 * 
+	 * @param random The source of the random velocity and spin
 	 * @param texture The texture to apply to the ammo drop
 	 * @param firingMode The current firing mode
 	 * @param model The model to be rendered for the drop
@@ -41,16 +45,36 @@ public class Ammo extends AbstractEntity {
 	 * @param y The y position of the ammo drop
 	 * @param size The size of the ammo drop 
 	 */
-	public Ammo(Texture texture, int firingMode, ObjModel model, float x, float y, int size) {
-		
+	public Ammo(GameRandom random, Texture texture, int firingMode, ObjModel model, float x, float y, int size) {
+		init(random, texture, firingMode, model, x, y, size);
+	}
+	
+	/**
+	 * Create an ammo drop that's yet to be set up, for filling a pool
+	 */
+	Ammo() {
+	}
+	
+	/**
+	 * Set up this ammo drop as if it had just been created, so it can be
+	 * reused
+	 * 
+	 * @see #Ammo(GameRandom, Texture, int, ObjModel, float, float, int)
+	 */
+	void init(GameRandom random, Texture texture, int firingMode, ObjModel model, float x, float y, int size) {
+		reset();
+		lifeRemaining = LIFE;
+		expiry = TimingWheel.NONE;
+		timers = null;
+		ammoDelta = 0;
 		this.texture = texture;
 		this.model = model;
 		this.firingMode = firingMode;
 		
-		velocityX = (float) (-4 + (Math.random() * 8));
-		velocityY = (float) (-4 + (Math.random() * 8));
-		positionX = x;
-		positionY = y;
+		setVelocity(random.nextFloat(-4, 4), 
+				random.nextFloat(-4, 4));
+		setPosition(x, y);
+		setSpin((random.nextFloat(0, 0.5f) + 1) / 10.0f);
 
 		this.size = size;
 		
@@ -78,16 +102,37 @@ public class Ammo extends AbstractEntity {
 	 */
 	public void update(EntityManager manager, int delta) {
 		// call the abstract entity's update method to cause the
-		// rock to move based on its current settings
-		lifeRemaining -= delta;
+		// ammo to move and spin based on its current settings
 		super.update(manager, delta);
-		
-		// the rocks just spin round all the time, so adjust
-		// the rotation of the rock based on the amount of time
-		// that has passed
-		rotationZ += (delta / 10.0f) * rotateSpeed;
-		
-		if (lifeRemaining <= 0) manager.removeEntity(this);
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#added(org.newdawn.asteroids.entity.EntityManager)
+	 */
+	public void added(EntityManager manager) {
+		timers = manager.getTimers();
+		expiry = timers.schedule(lifeRemaining, this, 0);
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#removed(org.newdawn.asteroids.entity.EntityManager)
+	 */
+	public void removed(EntityManager manager) {
+		timers.cancel(expiry);
+		expiry = TimingWheel.NONE;
+		timers = null;
+	}
+	
+	/**
+	 * The drop has been left too long and disappears
+	 * 
+	 * @see org.newdawn.asteroids.entity.TimerListener#timerExpired(org.newdawn.asteroids.entity.EntityManager, int)
+	 */
+	public void timerExpired(EntityManager manager, int id) {
+		expiry = TimingWheel.NONE;
+		if (manager.consume(this)) {
+			manager.removeEntity(this);
+		}
 	}
 	
 	/**
@@ -104,9 +149,10 @@ public class Ammo extends AbstractEntity {
 
 		// position the model based on the players currently game
 		// location
-		GL11.glTranslatef(positionX,positionY,0);
+		GL11.glTranslatef(getRenderX(),getRenderY(),0);
 
 		// rotate the rock round to its current Z axis rotate
+		float rotationZ = getRenderRotation();
 		GL11.glRotatef(rotationZ,rotationZ,rotationZ,1);
 		
 		// scale the model based on the size of rock we're representing
@@ -123,6 +169,41 @@ public class Ammo extends AbstractEntity {
 		
 	}
 
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#getType()
+	 */
+	public int getType() {
+		return EntityType.AMMO;
+	}
+
+	/**
+	 * An ammo drop takes in another for the same weapon by giving the
+	 * ammo of both when picked up
+	 * 
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#absorb(org.newdawn.asteroids.entity.AbstractEntity)
+	 */
+	public boolean absorb(AbstractEntity other) {
+		if (!(other instanceof Ammo) || (((Ammo) other).firingMode != firingMode)) {
+			return false;
+		}
+		
+		Ammo drop = (Ammo) other;
+		ammoDelta += drop.ammoDelta;
+		if (timers == null) {
+			lifeRemaining = Math.max(lifeRemaining, drop.lifeRemaining);
+		} else if (drop.lifeRemaining > timers.getRemaining(expiry)) {
+			timers.reschedule(expiry, drop.lifeRemaining);
+		}
+		return true;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#isIndependent()
+	 */
+	public boolean isIndependent() {
+		return true;
+	}
+
 	/**
 	 * @see org.newdawn.asteroids.Entity#getSize()
 	 */
@@ -134,7 +215,7 @@ public class Ammo extends AbstractEntity {
 	 * @see org.newdawn.asteroids.entity.Entity#collide(org.newdawn.asteroids.entity.EntityManager, org.newdawn.asteroids.entity.Entity)
 	 */
 	public void collide(EntityManager manager, Entity other) {
-		if (other instanceof Player) {
+		if ((other instanceof Player) && manager.consume(this)) {
 			manager.removeEntity(this);
 			manager.updateAmmo(firingMode, ammoDelta, true);
 		}
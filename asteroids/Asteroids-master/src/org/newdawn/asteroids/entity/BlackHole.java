@@ -0,0 +1,87 @@
+package org.newdawn.asteroids.entity;
+
+import org.lwjgl.opengl.GL11;
+import org.newdawn.asteroids.model.ObjModel;
+
+/**
+ * A black hole sitting still in the play area, pulling everything else
+ * towards it. Black holes are only found in games played with gravity
+ * wells. They don't touch anything, rocks, shots and the player all pass
+ * straight over them, but anything that comes close is sent round them
+ * and flung out the other side.
+ *
+ * @author Drew Murphy
+ */
+public class BlackHole extends AbstractEntity {
+	/** The mass every black hole pulls with, far more than the biggest rock */
+	public static final float MASS = 40;
+	/** The size the black hole is drawn at */
+	private static final float SIZE = 1.5f;
+
+	/** The model drawn for the black hole */
+	private ObjModel model;
+
+	/**
+	 * Create a new black hole
+	 *
+	 * @param model The model drawn for the black hole, null if the game
+	 * isn't being rendered
+	 * @param x The x position of the black hole
+	 * @param y The y position of the black hole
+	 */
+	public BlackHole(ObjModel model, float x, float y) {
+		this.model = model;
+
+		setPosition(x, y);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.Entity#render()
+	 */
+	public void render() {
+		GL11.glDisable(GL11.GL_LIGHTING);
+		GL11.glDisable(GL11.GL_TEXTURE_2D);
+
+		GL11.glPushMatrix();
+
+		GL11.glTranslatef(getRenderX(),getRenderY(),0);
+		GL11.glRotatef(getRenderRotation(),0,0,1);
+		GL11.glScalef(SIZE, SIZE, SIZE);
+
+		GL11.glColor3f(0.2f,0,0.3f);
+		model.render();
+		GL11.glColor3f(1,1,1);
+
+		GL11.glPopMatrix();
+
+		GL11.glEnable(GL11.GL_TEXTURE_2D);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#getType()
+	 */
+	public int getType() {
+		return EntityType.BLACK_HOLE;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#getGravity()
+	 */
+	public float getGravity() {
+		return MASS;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.Entity#getSize()
+	 */
+	public float getSize() {
+		return SIZE * 0.5f;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.Entity#collide(org.newdawn.asteroids.entity.EntityManager, org.newdawn.asteroids.entity.Entity)
+	 */
+	public void collide(EntityManager manager, Entity other) {
+		// nothing touches a black hole
+	}
+}
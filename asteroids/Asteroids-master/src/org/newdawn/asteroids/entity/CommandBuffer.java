@@ -0,0 +1,347 @@
+package org.newdawn.asteroids.entity;
+
+import java.util.Arrays;
+
+import org.newdawn.asteroids.util.GameRandom;
+
+/**
+ * An entity manager that doesn't act on anything it's told straight away
+ * but records it to be played back later. This lets entities be updated
+ * on several threads at once. Each thread records into its own buffer and
+ * the buffers are then played back one after another on a single thread,
+ * so the game itself is only ever changed from one thread.
+ *
+ * Questions asked of the manager (i.e. how much ammo is left) are passed
+ * straight through to the real manager, so they see the state of the game
+ * as it was before any of the recorded changes.
+ *
+ * @author Drew Murphy
+ */
+public class CommandBuffer implements EntityManager {
+	/** The command to remove an entity */
+	private static final int REMOVE_ENTITY = 0;
+	/** The command to add an entity */
+	private static final int ADD_ENTITY = 1;
+	/** The notification that a rock was destroyed */
+	private static final int ROCK_DESTROYED = 2;
+	/** The notification that the player was hit */
+	private static final int PLAYER_HIT = 3;
+	/** The notification that a shot was fired */
+	private static final int SHOT_FIRED = 4;
+	/** The command to change the player's ammo */
+	private static final int UPDATE_AMMO = 5;
+	/** The command to change the ammo type shown */
+	private static final int SET_AMMO_TYPE = 6;
+	/** The command to change the shield duration shown */
+	private static final int SET_SHIELD_DURATION = 7;
+	/** The notification that a shot hit a rock */
+	private static final int SUCCESSFUL_SHOT = 8;
+	/** The command to spawn an ammo pickup */
+	private static final int SPAWN_AMMO = 9;
+	/** The notification that the player is out of ammo */
+	private static final int OUT_OF_AMMO = 10;
+	/** The notification that the shield has gone down */
+	private static final int SHIELD_DOWN = 11;
+	/** The command to remove an entity by its handle */
+	private static final int REMOVE_HANDLE = 12;
+
+	/** The manager that commands are played back to */
+	private EntityManager target;
+	/** The stream of random numbers for the entities using this buffer */
+	private GameRandom random = new GameRandom(0);
+
+	/** The type of each command recorded */
+	private int[] command = new int[16];
+	/** The first integer argument of each command */
+	private int[] intA = new int[16];
+	/** The second integer argument of each command */
+	private int[] intB = new int[16];
+	/** The first float argument of each command */
+	private float[] floatA = new float[16];
+	/** The second float argument of each command */
+	private float[] floatB = new float[16];
+	/** The object argument of each command */
+	private Object[] object = new Object[16];
+	/** The number of commands recorded */
+	private int count;
+
+	/**
+	 * Create a new command buffer
+	 *
+	 * @param target The manager that commands are played back to and
+	 * that questions are passed on to
+	 */
+	public CommandBuffer(EntityManager target) {
+		this.target = target;
+	}
+
+	/**
+	 * Play back all the commands recorded, in the order they were recorded,
+	 * to the target manager. The buffer is emptied afterwards.
+	 */
+	public void replay() {
+		for (int i=0;i<count;i++) {
+			switch (command[i]) {
+			case REMOVE_ENTITY:
+				target.removeEntity((Entity) object[i]);
+				break;
+			case ADD_ENTITY:
+				target.addEntity((Entity) object[i]);
+				break;
+			case REMOVE_HANDLE:
+				target.removeEntity(intA[i]);
+				break;
+			case ROCK_DESTROYED:
+				target.rockDestroyed(intA[i]);
+				break;
+			case PLAYER_HIT:
+				target.playerHit();
+				break;
+			case SHOT_FIRED:
+				target.shotFired(intA[i]);
+				break;
+			case UPDATE_AMMO:
+				target.updateAmmo(intA[i], intB[i], floatA[i] != 0);
+				break;
+			case SET_AMMO_TYPE:
+				target.setAmmoType(intA[i]);
+				break;
+			case SET_SHIELD_DURATION:
+				target.setShieldDuration((String) object[i]);
+				break;
+			case SUCCESSFUL_SHOT:
+				target.successfulShot();
+				break;
+			case SPAWN_AMMO:
+				target.spawnAmmo(floatA[i], floatB[i]);
+				break;
+			case OUT_OF_AMMO:
+				target.outOfAmmo();
+				break;
+			case SHIELD_DOWN:
+				target.shieldDown();
+				break;
+			}
+			object[i] = null;
+		}
+
+		count = 0;
+	}
+
+	/**
+	 * @return The number of commands waiting to be played back
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Record a command
+	 *
+	 * @param type The type of command
+	 * @param a The first integer argument
+	 * @param b The second integer argument
+	 * @param x The first float argument
+	 * @param y The second float argument
+	 * @param o The object argument
+	 */
+	private void record(int type, int a, int b, float x, float y, Object o) {
+		if (count == command.length) {
+			int length = count * 2;
+			command = Arrays.copyOf(command, length);
+			intA = Arrays.copyOf(intA, length);
+			intB = Arrays.copyOf(intB, length);
+			floatA = Arrays.copyOf(floatA, length);
+			floatB = Arrays.copyOf(floatB, length);
+			object = Arrays.copyOf(object, length);
+		}
+
+		command[count] = type;
+		intA[count] = a;
+		intB[count] = b;
+		floatA[count] = x;
+		floatB[count] = y;
+		object[count] = o;
+		count++;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#removeEntity(org.newdawn.asteroids.entity.Entity)
+	 */
+	public void removeEntity(Entity entity) {
+		record(REMOVE_ENTITY, 0, 0, 0, 0, entity);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#removeEntity(int)
+	 */
+	public void removeEntity(int handle) {
+		record(REMOVE_HANDLE, handle, 0, 0, 0, null);
+	}
+
+	/**
+	 * The entity table only changes between updates, so looking up
+	 * entities is passed straight through.
+	 *
+	 * @see org.newdawn.asteroids.entity.EntityManager#getEntity(int)
+	 */
+	public Entity getEntity(int handle) {
+		return target.getEntity(handle);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#queryRadius(float, float, float, int, org.newdawn.asteroids.entity.Entity[])
+	 */
+	public int queryRadius(float x, float y, float radius, int layers, Entity[] results) {
+		return target.queryRadius(x, y, radius, layers, results);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#queryNearest(float, float, int, org.newdawn.asteroids.entity.Entity)
+	 */
+	public Entity queryNearest(float x, float y, int type, Entity ignore) {
+		return target.queryNearest(x, y, type, ignore);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#raycast(float, float, float, float, float, int, org.newdawn.asteroids.entity.Entity[], float[])
+	 */
+	public int raycast(float x, float y, float dirX, float dirY, float distance, int layers, Entity[] hits, float[] distances) {
+		return target.raycast(x, y, dirX, dirY, distance, layers, hits, distances);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#addEntity(org.newdawn.asteroids.entity.Entity)
+	 */
+	public void addEntity(Entity entity) {
+		record(ADD_ENTITY, 0, 0, 0, 0, entity);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#rockDestroyed(int)
+	 */
+	public void rockDestroyed(int size) {
+		record(ROCK_DESTROYED, size, 0, 0, 0, null);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#playerHit()
+	 */
+	public void playerHit() {
+		record(PLAYER_HIT, 0, 0, 0, 0, null);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#shotFired(int)
+	 */
+	public void shotFired(int mode) {
+		record(SHOT_FIRED, mode, 0, 0, 0, null);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#updateAmmo(int, int, boolean)
+	 */
+	public void updateAmmo(int mode, int delta, boolean pickup) {
+		record(UPDATE_AMMO, mode, delta, pickup ? 1 : 0, 0, null);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#getAmmo(int)
+	 */
+	public int getAmmo(int mode) {
+		return target.getAmmo(mode);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#setAmmoType(int)
+	 */
+	public void setAmmoType(int mode) {
+		record(SET_AMMO_TYPE, mode, 0, 0, 0, null);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#setShieldDuration(java.lang.String)
+	 */
+	public void setShieldDuration(String duration) {
+		record(SET_SHIELD_DURATION, 0, 0, 0, 0, duration);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#successfulShot()
+	 */
+	public void successfulShot() {
+		record(SUCCESSFUL_SHOT, 0, 0, 0, 0, null);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#spawnAmmo(float, float)
+	 */
+	public void spawnAmmo(float x, float y) {
+		record(SPAWN_AMMO, 0, 0, x, y, null);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#outOfAmmo()
+	 */
+	public void outOfAmmo() {
+		record(OUT_OF_AMMO, 0, 0, 0, 0, null);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#readyToSpawn()
+	 */
+	public boolean readyToSpawn() {
+		return target.readyToSpawn();
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.EntityManager#shieldDown()
+	 */
+	public void shieldDown() {
+		record(SHIELD_DOWN, 0, 0, 0, 0, null);
+	}
+
+	/**
+	 * Consuming is passed straight through. During an update an entity
+	 * only ever consumes itself, so no two threads touch the same flag.
+	 *
+	 * @see org.newdawn.asteroids.entity.EntityManager#consume(org.newdawn.asteroids.entity.Entity)
+	 */
+	public boolean consume(Entity entity) {
+		return target.consume(entity);
+	}
+
+	/**
+	 * The pools aren't thread safe, so entities updated through a command
+	 * buffer mustn't take anything from them. Asking for them is refused
+	 * rather than left to chance.
+	 *
+	 * @see org.newdawn.asteroids.entity.EntityManager#getPools()
+	 * @throws IllegalStateException Always, the pools can't be used from
+	 * a command buffer
+	 */
+	public EntityPools getPools() {
+		throw new IllegalStateException("The pools can't be used from a command buffer");
+	}
+
+	/**
+	 * The timers aren't thread safe, so entities updated through a command
+	 * buffer may only check them, not schedule or cancel them.
+	 *
+	 * @see org.newdawn.asteroids.entity.EntityManager#getTimers()
+	 */
+	public TimingWheel getTimers() {
+		return target.getTimers();
+	}
+
+	/**
+	 * Each buffer has its own stream of random numbers so the entities
+	 * using it don't contend with other threads for the game's. The stream
+	 * should be split from the game's before each use.
+	 *
+	 * @see org.newdawn.asteroids.entity.EntityManager#getRandom()
+	 */
+	public GameRandom getRandom() {
+		return random;
+	}
+}
@@ -55,7 +55,9 @@ public interface Entity {
 	
 	/**
 	 * Notify this entity that it has collided with another entity. This
-	 * is called once collision resolution has occured.
+	 * is called once collision resolution has occured, when the two first
+	 * touch. An entity that keeps touching another isn't told again until
+	 * they've parted.
 	 * 
 	 * @see collides(Entity)
 	 * @param manager A hook back to the class responsible for maintaining
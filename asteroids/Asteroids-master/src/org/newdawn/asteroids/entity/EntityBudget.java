@@ -0,0 +1,385 @@
+package org.newdawn.asteroids.entity;
+
+import java.util.List;
+
+/**
+ * Keeps the number of entities in the game within what a frame can cope
+ * with. Rocks, shots and pickups each have a limit on how many there can
+ * be, and there's a limit on the total number of particles the entities
+ * carry (mostly the trails behind shots). A shrapnel heavy game would
+ * otherwise keep doubling the rocks and shots until it ground to a halt.
+ *
+ * When an entity is added over its limit the category's policy decides
+ * what gives:
+ *
+ * REFUSE - the new entity just isn't added
+ * AGE_OUT - the oldest entities of the same kind are taken out until the
+ * new one fits (otherwise it's refused)
+ * MERGE - the new entity is folded into the newest one of the same kind,
+ * if they can be combined (otherwise it's refused)
+ *
+ * The limits and policies can be set with system properties, i.e.
+ *
+ * java -Dasteroids.budget.shots=256 -Dasteroids.budget.shots.policy=merge ...
+ *
+ * The budget is counted from the entities in the game once per update
+ * and then kept up to date as entities are added. Entities removed
+ * during the update are only accounted for at the next count, so the
+ * budget errs on the side of refusing.
+ *
+ * @author Drew Murphy
+ */
+public class EntityBudget {
+	/** The prefix of the system properties used to configure the budget */
+	public static final String PROPERTY_PREFIX = "asteroids.budget.";
+
+	/** Entities that don't count against any budget (i.e. the player) */
+	public static final int NONE = -1;
+	/** The rocks category */
+	public static final int ROCKS = 0;
+	/** The shots category */
+	public static final int SHOTS = 1;
+	/** The particles carried by entities */
+	public static final int PARTICLES = 2;
+	/** The ammo pickups category */
+	public static final int PICKUPS = 3;
+	/** The number of categories */
+	public static final int CATEGORIES = 4;
+
+	/** The policy of not adding entities over the limit */
+	public static final int REFUSE = 0;
+	/** The policy of taking out the oldest entity to make room */
+	public static final int AGE_OUT = 1;
+	/** The policy of combining new entities with existing ones */
+	public static final int MERGE = 2;
+
+	/** The names of the categories as used in the system properties */
+	private static final String[] CATEGORY_NAMES = {"rocks", "shots", "particles", "pickups"};
+	/** The names of the policies as used in the system properties */
+	private static final String[] POLICY_NAMES = {"refuse", "ageout", "merge"};
+
+	/** The most of each category allowed in the game */
+	private int[] limit = {1024, 1024, 100000, 32};
+	/** The policy applied to each category when it's over its limit */
+	private int[] policy = {REFUSE, AGE_OUT, AGE_OUT, REFUSE};
+	/** The number of each category currently counted */
+	private int[] count = new int[CATEGORIES];
+	/** The number of entities refused by each category */
+	private int[] refused = new int[CATEGORIES];
+	/** The number of entities aged out by each category */
+	private int[] agedOut = new int[CATEGORIES];
+	/** The number of entities merged by each category */
+	private int[] merged = new int[CATEGORIES];
+	/** The index in the game's list to look for the oldest entity of each category from */
+	private int[] oldest = new int[CATEGORIES];
+
+	/**
+	 * Create a budget with the limits and policies given in the system
+	 * properties, using the defaults for any not given
+	 *
+	 * @return The budget created
+	 * @throws IllegalArgumentException Indicates one of the properties
+	 * isn't a valid limit or policy
+	 */
+	public static EntityBudget create() {
+		EntityBudget budget = new EntityBudget();
+
+		for (int i=0;i<CATEGORIES;i++) {
+			String value = System.getProperty(PROPERTY_PREFIX+CATEGORY_NAMES[i]);
+			if (value != null) {
+				try {
+					budget.setLimit(i, Integer.parseInt(value.trim()));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Invalid budget for "+CATEGORY_NAMES[i]+": "+value);
+				}
+			}
+
+			value = System.getProperty(PROPERTY_PREFIX+CATEGORY_NAMES[i]+".policy");
+			if (value != null) {
+				budget.setPolicy(i, getPolicy(value.trim()));
+			}
+		}
+
+		return budget;
+	}
+
+	/**
+	 * Get a policy by name
+	 *
+	 * @param name The name of the policy
+	 * @return The policy named
+	 * @throws IllegalArgumentException Indicates the name isn't a known policy
+	 */
+	private static int getPolicy(String name) {
+		for (int i=0;i<POLICY_NAMES.length;i++) {
+			if (POLICY_NAMES[i].equals(name)) {
+				return i;
+			}
+		}
+
+		throw new IllegalArgumentException("Unknown budget policy: "+name);
+	}
+
+	/**
+	 * Get the category an entity counts against
+	 *
+	 * @param entity The entity to check
+	 * @return The category of the entity, or NONE if it isn't budgeted
+	 */
+	public static int getCategory(Entity entity) {
+		switch (EntityType.of(entity)) {
+		case EntityType.ROCK:
+			return ROCKS;
+		case EntityType.SHOT:
+			return SHOTS;
+		case EntityType.AMMO:
+			return PICKUPS;
+		default:
+			return NONE;
+		}
+	}
+
+	/**
+	 * Get the number of particles an entity carries
+	 *
+	 * @param entity The entity to check
+	 * @return The number of particles the entity can have at once
+	 */
+	private static int getParticles(Entity entity) {
+		if (entity instanceof AbstractEntity) {
+			return ((AbstractEntity) entity).getParticleCount();
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Set the limit of a category
+	 *
+	 * @param category The category to set the limit of
+	 * @param max The most of the category allowed in the game
+	 */
+	public void setLimit(int category, int max) {
+		limit[category] = max;
+	}
+
+	/**
+	 * Set the policy of a category
+	 *
+	 * @param category The category to set the policy of
+	 * @param over The policy to apply when the category is over its limit
+	 */
+	public void setPolicy(int category, int over) {
+		policy[category] = over;
+	}
+
+	/**
+	 * Count up the entities in the game, starting the budget afresh. This
+	 * should be called once the entities added and removed in an update
+	 * have been merged into the game.
+	 *
+	 * @param entities The entities in the game
+	 */
+	public void recount(List<? extends Entity> entities) {
+		for (int i=0;i<CATEGORIES;i++) {
+			count[i] = 0;
+			oldest[i] = 0;
+		}
+
+		for (int i=0;i<entities.size();i++) {
+			Entity entity = entities.get(i);
+			int category = getCategory(entity);
+			if (category != NONE) {
+				count[category]++;
+			}
+			count[PARTICLES] += getParticles(entity);
+		}
+	}
+
+	/**
+	 * Check whether an entity being added to the game fits in the budget,
+	 * applying the policy of its category if it doesn't
+	 *
+	 * @param manager The manager entities are aged out through
+	 * @param entities The entities in the game
+	 * @param pending The entities waiting to be added to the game
+	 * @param entity The entity being added
+	 * @return True if the entity should be added, false if it was refused
+	 * or merged into another and should be thrown away
+	 */
+	public boolean admit(EntityManager manager, EntityList entities, List<? extends Entity> pending, Entity entity) {
+		int category = getCategory(entity);
+		int particles = getParticles(entity);
+
+		if (category == NONE) {
+			// the player and their shield always get in
+			count[PARTICLES] += particles;
+			return true;
+		}
+
+		int over = findOver(category, particles);
+		if (over != NONE) {
+			switch (policy[over]) {
+			case AGE_OUT:
+				// the entities taken out may carry fewer particles than
+				// the one coming in, so keep going until it fits
+				while (findOver(category, particles) != NONE) {
+					if (!ageOut(manager, entities, category)) {
+						refused[over]++;
+						return false;
+					}
+					agedOut[over]++;
+				}
+				break;
+			case MERGE:
+				if (merge(entities, pending, category, entity)) {
+					merged[over]++;
+				} else {
+					refused[over]++;
+				}
+				return false;
+			default:
+				refused[over]++;
+				return false;
+			}
+		}
+
+		count[category]++;
+		count[PARTICLES] += particles;
+		return true;
+	}
+
+	/**
+	 * Find the limit an entity being added would go over
+	 *
+	 * @param category The category of the entity
+	 * @param particles The number of particles the entity carries
+	 * @return The category whose limit would be exceeded, PARTICLES if it's
+	 * only the particles, or NONE if the entity fits
+	 */
+	private int findOver(int category, int particles) {
+		if (count[category] >= limit[category]) {
+			return category;
+		}
+		if ((particles > 0) && (count[PARTICLES] + particles > limit[PARTICLES])) {
+			return PARTICLES;
+		}
+
+		return NONE;
+	}
+
+	/**
+	 * Take the oldest entity of a category out of the game
+	 *
+	 * @param manager The manager to remove the entity through
+	 * @param entities The entities in the game, oldest first
+	 * @param category The category to take an entity out of
+	 * @return True if an entity was taken out
+	 */
+	private boolean ageOut(EntityManager manager, EntityList entities, int category) {
+		for (int i=oldest[category];i<entities.size();i++) {
+			Entity entity = entities.get(i);
+			if ((getCategory(entity) != category) || !entities.consume(entity)) {
+				continue;
+			}
+
+			oldest[category] = i + 1;
+			manager.removeEntity(entity);
+			count[category]--;
+			count[PARTICLES] -= getParticles(entity);
+			return true;
+		}
+
+		oldest[category] = entities.size();
+		return false;
+	}
+
+	/**
+	 * Fold an entity into the newest entity of the same category
+	 *
+	 * @param entities The entities in the game
+	 * @param pending The entities waiting to be added to the game
+	 * @param category The category of the entity
+	 * @param entity The entity to fold in
+	 * @return True if the entity was taken in by another
+	 */
+	private boolean merge(EntityList entities, List<? extends Entity> pending, int category, Entity entity) {
+		AbstractEntity target = null;
+		for (int i=pending.size()-1;(i>=0) && (target == null);i--) {
+			if (getCategory(pending.get(i)) == category) {
+				target = (AbstractEntity) pending.get(i);
+			}
+		}
+		for (int i=entities.size()-1;(i>=0) && (target == null);i--) {
+			Entity candidate = entities.get(i);
+			if ((getCategory(candidate) == category) && !entities.isConsumed(candidate)) {
+				target = (AbstractEntity) candidate;
+			}
+		}
+
+		return (target != null) && target.absorb((AbstractEntity) entity);
+	}
+
+	/**
+	 * Get the number of entities currently counted in a category
+	 *
+	 * @param category The category to check
+	 * @return The number of entities (or particles) counted
+	 */
+	public int getCount(int category) {
+		return count[category];
+	}
+
+	/**
+	 * Get the number of entities a category has refused
+	 *
+	 * @param category The category to check
+	 * @return The number of entities refused since the game started
+	 */
+	public int getRefused(int category) {
+		return refused[category];
+	}
+
+	/**
+	 * Get the number of entities a category has aged out
+	 *
+	 * @param category The category to check
+	 * @return The number of entities aged out since the game started
+	 */
+	public int getAgedOut(int category) {
+		return agedOut[category];
+	}
+
+	/**
+	 * Get the number of entities a category has merged
+	 *
+	 * @param category The category to check
+	 * @return The number of entities merged since the game started
+	 */
+	public int getMerged(int category) {
+		return merged[category];
+	}
+
+	/**
+	 * @return True if any category has ever had to apply its policy
+	 */
+	public boolean isDegraded() {
+		for (int i=0;i<CATEGORIES;i++) {
+			if (refused[i] + agedOut[i] + merged[i] > 0) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get the name of a category
+	 *
+	 * @param category The category
+	 * @return The name of the category as used in the system properties
+	 */
+	public static String getName(int category) {
+		return CATEGORY_NAMES[category];
+	}
+}
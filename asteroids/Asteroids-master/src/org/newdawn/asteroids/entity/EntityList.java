@@ -0,0 +1,336 @@
+package org.newdawn.asteroids.entity;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * A list of the entities in the game that can have a batch of entities
+ * taken out of it in a single pass.
+ *
+ * Each entity in the list knows its own index, so finding an entity to
+ * remove doesn't need a search. Removing a batch leaves a gap (tombstone)
+ * where each entity was, and the gaps are then closed up in one sweep
+ * over the list. The entities left keep the order they were in, so
+ * anything relying on that order (the broadphases, the order entities are
+ * updated and collide in) sees the same thing it would from an ArrayList.
+ * The only thing that reorders the list is MortonOrder, which sorts the
+ * entities of large games by where they are.
+ *
+ * Entities that aren't based on AbstractEntity don't know their index, so
+ * they are found by searching the list instead.
+ *
+ * The list also keeps track of which entities have been consumed in the
+ * current tick (i.e. a rock that has already split) so they aren't acted
+ * on twice. Each slot is stamped with the generation it was consumed in,
+ * so starting a new tick is just moving on to the next generation rather
+ * than clearing a flag for every entity.
+ *
+ * @author Drew Murphy
+ */
+public class EntityList extends AbstractList<Entity> implements RandomAccess {
+	/** The entities in the list, null where one has been removed */
+	private Entity[] entities;
+	/** The number of slots in use, including gaps */
+	private int count;
+	/** The number of gaps waiting to be closed up */
+	private int gaps;
+	/** The generation each entity was last consumed in, moved along with the entities */
+	private int[] consumed;
+	/** The current generation, entities stamped with this have been consumed */
+	private int generation = 1;
+	/** The entities in their new order while the list is reordered */
+	private Entity[] sorted = new Entity[0];
+	/** The consumed stamps in their new order while the list is reordered */
+	private int[] sortedConsumed = new int[0];
+
+	/**
+	 * Create a new, empty list
+	 */
+	public EntityList() {
+		this(256);
+	}
+
+	/**
+	 * Create a new, empty list
+	 *
+	 * @param capacity The number of entities to make space for initially
+	 */
+	public EntityList(int capacity) {
+		entities = new Entity[Math.max(1, capacity)];
+		consumed = new int[entities.length];
+	}
+
+	/**
+	 * @see java.util.AbstractList#get(int)
+	 */
+	public Entity get(int index) {
+		if (index >= count) {
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+count);
+		}
+
+		return entities[index];
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#size()
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Add an entity to the end of the list
+	 *
+	 * @param entity The entity to add
+	 * @return True, the list always changes
+	 */
+	public boolean add(Entity entity) {
+		if (count == entities.length) {
+			entities = Arrays.copyOf(entities, count * 2);
+			consumed = Arrays.copyOf(consumed, count * 2);
+		}
+
+		if (entity instanceof AbstractEntity) {
+			AbstractEntity owned = (AbstractEntity) entity;
+			owned.list = this;
+			owned.index = count;
+		}
+		consumed[count] = 0;
+		entities[count++] = entity;
+		modCount++;
+
+		return true;
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#addAll(java.util.Collection)
+	 */
+	public boolean addAll(Collection<? extends Entity> added) {
+		for (Entity entity : added) {
+			add(entity);
+		}
+
+		return !added.isEmpty();
+	}
+
+	/**
+	 * Remove an entity from the list. This costs a sweep over the list,
+	 * when removing several entities removeAll() should be used instead.
+	 *
+	 * @param entity The entity to remove
+	 * @return True if the entity was in the list
+	 */
+	public boolean remove(Object entity) {
+		boolean removed = clearSlot(entity);
+		compact();
+
+		return removed;
+	}
+
+	/**
+	 * Remove a batch of entities from the list in a single sweep. An entity
+	 * may appear in the batch more than once.
+	 *
+	 * @param removed The entities to remove
+	 * @return True if any of the entities were in the list
+	 */
+	public boolean removeAll(Collection<?> removed) {
+		boolean changed = false;
+		for (Object entity : removed) {
+			changed |= clearSlot(entity);
+		}
+		compact();
+
+		return changed;
+	}
+
+	/**
+	 * @see java.util.AbstractList#clear()
+	 */
+	public void clear() {
+		for (int i=0;i<count;i++) {
+			release(entities[i]);
+			entities[i] = null;
+		}
+		count = 0;
+		gaps = 0;
+		modCount++;
+	}
+
+	/**
+	 * @see java.util.AbstractList#indexOf(java.lang.Object)
+	 */
+	public int indexOf(Object entity) {
+		if (entity instanceof AbstractEntity) {
+			AbstractEntity owned = (AbstractEntity) entity;
+			return owned.list == this ? owned.index : -1;
+		}
+
+		for (int i=0;i<count;i++) {
+			if (entities[i] == entity) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#contains(java.lang.Object)
+	 */
+	public boolean contains(Object entity) {
+		return indexOf(entity) != -1;
+	}
+
+	/**
+	 * Start a new tick, so every entity in the list is unconsumed again
+	 */
+	public void nextGeneration() {
+		generation++;
+		if (generation == 0) {
+			// the stamps have wrapped all the way round, clear them
+			// so none of the old ones match by accident
+			Arrays.fill(consumed, 0);
+			generation = 1;
+		}
+	}
+
+	/**
+	 * Consume an entity for the rest of the tick. Only the first attempt to
+	 * consume an entity in a tick succeeds. Entities that aren't in the list
+	 * (i.e. ones only added this tick) can't be tracked and are always
+	 * allowed.
+	 *
+	 * @param entity The entity to consume
+	 * @return True if the entity hadn't already been consumed this tick
+	 */
+	public boolean consume(Entity entity) {
+		int index = indexOf(entity);
+		if (index == -1) {
+			return true;
+		}
+		if (consumed[index] == generation) {
+			return false;
+		}
+
+		consumed[index] = generation;
+		return true;
+	}
+
+	/**
+	 * Check if an entity has been consumed this tick, without consuming it
+	 *
+	 * @param entity The entity to check
+	 * @return True if the entity has already been consumed this tick
+	 */
+	public boolean isConsumed(Entity entity) {
+		int index = indexOf(entity);
+		return (index != -1) && (consumed[index] == generation);
+	}
+
+	/**
+	 * Put the entities in the list in a new order, taking their consumed
+	 * stamps with them
+	 *
+	 * @param order The current index of the entity to move into each
+	 * place in the list
+	 * @return The number of entities that changed place
+	 * @see MortonOrder
+	 */
+	int reorder(int[] order) {
+		if (sorted.length < entities.length) {
+			sorted = new Entity[entities.length];
+			sortedConsumed = new int[entities.length];
+		}
+
+		int changed = 0;
+		for (int i=0;i<count;i++) {
+			int from = order[i];
+			sorted[i] = entities[from];
+			sortedConsumed[i] = consumed[from];
+			if (from != i) {
+				if (sorted[i] instanceof AbstractEntity) {
+					((AbstractEntity) sorted[i]).index = i;
+				}
+				changed++;
+			}
+		}
+
+		// swap the new order in, the old arrays hold the next reorder
+		Entity[] swap = entities;
+		entities = sorted;
+		sorted = swap;
+		int[] swapConsumed = consumed;
+		consumed = sortedConsumed;
+		sortedConsumed = swapConsumed;
+		Arrays.fill(sorted, 0, count, null);
+		modCount++;
+
+		return changed;
+	}
+
+	/**
+	 * Leave a gap where an entity was in the list
+	 *
+	 * @param entity The entity to take out
+	 * @return True if the entity was in the list
+	 */
+	private boolean clearSlot(Object entity) {
+		int index = indexOf(entity);
+		if (index == -1) {
+			return false;
+		}
+
+		release(entities[index]);
+		entities[index] = null;
+		gaps++;
+
+		return true;
+	}
+
+	/**
+	 * Close up the gaps left by removed entities, keeping the order of
+	 * the entities left
+	 */
+	private void compact() {
+		if (gaps == 0) {
+			return;
+		}
+
+		int kept = 0;
+		for (int i=0;i<count;i++) {
+			Entity entity = entities[i];
+			if (entity == null) {
+				continue;
+			}
+
+			if (kept != i) {
+				entities[kept] = entity;
+				consumed[kept] = consumed[i];
+				if (entity instanceof AbstractEntity) {
+					((AbstractEntity) entity).index = kept;
+				}
+			}
+			kept++;
+		}
+		Arrays.fill(entities, kept, count, null);
+
+		count = kept;
+		gaps = 0;
+		modCount++;
+	}
+
+	/**
+	 * Mark an entity as no longer being in this list
+	 *
+	 * @param entity The entity being taken out
+	 */
+	private void release(Entity entity) {
+		if (entity instanceof AbstractEntity) {
+			AbstractEntity owned = (AbstractEntity) entity;
+			owned.list = null;
+			owned.index = -1;
+		}
+	}
+}
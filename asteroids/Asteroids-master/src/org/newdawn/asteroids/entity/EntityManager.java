@@ -1,5 +1,7 @@
 package org.newdawn.asteroids.entity;
 
+import org.newdawn.asteroids.util.GameRandom;
+
 /**
  * The description of the class holding and maintaining the list of 
  * entities within the game. This interface forms the contract between
@@ -17,6 +19,70 @@ public interface EntityManager {
 	 */
 	public void removeEntity(Entity entity);
 	
+	/**
+	 * Remove an entity from the game by its handle. A stale handle (one
+	 * whose entity has already left the game) is ignored.
+	 * 
+	 * @param handle The handle of the entity to be removed
+	 * @see EntityTable
+	 */
+	public void removeEntity(int handle);
+	
+	/**
+	 * Get an entity in the game by its handle
+	 * 
+	 * @param handle The handle of the entity
+	 * @return The entity, or null if the handle is stale
+	 * @see EntityTable
+	 */
+	public Entity getEntity(int handle);
+	
+	/**
+	 * Find the entities touching a circle in the play area (i.e. the rocks
+	 * caught in an explosion). The play area wraps round at the edges, so
+	 * the circle does too. Entities added or removed during the current
+	 * update aren't seen until it's over.
+	 * 
+	 * @param x The x coordinate of the centre of the circle
+	 * @param y The y coordinate of the centre of the circle
+	 * @param radius The radius of the circle
+	 * @param layers The collision layers of the entities to find
+	 * @param results The array to fill with the entities found
+	 * @return The number of entities placed in the results, at most its length
+	 * @see SpatialIndex#queryRadius(float, float, float, int, Entity[])
+	 */
+	public int queryRadius(float x, float y, float radius, int layers, Entity[] results);
+	
+	/**
+	 * Find the entity of a given type closest to a point in the play area
+	 * (i.e. the rock a homing shot should turn towards)
+	 * 
+	 * @param x The x coordinate of the point
+	 * @param y The y coordinate of the point
+	 * @param type The type of entity to find
+	 * @param ignore An entity to leave out (i.e. the one asking), or null
+	 * @return The closest entity, or null if there's none of the type
+	 * @see SpatialIndex#queryNearest(float, float, int, Entity)
+	 */
+	public Entity queryNearest(float x, float y, int type, Entity ignore);
+	
+	/**
+	 * Find the entities along a ray through the play area, closest first
+	 * (i.e. what's in the line of fire)
+	 * 
+	 * @param x The x coordinate the ray starts from
+	 * @param y The y coordinate the ray starts from
+	 * @param dirX The x component of the direction of the ray
+	 * @param dirY The y component of the direction of the ray
+	 * @param distance The length of the ray
+	 * @param layers The collision layers of the entities to find
+	 * @param hits The array to fill with the entities hit
+	 * @param distances The array to fill with the distance to each hit
+	 * @return The number of entities placed in the hits, at most its length
+	 * @see SpatialIndex#raycast(float, float, float, float, float, int, Entity[], float[])
+	 */
+	public int raycast(float x, float y, float dirX, float dirY, float distance, int layers, Entity[] hits, float[] distances);
+	
 	/**
 	 * Add an entity to the game (i.e. add a shot when the player fires)
 	 * 
@@ -99,4 +165,42 @@ public interface EntityManager {
 	 * Notification that the shield's duration is up
 	 */
 	public void shieldDown();
+	
+	/**
+	 * Consume an entity for the rest of the tick, so whatever uses it up
+	 * (i.e. splitting a rock, picking up ammo) only happens once however
+	 * many things hit it. While entities are being updated an entity may
+	 * only consume itself.
+	 * 
+	 * @param entity The entity to consume
+	 * @return True if the entity hadn't already been consumed this tick, 
+	 * false if it has and should be left alone
+	 */
+	public boolean consume(Entity entity);
+	
+	/**
+	 * Get the pools that shots, rocks and ammo drops should be taken from
+	 * rather than being created. Entities removed from the game are given
+	 * back to the pools by the manager.
+	 * 
+	 * @return The pools of entities for the game
+	 */
+	public EntityPools getPools();
+	
+	/**
+	 * Get the timers for the lifetimes and cooldowns in the game. Timers 
+	 * should only be scheduled or cancelled on the thread running the
+	 * game, not while entities are being updated in parallel.
+	 * 
+	 * @return The timing wheel for the game
+	 */
+	public TimingWheel getTimers();
+	
+	/**
+	 * Get the source of random numbers entities should use, so the game
+	 * plays out the same every time it's started from the same seed
+	 * 
+	 * @return The source of random numbers for the game
+	 */
+	public GameRandom getRandom();
 }
@@ -0,0 +1,170 @@
+package org.newdawn.asteroids.entity;
+
+import org.newdawn.asteroids.model.ObjModel;
+import org.newdawn.asteroids.util.GameRandom;
+import org.newdawn.spaceinvaders.lwjgl.Texture;
+
+/**
+ * The pools of the entities that come and go all through a game: shots,
+ * rocks and ammo drops. Entities removed from the game are handed back
+ * here and reused the next time one of the same type is needed, so once
+ * the game has been running for a while firing, splitting rocks and
+ * spawning ammo don't create anything new.
+ *
+ * @author Drew Murphy
+ */
+public class EntityPools {
+	/** The pool of shots */
+	private Pool<Shot> shots = new Pool<Shot>() {
+		protected Shot create() {
+			return new Shot();
+		}
+	};
+	/** The pool of rocks */
+	private Pool<Rock> rocks = new Pool<Rock>() {
+		protected Rock create() {
+			return new Rock();
+		}
+	};
+	/** The pool of ammo drops */
+	private Pool<Ammo> ammo = new Pool<Ammo>() {
+		protected Ammo create() {
+			return new Ammo();
+		}
+	};
+
+	/**
+	 * Get a shot from the pool
+	 *
+	 * @param texture The texture to apply to the particles building up shot
+	 * @param x The initial x position of the shot
+	 * @param y The initial y position of the shot
+	 * @param vx The x component of the initial velocity of the shot
+	 * @param vy The y component of the initial velocity of the shot
+	 * @param life The time the shot is active
+	 * @param size The size of the shot
+	 * @param r The red value
+	 * @param g The green value
+	 * @param b The blue value
+	 * @param destroyable Determines if the shot is destroyed upon collision
+	 * @param particleLife The length of time each particle is active
+	 * @param split Determines if the shot branches when it hits a rock
+	 * @return The shot, ready to be added to the game
+	 * @see Shot#Shot(Texture, float, float, float, float, int, float, float, float, float, boolean, int, boolean)
+	 */
+	public Shot obtainShot(Texture texture, float x, float y, float vx, float vy, int life,
+						   float size, float r, float g, float b,
+						   boolean destroyable, int particleLife, boolean split) {
+		Shot shot = shots.obtain();
+		shot.init(texture, x, y, vx, vy, life, size, r, g, b, destroyable, particleLife, split);
+		return shot;
+	}
+
+	/**
+	 * Get a rock from the pool with a random velocity
+	 *
+	 * @param random The source of the random velocity and spin
+	 * @param texture The texture to apply to the rock
+	 * @param model The model to be rendered for the rock
+	 * @param x The initial x position of the rock
+	 * @param y The initial y position of the rock
+	 * @param size The size of the rock (3 - big rock, 2 - medium , 1 - small)
+	 * @return The rock, ready to be added to the game
+	 * @see Rock#Rock(GameRandom, Texture, ObjModel, float, float, int)
+	 */
+	public Rock obtainRock(GameRandom random, Texture texture, ObjModel model, float x, float y, int size) {
+		return obtainRock(random, texture, model, x, y, size,
+				random.nextFloat(-4, 4),
+				random.nextFloat(-4, 4));
+	}
+
+	/**
+	 * Get a rock from the pool with a given velocity
+	 *
+	 * @param random The source of the random spin
+	 * @param texture The texture to apply to the rock
+	 * @param model The model to be rendered for the rock
+	 * @param x The initial x position of the rock
+	 * @param y The initial y position of the rock
+	 * @param size The size of the rock (3 - big rock, 2 - medium , 1 - small)
+	 * @param vx The x component of the initial velocity
+	 * @param vy The y component of the initial velocity
+	 * @return The rock, ready to be added to the game
+	 * @see Rock#Rock(GameRandom, Texture, ObjModel, float, float, int, float, float)
+	 */
+	public Rock obtainRock(GameRandom random, Texture texture, ObjModel model, float x, float y, int size, float vx, float vy) {
+		Rock rock = rocks.obtain();
+		rock.init(random, texture, model, x, y, size, vx, vy);
+		return rock;
+	}
+
+	/**
+	 * Get an ammo drop from the pool
+	 *
+	 * @param random The source of the random velocity and spin
+	 * @param texture The texture to apply to the ammo drop
+	 * @param firingMode The firing mode the drop gives ammo for
+	 * @param model The model to be rendered for the drop
+	 * @param x The x position of the ammo drop
+	 * @param y The y position of the ammo drop
+	 * @param size The size of the ammo drop
+	 * @return The ammo drop, ready to be added to the game
+	 * @see Ammo#Ammo(GameRandom, Texture, int, ObjModel, float, float, int)
+	 */
+	public Ammo obtainAmmo(GameRandom random, Texture texture, int firingMode, ObjModel model, float x, float y, int size) {
+		Ammo drop = ammo.obtain();
+		drop.init(random, texture, firingMode, model, x, y, size);
+		return drop;
+	}
+
+	/**
+	 * Give an entity that has left the game back to its pool. Entities that
+	 * aren't pooled are ignored.
+	 *
+	 * @param entity The entity to give back
+	 */
+	public void free(Entity entity) {
+		if (entity instanceof Shot) {
+			shots.free((Shot) entity);
+		} else if (entity instanceof Rock) {
+			rocks.free((Rock) entity);
+		} else if (entity instanceof Ammo) {
+			ammo.free((Ammo) entity);
+		}
+	}
+
+	/**
+	 * @return The pool of shots
+	 */
+	public Pool<Shot> getShots() {
+		return shots;
+	}
+
+	/**
+	 * @return The pool of rocks
+	 */
+	public Pool<Rock> getRocks() {
+		return rocks;
+	}
+
+	/**
+	 * @return The pool of ammo drops
+	 */
+	public Pool<Ammo> getAmmo() {
+		return ammo;
+	}
+
+	/**
+	 * @return The number of times an entity was reused across all the pools
+	 */
+	public int getHits() {
+		return shots.getHits() + rocks.getHits() + ammo.getHits();
+	}
+
+	/**
+	 * @return The number of times an entity was created across all the pools
+	 */
+	public int getMisses() {
+		return shots.getMisses() + rocks.getMisses() + ammo.getMisses();
+	}
+}
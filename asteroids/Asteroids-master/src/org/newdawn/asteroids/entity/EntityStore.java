@@ -0,0 +1,414 @@
+package org.newdawn.asteroids.entity;
+
+import java.util.Arrays;
+
+/**
+ * Holds the movement state of the entities in the game in parallel arrays
+ * of primitives rather than spread across thousands of separate objects.
+ * Moving every entity each update is then a single pass over a few
+ * arrays, rather than a virtual call into every entity.
+ *
+ * Entities keep working through the Entity interface as normal. Once an
+ * entity is added to the store its getters and setters read and write the
+ * store's arrays, and when it is removed its state is copied back into
+ * the entity so it can carry on being used on its own.
+ *
+ * Entities are packed at the front of the arrays. Removing an entity moves
+ * the last entity into its slot, so the order of entities in the store
+ * isn't the order they were added in. In large games the store is also
+ * put back into order of where the entities are every so often, see
+ * MortonOrder.
+ *
+ * @author Drew Murphy
+ */
+public class EntityStore {
+	/** The x position of each entity */
+	float[] positionX;
+	/** The y position of each entity */
+	float[] positionY;
+	/** The x component of the velocity of each entity */
+	float[] velocityX;
+	/** The y component of the velocity of each entity */
+	float[] velocityY;
+	/** The rotation on the Z axis of each entity */
+	float[] rotationZ;
+	/** The speed of rotation of each entity (in degrees per millisecond) */
+	float[] spin;
+	/** The type of each entity */
+	byte[] type;
+	/** The x position of each entity at the start of the current tick */
+	float[] previousX;
+	/** The y position of each entity at the start of the current tick */
+	float[] previousY;
+	/** The rotation of each entity at the start of the current tick */
+	float[] previousRotation;
+	/** The entity held in each slot */
+	AbstractEntity[] entities;
+	/** The number of entities in the store */
+	int count;
+	/** 
+	 * How far between the previous and current state entities should be 
+	 * rendered, 0 being the previous state and 1 the current
+	 */
+	float interpolation = 1;
+	/** A spare array the floats are gathered into while the store is reordered */
+	private float[] sortedFloats = new float[0];
+	/** A spare array the types are gathered into while the store is reordered */
+	private byte[] sortedTypes = new byte[0];
+	/** A spare array the entities are gathered into while the store is reordered */
+	private AbstractEntity[] sortedEntities = new AbstractEntity[0];
+
+	/**
+	 * Create a new, empty store
+	 */
+	public EntityStore() {
+		this(256);
+	}
+
+	/**
+	 * Create a new, empty store
+	 *
+	 * @param capacity The number of entities to make space for initially
+	 */
+	public EntityStore(int capacity) {
+		capacity = Math.max(1, capacity);
+
+		positionX = new float[capacity];
+		positionY = new float[capacity];
+		velocityX = new float[capacity];
+		velocityY = new float[capacity];
+		rotationZ = new float[capacity];
+		spin = new float[capacity];
+		type = new byte[capacity];
+		previousX = new float[capacity];
+		previousY = new float[capacity];
+		previousRotation = new float[capacity];
+		entities = new AbstractEntity[capacity];
+	}
+
+	/**
+	 * Add an entity to the store. The entity's current state is copied into
+	 * the store, which holds it from then on. Adding an entity that's
+	 * already in the store has no effect.
+	 *
+	 * @param entity The entity to add
+	 */
+	public void add(AbstractEntity entity) {
+		if (entity.store == this) {
+			return;
+		}
+		if (entity.store != null) {
+			entity.store.remove(entity);
+		}
+		if (count == entities.length) {
+			grow(count * 2);
+		}
+
+		int slot = count++;
+		positionX[slot] = entity.positionX;
+		positionY[slot] = entity.positionY;
+		velocityX[slot] = entity.velocityX;
+		velocityY[slot] = entity.velocityY;
+		rotationZ[slot] = entity.rotationZ;
+		spin[slot] = entity.spin;
+		type[slot] = (byte) entity.getType();
+		previousX[slot] = entity.positionX;
+		previousY[slot] = entity.positionY;
+		previousRotation[slot] = entity.rotationZ;
+		entities[slot] = entity;
+
+		entity.store = this;
+		entity.slot = slot;
+	}
+
+	/**
+	 * Check if an entity's state is held in this store
+	 *
+	 * @param entity The entity to check
+	 * @return True if the entity is in this store
+	 */
+	public boolean contains(AbstractEntity entity) {
+		return entity.store == this;
+	}
+
+	/**
+	 * Remove an entity from the store. The entity's state is copied back
+	 * into it. Removing an entity that isn't in the store has no effect.
+	 *
+	 * @param entity The entity to remove
+	 */
+	public void remove(AbstractEntity entity) {
+		if (entity.store != this) {
+			return;
+		}
+
+		int slot = entity.slot;
+		detach(slot);
+
+		// fill the hole with the last entity so the arrays stay packed
+		int last = --count;
+		if (slot != last) {
+			positionX[slot] = positionX[last];
+			positionY[slot] = positionY[last];
+			velocityX[slot] = velocityX[last];
+			velocityY[slot] = velocityY[last];
+			rotationZ[slot] = rotationZ[last];
+			spin[slot] = spin[last];
+			type[slot] = type[last];
+			previousX[slot] = previousX[last];
+			previousY[slot] = previousY[last];
+			previousRotation[slot] = previousRotation[last];
+			entities[slot] = entities[last];
+			entities[slot].slot = slot;
+		}
+		entities[last] = null;
+	}
+
+	/**
+	 * Remove all the entities from the store
+	 */
+	public void clear() {
+		for (int i=0;i<count;i++) {
+			detach(i);
+			entities[i] = null;
+		}
+		count = 0;
+	}
+
+	/**
+	 * Record the current state of every entity as the state at the start
+	 * of the tick. Rendering between ticks blends from this state to the 
+	 * state at the end of the tick. This should be called before any 
+	 * entity is updated.
+	 */
+	public void beginTick() {
+		System.arraycopy(positionX, 0, previousX, 0, count);
+		System.arraycopy(positionY, 0, previousY, 0, count);
+		System.arraycopy(rotationZ, 0, previousRotation, 0, count);
+	}
+	
+	/**
+	 * Set how far between the last two ticks entities should be rendered
+	 * 
+	 * @param interpolation The fraction of the way from the state at the
+	 * start of the last tick to the state at the end of it, 0 to 1
+	 */
+	public void setInterpolation(float interpolation) {
+		this.interpolation = interpolation;
+	}
+	
+	/**
+	 * Move every entity in the store based on its velocity and spin it
+	 * based on its speed of rotation. Entities that move off the edge of
+	 * the play area come back on the other side.
+	 *
+	 * @param delta The amount of time that has passed in milliseconds
+	 */
+	public void integrate(int delta) {
+		integrate(delta, 0, count);
+	}
+
+	/**
+	 * Move and spin a range of the entities in the store. Separate ranges
+	 * touch separate parts of the arrays so they can be integrated at the
+	 * same time on different threads.
+	 *
+	 * @param delta The amount of time that has passed in milliseconds
+	 * @param start The first slot to integrate
+	 * @param end The slot after the last one to integrate
+	 */
+	public void integrate(int delta, int start, int end) {
+		float[] px = positionX;
+		float[] py = positionY;
+		float[] vx = velocityX;
+		float[] vy = velocityY;
+		float[] rz = rotationZ;
+		float[] sp = spin;
+
+		for (int i=start;i<end;i++) {
+			float x = px[i] + (vx[i] * delta) / 1000.0f;
+			float y = py[i] + (vy[i] * delta) / 1000.0f;
+
+			// this is the same wrapping as AbstractEntity.update()
+			if (x < -AbstractEntity.HALF_WIDTH) {
+				x = AbstractEntity.HALF_WIDTH - 1;
+			}
+			if (x > AbstractEntity.HALF_WIDTH) {
+				x = -(AbstractEntity.HALF_WIDTH - 1);
+			}
+			if (y < -AbstractEntity.HALF_HEIGHT) {
+				y = AbstractEntity.HALF_HEIGHT - 1;
+			}
+			if (y > AbstractEntity.HALF_HEIGHT) {
+				y = -(AbstractEntity.HALF_HEIGHT - 1);
+			}
+
+			px[i] = x;
+			py[i] = y;
+			rz[i] += sp[i] * delta;
+		}
+	}
+
+	/**
+	 * @return The number of entities in the store
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Get the entity held in a given slot
+	 *
+	 * @param slot The slot to retrieve
+	 * @return The entity in the given slot
+	 */
+	public AbstractEntity get(int slot) {
+		return entities[slot];
+	}
+
+	/**
+	 * Get the type of the entity held in a given slot
+	 *
+	 * @param slot The slot to check
+	 * @return The type of the entity in the slot
+	 * @see EntityType
+	 */
+	public int getType(int slot) {
+		return type[slot];
+	}
+
+	/**
+	 * Put the entities in the store in a new order. Each array is gathered
+	 * into a spare one in the new order and the two swapped, so the whole
+	 * store is moved in a few sequential passes.
+	 *
+	 * @param order The current slot of the entity to move into each slot
+	 * @see MortonOrder
+	 */
+	void reorder(int[] order) {
+		if (sortedEntities.length < entities.length) {
+			sortedFloats = new float[entities.length];
+			sortedTypes = new byte[entities.length];
+			sortedEntities = new AbstractEntity[entities.length];
+		}
+
+		positionX = gather(positionX, order);
+		positionY = gather(positionY, order);
+		velocityX = gather(velocityX, order);
+		velocityY = gather(velocityY, order);
+		rotationZ = gather(rotationZ, order);
+		spin = gather(spin, order);
+		previousX = gather(previousX, order);
+		previousY = gather(previousY, order);
+		previousRotation = gather(previousRotation, order);
+
+		byte[] types = sortedTypes;
+		for (int i=0;i<count;i++) {
+			types[i] = type[order[i]];
+		}
+		sortedTypes = type;
+		type = types;
+
+		AbstractEntity[] moved = sortedEntities;
+		for (int i=0;i<count;i++) {
+			moved[i] = entities[order[i]];
+			moved[i].slot = i;
+		}
+		sortedEntities = entities;
+		entities = moved;
+		Arrays.fill(sortedEntities, 0, count, null);
+	}
+
+	/**
+	 * Blend between a position at the start and end of a tick. If the
+	 * position has wrapped round the play area during the tick there's
+	 * nothing sensible to blend between, so the end position is used.
+	 *
+	 * @param previous The position at the start of the tick
+	 * @param current The position at the end of the tick
+	 * @param half Half the size of the play area along this axis
+	 * @return The position to render at
+	 */
+	float interpolate(float previous, float current, float half) {
+		float moved = current - previous;
+		if ((moved > half) || (moved < -half)) {
+			return current;
+		}
+
+		return previous + (moved * interpolation);
+	}
+
+	/**
+	 * Blend between a rotation at the start and end of a tick, turning
+	 * the shortest way round
+	 *
+	 * @param previous The rotation at the start of the tick in degrees
+	 * @param current The rotation at the end of the tick in degrees
+	 * @return The rotation to render at
+	 */
+	float interpolateRotation(float previous, float current) {
+		float turned = (current - previous) % 360;
+		if (turned > 180) {
+			turned -= 360;
+		} else if (turned < -180) {
+			turned += 360;
+		}
+
+		return current - (turned * (1 - interpolation));
+	}
+
+	/**
+	 * Copy the state held in the store back into the entity in a slot
+	 * and cut the entity loose from the store
+	 *
+	 * @param slot The slot of the entity to detach
+	 */
+	private void detach(int slot) {
+		AbstractEntity entity = entities[slot];
+
+		entity.positionX = positionX[slot];
+		entity.positionY = positionY[slot];
+		entity.velocityX = velocityX[slot];
+		entity.velocityY = velocityY[slot];
+		entity.rotationZ = rotationZ[slot];
+		entity.spin = spin[slot];
+		entity.store = null;
+		entity.slot = -1;
+	}
+
+	/**
+	 * Gather one of the arrays into the spare array in a new order
+	 *
+	 * @param values The array to gather
+	 * @param order The current slot of the value to move into each slot
+	 * @return The gathered array, the array given becomes the spare one
+	 */
+	private float[] gather(float[] values, int[] order) {
+		float[] gathered = sortedFloats;
+		for (int i=0;i<count;i++) {
+			gathered[i] = values[order[i]];
+		}
+		sortedFloats = values;
+
+		return gathered;
+	}
+
+	/**
+	 * Grow the arrays to hold more entities
+	 *
+	 * @param capacity The number of entities to make space for
+	 */
+	private void grow(int capacity) {
+		positionX = Arrays.copyOf(positionX, capacity);
+		positionY = Arrays.copyOf(positionY, capacity);
+		velocityX = Arrays.copyOf(velocityX, capacity);
+		velocityY = Arrays.copyOf(velocityY, capacity);
+		rotationZ = Arrays.copyOf(rotationZ, capacity);
+		spin = Arrays.copyOf(spin, capacity);
+		type = Arrays.copyOf(type, capacity);
+		previousX = Arrays.copyOf(previousX, capacity);
+		previousY = Arrays.copyOf(previousY, capacity);
+		previousRotation = Arrays.copyOf(previousRotation, capacity);
+		entities = Arrays.copyOf(entities, capacity);
+	}
+}
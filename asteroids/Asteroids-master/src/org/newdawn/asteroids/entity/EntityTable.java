@@ -0,0 +1,214 @@
+package org.newdawn.asteroids.entity;
+
+import java.util.Arrays;
+
+/**
+ * Hands out a handle for each entity in the game, a plain int that can be
+ * used to refer to the entity without holding on to it. This lets
+ * entities refer to each other (i.e. the shield following the player)
+ * without keeping an entity that has left the game reachable, and gives
+ * an id that can be written into a replay or sent over the network.
+ *
+ * A handle is made of the index of the entity's slot in the table and the
+ * generation of the slot, which moves on every time an entity leaves it.
+ * Looking up a handle is a single array read, and a handle to an entity
+ * that has left the game is spotted as stale even once its slot has been
+ * given to another entity.
+ *
+ * The entities are also kept packed together, so the whole table can be
+ * walked without skipping over empty slots.
+ *
+ * @author Drew Murphy
+ */
+public class EntityTable {
+	/** The handle that never refers to an entity */
+	public static final int NONE = 0;
+
+	/** The number of bits of a handle used for the index of the slot */
+	private static final int INDEX_BITS = 20;
+	/** The mask giving the index of the slot from a handle */
+	private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+	/** The mask applied to the generation of a slot */
+	private static final int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1;
+
+	/** The entity in each slot, null if the slot is free */
+	private Entity[] slots = new Entity[64];
+	/** The generation of each slot */
+	private int[] generation = new int[64];
+	/** The position of each slot's entity in the packed array, or the next free slot */
+	private int[] link = new int[64];
+	/** The number of slots ever used */
+	private int used;
+	/** The first free slot, -1 if none */
+	private int free = -1;
+
+	/** The entities packed together */
+	private Entity[] dense = new Entity[64];
+	/** The slot of each of the packed entities */
+	private int[] denseSlot = new int[64];
+	/** The number of entities in the table */
+	private int size;
+
+	/**
+	 * Add an entity to the table
+	 *
+	 * @param entity The entity to add
+	 * @return The handle of the entity
+	 */
+	public int add(Entity entity) {
+		int slot = allocate();
+
+		if (size == dense.length) {
+			dense = Arrays.copyOf(dense, size * 2);
+			denseSlot = Arrays.copyOf(denseSlot, size * 2);
+		}
+		dense[size] = entity;
+		denseSlot[size] = slot;
+
+		slots[slot] = entity;
+		link[slot] = size;
+		size++;
+
+		int handle = (generation[slot] << INDEX_BITS) | slot;
+		if (entity instanceof AbstractEntity) {
+			((AbstractEntity) entity).handle = handle;
+		}
+		return handle;
+	}
+
+	/**
+	 * Take an entity out of the table, killing its handle
+	 *
+	 * @param handle The handle of the entity
+	 * @return True if the handle referred to an entity in the table
+	 */
+	public boolean remove(int handle) {
+		int slot = find(handle);
+		if (slot == -1) {
+			return false;
+		}
+
+		Entity entity = slots[slot];
+		if (entity instanceof AbstractEntity) {
+			((AbstractEntity) entity).handle = NONE;
+		}
+
+		// fill the hole in the packed entities with the last one
+		int position = link[slot];
+		int last = --size;
+		if (position != last) {
+			dense[position] = dense[last];
+			denseSlot[position] = denseSlot[last];
+			link[denseSlot[position]] = position;
+		}
+		dense[last] = null;
+
+		slots[slot] = null;
+		generation[slot] = (generation[slot] + 1) & GENERATION_MASK;
+		if (generation[slot] == 0) {
+			generation[slot] = 1;
+		}
+		link[slot] = free;
+		free = slot;
+
+		return true;
+	}
+
+	/**
+	 * Get the entity a handle refers to
+	 *
+	 * @param handle The handle of the entity
+	 * @return The entity, or null if it has left the game
+	 */
+	public Entity get(int handle) {
+		int slot = find(handle);
+		if (slot == -1) {
+			return null;
+		}
+
+		return slots[slot];
+	}
+
+	/**
+	 * Check if a handle still refers to an entity in the game
+	 *
+	 * @param handle The handle to check
+	 * @return True if the entity is still in the table
+	 */
+	public boolean isValid(int handle) {
+		return find(handle) != -1;
+	}
+
+	/**
+	 * Empty the table, killing every handle
+	 */
+	public void clear() {
+		while (size > 0) {
+			int slot = denseSlot[size - 1];
+			remove((generation[slot] << INDEX_BITS) | slot);
+		}
+	}
+
+	/**
+	 * @return The number of entities in the table
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get one of the entities packed together in the table. The order of
+	 * the entities changes as they're removed.
+	 *
+	 * @param index The index of the entity, from 0 to size() - 1
+	 * @return The entity at the index
+	 */
+	public Entity getPacked(int index) {
+		return dense[index];
+	}
+
+	/**
+	 * Get a free slot, growing the table if needed
+	 *
+	 * @return The index of the slot
+	 */
+	private int allocate() {
+		if (free != -1) {
+			int slot = free;
+			free = link[slot];
+			return slot;
+		}
+
+		if (used == slots.length) {
+			if (used > INDEX_MASK) {
+				throw new IllegalStateException("Too many entities: "+used);
+			}
+
+			slots = Arrays.copyOf(slots, used * 2);
+			generation = Arrays.copyOf(generation, used * 2);
+			link = Arrays.copyOf(link, used * 2);
+		}
+
+		generation[used] = 1;
+		return used++;
+	}
+
+	/**
+	 * Find the slot a handle refers to
+	 *
+	 * @param handle The handle
+	 * @return The index of the slot, or -1 if the handle is stale
+	 */
+	private int find(int handle) {
+		if (handle == NONE) {
+			return -1;
+		}
+
+		int slot = handle & INDEX_MASK;
+		if ((slot >= used) || (slots[slot] == null) || (generation[slot] != (handle >>> INDEX_BITS))) {
+			return -1;
+		}
+
+		return slot;
+	}
+}
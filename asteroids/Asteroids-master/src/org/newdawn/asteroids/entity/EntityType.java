@@ -0,0 +1,113 @@
+package org.newdawn.asteroids.entity;
+
+/**
+ * The type identifiers given to the different kinds of entity in the 
+ * game. These let code that deals with entities in bulk (i.e. the entity
+ * store) tell them apart without having to check the class of each one.
+ * 
+ * Each type also sits on its own collision layer, one bit of a mask. The
+ * mask of layers a type interacts with says which pairs of entities are
+ * worth testing for collision at all, i.e. shots pass through each other
+ * and the ammo drops, so there's no point checking how close they are.
+ * 
+ * @author Drew Murphy
+ */
+public class EntityType {
+	/** An entity that isn't one of the game's own types */
+	public static final int OTHER = 0;
+	/** The player's ship */
+	public static final int PLAYER = 1;
+	/** A rock */
+	public static final int ROCK = 2;
+	/** A shot fired by the player */
+	public static final int SHOT = 3;
+	/** The shield surrounding the player */
+	public static final int SHIELD = 4;
+	/** An ammo pickup */
+	public static final int AMMO = 5;
+	/** A black hole, only found in games played with gravity wells */
+	public static final int BLACK_HOLE = 6;
+	/** The number of different entity types */
+	public static final int COUNT = 7;
+	
+	/** The layers each type interacts with, indexed by type */
+	private static final int[] INTERACTS = new int[COUNT];
+	
+	static {
+		// anything that isn't one of the game's own types might 
+		// care about anything
+		INTERACTS[OTHER] = ~0;
+		for (int i=0;i<COUNT;i++) {
+			INTERACTS[i] |= getLayer(OTHER);
+		}
+		
+		// rocks bounce off anything
+		interact(ROCK, ROCK);
+		interact(ROCK, PLAYER);
+		interact(ROCK, SHOT);
+		interact(ROCK, SHIELD);
+		interact(ROCK, AMMO);
+		
+		// the player picks up ammo
+		interact(PLAYER, AMMO);
+		
+		// black holes touch nothing, they only pull
+	}
+	
+	/**
+	 * Mark two types as interacting with each other
+	 * 
+	 * @param a The first type
+	 * @param b The second type
+	 */
+	private static void interact(int a, int b) {
+		INTERACTS[a] |= getLayer(b);
+		INTERACTS[b] |= getLayer(a);
+	}
+	
+	/**
+	 * Get the collision layer of a type
+	 * 
+	 * @param type The type of entity
+	 * @return The mask with just the layer of the type set
+	 */
+	public static int getLayer(int type) {
+		return 1 << type;
+	}
+	
+	/**
+	 * Get the layers a type of entity interacts with
+	 * 
+	 * @param type The type of entity
+	 * @return The mask of layers the type can collide with
+	 */
+	public static int getInteractionMask(int type) {
+		return INTERACTS[type];
+	}
+	
+	/**
+	 * Check if two types of entity can ever collide with each other
+	 * 
+	 * @param a The first type
+	 * @param b The second type
+	 * @return True if entities of the types should be tested for collision
+	 */
+	public static boolean interacts(int a, int b) {
+		return (INTERACTS[a] & getLayer(b)) != 0;
+	}
+	
+	/**
+	 * Get the type of any entity
+	 * 
+	 * @param entity The entity to check
+	 * @return The type of the entity, OTHER if it's not one of the 
+	 * game's own
+	 */
+	public static int of(Entity entity) {
+		if (entity instanceof AbstractEntity) {
+			return ((AbstractEntity) entity).getType();
+		}
+		
+		return OTHER;
+	}
+}
@@ -0,0 +1,20 @@
+package org.newdawn.asteroids.entity;
+
+/**
+ * Something that wants to know about the events of a game as they're
+ * drained from the game's event queue (i.e. the game itself for scoring,
+ * or anything keeping statistics)
+ *
+ * @author Drew Murphy
+ */
+public interface GameEventListener {
+	/**
+	 * Notification of an event that happened in the last update
+	 *
+	 * @param type The type of the event, one of the types in GameEvents
+	 * @param a The first value of the event
+	 * @param b The second value of the event
+	 * @see GameEvents
+	 */
+	public void eventFired(int type, int a, int b);
+}
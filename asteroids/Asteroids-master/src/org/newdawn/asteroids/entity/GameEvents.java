@@ -0,0 +1,162 @@
+package org.newdawn.asteroids.entity;
+
+import java.util.ArrayList;
+
+/**
+ * A queue of the things that happen during a game update (rocks being
+ * destroyed, shots being fired, ammo being picked up) that the game reacts
+ * to with scoring, sounds and changes to the HUD.
+ *
+ * Rather than reacting in the middle of the collision and update loops the
+ * game pushes each event here as it happens and drains the whole queue once
+ * an update is complete, handing the events to each listener in the order
+ * they happened. Each event is just a type and two integers, held in a ring
+ * of arrays that's only ever grown, so pushing and draining events doesn't
+ * create anything once the game has been running for a moment.
+ *
+ * @author Drew Murphy
+ */
+public class GameEvents {
+	/** A rock was destroyed, the first value is the size of the rock */
+	public static final int ROCK_DESTROYED = 0;
+	/** The player's ship was hit by a rock */
+	public static final int PLAYER_HIT = 1;
+	/** The player fired, the first value is the firing mode */
+	public static final int SHOT_FIRED = 2;
+	/** The player's ammo changed, the first value is the firing mode, the second is 1 if it was picked up */
+	public static final int AMMO_CHANGED = 3;
+	/** The player changed firing mode, the first value is the new mode */
+	public static final int AMMO_TYPE_CHANGED = 4;
+	/** A shot hit a rock */
+	public static final int SUCCESSFUL_SHOT = 5;
+	/** The player tried to fire with no ammo */
+	public static final int OUT_OF_AMMO = 6;
+	/** The player's shield ran out */
+	public static final int SHIELD_DOWN = 7;
+
+	/** The type of each event in the ring */
+	private int[] type = new int[64];
+	/** The first value of each event in the ring */
+	private int[] valueA = new int[64];
+	/** The second value of each event in the ring */
+	private int[] valueB = new int[64];
+	/** The index of the oldest event in the ring */
+	private int head;
+	/** The number of events waiting in the ring */
+	private int count;
+	/** The total number of events drained */
+	private int drained;
+	/** The listeners notified as events are drained */
+	private ArrayList<GameEventListener> listeners = new ArrayList<GameEventListener>();
+
+	/**
+	 * Add a listener to be told about each event as it's drained
+	 *
+	 * @param listener The listener to add
+	 */
+	public void addListener(GameEventListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener that was previously added
+	 *
+	 * @param listener The listener to remove
+	 */
+	public void removeListener(GameEventListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Push an event that has no values
+	 *
+	 * @param eventType The type of event
+	 */
+	public void push(int eventType) {
+		push(eventType, 0, 0);
+	}
+
+	/**
+	 * Push an event onto the end of the queue
+	 *
+	 * @param eventType The type of event
+	 * @param a The first value of the event
+	 * @param b The second value of the event
+	 */
+	public void push(int eventType, int a, int b) {
+		if (count == type.length) {
+			grow();
+		}
+
+		int index = (head + count) & (type.length - 1);
+		type[index] = eventType;
+		valueA[index] = a;
+		valueB[index] = b;
+		count++;
+	}
+
+	/**
+	 * Hand every event waiting to each of the listeners, oldest first,
+	 * leaving the queue empty. Events pushed by a listener while the queue
+	 * is being drained are handed out in the same drain.
+	 */
+	public void drain() {
+		while (count > 0) {
+			int eventType = type[head];
+			int a = valueA[head];
+			int b = valueB[head];
+			head = (head + 1) & (type.length - 1);
+			count--;
+			drained++;
+
+			for (int i=0;i<listeners.size();i++) {
+				listeners.get(i).eventFired(eventType, a, b);
+			}
+		}
+	}
+
+	/**
+	 * Throw away any events waiting without handing them out
+	 */
+	public void clear() {
+		head = 0;
+		count = 0;
+	}
+
+	/**
+	 * @return The number of events waiting to be drained
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return The total number of events that have been drained
+	 */
+	public int getDrained() {
+		return drained;
+	}
+
+	/**
+	 * Double the size of the ring, moving the waiting events to the start
+	 * of the new arrays so they stay in order
+	 */
+	private void grow() {
+		int capacity = type.length;
+		int[] newType = new int[capacity * 2];
+		int[] newA = new int[capacity * 2];
+		int[] newB = new int[capacity * 2];
+
+		for (int i=0;i<count;i++) {
+			int index = (head + i) & (capacity - 1);
+			newType[i] = type[index];
+			newA[i] = valueA[index];
+			newB[i] = valueB[index];
+		}
+
+		type = newType;
+		valueA = newA;
+		valueB = newB;
+		head = 0;
+	}
+}
@@ -0,0 +1,606 @@
+package org.newdawn.asteroids.entity;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.newdawn.asteroids.util.ChunkedWork;
+
+/**
+ * Pulls the entities in the game towards the heavy ones, the big rocks
+ * and any black holes, for games played with gravity wells.
+ *
+ * Working out the pull of every heavy entity on every other entity one
+ * pair at a time grows with the square of the number of entities, so the
+ * pulls are found with the Barnes-Hut approximation instead. Each tick the
+ * heavy entities are sorted into a quadtree, each node of which records
+ * the total mass of the entities under it and where their centre of mass
+ * is. The pull on an entity is then found by walking down the tree from
+ * the top, and any node that's far enough away next to its size is taken
+ * as a single mass at its centre rather than being opened up. That makes
+ * the cost for each entity grow with the log of the number of heavy
+ * entities rather than the number itself.
+ *
+ * How far away a node must be to be taken whole is set by the opening
+ * angle, theta. A node is taken whole when its width divided by its
+ * distance is under theta, so 0 opens every node and gives the exact pull,
+ * while larger values are quicker and rougher. The distance is to the
+ * nearest point of the node's box rather than to its centre of mass, so
+ * a node whose entities reach right up to whatever is being pulled is
+ * never taken whole however its mass is spread. The angle is taken from
+ * the "asteroids.gravity.theta" system property, defaulting to 0.7. In
+ * GravityBenchmark that puts the pull on an entity within 2% of the exact
+ * one on average. The worst entities, where the pulls from each side
+ * nearly cancel and the total is small, are out by up to 20% of it.
+ *
+ * The tree is built from the heavy entities sorted by their Z-order code,
+ * which puts the entities under each node next to each other, and the
+ * leaves hold a handful of entities each rather than one. Rather than
+ * walking the tree for every entity, it's walked once for each small group
+ * of neighbouring slots in the store, measuring the distance to a node
+ * from the box round the group. The masses taken whole and the entities of
+ * the leaves opened are gathered into a list, and every entity in the
+ * group is then pulled by everything on the list in one tight loop. In
+ * large games the store is kept in Z-order (see MortonOrder), so the
+ * groups are small and their lists short. Groups that are spread out
+ * anyway are split in half until they aren't.
+ *
+ * The pull is softened, as if each mass were spread over a small area, so
+ * an entity passing right over another isn't flung off at a silly speed.
+ * The same softening means the pull of an entity on itself is nothing, so
+ * it needs no special case. Black holes are held still. The pull doesn't
+ * reach round the edges of the play area where the entities wrap.
+ *
+ * Once the tree is built it's only read, so in large games the groups are
+ * gathered into fixed size chunks whose pulls are found on the pool. Each
+ * entity's pull is found the same way on any thread, so the game plays out
+ * the same however many threads there are.
+ *
+ * The mode does not fit in the 10 ms tick of the default 100 ticks a
+ * second at 20,000 entities. On one thread GravityBenchmark puts the pull
+ * at around 22 ms a tick at the default angle with the biggest third of
+ * the entities pulling, and the collision pass over the same field takes
+ * around 20 ms on its own. Spreading the chunks across the pool only
+ * divides the first of those. Games of that size need a slower tick rate.
+ *
+ * The mode is switched on with the "asteroids.gravity" system property,
+ * and the number of black holes added to each game is taken from
+ * "asteroids.gravity.holes", i.e.
+ *
+ * java -Dasteroids.gravity=true -Dasteroids.gravity.holes=2 org.newdawn.asteroids.GameWindow
+ *
+ * @author Drew Murphy
+ */
+public class GravityField {
+	/** The system property used to switch gravity wells on */
+	public static final String PROPERTY = "asteroids.gravity";
+	/** The system property used to set the opening angle */
+	public static final String THETA_PROPERTY = "asteroids.gravity.theta";
+	/** The system property used to set the number of black holes in each game */
+	public static final String HOLES_PROPERTY = "asteroids.gravity.holes";
+	/** The opening angle used if none is given */
+	public static final float DEFAULT_THETA = 0.7f;
+	/** The strength of gravity, the acceleration a unit of mass gives at a distance of one unit */
+	public static final float STRENGTH = 4;
+	/** The distance over which each mass is spread, to soften its pull up close */
+	public static final float SOFTENING = 1;
+	/** The number of neighbouring slots that share a walk of the tree */
+	private static final int GROUP_SIZE = 64;
+	/** The widest a group's box can be as a fraction of the tree, past which the group is split */
+	private static final float GROUP_SPREAD = 1 / 16f;
+	/** The most heavy entities a leaf holds before it's split, unless it's as deep as the tree goes */
+	private static final int LEAF_SIZE = 8;
+	/** The number of bits of each coordinate in the codes the heavy entities are sorted by, which is also the deepest the tree goes */
+	private static final int BITS = 15;
+
+	/** The pool the tasks are run on, null if running on one thread */
+	private ForkJoinPool pool;
+	/** The opening angle */
+	private float theta;
+	/** The number of black holes added to each game */
+	private int holes;
+
+	/** The code of each heavy entity in the upper half with its index in the lower, sorted into the order of the tree */
+	private long[] packed = new long[64];
+	/** The x position of each heavy entity, in the order of the tree */
+	private float[] sourceX = new float[64];
+	/** The y position of each heavy entity, in the order of the tree */
+	private float[] sourceY = new float[64];
+	/** The mass of each heavy entity, in the order of the tree */
+	private float[] sourceMass = new float[64];
+	/** The x position of each heavy entity, in the order it was found in the store */
+	private float[] foundX = new float[64];
+	/** The y position of each heavy entity, in the order it was found in the store */
+	private float[] foundY = new float[64];
+	/** The mass of each heavy entity, in the order it was found in the store */
+	private float[] foundMass = new float[64];
+	/** The number of heavy entities */
+	private int sourceCount;
+
+	/** Half the width of each node */
+	private float[] half = new float[256];
+	/** The x position of the centre of each node */
+	private float[] centreX = new float[256];
+	/** The y position of the centre of each node */
+	private float[] centreY = new float[256];
+	/** The total mass under each node */
+	private float[] mass = new float[256];
+	/** The x position of the centre of mass of each node */
+	private float[] massX = new float[256];
+	/** The y position of the centre of mass of each node */
+	private float[] massY = new float[256];
+	/** The first child of each node, -1 if it's a leaf. The children of a node are next to each other. */
+	private int[] child = new int[256];
+	/** The number of children of each node, or of heavy entities in each leaf */
+	private int[] count = new int[256];
+	/** The first heavy entity under each node, in the order of the tree */
+	private int[] first = new int[256];
+	/** The number of nodes in the tree */
+	private int nodeCount;
+
+	/** The store being pulled in the current tick */
+	private EntityStore store;
+	/** The time passed in the current tick in seconds */
+	private float seconds;
+	/** The chunks the store is cut into */
+	private ChunkedWork<Chunk> chunks = new ChunkedWork<Chunk>() {
+		protected Chunk createChunk() {
+			return new Chunk();
+		}
+	};
+
+	/**
+	 * Create the gravity wells described by the system properties
+	 *
+	 * @param pool The pool to spread the work across, or null to run on the
+	 * calling thread
+	 * @return The gravity wells, or null if the game isn't played with them
+	 */
+	public static GravityField create(ForkJoinPool pool) {
+		if (!Boolean.getBoolean(PROPERTY)) {
+			return null;
+		}
+
+		float theta = DEFAULT_THETA;
+		String value = System.getProperty(THETA_PROPERTY);
+		if (value != null) {
+			try {
+				theta = Float.parseFloat(value.trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid opening angle: "+value);
+			}
+		}
+
+		return new GravityField(pool, theta, Integer.getInteger(HOLES_PROPERTY, 0).intValue());
+	}
+
+	/**
+	 * Create new gravity wells
+	 *
+	 * @param pool The pool to spread the work across, or null to run on the
+	 * calling thread
+	 * @param theta The opening angle, 0 for the exact pull
+	 * @param holes The number of black holes added to each game
+	 */
+	public GravityField(ForkJoinPool pool, float theta, int holes) {
+		this.pool = pool;
+		this.holes = holes;
+		setTheta(theta);
+	}
+
+	/**
+	 * Pull every entity in a store towards the heavy ones for a tick,
+	 * changing their velocities
+	 *
+	 * @param store The store holding the entities
+	 * @param delta The amount of time that has passed in milliseconds
+	 */
+	public void apply(EntityStore store, int delta) {
+		build(store);
+		if (sourceCount == 0) {
+			return;
+		}
+
+		this.store = store;
+		seconds = delta / 1000.0f;
+
+		int size = store.count;
+		chunks.split(size);
+		chunks.run(size < ChunkedWork.THRESHOLD ? null : pool);
+		this.store = null;
+	}
+
+	/**
+	 * @return The opening angle
+	 */
+	public float getTheta() {
+		return theta;
+	}
+
+	/**
+	 * Set the opening angle
+	 *
+	 * @param theta The opening angle, 0 for the exact pull
+	 */
+	public void setTheta(float theta) {
+		if (theta < 0) {
+			throw new IllegalArgumentException("Invalid opening angle: "+theta);
+		}
+
+		this.theta = theta;
+	}
+
+	/**
+	 * @return The number of black holes added to each game
+	 */
+	public int getHoles() {
+		return holes;
+	}
+
+	/**
+	 * @return The number of heavy entities in the tree last built
+	 */
+	public int getSourceCount() {
+		return sourceCount;
+	}
+
+	/**
+	 * @return The number of nodes in the tree last built
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Gather the heavy entities from a store and build the tree over them
+	 *
+	 * @param store The store holding the entities
+	 */
+	private void build(EntityStore store) {
+		sourceCount = 0;
+		nodeCount = 0;
+
+		float minX = Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+		for (int i=0;i<store.count;i++) {
+			float gravity = store.entities[i].getGravity();
+			if (gravity <= 0) {
+				continue;
+			}
+
+			if (sourceCount == foundX.length) {
+				growSources(sourceCount * 2);
+			}
+			float x = store.positionX[i];
+			float y = store.positionY[i];
+			foundX[sourceCount] = x;
+			foundY[sourceCount] = y;
+			foundMass[sourceCount] = gravity;
+			sourceCount++;
+
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+		}
+		if (sourceCount == 0) {
+			return;
+		}
+
+		// the tree's nodes are square, so the root covers the longer side
+		// of the box round the heavy entities
+		float size = Math.max(Math.max(maxX - minX, maxY - minY) * 0.5f, SOFTENING);
+		float scale = ((1 << BITS) - 1) / (size * 2);
+		for (int i=0;i<sourceCount;i++) {
+			int code = MortonOrder.spread((int) ((foundX[i] - minX) * scale))
+					| (MortonOrder.spread((int) ((foundY[i] - minY) * scale)) << 1);
+			packed[i] = (((long) code) << 32) | i;
+		}
+		Arrays.sort(packed, 0, sourceCount);
+		for (int i=0;i<sourceCount;i++) {
+			int index = (int) packed[i];
+			sourceX[i] = foundX[index];
+			sourceY[i] = foundY[index];
+			sourceMass[i] = foundMass[index];
+		}
+
+		int root = addNodes(1);
+		build(root, 0, sourceCount, 0, minX + size, minY + size, size);
+	}
+
+	/**
+	 * Fill in a node of the tree over a run of the sorted heavy entities,
+	 * building its children first if it has too many to be a leaf
+	 *
+	 * @param node The node to fill in
+	 * @param start The first heavy entity under the node
+	 * @param end The heavy entity after the last under the node
+	 * @param depth The depth of the node, 0 for the root
+	 * @param x The x position of the centre of the node
+	 * @param y The y position of the centre of the node
+	 * @param size Half the width of the node
+	 */
+	private void build(int node, int start, int end, int depth, float x, float y, float size) {
+		half[node] = size;
+		centreX[node] = x;
+		centreY[node] = y;
+		first[node] = start;
+
+		float m = 0;
+		float mx = 0;
+		float my = 0;
+		if ((end - start <= LEAF_SIZE) || (depth == BITS)) {
+			child[node] = -1;
+			count[node] = end - start;
+			for (int i=start;i<end;i++) {
+				m += sourceMass[i];
+				mx += sourceX[i] * sourceMass[i];
+				my += sourceY[i] * sourceMass[i];
+			}
+		} else {
+			// the entities are in code order, so those in each quarter of
+			// the node follow on from each other. Only the quarters with
+			// something in them get a child.
+			int shift = ((BITS - 1 - depth) * 2) + 32;
+			int children = 0;
+			for (int i=start;i<end;i++) {
+				if ((i == start) || (quarter(i, shift) != quarter(i - 1, shift))) {
+					children++;
+				}
+			}
+
+			// the arrays may grow as the nodes are added, so they're only
+			// written to once the nodes are in
+			int firstChild = addNodes(children);
+			child[node] = firstChild;
+			count[node] = children;
+			float offset = size * 0.5f;
+			int at = start;
+			for (int c=0;c<children;c++) {
+				int q = quarter(at, shift);
+				int from = at;
+				while ((at < end) && (quarter(at, shift) == q)) {
+					at++;
+				}
+
+				int into = firstChild + c;
+				build(into, from, at, depth + 1,
+						(q & 1) == 0 ? x - offset : x + offset,
+						(q & 2) == 0 ? y - offset : y + offset, offset);
+
+				m += mass[into];
+				mx += massX[into] * mass[into];
+				my += massY[into] * mass[into];
+			}
+		}
+
+		mass[node] = m;
+		massX[node] = m > 0 ? mx / m : x;
+		massY[node] = m > 0 ? my / m : y;
+	}
+
+	/**
+	 * Get the quarter of a node a heavy entity falls in
+	 *
+	 * @param index The index of the heavy entity in the order of the tree
+	 * @param shift The shift that brings the two bits of the node's depth
+	 * down to the bottom of the packed code
+	 * @return The quarter, with the x half in the low bit and the y half
+	 * in the high bit
+	 */
+	private int quarter(int index, int shift) {
+		return (int) (packed[index] >>> shift) & 3;
+	}
+
+	/**
+	 * Add empty nodes to the end of the tree
+	 *
+	 * @param added The number of nodes to add
+	 * @return The index of the first node added
+	 */
+	private int addNodes(int added) {
+		if (nodeCount + added > half.length) {
+			int capacity = Math.max(nodeCount + added, half.length * 2);
+			half = Arrays.copyOf(half, capacity);
+			centreX = Arrays.copyOf(centreX, capacity);
+			centreY = Arrays.copyOf(centreY, capacity);
+			mass = Arrays.copyOf(mass, capacity);
+			massX = Arrays.copyOf(massX, capacity);
+			massY = Arrays.copyOf(massY, capacity);
+			child = Arrays.copyOf(child, capacity);
+			count = Arrays.copyOf(count, capacity);
+			first = Arrays.copyOf(first, capacity);
+		}
+
+		int node = nodeCount;
+		nodeCount += added;
+		return node;
+	}
+
+	/**
+	 * Make room for more heavy entities
+	 *
+	 * @param capacity The number of heavy entities to make room for
+	 */
+	private void growSources(int capacity) {
+		packed = Arrays.copyOf(packed, capacity);
+		sourceX = Arrays.copyOf(sourceX, capacity);
+		sourceY = Arrays.copyOf(sourceY, capacity);
+		sourceMass = Arrays.copyOf(sourceMass, capacity);
+		foundX = Arrays.copyOf(foundX, capacity);
+		foundY = Arrays.copyOf(foundY, capacity);
+		foundMass = Arrays.copyOf(foundMass, capacity);
+	}
+
+	/**
+	 * The task that pulls a single chunk of entities
+	 */
+	private class Chunk extends ChunkedWork.ChunkTask {
+		/** The version of the serialised form, which is never used */
+		private static final long serialVersionUID = 1L;
+
+		/** The nodes waiting to be looked at in the walk down the tree */
+		private int[] stack = new int[64];
+		/** The x position of each mass pulling on the current group */
+		private float[] pullX = new float[256];
+		/** The y position of each mass pulling on the current group */
+		private float[] pullY = new float[256];
+		/** Each mass pulling on the current group, already multiplied by the strength of gravity */
+		private float[] pullMass = new float[256];
+		/** The number of masses pulling on the current group */
+		private int pulls;
+		/** The x position of each entity in the current group */
+		private float[] groupX = new float[GROUP_SIZE];
+		/** The y position of each entity in the current group */
+		private float[] groupY = new float[GROUP_SIZE];
+		/** The x component of the pull on each entity in the current group */
+		private float[] groupAX = new float[GROUP_SIZE];
+		/** The y component of the pull on each entity in the current group */
+		private float[] groupAY = new float[GROUP_SIZE];
+		/**
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute() {
+			for (int group=start;group<end;group+=GROUP_SIZE) {
+				pullGroup(group, Math.min(end, group + GROUP_SIZE));
+			}
+		}
+
+		/**
+		 * Pull a group of slots, splitting it in half while it's too spread
+		 * out to share a list (i.e. the store has drifted out of order)
+		 *
+		 * @param from The first slot of the group
+		 * @param to The slot after the last of the group
+		 */
+		private void pullGroup(int from, int to) {
+			if (gather(from, to)) {
+				pull(from, to);
+			} else {
+				int middle = (from + to) / 2;
+				pullGroup(from, middle);
+				pullGroup(middle, to);
+			}
+		}
+
+		/**
+		 * Walk the tree for a group of slots, gathering the list of masses
+		 * that pull on them
+		 *
+		 * @param from The first slot of the group
+		 * @param to The slot after the last of the group
+		 * @return True if the list was gathered, false if the group is too
+		 * spread out to be worth it
+		 */
+		private boolean gather(int from, int to) {
+			float minX = Float.MAX_VALUE;
+			float minY = Float.MAX_VALUE;
+			float maxX = -Float.MAX_VALUE;
+			float maxY = -Float.MAX_VALUE;
+			for (int i=from;i<to;i++) {
+				minX = Math.min(minX, store.positionX[i]);
+				minY = Math.min(minY, store.positionY[i]);
+				maxX = Math.max(maxX, store.positionX[i]);
+				maxY = Math.max(maxY, store.positionY[i]);
+			}
+			float spread = half[0] * 2 * GROUP_SPREAD;
+			if ((to - from > 1) && (Math.max(maxX - minX, maxY - minY) > spread)) {
+				return false;
+			}
+			float thetaSquared = theta * theta;
+
+			pulls = 0;
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0) {
+				int node = stack[--top];
+
+				// a node is far enough away if every entity under it is,
+				// so it's measured between the nearest points of the
+				// node's box and the group's box
+				float size = half[node];
+				float dx = Math.max(0, Math.max(minX - (centreX[node] + size), (centreX[node] - size) - maxX));
+				float dy = Math.max(0, Math.max(minY - (centreY[node] + size), (centreY[node] - size) - maxY));
+				float width = size * 2;
+				if (width * width < thetaSquared * ((dx * dx) + (dy * dy))) {
+					add(massX[node], massY[node], mass[node]);
+				} else if (child[node] == -1) {
+					for (int i=first[node];i<first[node]+count[node];i++) {
+						add(sourceX[i], sourceY[i], sourceMass[i]);
+					}
+				} else {
+					if (top + count[node] > stack.length) {
+						stack = Arrays.copyOf(stack, stack.length * 2);
+					}
+					for (int i=count[node]-1;i>=0;i--) {
+						stack[top++] = child[node] + i;
+					}
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * Add a mass to the list pulling on the current group
+		 *
+		 * @param x The x position of the mass
+		 * @param y The y position of the mass
+		 * @param m The mass
+		 */
+		private void add(float x, float y, float m) {
+			if (pulls == pullX.length) {
+				pullX = Arrays.copyOf(pullX, pulls * 2);
+				pullY = Arrays.copyOf(pullY, pulls * 2);
+				pullMass = Arrays.copyOf(pullMass, pulls * 2);
+			}
+
+			pullX[pulls] = x;
+			pullY[pulls] = y;
+			pullMass[pulls] = m * STRENGTH;
+			pulls++;
+		}
+
+		/**
+		 * Pull each entity of a group by every mass on the list. The masses
+		 * are taken one at a time across the whole group, which leaves the
+		 * inner loop free of any dependence from one step to the next so
+		 * it can be run on the processor's vector units.
+		 *
+		 * @param from The first slot of the group
+		 * @param to The slot after the last of the group
+		 */
+		private void pull(int from, int to) {
+			float softening = SOFTENING * SOFTENING;
+			int size = to - from;
+			for (int j=0;j<size;j++) {
+				groupX[j] = store.positionX[from + j];
+				groupY[j] = store.positionY[from + j];
+				groupAX[j] = 0;
+				groupAY[j] = 0;
+			}
+
+			for (int i=0;i<pulls;i++) {
+				float x = pullX[i];
+				float y = pullY[i];
+				float m = pullMass[i];
+				for (int j=0;j<size;j++) {
+					float dx = x - groupX[j];
+					float dy = y - groupY[j];
+					float softened = (dx * dx) + (dy * dy) + softening;
+					float pull = m / (softened * (float) Math.sqrt(softened));
+					groupAX[j] += dx * pull;
+					groupAY[j] += dy * pull;
+				}
+			}
+
+			for (int j=0;j<size;j++) {
+				if (store.type[from + j] != EntityType.BLACK_HOLE) {
+					store.velocityX[from + j] += groupAX[j] * seconds;
+					store.velocityY[from + j] += groupAY[j] * seconds;
+				}
+			}
+		}
+	}
+}
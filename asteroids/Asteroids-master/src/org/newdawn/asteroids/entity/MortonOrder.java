@@ -0,0 +1,254 @@
+package org.newdawn.asteroids.entity;
+
+import java.util.Arrays;
+
+/**
+ * Every so often puts the entities in the game back in an order where
+ * entities near each other in the play area sit near each other in the
+ * entity list and the entity store. Entities are added in the order they
+ * spawn, which after a while has nothing to do with where they are, so
+ * the collision pass reading the positions of neighbouring entities
+ * otherwise jumps all over the store's arrays.
+ *
+ * The order is that of the Z-order (Morton) code of each position, which
+ * interleaves the bits of the x and y coordinates so that entities in the
+ * same small square of the play area have close codes.
+ *
+ * The list is not nearly in order by the time of the next sort. In a big
+ * game most entities have passed another in the order within a few ticks,
+ * and an entity crossing one of the big squares of the code can move a
+ * long way in the order for a small move in the play area. So each sort
+ * starts from scratch, with a radix sort over the bits of the code, which
+ * takes the same few passes over the entities however out of order they
+ * are. The radix sort is stable, so entities with the same code keep the
+ * order they were in.
+ *
+ * Only the positions in the store and the references in the list are
+ * moved, the entity objects themselves stay wherever they were created.
+ * Reordering the list changes the order entities are updated and collide
+ * in, but only ever based on where they are, so the game still plays out
+ * the same every time. Small games aren't sorted at all, as their
+ * entities all fit in the cache whatever order they're in.
+ *
+ * @author Drew Murphy
+ */
+public class MortonOrder {
+	/** The number of ticks between sorts */
+	public static final int INTERVAL = 8;
+	/** The fewest entities that are worth sorting */
+	public static final int THRESHOLD = 2048;
+	/** The number of bits of each coordinate that make up the code */
+	private static final int BITS = 15;
+	/** The number of bits of the code sorted on in each pass of the radix sort */
+	private static final int RADIX_BITS = 10;
+	/** The scale from distance across the play area to steps of the code, the same on both axes so the squares of the code are square */
+	private static final float SCALE = ((1 << BITS) - 1) / (float) Math.max(AbstractEntity.PLAY_AREA_WIDTH, AbstractEntity.PLAY_AREA_HEIGHT);
+
+	/** The code of each entity in the upper half with its current index in the lower */
+	private long[] packed = new long[256];
+	/** The packed codes as they're moved by each pass of the radix sort */
+	private long[] sorted = new long[256];
+	/** The number of codes with each value of the digit sorted on, then where the first of them goes */
+	private int[] counts = new int[1 << RADIX_BITS];
+	/** The current index of the entity to be moved into each place */
+	private int[] order = new int[256];
+	/** The number of ticks until the next sort */
+	private int countdown = INTERVAL;
+
+	/** The number of sorts run */
+	private long sorts;
+	/** The number of entities that changed place in the list over all sorts */
+	private long moved;
+
+	/**
+	 * Notification that a tick has passed. Every INTERVAL ticks the game
+	 * is sorted, if it has enough entities to be worth it.
+	 *
+	 * @param list The entities in the game
+	 * @param store The store holding the state of the entities
+	 */
+	public void tick(EntityList list, EntityStore store) {
+		if (--countdown > 0) {
+			return;
+		}
+
+		countdown = INTERVAL;
+		if (list.size() >= THRESHOLD) {
+			sort(list, store);
+		}
+	}
+
+	/**
+	 * Sort the entities in a list into Z-order of their positions, and the
+	 * entities in a store into the same order
+	 *
+	 * @param list The list to sort
+	 * @param store The store to sort, which is left alone unless all the
+	 * entities in it are in the list
+	 * @return The number of entities that changed place in the list
+	 */
+	public int sort(EntityList list, EntityStore store) {
+		int count = list.size();
+		if (count == 0) {
+			return 0;
+		}
+		sorts++;
+
+		int changed = 0;
+		reserve(count);
+		for (int i=0;i<count;i++) {
+			Entity entity = list.get(i);
+			packed[i] = pack(encode(entity.getX(), entity.getY()), i);
+		}
+		if (sortPacked(count)) {
+			changed += list.reorder(order);
+		}
+
+		// the store follows the list, so walking the list walks the store
+		int stored = 0;
+		for (int i=0;i<count;i++) {
+			Entity entity = list.get(i);
+			if ((entity instanceof AbstractEntity) && (((AbstractEntity) entity).store == store)) {
+				order[stored++] = ((AbstractEntity) entity).slot;
+			}
+		}
+		if (stored == store.size()) {
+			store.reorder(order);
+		}
+
+		moved += changed;
+		return changed;
+	}
+
+	/**
+	 * @return The number of sorts run
+	 */
+	public long getSorts() {
+		return sorts;
+	}
+
+	/**
+	 * @return The number of entities that changed place in the list over
+	 * all sorts
+	 */
+	public long getMoved() {
+		return moved;
+	}
+
+	/**
+	 * Get the Z-order code of a position in the play area
+	 *
+	 * @param x The x coordinate of the position
+	 * @param y The y coordinate of the position
+	 * @return The code of the position
+	 */
+	private static int encode(float x, float y) {
+		return spread(step(x + AbstractEntity.HALF_WIDTH)) | (spread(step(y + AbstractEntity.HALF_HEIGHT)) << 1);
+	}
+
+	/**
+	 * Sort the packed codes into order, noting the current index of the
+	 * entity that belongs in each place
+	 *
+	 * @param count The number of codes to sort
+	 * @return True if any entity needs to change place
+	 */
+	private boolean sortPacked(int count) {
+		// the codes are in the upper half, the indices below them are
+		// already in order so needn't be sorted on
+		long[] from = packed;
+		long[] to = sorted;
+		for (int shift=32;shift<32+(BITS*2);shift+=RADIX_BITS) {
+			Arrays.fill(counts, 0);
+			for (int i=0;i<count;i++) {
+				counts[digit(from[i], shift)]++;
+			}
+			int total = 0;
+			for (int d=0;d<counts.length;d++) {
+				int found = counts[d];
+				counts[d] = total;
+				total += found;
+			}
+			for (int i=0;i<count;i++) {
+				long value = from[i];
+				to[counts[digit(value, shift)]++] = value;
+			}
+
+			long[] swap = from;
+			from = to;
+			to = swap;
+		}
+		packed = from;
+		sorted = to;
+
+		boolean changed = false;
+		for (int i=0;i<count;i++) {
+			order[i] = (int) packed[i];
+			changed |= order[i] != i;
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Get the digit of a packed code sorted on by one pass of the radix sort
+	 *
+	 * @param value The packed code
+	 * @param shift The position of the lowest bit of the digit
+	 * @return The digit
+	 */
+	private static int digit(long value, int shift) {
+		return (int) (value >>> shift) & ((1 << RADIX_BITS) - 1);
+	}
+
+	/**
+	 * Make sure there's space to sort a given number of entities
+	 *
+	 * @param count The number of entities to sort
+	 */
+	private void reserve(int count) {
+		if (packed.length < count) {
+			packed = new long[count];
+			sorted = new long[count];
+			order = new int[count];
+		}
+	}
+
+	/**
+	 * Turn a distance from the edge of the play area into a step of the code
+	 *
+	 * @param distance The distance from the lowest coordinate
+	 * @return The step, clamped to the range of the code
+	 */
+	private static int step(float distance) {
+		int step = (int) (distance * SCALE);
+		return Math.max(0, Math.min((1 << BITS) - 1, step));
+	}
+
+	/**
+	 * Spread the bits of a step out so there's a gap between each, for
+	 * the bits of the other coordinate to be slotted into
+	 *
+	 * @param step The step to spread
+	 * @return The spread bits
+	 */
+	static int spread(int step) {
+		step = (step | (step << 8)) & 0x00ff00ff;
+		step = (step | (step << 4)) & 0x0f0f0f0f;
+		step = (step | (step << 2)) & 0x33333333;
+		step = (step | (step << 1)) & 0x55555555;
+		return step;
+	}
+
+	/**
+	 * Pack a code together with an index so sorting them keeps entities
+	 * with the same code in the order they were in
+	 *
+	 * @param code The code of the entity
+	 * @param index The current index of the entity
+	 * @return The packed value
+	 */
+	private static long pack(int code, int index) {
+		return (((long) code) << 32) | index;
+	}
+}
@@ -0,0 +1,215 @@
+package org.newdawn.asteroids.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.newdawn.asteroids.util.ChunkedWork;
+
+/**
+ * Updates the entities in the game across several threads.
+ *
+ * Entities that aren't independent (the player and anything tied to it)
+ * are updated first, one at a time, on the calling thread. The independent
+ * entities are then cut into fixed size chunks which are updated in
+ * parallel on a fork/join pool. Each chunk records what it asks of the
+ * entity manager into its own command buffer, and once every chunk is
+ * done the buffers are played back in chunk order.
+ *
+ * Each chunk is also given its own stream of random numbers, split from
+ * the game's in chunk order.
+ *
+ * Since the chunks don't depend on how many threads there are, the game
+ * sees exactly the same sequence of changes and random numbers whether it
+ * runs on one thread or many. With a single thread the chunks are simply
+ * run one after another on the calling thread.
+ *
+ * The number of threads is taken from the "asteroids.threads" system
+ * property, defaulting to the number of processors available. When there
+ * are too few entities to be worth splitting everything is updated
+ * directly on the calling thread.
+ *
+ * @author Drew Murphy
+ */
+public class ParallelUpdate {
+	/** The system property used to choose the number of threads */
+	public static final String THREADS_PROPERTY = "asteroids.threads";
+
+	/** The task mode that updates entities */
+	private static final int UPDATE = 0;
+	/** The task mode that moves entities in the store */
+	private static final int INTEGRATE = 1;
+
+	/** The pool the tasks are run on, null if running on one thread */
+	private ForkJoinPool pool;
+	/** The manager that changes are finally made to */
+	private EntityManager manager;
+	/** The independent entities gathered for the current update */
+	private ArrayList<Entity> independent = new ArrayList<Entity>();
+	/** The chunks the entities are cut into */
+	private ChunkedWork<Chunk> chunks = new ChunkedWork<Chunk>() {
+		protected Chunk createChunk() {
+			return new Chunk();
+		}
+	};
+	/** The time passed in the current update in milliseconds */
+	private int delta;
+	/** The store being integrated in the current stage */
+	private EntityStore store;
+
+	/**
+	 * Create a new parallel update using the number of threads given
+	 * by the "asteroids.threads" system property
+	 *
+	 * @param manager The manager that changes are finally made to
+	 * @return The newly created update stage
+	 */
+	public static ParallelUpdate create(EntityManager manager) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		String value = System.getProperty(THREADS_PROPERTY);
+		if (value != null) {
+			try {
+				threads = Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid thread count: "+value);
+			}
+		}
+
+		return new ParallelUpdate(manager, threads);
+	}
+
+	/**
+	 * Create a new parallel update
+	 *
+	 * @param manager The manager that changes are finally made to
+	 * @param threads The number of threads to update on
+	 */
+	public ParallelUpdate(EntityManager manager, int threads) {
+		this.manager = manager;
+
+		if (threads > 1) {
+			pool = new ForkJoinPool(threads);
+		}
+	}
+
+	/**
+	 * @return The number of threads entities are updated on
+	 */
+	public int getThreads() {
+		return pool == null ? 1 : pool.getParallelism();
+	}
+
+	/**
+	 * Get the pool the work is spread across, so other stages of the
+	 * game can share its threads
+	 *
+	 * @return The pool of threads, or null if running on one thread
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Update every entity in a list
+	 *
+	 * @param entities The entities to update
+	 * @param delta The amount of time that has passed in milliseconds
+	 */
+	public void update(List<? extends Entity> entities, int delta) {
+		independent.clear();
+
+		for (int i=0;i<entities.size();i++) {
+			Entity entity = entities.get(i);
+
+			if ((entity instanceof AbstractEntity) && ((AbstractEntity) entity).isIndependent()) {
+				independent.add(entity);
+			} else {
+				entity.update(manager, delta);
+			}
+		}
+
+		if (independent.size() < ChunkedWork.THRESHOLD) {
+			// nothing to gain from splitting, the changes go
+			// straight to the manager
+			for (int i=0;i<independent.size();i++) {
+				independent.get(i).update(manager, delta);
+			}
+		} else {
+			this.delta = delta;
+			run(UPDATE, independent.size());
+
+			for (int i=0;i<chunks.size();i++) {
+				chunks.get(i).buffer.replay();
+			}
+		}
+
+		independent.clear();
+	}
+
+	/**
+	 * Move every entity in a store
+	 *
+	 * @param store The store holding the entities to move
+	 * @param delta The amount of time that has passed in milliseconds
+	 * @see EntityStore#integrate(int)
+	 */
+	public void integrate(EntityStore store, int delta) {
+		if ((pool == null) || (store.size() < ChunkedWork.THRESHOLD)) {
+			store.integrate(delta);
+			return;
+		}
+
+		this.store = store;
+		this.delta = delta;
+		run(INTEGRATE, store.size());
+		this.store = null;
+	}
+
+	/**
+	 * Split a range of work into chunks and run them, on the pool if there
+	 * is one, returning once every chunk is complete
+	 *
+	 * @param mode The type of work to do, UPDATE or INTEGRATE
+	 * @param size The number of entities to process
+	 */
+	private void run(int mode, int size) {
+		int count = chunks.split(size);
+		for (int i=0;i<count;i++) {
+			Chunk chunk = chunks.get(i);
+
+			if (mode == UPDATE) {
+				manager.getRandom().split(chunk.buffer.getRandom());
+			}
+			chunk.mode = mode;
+		}
+
+		chunks.run(pool);
+	}
+
+	/**
+	 * The task that processes a single chunk of entities
+	 */
+	private class Chunk extends ChunkedWork.ChunkTask {
+		/** The version of the serialised form, which is never used */
+		private static final long serialVersionUID = 1L;
+
+		/** The buffer recording the changes made by this chunk */
+		private CommandBuffer buffer = new CommandBuffer(manager);
+		/** The type of work to do, UPDATE or INTEGRATE */
+		private int mode;
+
+		/**
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute() {
+			if (mode == INTEGRATE) {
+				store.integrate(delta, start, end);
+				return;
+			}
+
+			for (int i=start;i<end;i++) {
+				independent.get(i).update(buffer, delta);
+			}
+		}
+	}
+}
@@ -2,11 +2,11 @@ package org.newdawn.asteroids.entity;
 
 import java.util.ArrayList;
 
-import org.lwjgl.input.Keyboard;
-import org.lwjgl.input.Mouse;
 import org.lwjgl.opengl.GL11;
+import org.newdawn.asteroids.input.PlayerInput;
 import org.newdawn.asteroids.model.ObjModel;
 import org.newdawn.asteroids.particles.ParticleGroup;
+import org.newdawn.asteroids.util.Heading;
 import org.newdawn.spaceinvaders.lwjgl.Texture;
 
 /**
@@ -18,18 +18,24 @@ import org.newdawn.spaceinvaders.lwjgl.Texture;
  */
 public class Player extends AbstractEntity {
 	private ArrayList<Texture> textureList;
+	/** The source of the commands controlling the ship */
+	private PlayerInput input;
 	/** The texture to be applied to the model*/
 	private Texture texture;
 	/** The model to be rendered */
 	private ObjModel model;
 	
-	/** The x component of the forward vector */
-	private float forwardX = 0;
-	/** The y component of the forward vector */
-	private float forwardY = 1;
+	/** The direction the ship is facing */
+	private Heading forward = new Heading(0, 1);
+	/** The direction of the left hand shot of a spread */
+	private Heading spreadLeft = new Heading();
+	/** The direction of the right hand shot of a spread */
+	private Heading spreadRight = new Heading();
+	/** The direction of the rear shot of a spread */
+	private Heading spreadBack = new Heading();
 	
-	/** The time remaining until the next shot can be taken */
-	private int shotTimeout;
+	/** The timer that must run out before the next shot can be taken */
+	private int shotCooldown = TimingWheel.NONE;
 	/** The time between shots */
 	private int shotInterval = 300;
 	
@@ -45,11 +51,14 @@ public class Player extends AbstractEntity {
 	
 	private boolean mouseMode = true;
 	private final int MOUSE_TOGGLE_INTERVAL = 300;
-	private int mouseToggle = MOUSE_TOGGLE_INTERVAL;
+	private int mouseCooldown = TimingWheel.NONE;
 	
 	private boolean testMode = false;
 	private final int TEST_TOGGLE_INTERVAL = 500;
-	private int testToggle = TEST_TOGGLE_INTERVAL;
+	private int testCooldown = TimingWheel.NONE;
+	
+	/** The timers the player's cooldowns are counted on, null while it's not in the game */
+	private TimingWheel timers;
 	
 	/**
 	 * Create a new Player entity
@@ -58,8 +67,11 @@ public class Player extends AbstractEntity {
 	 * @param model The model to display for the player
 	 * @param shotTexture The texture to apply to the shot's created when
 	 * the player fires
+	 * @param input The source of the commands controlling the ship, which
+	 * must be updated before the ship each tick
 	 */
-	public Player(ArrayList<Texture> textureList, ObjModel model, Texture shotTexture) {
+	public Player(ArrayList<Texture> textureList, ObjModel model, Texture shotTexture, PlayerInput input) {
+		this.input = input;
 		this.textureList = textureList;
 		this.texture = textureList.get(0);
 		this.model = model;
@@ -73,83 +85,56 @@ public class Player extends AbstractEntity {
 	 * @see org.newdawn.asteroids.entity.Entity#update(org.newdawn.asteroids.entity.EntityManager, int)
 	 */
 	public void update(EntityManager manager, int delta) {
-		if (Mouse.hasWheel()) {
-			int dwheel = Mouse.getDWheel();
-			if (dwheel != 0) {
-				wheelWeaponMode(dwheel, manager);
-			}
-		
+		// the input has already been moved on by the game's input phase
+		int scroll = input.getWeaponScroll();
+		if (scroll != 0) {
+			wheelWeaponMode(scroll, manager);
 		}
 		
-		if (mouseMode) calculateRotation();
+		if (mouseMode && input.hasAim()) calculateRotation();
 		
-		if (Keyboard.isKeyDown(Keyboard.KEY_LEFT) || Keyboard.isKeyDown(Keyboard.KEY_A)) {
-			rotationZ += (delta / 5.0f);
+		if (input.isTurningLeft()) {
+			setRotation(getRotation() + (delta / 5.0f));
 		}
-		if (Keyboard.isKeyDown(Keyboard.KEY_RIGHT) || Keyboard.isKeyDown(Keyboard.KEY_D)) {
-			rotationZ -= (delta / 5.0f);
-		}
-		
-		if (Keyboard.isKeyDown(Keyboard.KEY_1)) {
-			changeGuns(0, manager);
+		if (input.isTurningRight()) {
+			setRotation(getRotation() - (delta / 5.0f));
 		}
 		
-		if (Keyboard.isKeyDown(Keyboard.KEY_2)) {
-			changeGuns(1, manager);
+		int weapon = input.getWeaponSelected();
+		if (weapon != -1) {
+			changeGuns(weapon, manager);
 		}
 		
-		if (Keyboard.isKeyDown(Keyboard.KEY_3)) {
-			changeGuns(2, manager);
-		}
-		
-		if (Keyboard.isKeyDown(Keyboard.KEY_4)) {
-			changeGuns(3, manager);
-		}
-		
-		if (Keyboard.isKeyDown(Keyboard.KEY_5)) {
-			changeGuns(4, manager);
-		}
-		
-		if (Keyboard.isKeyDown(Keyboard.KEY_6)) {
-			changeGuns(5, manager);
-		}
-		
-		if (Keyboard.isKeyDown(Keyboard.KEY_DOWN) || Keyboard.isKeyDown(Keyboard.KEY_S) || Mouse.isButtonDown(2)) {
+		if (input.isBraking()) {
 			setVelocity(getVx()/1.003f, getVy()/1.003f);
 		}
 		
-		if (Keyboard.isKeyDown(Keyboard.KEY_TAB)) {
+		if (input.isAimToggled()) {
 			mouseToggle();
 		}
 		
-		if (Keyboard.isKeyDown(Keyboard.KEY_LCONTROL) && Keyboard.isKeyDown(Keyboard.KEY_LSHIFT)
-				&& Keyboard.isKeyDown(Keyboard.KEY_T)) {
+		if (input.isTestModeToggled()) {
 			toggleTestMode();
 		}
 		
-		shotTimeout -= delta;
-		mouseToggle -= delta;
-		testToggle -= delta;
-		
-		if (shotTimeout <= 0) {
-			if (Keyboard.isKeyDown(Keyboard.KEY_SPACE) || Mouse.isButtonDown(0)) {
+		if (!timers.isPending(shotCooldown)) {
+			if (input.isFiring()) {
 				shoot(firingMode, manager);
-				shotTimeout = shotInterval;
+				shotCooldown = timers.schedule(shotInterval, null, 0);
 			}
 		}
 		
-		if (Keyboard.isKeyDown(Keyboard.KEY_UP) || Keyboard.isKeyDown(Keyboard.KEY_W) || Mouse.isButtonDown(1)) {
-			velocityX += (forwardX * delta) / 50.0f;
-			velocityY += (forwardY * delta) / 50.0f;
+		if (input.isThrusting()) {
+			setVelocity(getVx() + (forward.getX() * delta) / 50.0f,
+					getVy() + (forward.getY() * delta) / 50.0f);
 			
 			float flameOffset = 2.5f;
-			engine.addParticle(positionX-(forwardX*flameOffset), 
-					   positionY-(forwardY*flameOffset), 
+			engine.addParticle(getX()-(forward.getX()*flameOffset), 
+					   getY()-(forward.getY()*flameOffset), 
 					   0.6f, 150);
 		}
 		
-		forwardX = (float) Math.sin(Math.toRadians(rotationZ));
-		forwardY = (float) -Math.cos(Math.toRadians(rotationZ));
+		forward.setRotation(getRotation());
 		
 		super.update(manager, delta);
 		engine.update(delta);
@@ -160,11 +145,11 @@ public class Player extends AbstractEntity {
 	 * @param manager The EntityManager corresponding to the player (i.e. InGameState)
 	 */
 	private void normal(EntityManager manager) {
-		Shot shot = new Shot(shotTexture, 
-							 getX() + forwardX, 
-							 getY() + forwardY, 
-							 forwardX * 30, 
-							 forwardY * 30,
+		Shot shot = manager.getPools().obtainShot(shotTexture, 
+							 getX() + forward.getX(), 
+							 getY() + forward.getY(), 
+							 forward.getX() * 30, 
+							 forward.getY() * 30,
 							 800, 0.65f, 1, 0, 1, true, 200, false);
 		
 		manager.addEntity(shot);
@@ -182,34 +167,28 @@ public class Player extends AbstractEntity {
 			return;
 		}
 		
-		float newRotationR = rotationZ - 15;
-		float newRotationL = rotationZ + 15;
-		
-		float forwardXL = (float) Math.sin(Math.toRadians(newRotationL));
-		float forwardYL = (float) -Math.cos(Math.toRadians(newRotationL));
+		spreadLeft.rotate(forward, Heading.COS_15, Heading.SIN_15);
+		spreadRight.rotate(forward, Heading.COS_15, -Heading.SIN_15);
 		
-		float forwardXR = (float) Math.sin(Math.toRadians(newRotationR));
-		float forwardYR = (float) -Math.cos(Math.toRadians(newRotationR));
-		
-		Shot leftshot = new Shot(shotTexture, 
-							 getX() + forwardX, 
-							 getY() + forwardY, 
-							 forwardXL * 75, 
-							 forwardYL * 75,
+		Shot leftshot = manager.getPools().obtainShot(shotTexture, 
+							 getX() + forward.getX(), 
+							 getY() + forward.getY(), 
+							 spreadLeft.getX() * 75, 
+							 spreadLeft.getY() * 75,
 							 200, 0.9f, 0, 1, 0, true, 200, false);
 		
-		Shot rightshot = new Shot(shotTexture, 
-				 getX() + forwardX, 
-				 getY() + forwardY, 
-				 forwardXR * 75, 
-				 forwardYR * 75,
+		Shot rightshot = manager.getPools().obtainShot(shotTexture, 
+				 getX() + forward.getX(), 
+				 getY() + forward.getY(), 
+				 spreadRight.getX() * 75, 
+				 spreadRight.getY() * 75,
 				 200, 0.9f, 0, 1, 0, true, 200, false);
 		
-		Shot centershot = new Shot(shotTexture, 
-				 getX() + forwardX, 
-				 getY() + forwardY, 
-				 forwardX * 75, 
-				 forwardY * 75,
+		Shot centershot = manager.getPools().obtainShot(shotTexture, 
+				 getX() + forward.getX(), 
+				 getY() + forward.getY(), 
+				 forward.getX() * 75, 
+				 forward.getY() * 75,
 				 200, 0.9f, 0, 1, 0, true, 200, false);
 
 		
@@ -250,11 +229,11 @@ public class Player extends AbstractEntity {
 			manager.outOfAmmo();
 			return;
 		}
-		Shot laser = new Shot(shotTexture, 
-							 getX() + forwardX, 
-							 getY() + forwardY, 
-							 forwardX * 300, 
-							 forwardY * 300,
+		Shot laser = manager.getPools().obtainShot(shotTexture, 
+							 getX() + forward.getX(), 
+							 getY() + forward.getY(), 
+							 forward.getX() * 300, 
+							 forward.getY() * 300,
 							 150, 3f, 1, 0, 0, false, 350, false);
 		
 		manager.addEntity(laser);
@@ -273,45 +252,36 @@ public class Player extends AbstractEntity {
 			return;
 		}
 		
-		float newRotationR = rotationZ - 90;
-		float newRotationL = rotationZ + 90;
-		float newRotationD = rotationZ + 180;
-		
-		float leftX = (float) Math.sin(Math.toRadians(newRotationL));
-		float leftY = (float) -Math.cos(Math.toRadians(newRotationL));
-		
-		float rightX = (float) Math.sin(Math.toRadians(newRotationR));
-		float rightY = (float) -Math.cos(Math.toRadians(newRotationR));
+		spreadLeft.rotate(forward, Heading.COS_90, Heading.SIN_90);
+		spreadRight.rotate(forward, Heading.COS_90, -Heading.SIN_90);
+		spreadBack.rotate(forward, Heading.COS_180, Heading.SIN_180);
 		
-		float downX = (float) Math.sin(Math.toRadians(newRotationD));
-		float downY = (float) -Math.cos(Math.toRadians(newRotationD));
-		
-		Shot leftshot = new Shot(shotTexture, 
-				 getX() + forwardX, 
-				 getY() + forwardY, 
-				 leftX * 100, 
-				 leftY * 100,
+		Shot leftshot = manager.getPools().obtainShot(shotTexture, 
+				 getX() + forward.getX(), 
+				 getY() + forward.getY(), 
+				 spreadLeft.getX() * 100, 
+				 spreadLeft.getY() * 100,
 				 150, 1.5f, 0, 1, 0, true, 200, false);
 		
-		Shot rightshot = new Shot(shotTexture, 
-				 getX() + forwardX, 
-				 getY() + forwardY, 
-				 rightX * 100, 
-				 rightY * 100,
+		Shot rightshot = manager.getPools().obtainShot(shotTexture, 
+				 getX() + forward.getX(), 
+				 getY() + forward.getY(), 
+				 spreadRight.getX() * 100, 
+				 spreadRight.getY() * 100,
 				 150, 1.5f, 0, 0, 1, true, 200, false);
 		
-		Shot upshot = new Shot(shotTexture, 
-				 getX() + forwardX, 
-				 getY() + forwardY, 
-				 forwardX * 100, 
-				 forwardY * 100,
+		Shot upshot = manager.getPools().obtainShot(shotTexture, 
+				 getX() + forward.getX(), 
+				 getY() + forward.getY(), 
+				 forward.getX() * 100, 
+				 forward.getY() * 100,
 				 150, 1.5f, 1, 0, 0, true, 200, false);
 		
-		Shot downshot = new Shot(shotTexture, 
-				 getX() + forwardX, 
-				 getY() + forwardY, 
-				 downX * 100, 
-				 downY * 100,
+		Shot downshot = manager.getPools().obtainShot(shotTexture, 
+				 getX() + forward.getX(), 
+				 getY() + forward.getY(), 
+				 spreadBack.getX() * 100, 
+				 spreadBack.getY() * 100,
 				 150, 1.5f, 1, 1, 0.82f, true, 200, false);
 
 		
@@ -333,11 +303,11 @@ public class Player extends AbstractEntity {
 			manager.outOfAmmo();
 			return;
 		}
-		Shot shrapnel = new Shot(shotTexture, 
-							 getX() + forwardX, 
-							 getY() + forwardY, 
-							 forwardX * 100, 
-							 forwardY * 100,
+		Shot shrapnel = manager.getPools().obtainShot(shotTexture, 
+							 getX() + forward.getX(), 
+							 getY() + forward.getY(), 
+							 forward.getX() * 100, 
+							 forward.getY() * 100,
 							 400, 1.5f, 0, 0, 1, true, 250, true);
 		
 		manager.addEntity(shrapnel);
@@ -381,8 +351,8 @@ public class Player extends AbstractEntity {
 		
 		GL11.glPushMatrix();
 
-		GL11.glTranslatef(positionX,positionY,0);
-		GL11.glRotatef(rotationZ,0,0,1);
+		GL11.glTranslatef(getRenderX(),getRenderY(),0);
+		GL11.glRotatef(getRenderRotation(),0,0,1);
 		GL11.glRotatef(90,1,0,0);
 		GL11.glScalef(0.01f,0.01f,0.01f);		
 		texture.bind();
@@ -409,6 +379,41 @@ public class Player extends AbstractEntity {
 		GL11.glDisable(GL11.GL_BLEND);
 	}
 	
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#getType()
+	 */
+	public int getType() {
+		return EntityType.PLAYER;
+	}
+
+	/**
+	 * The toggles start off cooling down, so a key held as the game starts
+	 * doesn't flip them straight away
+	 * 
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#added(org.newdawn.asteroids.entity.EntityManager)
+	 */
+	public void added(EntityManager manager) {
+		timers = manager.getTimers();
+		mouseCooldown = timers.schedule(MOUSE_TOGGLE_INTERVAL, null, 0);
+		testCooldown = timers.schedule(TEST_TOGGLE_INTERVAL, null, 0);
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#removed(org.newdawn.asteroids.entity.EntityManager)
+	 */
+	public void removed(EntityManager manager) {
+		timers.cancel(shotCooldown);
+		timers.cancel(mouseCooldown);
+		timers.cancel(testCooldown);
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#getParticleCount()
+	 */
+	public int getParticleCount() {
+		return engine.getCapacity();
+	}
+	
 	/**
 	 * @see org.newdawn.asteroids.Entity#getSize()
 	 */
@@ -424,7 +429,9 @@ public class Player extends AbstractEntity {
 	public void changeGuns(int mode, EntityManager manager) {
 		manager.setAmmoType(mode);
 		firingMode = mode;
-		shotTimeout = 0;
+		if (timers != null) {
+			timers.cancel(shotCooldown);
+		}
 		this.setTexture(textureList.get(mode));
 		switch (mode) {
 		case 0:
@@ -452,11 +459,9 @@ public class Player extends AbstractEntity {
 	 * @see org.newdawn.asteroids.entity.Entity#collide(org.newdawn.asteroids.entity.EntityManager, org.newdawn.asteroids.entity.Entity)
 	 */
 	public void collide(EntityManager manager, Entity other) {
-		if (other instanceof Rock) {
-			velocityX = (getX() - other.getX());
-			velocityY = (getY() - other.getY());
+		if ((other instanceof Rock) && ((Rock) other).split(manager, this)) {
+			setVelocity(getX() - other.getX(), getY() - other.getY());
 			
-			((Rock) other).split(manager, this);
 			if (!shieldImmune && !testMode) manager.playerHit();
 		}
 		
@@ -469,19 +474,14 @@ public class Player extends AbstractEntity {
 	 * @return The x component of the current velocity
 	 */
 	public float getVx() {
-		return velocityX;
+		return getVelocityX();
 	}
 	
 	/**
 	 * @return The y component of the current velocity
 	 */
 	public float getVy() {
-		return velocityY;
-	}
-	
-	public void setVelocity(float vx, float vy) {
-		velocityX = vx;
-		velocityY = vy;
+		return getVelocityY();
 	}
 	
 	/**
@@ -494,42 +494,40 @@ public class Player extends AbstractEntity {
 	
 	public void setTexture(Texture texture){
 		this.texture = texture;
-		this.render();
 	}
 	
 	/**
-	 * Calculates the rotation of the ship based on the current position of the mouse.
+	 * Calculates the rotation of the ship based on the point the input is aiming at,
+	 * i.e. the current position of the mouse.
 	 */
 	public void calculateRotation() {
 		float x = this.getX();
 		float y = this.getY();
 		
-		float mouseX = ((float)Mouse.getX() - 400) / (400.0f/26.0f);
-		float mouseY = ((float)Mouse.getY() - 300) / (400.0f/23.0f);
-		
-		float b = mouseX - x;
-		float a = mouseY - y;
-		
-		rotationZ = (float)Math.toDegrees(Math.atan2(a, b)) + 90;
+		float b = input.getAimX() - x;
+		float a = input.getAimY() - y;
 		
-		forwardX = (float) Math.sin(Math.toRadians(rotationZ));
-		forwardY = (float) -Math.cos(Math.toRadians(rotationZ));
+		// the direction to the aim point is the direction to face, the 
+		// angle is only needed for turning and drawing the ship
+		forward.setDirection(b, a);
+		setRotation(forward.getRotation());
 	}
 	
 	private void mouseToggle() {
-		if (mouseToggle <= 0) {
+		if (!timers.isPending(mouseCooldown)) {
 			if (mouseMode) mouseMode = false;
 			else mouseMode = true;
-			mouseToggle = MOUSE_TOGGLE_INTERVAL;
+			mouseCooldown = timers.schedule(MOUSE_TOGGLE_INTERVAL, null, 0);
 		}
 	}
 	
 	private void toggleTestMode() {
-		if (testToggle <= 0) {
+		if (!timers.isPending(testCooldown)) {
 			if (testMode) testMode = false;
 			else testMode = true;
 		}
-		testToggle = TEST_TOGGLE_INTERVAL;
+		timers.cancel(testCooldown);
+		testCooldown = timers.schedule(TEST_TOGGLE_INTERVAL, null, 0);
 	}
 	
 	private void wheelWeaponMode(int delta, EntityManager manager) {
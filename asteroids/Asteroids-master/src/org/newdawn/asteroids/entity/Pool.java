@@ -0,0 +1,93 @@
+package org.newdawn.asteroids.entity;
+
+import java.util.ArrayList;
+
+/**
+ * A pool of entities of a single type that have left the game and can be
+ * brought back in rather than creating new ones. Entities taken from the
+ * pool still hold whatever state they had when they were freed, so they
+ * must be set up again before use.
+ *
+ * The pool counts how often it could hand back a freed entity (a hit) and
+ * how often it had to create a new one (a miss), so once the game has
+ * settled the misses should stop going up.
+ *
+ * Pools aren't thread safe. They should only be used while the game is
+ * being changed from a single thread, i.e. during collisions or while the
+ * player is being updated.
+ *
+ * @author Drew Murphy
+ * @param <T> The type of entity held in the pool
+ */
+public abstract class Pool<T extends AbstractEntity> {
+	/** The entities waiting to be reused */
+	private ArrayList<T> free = new ArrayList<T>();
+	/** The number of times a freed entity was handed back */
+	private int hits;
+	/** The number of times a new entity had to be created */
+	private int misses;
+
+	/**
+	 * Create a brand new entity when the pool is empty
+	 *
+	 * @return The newly created entity
+	 */
+	protected abstract T create();
+
+	/**
+	 * Get an entity from the pool, creating a new one if there are none
+	 * waiting to be reused
+	 *
+	 * @return An entity that needs setting up before it's used
+	 */
+	public T obtain() {
+		int size = free.size();
+		if (size == 0) {
+			misses++;
+			return create();
+		}
+
+		hits++;
+		T entity = free.remove(size - 1);
+		entity.pooled = false;
+		return entity;
+	}
+
+	/**
+	 * Give an entity back to the pool. The entity must no longer be in the
+	 * game. Freeing an entity that's already in the pool has no effect, so
+	 * an entity that was removed from the game twice in one go is only
+	 * handed out again once.
+	 *
+	 * @param entity The entity to give back
+	 */
+	public void free(T entity) {
+		if (entity.pooled) {
+			return;
+		}
+
+		entity.pooled = true;
+		free.add(entity);
+	}
+
+	/**
+	 * @return The number of times a freed entity was handed back
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return The number of times a new entity had to be created
+	 */
+	public int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return The number of entities waiting to be reused
+	 */
+	public int getFree() {
+		return free.size();
+	}
+}
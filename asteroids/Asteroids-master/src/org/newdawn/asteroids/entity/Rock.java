@@ -1,9 +1,8 @@
 package org.newdawn.asteroids.entity;
 
-import java.util.Random;
-
 import org.lwjgl.opengl.GL11;
 import org.newdawn.asteroids.model.ObjModel;
+import org.newdawn.asteroids.util.GameRandom;
 import org.newdawn.spaceinvaders.lwjgl.Texture;
 
 /**
@@ -18,25 +17,25 @@ public class Rock extends AbstractEntity {
 	private Texture texture;
 	private ObjModel model;
 	private int size;
-	private float rotateSpeed = (float) (Math.random() * 0.5f) + 1;
 	private final float AMMO_SPAWN_CHANCE = 0.10f;
 	
 	/**
 	 * Create a rock at a specifed location with a random velocity. This
 	 * should be used when spawning rocks at the begining of the game.
 	 * 
+	 * @param random The source of the random velocity and spin
 	 * @param texture The texture to apply to the rock
 	 * @param model The model to be rendered for the rock
 	 * @param x The initial x position of the rock
 	 * @param y The initial y position of the rock 
 	 * @param size The size of the rock (3 - big rock, 2 - medium , 1 - small)
 	 */
-	public Rock(Texture texture, ObjModel model, float x, float y, int size) {
+	public Rock(GameRandom random, Texture texture, ObjModel model, float x, float y, int size) {
 		// we're simply going to call the other constructor with some
 		// random values for the velocity
-		this(texture, model, x, y, size, 
-				(float) (-4 + (Math.random() * 8)), 
-				(float) (-4 + (Math.random() * 8)));
+		this(random, texture, model, x, y, size, 
+				random.nextFloat(-4, 4), 
+				random.nextFloat(-4, 4));
 	}
 	
 	/**
@@ -44,6 +43,7 @@ public class Rock extends AbstractEntity {
 	 * should be used when rocks as an effect of splitting another
 	 * rock.
 	 * 
+	 * @param random The source of the random spin
 	 * @param texture The texture to apply to the rock model
 	 * @param model The model to be rendered for this rock
 	 * @param x The initial x position of this rock
@@ -52,24 +52,61 @@ public class Rock extends AbstractEntity {
 	 * @param vx The x component of the initial velocity
 	 * @param vy The y component of the initial velocity
 	 */
-	public Rock(Texture texture, ObjModel model, float x, float y, int size, float vx, float vy) {
+	public Rock(GameRandom random, Texture texture, ObjModel model, float x, float y, int size, float vx, float vy) {
+		init(random, texture, model, x, y, size, vx, vy);
+	}
+	
+	/**
+	 * Create a rock that's yet to be set up, for filling a pool
+	 */
+	Rock() {
+	}
+	
+	/**
+	 * Set up this rock as if it had just been created, so it can be reused
+	 * 
+	 * @see #Rock(GameRandom, Texture, ObjModel, float, float, int, float, float)
+	 */
+	void init(GameRandom random, Texture texture, ObjModel model, float x, float y, int size, float vx, float vy) {
+		reset();
 		this.texture = texture;
 		this.model = model;
 		
-		velocityX = vx;
-		velocityY = vy;
-		positionX = x;
-		positionY = y;
+		setVelocity(vx, vy);
+		setPosition(x, y);
+		setSpin((random.nextFloat(0, 0.5f) + 1) / 10.0f);
 
 		this.size = size;
 	}
 
 	/**
-	 * @see org.newdawn.asteroids.entity.Entity#update(org.newdawn.asteroids.entity.EntityManager, int)
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#getType()
+	 */
+	public int getType() {
+		return EntityType.ROCK;
+	}
+
+	/**
+	 * A rock takes in another of the same size by carrying on with the
+	 * average of their velocities
+	 * 
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#absorb(org.newdawn.asteroids.entity.AbstractEntity)
 	 */
-	public void update(EntityManager manager, int delta) {
-		super.update(manager, delta);
-		rotationZ += (delta / 10.0f) * rotateSpeed;
+	public boolean absorb(AbstractEntity other) {
+		if (!(other instanceof Rock) || (((Rock) other).size != size)) {
+			return false;
+		}
+		
+		setVelocity((getVelocityX() + other.getVelocityX()) * 0.5f, 
+					(getVelocityY() + other.getVelocityY()) * 0.5f);
+		return true;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#isIndependent()
+	 */
+	public boolean isIndependent() {
+		return true;
 	}
 
 	/**
@@ -80,8 +117,8 @@ public class Rock extends AbstractEntity {
 		
 		GL11.glPushMatrix();
 
-		GL11.glTranslatef(positionX,positionY,0);
-		GL11.glRotatef(rotationZ,0,0,1);
+		GL11.glTranslatef(getRenderX(),getRenderY(),0);
+		GL11.glRotatef(getRenderRotation(),0,0,1);
 		GL11.glScalef(size, size, size);
 		
 		texture.bind();
@@ -97,6 +134,16 @@ public class Rock extends AbstractEntity {
 		return size * 0.5f;
 	}
 
+	/**
+	 * Only the big rocks are heavy enough to pull anything, with a mass
+	 * taken from their size as it is when they bounce
+	 * 
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#getGravity()
+	 */
+	public float getGravity() {
+		return size == 3 ? getSize() * getSize() : 0;
+	}
+
 	/**
 	 * Cause this rock to split apart into two smaller rocks
 	 * or to disappear if its too small to spliy
@@ -105,8 +152,14 @@ public class Rock extends AbstractEntity {
 	 * of entities in the game
 	 * @param reason The entity which was the reason for this split to
 	 * occur (either the player's ship or a shot hitting the rock)
+	 * @return True if the rock split, false if it had already been split
+	 * by something else this tick
 	 */
-	void split(EntityManager manager, Entity reason) {
+	boolean split(EntityManager manager, Entity reason) {
+		if (!manager.consume(this)) {
+			return false;
+		}
+		
 		manager.removeEntity(this);
 		manager.rockDestroyed(size);
 		
@@ -119,9 +172,9 @@ public class Rock extends AbstractEntity {
 			
 			float speed = 2;
 			
-			Rock rock1 = new Rock(texture, model, 
+			Rock rock1 = manager.getPools().obtainRock(manager.getRandom(), texture, model, 
 					getX() + dy, getY() - dx, size - 1, dy * speed, -dx * speed);
-			Rock rock2 = new Rock(texture, model,
+			Rock rock2 = manager.getPools().obtainRock(manager.getRandom(), texture, model,
 					getX() - dy, getY() + dx, size - 1, -dy * speed, dx * speed);
 			
 			manager.addEntity(rock1);
@@ -129,22 +182,31 @@ public class Rock extends AbstractEntity {
 				
 		}
 		else {
-			Random r = new Random();
-			float f = r.nextFloat();
+			float f = manager.getRandom().nextFloat();
 			if (f < AMMO_SPAWN_CHANCE && manager.readyToSpawn()) manager.spawnAmmo(getX(), getY());
 		}
+		
+		return true;
 	}
 	
 	/**
 	 * @see org.newdawn.asteroids.entity.Entity#collide(org.newdawn.asteroids.entity.EntityManager, org.newdawn.asteroids.entity.Entity)
 	 */
 	public void collide(EntityManager manager, Entity other) {
-		// if anything collides with a rock its direction must change 
-		// (to prevent rocks intersecting with each other). For effect
-		// we'll also change the direction of rotation
-		velocityX = (getX() - other.getX());
-		velocityY = (getY() - other.getY());
+		// if anything other than another rock (which is bounced off by 
+		// the contact solver) collides with a rock its direction must 
+		// change. For effect we'll also change the direction of rotation
+		setVelocity(getX() - other.getX(), getY() - other.getY());
 		
-		rotateSpeed = -rotateSpeed;
+		setSpin(-getSpin());
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#contactStay(org.newdawn.asteroids.entity.EntityManager, org.newdawn.asteroids.entity.Entity)
+	 */
+	public void contactStay(EntityManager manager, Entity other) {
+		// keep pushing away from whatever we're still inside, but the
+		// spin only changes when we first hit it
+		setVelocity(getX() - other.getX(), getY() - other.getY());
 	}
 }
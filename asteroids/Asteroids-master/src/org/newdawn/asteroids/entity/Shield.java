@@ -9,17 +9,21 @@ import org.newdawn.spaceinvaders.lwjgl.Texture;
  * than the Shot class, it was necessary to implement a separate object for the shield.
  * @author Drew Murphy
  */
-public class Shield extends AbstractEntity implements Entity {
+public class Shield extends AbstractEntity implements Entity, TimerListener {
 	/** The texture to be applied to the shield */
 	private Texture texture;
 	/** The size of the shield */
 	private float size = 4f;
 	/** The duration of the shield */
 	private int life = 0;
+	/** The timer that brings the shield down */
+	private int expiry = TimingWheel.NONE;
+	/** The timers the shield's duration is counted on, null while it's not in the game */
+	private TimingWheel timers;
 	/** The particle group making up the shield */
 	private ParticleGroup particles;
-	/** The Player object that the shield surrounds */
-	private Player player;
+	/** The handle of the player that the shield surrounds */
+	private int player = EntityTable.NONE;
 	
 	/**
 	 * Create a new shot at a specified location and with a specified
@@ -32,10 +36,9 @@ public class Shield extends AbstractEntity implements Entity {
 		    float size, float r, float g, float b) {
 		
 		player.setImmunity(true);
-		positionX = x;
-		positionY = y;
+		setPosition(x, y);
 		this.texture = texture;
-		this.player = player;
+		this.player = player.getHandle();
 		
 		setVelocity(player.getVx(), player.getVy());
 		
@@ -51,17 +54,55 @@ public class Shield extends AbstractEntity implements Entity {
 	public void update(EntityManager manager, int delta) {
 		super.update(manager, delta);
 		
-		life -= delta;
-		manager.setShieldDuration(String.format("%.2f", ((float)life/(float)1000)));
-		if (life < 0) {
-			player.setImmunity(false);
+		Player owner = (Player) manager.getEntity(player);
+		if (owner == null) {
+			// the player has left the game, the shield goes with it
+			if (manager.consume(this)) {
+				manager.removeEntity(this);
+				manager.setShieldDuration("");
+			}
+			return;
+		}
+		
+		if (timers.isPending(expiry)) {
+			manager.setShieldDuration(String.format("%.2f", (getDuration()/(float)1000)));
+			setVelocity(owner.getVx(), owner.getVy());
+			particles.addParticle(getX(), getY(), size, 200);
+			particles.update(delta);
+		}
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#added(org.newdawn.asteroids.entity.EntityManager)
+	 */
+	public void added(EntityManager manager) {
+		timers = manager.getTimers();
+		expiry = timers.schedule(life, this, 0);
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#removed(org.newdawn.asteroids.entity.EntityManager)
+	 */
+	public void removed(EntityManager manager) {
+		timers.cancel(expiry);
+		expiry = TimingWheel.NONE;
+	}
+	
+	/**
+	 * The shield has run out
+	 * 
+	 * @see org.newdawn.asteroids.entity.TimerListener#timerExpired(org.newdawn.asteroids.entity.EntityManager, int)
+	 */
+	public void timerExpired(EntityManager manager, int id) {
+		expiry = TimingWheel.NONE;
+		if (manager.consume(this)) {
+			Player owner = (Player) manager.getEntity(player);
+			if (owner != null) {
+				owner.setImmunity(false);
+			}
 			manager.removeEntity(this);
 			manager.setShieldDuration("");
 			manager.shieldDown();
-		} else {
-			setVelocity(player.getVx(), player.getVy());
-			particles.addParticle(getX(), getY(), size, 200);
-			particles.update(delta);
 		}
 	}
 	
@@ -79,6 +120,20 @@ public class Shield extends AbstractEntity implements Entity {
 		GL11.glDisable(GL11.GL_BLEND);
 	}
 
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#getType()
+	 */
+	public int getType() {
+		return EntityType.SHIELD;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#getParticleCount()
+	 */
+	public int getParticleCount() {
+		return particles.getCapacity();
+	}
+
 	/**
 	 * @see org.newdawn.asteroids.entity.Entity#getSize()
 	 */
@@ -94,27 +149,20 @@ public class Shield extends AbstractEntity implements Entity {
 		// if the shot hits a rock then we've scored! The rock
 		// needs to split apart and then this shot has been used up 
 		// so remove it.
-		if (other instanceof Rock) {
-			((Rock) other).split(manager, this);
-			life = life - 1000;
+		if ((other instanceof Rock) && ((Rock) other).split(manager, this)) {
+			timers.reschedule(expiry, timers.getRemaining(expiry) - 1000);
 		}
 	}
 	
-	/**
-	 * Sets the shield velocity, so that it stays around the ship
-	 * @param vx The x component of the velocity
-	 * @param vy The y component of the velocity
-	 */
-	public void setVelocity(float vx, float vy) {
-		velocityX = vx;
-		velocityY = vy;
-	}
-	
 	/**
 	 * @return Returns the remaining duration of the shield
 	 */
 	public float getDuration() {
-		return life;
+		if (timers == null) {
+			return life;
+		}
+		
+		return timers.getRemaining(expiry);
 	}
 
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package org.newdawn.asteroids.entity;
 
 import org.lwjgl.opengl.GL11;
 import org.newdawn.asteroids.particles.ParticleGroup;
+import org.newdawn.asteroids.util.Heading;
 import org.newdawn.spaceinvaders.lwjgl.Texture;
 
 /**
@@ -9,13 +10,17 @@ import org.newdawn.spaceinvaders.lwjgl.Texture;
  * 
  * @author Drew Murphy, Kevin Glass
  */
-public class Shot extends AbstractEntity implements Entity {
+public class Shot extends AbstractEntity implements Entity, TimerListener {
 	/** The Texture to be applied to the Shot */
 	private Texture texture;
 	/** The size of the shot */
 	private float size = 0.0f;
 	/** The amount of time the shot exists (in ms) */
 	private int life = 0;
+	/** The timer that ends the shot's life */
+	private int expiry = TimingWheel.NONE;
+	/** The timers the shot's life is counted on, null while it's not in the game */
+	private TimingWheel timers;
 	/** The amount of time each particle exists before it fades */
 	/** The particle group making up the shot */
 	private ParticleGroup particles;
@@ -41,22 +46,43 @@ public class Shot extends AbstractEntity implements Entity {
 	 * @param b The blue value
 	 * @param destroyable Determines if the shot is destroyed upon collision
 	 * @param particleLife The length of time each particle is active
+	 * @param split Determines if the shot branches when it hits a rock
 	 */
 	public Shot(Texture texture, float x, float y, float vx, float vy, int life,
 			    float size, float r, float g, float b,
 			    boolean destroyable, int particleLife, boolean split) {
-		positionX = x;
-		positionY = y;
-		velocityX = vx;
-		velocityY = vy;
+		this();
+		init(texture, x, y, vx, vy, life, size, r, g, b, destroyable, particleLife, split);
+	}
+	
+	/**
+	 * Create a shot that's yet to be set up, for filling a pool
+	 */
+	Shot() {
+		particles = new ParticleGroup(100,0,0,0,0);
+	}
+	
+	/**
+	 * Set up this shot as if it had just been created, so it can be reused
+	 * 
+	 * @see #Shot(Texture, float, float, float, float, int, float, float, float, float, boolean, int, boolean)
+	 */
+	void init(Texture texture, float x, float y, float vx, float vy, int life,
+			  float size, float r, float g, float b,
+			  boolean destroyable, int particleLife, boolean split) {
+		reset();
+		setPosition(x, y);
+		setVelocity(vx, vy);
 		this.texture = texture;
 		
 		this.life = life;
+		this.expiry = TimingWheel.NONE;
+		this.timers = null;
 		this.size = size;
 		this.destroyable = destroyable;
 		this.split = split;
 	
-		particles = new ParticleGroup(100,particleLife,r,g,b);
+		particles.reset(particleLife,r,g,b);
 	}
 	
 	/**
@@ -64,15 +90,50 @@ public class Shot extends AbstractEntity implements Entity {
 	 */
 	public void update(EntityManager manager, int delta) {
 		super.update(manager, delta);
-		life -= delta;
-		if (life < 0) {
+		particles.addParticle(getX(), getY(), size, 200);
+		particles.update(delta);
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#added(org.newdawn.asteroids.entity.EntityManager)
+	 */
+	public void added(EntityManager manager) {
+		timers = manager.getTimers();
+		expiry = timers.schedule(life, this, 0);
+	}
+	
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#removed(org.newdawn.asteroids.entity.EntityManager)
+	 */
+	public void removed(EntityManager manager) {
+		timers.cancel(expiry);
+		expiry = TimingWheel.NONE;
+		timers = null;
+	}
+	
+	/**
+	 * The shot has reached the end of its life
+	 * 
+	 * @see org.newdawn.asteroids.entity.TimerListener#timerExpired(org.newdawn.asteroids.entity.EntityManager, int)
+	 */
+	public void timerExpired(EntityManager manager, int id) {
+		expiry = TimingWheel.NONE;
+		if (manager.consume(this)) {
 			manager.removeEntity(this);
-		} else {
-			particles.addParticle(getX(), getY(), size, 200);
-			particles.update(delta);
 		}
 	}
 	
+	/**
+	 * @return The time the shot has left to live in milliseconds
+	 */
+	private int getLife() {
+		if (timers == null) {
+			return life;
+		}
+		
+		return timers.getRemaining(expiry);
+	}
+	
 	/**
 	 * @see org.newdawn.asteroids.entity.Entity#render()
 	 */
@@ -88,6 +149,62 @@ public class Shot extends AbstractEntity implements Entity {
 		GL11.glDisable(GL11.GL_BLEND);
 	}
 
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#getType()
+	 */
+	public int getType() {
+		return EntityType.SHOT;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#getParticleCount()
+	 */
+	public int getParticleCount() {
+		return particles.getCapacity();
+	}
+
+	/**
+	 * A shot takes in another by carrying on as far and as big as the
+	 * larger of the two
+	 * 
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#absorb(org.newdawn.asteroids.entity.AbstractEntity)
+	 */
+	public boolean absorb(AbstractEntity other) {
+		if (!(other instanceof Shot)) {
+			return false;
+		}
+		
+		Shot shot = (Shot) other;
+		life = Math.max(getLife(), shot.getLife());
+		if (timers != null) {
+			timers.reschedule(expiry, life);
+		}
+		size = Math.max(size, shot.size);
+		destroyable &= shot.destroyable;
+		return true;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#isIndependent()
+	 */
+	public boolean isIndependent() {
+		return true;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#isSwept()
+	 */
+	public boolean isSwept() {
+		return true;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.entity.AbstractEntity#isStoppedOnImpact()
+	 */
+	public boolean isStoppedOnImpact() {
+		return destroyable;
+	}
+
 	/**
 	 * @see org.newdawn.asteroids.entity.Entity#getSize()
 	 */
@@ -99,9 +216,18 @@ public class Shot extends AbstractEntity implements Entity {
 	 * @see org.newdawn.asteroids.entity.Entity#collide(org.newdawn.asteroids.entity.EntityManager, org.newdawn.asteroids.entity.Entity)
 	 */
 	public void collide(EntityManager manager, Entity other) {
-		if (other instanceof Rock) {
+		if (!(other instanceof Rock)) {
+			return;
+		}
+		// a shot that's used up on hitting a rock only gets to hit one
+		// each tick, however many it's touching
+		if (destroyable && !manager.consume(this)) {
+			return;
+		}
+		// a rock something else has already split this tick isn't
+		// there to hit any more
+		if (((Rock) other).split(manager, this)) {
 			manager.successfulShot();
-			((Rock) other).split(manager, this);
 			if (split && size > 0.5f) this.split(manager);
 			if (destroyable) manager.removeEntity(this);
 		}
@@ -109,30 +235,37 @@ public class Shot extends AbstractEntity implements Entity {
 	
 	public void split(EntityManager manager) {
 		
-		float rotation = (float)Math.toDegrees(Math.atan2(this.velocityY,this.velocityX)) + 90;
+		// the branches fan out 15 degrees either side of the direction
+		// the shot was travelling in
+		float dx = 1;
+		float dy = 0;
+		float speed = (float) Math.sqrt((getVelocityX() * getVelocityX()) + (getVelocityY() * getVelocityY()));
+		if (speed > 0) {
+			dx = getVelocityX() / speed;
+			dy = getVelocityY() / speed;
+		}
 		
-		float rotationL = rotation - 15;
-		float rotationR = rotation + 15;
+		float vxl = Heading.rotateX(dx, dy, Heading.COS_15, -Heading.SIN_15);
+		float vyl = Heading.rotateY(dx, dy, Heading.COS_15, -Heading.SIN_15);
 		
-		float vxl = (float) Math.sin(Math.toRadians(rotationL));
-		float vyl = (float) -Math.cos(Math.toRadians(rotationL));
+		float vxr = Heading.rotateX(dx, dy, Heading.COS_15, Heading.SIN_15);
+		float vyr = Heading.rotateY(dx, dy, Heading.COS_15, Heading.SIN_15);
 		
-		float vxr = (float) Math.sin(Math.toRadians(rotationR));
-		float vyr = (float) -Math.cos(Math.toRadians(rotationR));
+		int remaining = getLife();
 		
-		Shot s1= new Shot(texture, 
+		Shot s1= manager.getPools().obtainShot(texture, 
 				 getX(), 
 				 getY(), 
 				 vxl * 100, 
 				 vyl * 100,
-				 life, (size/1.5f),  0, 0, 1, true, 350, true);
+				 remaining, (size/1.5f),  0, 0, 1, true, 350, true);
 		
-		Shot s2= new Shot(texture, 
+		Shot s2= manager.getPools().obtainShot(texture, 
 				 getX(), 
 				 getY(), 
 				 vxr * 100, 
 				 vyr * 100,
-				 life, (size/1.5f),  0, 0, 1, true, 350, true);
+				 remaining, (size/1.5f),  0, 0, 1, true, 350, true);
 		
 		manager.addEntity(s1);
 		manager.addEntity(s2);
@@ -0,0 +1,466 @@
+package org.newdawn.asteroids.entity;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Answers questions about where entities are in the play area (what's
+ * within range of an explosion, which rock is closest to a homing shot,
+ * what lies along the bot's line of fire) without looking at every entity
+ * in the game.
+ *
+ * The entities are sorted into a uniform grid laid over the play area by
+ * the cell their centre is in, with the cells stored one after another so
+ * a query only reads the cells around the area it's interested in. The
+ * play area wraps round at the edges, and so do the queries, i.e. a rock
+ * just off the left edge is close to something just off the right edge.
+ *
+ * The index is a snapshot of the entities at the time it was built. It's
+ * only read by the queries, so once built any number of threads can query
+ * it at once (i.e. while the entities are being updated in parallel).
+ * The queries create nothing, they fill in arrays given by the caller.
+ *
+ * @author Drew Murphy
+ */
+public class SpatialIndex {
+	/** The number of columns of cells across the play area */
+	private int columns;
+	/** The number of rows of cells down the play area */
+	private int rows;
+	/** The width of a single cell */
+	private float cellWidth;
+	/** The height of a single cell */
+	private float cellHeight;
+
+	/** The index of the first entity in each cell, with an extra entry marking the end of the last */
+	private int[] cellStart;
+	/** The next free position in each cell while building */
+	private int[] cellFill;
+
+	/** The entities, grouped by cell */
+	private Entity[] entity = new Entity[64];
+	/** The x position of each entity */
+	private float[] x = new float[64];
+	/** The y position of each entity */
+	private float[] y = new float[64];
+	/** The collision radius of each entity */
+	private float[] size = new float[64];
+	/** The type of each entity */
+	private int[] type = new int[64];
+	/** The cell each entity in the source list is in, used while building */
+	private int[] cellOf = new int[64];
+	/** The number of entities in the index */
+	private int count;
+	/** The largest collision radius of any entity in the index */
+	private float maxSize;
+
+	/**
+	 * Create a new, empty index over the play area
+	 *
+	 * @param cellSize The approximate size of each cell. This is adjusted
+	 * so a whole number of cells fit across and down the play area.
+	 */
+	public SpatialIndex(float cellSize) {
+		columns = Math.max(1, (int) (AbstractEntity.PLAY_AREA_WIDTH / cellSize));
+		rows = Math.max(1, (int) (AbstractEntity.PLAY_AREA_HEIGHT / cellSize));
+		cellWidth = AbstractEntity.PLAY_AREA_WIDTH / (float) columns;
+		cellHeight = AbstractEntity.PLAY_AREA_HEIGHT / (float) rows;
+
+		cellStart = new int[(columns * rows) + 1];
+		cellFill = new int[columns * rows];
+	}
+
+	/**
+	 * Rebuild the index from the current positions of a list of entities.
+	 * Entities in the same cell are kept in the order of the list, so
+	 * the queries give the same answers every time.
+	 *
+	 * @param entities The entities to index
+	 */
+	public void build(List<? extends Entity> entities) {
+		count = entities.size();
+		if (entity.length < count) {
+			int length = Math.max(count, entity.length * 2);
+			entity = new Entity[length];
+			x = new float[length];
+			y = new float[length];
+			size = new float[length];
+			type = new int[length];
+			cellOf = new int[length];
+		}
+
+		// count the entities in each cell, then work out where each
+		// cell starts and drop the entities into place
+		Arrays.fill(cellStart, 0);
+		for (int i=0;i<count;i++) {
+			Entity current = entities.get(i);
+			int cell = (wrap(row(current.getY()), rows) * columns) + wrap(column(current.getX()), columns);
+			cellOf[i] = cell;
+			cellStart[cell + 1]++;
+		}
+		for (int c=0;c<cellFill.length;c++) {
+			cellStart[c + 1] += cellStart[c];
+			cellFill[c] = cellStart[c];
+		}
+
+		maxSize = 0;
+		for (int i=0;i<count;i++) {
+			Entity current = entities.get(i);
+			int index = cellFill[cellOf[i]]++;
+
+			entity[index] = current;
+			x[index] = current.getX();
+			y[index] = current.getY();
+			size[index] = current.getSize();
+			type[index] = EntityType.of(current);
+			maxSize = Math.max(maxSize, size[index]);
+		}
+		for (int i=count;(i<entity.length) && (entity[i] != null);i++) {
+			entity[i] = null;
+		}
+	}
+
+	/**
+	 * Find the entities touching a circle (i.e. caught in an explosion)
+	 *
+	 * @param qx The x coordinate of the centre of the circle
+	 * @param qy The y coordinate of the centre of the circle
+	 * @param radius The radius of the circle
+	 * @param layers The collision layers of the entities to find
+	 * @param results The array to fill with the entities found
+	 * @return The number of entities placed in the results, at most its length
+	 * @see EntityType#getLayer(int)
+	 */
+	public int queryRadius(float qx, float qy, float radius, int layers, Entity[] results) {
+		float reach = radius + maxSize;
+		int found = 0;
+
+		int c0 = column(qx - reach);
+		int c1 = column(qx + reach);
+		int r0 = row(qy - reach);
+		int r1 = row(qy + reach);
+
+		if (c1 - c0 >= columns) {
+			c0 = 0;
+			c1 = columns - 1;
+		}
+		if (r1 - r0 >= rows) {
+			r0 = 0;
+			r1 = rows - 1;
+		}
+
+		for (int r=r0;r<=r1;r++) {
+			int rowStart = wrap(r, rows) * columns;
+			for (int c=c0;c<=c1;c++) {
+				int cell = rowStart + wrap(c, columns);
+				for (int i=cellStart[cell];i<cellStart[cell + 1];i++) {
+					if ((EntityType.getLayer(type[i]) & layers) == 0) {
+						continue;
+					}
+
+					float dx = wrapX(x[i] - qx);
+					float dy = wrapY(y[i] - qy);
+					float range = radius + size[i];
+					if ((dx * dx) + (dy * dy) <= range * range) {
+						if (found == results.length) {
+							return found;
+						}
+						results[found++] = entity[i];
+					}
+				}
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Find the entity of a given type whose centre is closest to a point
+	 * (i.e. the rock a homing shot should turn towards). The cells are
+	 * searched in rings working out from the point, stopping as soon as
+	 * nothing further out could be closer.
+	 *
+	 * @param qx The x coordinate of the point
+	 * @param qy The y coordinate of the point
+	 * @param entityType The type of entity to find
+	 * @param ignore An entity to leave out (i.e. the one asking), or null
+	 * @return The closest entity, or null if there's none of the type
+	 * @see EntityType
+	 */
+	public Entity queryNearest(float qx, float qy, int entityType, Entity ignore) {
+		int column = column(qx);
+		int row = row(qy);
+		float cellMin = Math.min(cellWidth, cellHeight);
+		int rings = (Math.max(columns, rows) / 2) + 1;
+
+		Entity best = null;
+		float bestDistance = Float.MAX_VALUE;
+
+		for (int k=0;k<=rings;k++) {
+			for (int dr=-k;dr<=k;dr++) {
+				int rowStart = wrap(row + dr, rows) * columns;
+				// the rows in between the top and bottom of the ring only
+				// have the cells at either end in the ring
+				int step = ((dr == -k) || (dr == k)) ? 1 : Math.max(1, 2 * k);
+
+				for (int dc=-k;dc<=k;dc+=step) {
+					int cell = rowStart + wrap(column + dc, columns);
+					for (int i=cellStart[cell];i<cellStart[cell + 1];i++) {
+						if ((type[i] != entityType) || (entity[i] == ignore)) {
+							continue;
+						}
+
+						float dx = wrapX(x[i] - qx);
+						float dy = wrapY(y[i] - qy);
+						float distance = (dx * dx) + (dy * dy);
+						if (distance < bestDistance) {
+							bestDistance = distance;
+							best = entity[i];
+						}
+					}
+				}
+			}
+
+			// everything in the next ring out is at least this far away
+			float reach = k * cellMin;
+			if ((best != null) && (bestDistance <= reach * reach)) {
+				break;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Find the entities a ray passes through (i.e. what's in the line of
+	 * fire), closest first. The ray wraps round the play area as it
+	 * crosses the edges. The cells are walked along the ray from its
+	 * origin, stopping once the results are full and no cell further on
+	 * could hold a closer hit.
+	 *
+	 * @param ox The x coordinate the ray starts from
+	 * @param oy The y coordinate the ray starts from
+	 * @param dirX The x component of the direction of the ray
+	 * @param dirY The y component of the direction of the ray
+	 * @param distance The length of the ray
+	 * @param layers The collision layers of the entities to find
+	 * @param hits The array to fill with the entities hit, closest first
+	 * @param distances The array to fill with the distance along the ray
+	 * of each hit, at least as long as the hits array
+	 * @return The number of entities placed in the hits, at most its length
+	 * @see EntityType#getLayer(int)
+	 */
+	public int raycast(float ox, float oy, float dirX, float dirY, float distance, int layers, Entity[] hits, float[] distances) {
+		float length = (float) Math.sqrt((dirX * dirX) + (dirY * dirY));
+		if ((length == 0) || (hits.length == 0)) {
+			return 0;
+		}
+		dirX /= length;
+		dirY /= length;
+
+		// an entity can hang over into the cells around the one its
+		// centre is in, so each step looks at a block of cells
+		int spanX = Math.min((int) Math.ceil(maxSize / cellWidth), (columns - 1) / 2);
+		int spanY = Math.min((int) Math.ceil(maxSize / cellHeight), (rows - 1) / 2);
+
+		// walk the cells the ray passes through, a cell at a time
+		float u = (ox + AbstractEntity.HALF_WIDTH) / cellWidth;
+		float v = (oy + AbstractEntity.HALF_HEIGHT) / cellHeight;
+		int column = (int) Math.floor(u);
+		int row = (int) Math.floor(v);
+		int stepX = dirX > 0 ? 1 : -1;
+		int stepY = dirY > 0 ? 1 : -1;
+		float deltaX = dirX != 0 ? Math.abs(cellWidth / dirX) : Float.MAX_VALUE;
+		float deltaY = dirY != 0 ? Math.abs(cellHeight / dirY) : Float.MAX_VALUE;
+		float nextX = dirX != 0 ? ((dirX > 0 ? (column + 1) - u : u - column) * deltaX) : Float.MAX_VALUE;
+		float nextY = dirY != 0 ? ((dirY > 0 ? (row + 1) - v : v - row) * deltaY) : Float.MAX_VALUE;
+
+		int found = 0;
+		float enter = 0;
+		while (enter <= distance) {
+			// a hit is always found by the time the walk reaches the cell
+			// it happens in, so once the results are full and nothing
+			// further on can beat them we're done
+			if ((found == hits.length) && (distances[found - 1] <= enter)) {
+				break;
+			}
+
+			for (int r=row-spanY;r<=row+spanY;r++) {
+				int rowStart = wrap(r, rows) * columns;
+				for (int c=column-spanX;c<=column+spanX;c++) {
+					int cell = rowStart + wrap(c, columns);
+					for (int i=cellStart[cell];i<cellStart[cell + 1];i++) {
+						if ((EntityType.getLayer(type[i]) & layers) != 0) {
+							found = addHit(i, hit(i, ox, oy, dirX, dirY, distance), hits, distances, found);
+						}
+					}
+				}
+			}
+
+			if (nextX < nextY) {
+				enter = nextX;
+				nextX += deltaX;
+				column += stepX;
+			} else {
+				enter = nextY;
+				nextY += deltaY;
+				row += stepY;
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Get the distance along a ray at which it first hits an entity,
+	 * taking into account every copy of the entity the wrapped play area
+	 * puts in the ray's way
+	 *
+	 * @param i The index of the entity
+	 * @param ox The x coordinate the ray starts from
+	 * @param oy The y coordinate the ray starts from
+	 * @param dirX The x component of the unit direction of the ray
+	 * @param dirY The y component of the unit direction of the ray
+	 * @param distance The length of the ray
+	 * @return The distance to the hit, or -1 if the ray misses
+	 */
+	private float hit(int i, float ox, float oy, float dirX, float dirY, float distance) {
+		float radius = size[i];
+		float baseX = wrapX(x[i] - ox);
+		float baseY = wrapY(y[i] - oy);
+		float width = AbstractEntity.PLAY_AREA_WIDTH;
+		float height = AbstractEntity.PLAY_AREA_HEIGHT;
+
+		float endX = dirX * distance;
+		float endY = dirY * distance;
+		int k0 = (int) Math.ceil((Math.min(0, endX) - radius - baseX) / width);
+		int k1 = (int) Math.floor((Math.max(0, endX) + radius - baseX) / width);
+		int l0 = (int) Math.ceil((Math.min(0, endY) - radius - baseY) / height);
+		int l1 = (int) Math.floor((Math.max(0, endY) + radius - baseY) / height);
+
+		float best = -1;
+		for (int k=k0;k<=k1;k++) {
+			float px = baseX + (k * width);
+			for (int l=l0;l<=l1;l++) {
+				float py = baseY + (l * height);
+
+				float along = (px * dirX) + (py * dirY);
+				float outside = (px * px) + (py * py) - (radius * radius);
+				float t;
+				if (outside <= 0) {
+					t = 0;
+				} else {
+					float disc = (along * along) - outside;
+					if ((along < 0) || (disc < 0)) {
+						continue;
+					}
+					t = along - (float) Math.sqrt(disc);
+				}
+
+				if ((t <= distance) && ((best < 0) || (t < best))) {
+					best = t;
+				}
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Add a hit to the results, keeping them sorted closest first and
+	 * dropping the furthest if they're full. An entity already in the
+	 * results (seen again from a neighbouring cell) isn't added twice.
+	 *
+	 * @param i The index of the entity hit
+	 * @param t The distance along the ray of the hit, negative for a miss
+	 * @param hits The entities hit so far
+	 * @param distances The distances of the hits so far
+	 * @param found The number of hits so far
+	 * @return The new number of hits
+	 */
+	private int addHit(int i, float t, Entity[] hits, float[] distances, int found) {
+		if (t < 0) {
+			return found;
+		}
+		if ((found == hits.length) && (t >= distances[found - 1])) {
+			return found;
+		}
+		for (int k=0;k<found;k++) {
+			if (hits[k] == entity[i]) {
+				return found;
+			}
+		}
+
+		int position = found < hits.length ? found++ : found - 1;
+		while ((position > 0) && (distances[position - 1] > t)) {
+			hits[position] = hits[position - 1];
+			distances[position] = distances[position - 1];
+			position--;
+		}
+		hits[position] = entity[i];
+		distances[position] = t;
+
+		return found;
+	}
+
+	/**
+	 * @return The number of entities in the index
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Get the shortest way across the play area in x, going round the
+	 * edge if that's shorter
+	 *
+	 * @param dx The difference in x between two points
+	 * @return The wrapped difference, between -HALF_WIDTH and HALF_WIDTH
+	 */
+	public static float wrapX(float dx) {
+		return dx - (AbstractEntity.PLAY_AREA_WIDTH * (float) Math.floor((dx / AbstractEntity.PLAY_AREA_WIDTH) + 0.5f));
+	}
+
+	/**
+	 * Get the shortest way across the play area in y, going round the
+	 * edge if that's shorter
+	 *
+	 * @param dy The difference in y between two points
+	 * @return The wrapped difference, between -HALF_HEIGHT and HALF_HEIGHT
+	 */
+	public static float wrapY(float dy) {
+		return dy - (AbstractEntity.PLAY_AREA_HEIGHT * (float) Math.floor((dy / AbstractEntity.PLAY_AREA_HEIGHT) + 0.5f));
+	}
+
+	/**
+	 * Get the unwrapped column a given x coordinate falls in
+	 *
+	 * @param x The x coordinate to locate
+	 * @return The column, which may be off either side of the grid
+	 */
+	private int column(float x) {
+		return (int) Math.floor((x + AbstractEntity.HALF_WIDTH) / cellWidth);
+	}
+
+	/**
+	 * Get the unwrapped row a given y coordinate falls in
+	 *
+	 * @param y The y coordinate to locate
+	 * @return The row, which may be off the top or bottom of the grid
+	 */
+	private int row(float y) {
+		return (int) Math.floor((y + AbstractEntity.HALF_HEIGHT) / cellHeight);
+	}
+
+	/**
+	 * Wrap a row or column back onto the grid
+	 *
+	 * @param value The row or column to wrap
+	 * @param size The number of rows or columns in the grid
+	 * @return The wrapped row or column
+	 */
+	private static int wrap(int value, int size) {
+		value %= size;
+		return value < 0 ? value + size : value;
+	}
+}
@@ -0,0 +1,18 @@
+package org.newdawn.asteroids.entity;
+
+/**
+ * Something that wants to be told when a timer it scheduled on the
+ * game's timing wheel expires (i.e. a shot reaching the end of its life)
+ *
+ * @author Drew Murphy
+ * @see TimingWheel
+ */
+public interface TimerListener {
+	/**
+	 * Notification that a timer has expired
+	 *
+	 * @param manager The manager of the game the timer was scheduled in
+	 * @param id The value given when the timer was scheduled
+	 */
+	public void timerExpired(EntityManager manager, int id);
+}
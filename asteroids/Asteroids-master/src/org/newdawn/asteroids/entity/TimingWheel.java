@@ -0,0 +1,393 @@
+package org.newdawn.asteroids.entity;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the lifetimes and cooldowns in the game (how long a shot
+ * lasts, how soon the player can fire again) so that rather than every
+ * entity counting down its own timers each update, a timer is scheduled
+ * once and the entity is told when it expires. An update only does work
+ * for the timers that actually expire in it.
+ *
+ * The timers are kept in a hierarchical timing wheel. The first level has
+ * a slot for each of the next 64 milliseconds, the next a slot for each of
+ * the next 64 blocks of 64 milliseconds, and so on up through four levels
+ * (a little over four and a half hours). As time reaches each block the
+ * timers in it are moved down into the finer slots of the level below, so
+ * a timer is only ever moved a handful of times before it expires. Timers
+ * further off than the wheel covers wait in the last slot and are moved
+ * down as that comes round.
+ *
+ * Each timer is identified by a handle. Once a timer has expired or been
+ * cancelled its handle is dead, even if the space it used has been reused
+ * by another timer, so holding on to an old handle is harmless. Timers
+ * expiring in the same millisecond expire in the order they were moved
+ * into the first level, which only depends on the order they were
+ * scheduled in, so a game plays out the same every time.
+ *
+ * The timers are held in arrays that only grow, so scheduling doesn't
+ * create anything once the game has been running for a moment. The wheel
+ * isn't thread safe, timers should only be scheduled or cancelled from
+ * the thread running the game.
+ *
+ * @author Drew Murphy
+ */
+public class TimingWheel {
+	/** The handle that never refers to a timer */
+	public static final int NONE = 0;
+
+	/** The number of bits of a handle used for the index of the timer */
+	private static final int INDEX_BITS = 20;
+	/** The mask giving the index of the timer from a handle */
+	private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+	/** The mask applied to the generation of a timer */
+	private static final int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1;
+	/** The number of bits of time covered by each level's slots */
+	private static final int SLOT_BITS = 6;
+	/** The number of slots at each level */
+	private static final int SLOTS = 1 << SLOT_BITS;
+	/** The mask giving the slot from a time */
+	private static final int SLOT_MASK = SLOTS - 1;
+	/** The number of levels */
+	private static final int LEVELS = 4;
+	/** The furthest ahead a timer can be placed directly */
+	private static final long SPAN = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+	/** The manager passed on to timers as they expire */
+	private EntityManager manager;
+	/** The current time in milliseconds */
+	private long now;
+
+	/** The time each timer expires at */
+	private long[] deadline = new long[64];
+	/** The listener told when each timer expires */
+	private TimerListener[] listener = new TimerListener[64];
+	/** The value given to each timer's listener */
+	private int[] id = new int[64];
+	/** The generation of each timer, changed each time it's freed */
+	private int[] generation = new int[64];
+	/** The next timer in the same slot, or the next free timer */
+	private int[] next = new int[64];
+	/** The previous timer in the same slot */
+	private int[] prev = new int[64];
+	/** The slot each timer is in, -1 if free */
+	private int[] slot = new int[64];
+	/** The number of timers ever used */
+	private int used;
+	/** The first free timer, -1 if none */
+	private int free = -1;
+	/** The number of timers scheduled */
+	private int size;
+
+	/** The first timer in each slot, -1 if empty */
+	private int[] head = new int[SLOTS * LEVELS];
+	/** The last timer in each slot, -1 if empty */
+	private int[] tail = new int[SLOTS * LEVELS];
+
+	/**
+	 * Create a new, empty timing wheel
+	 *
+	 * @param manager The manager passed on to timers as they expire
+	 */
+	public TimingWheel(EntityManager manager) {
+		this.manager = manager;
+
+		Arrays.fill(head, -1);
+		Arrays.fill(tail, -1);
+	}
+
+	/**
+	 * Schedule a timer
+	 *
+	 * @param delay The time in milliseconds until the timer expires. A
+	 * timer expires no sooner than the next advance, however short.
+	 * @param target The listener to tell when the timer expires, or null
+	 * if the timer is just to be checked with isPending()
+	 * @param value A value given to the listener so it can tell its timers
+	 * apart
+	 * @return The handle of the timer
+	 */
+	public int schedule(int delay, TimerListener target, int value) {
+		int timer = allocate();
+
+		deadline[timer] = now + Math.max(1, delay);
+		listener[timer] = target;
+		id[timer] = value;
+		insert(timer);
+		size++;
+
+		return handle(timer);
+	}
+
+	/**
+	 * Change when a timer expires, as if it had just been scheduled
+	 *
+	 * @param handle The handle of the timer
+	 * @param delay The time in milliseconds until the timer expires
+	 * @return True if the timer was pending and has been moved, false if
+	 * it had already expired or been cancelled
+	 */
+	public boolean reschedule(int handle, int delay) {
+		int timer = find(handle);
+		if (timer == -1) {
+			return false;
+		}
+
+		unlink(timer);
+		deadline[timer] = now + Math.max(1, delay);
+		insert(timer);
+		return true;
+	}
+
+	/**
+	 * Cancel a timer so it never expires
+	 *
+	 * @param handle The handle of the timer
+	 * @return True if the timer was pending, false if it had already
+	 * expired or been cancelled
+	 */
+	public boolean cancel(int handle) {
+		int timer = find(handle);
+		if (timer == -1) {
+			return false;
+		}
+
+		unlink(timer);
+		release(timer);
+		return true;
+	}
+
+	/**
+	 * Check if a timer is still waiting to expire
+	 *
+	 * @param handle The handle of the timer
+	 * @return True if the timer hasn't expired or been cancelled
+	 */
+	public boolean isPending(int handle) {
+		return find(handle) != -1;
+	}
+
+	/**
+	 * Get the time left until a timer expires
+	 *
+	 * @param handle The handle of the timer
+	 * @return The time in milliseconds until the timer expires, 0 if it
+	 * isn't pending
+	 */
+	public int getRemaining(int handle) {
+		int timer = find(handle);
+		if (timer == -1) {
+			return 0;
+		}
+
+		return (int) (deadline[timer] - now);
+	}
+
+	/**
+	 * Move time on, expiring every timer that comes due along the way in
+	 * the order they come due
+	 *
+	 * @param delta The time to move on by in milliseconds
+	 */
+	public void advance(int delta) {
+		for (int i=0;i<delta;i++) {
+			now++;
+
+			// move the timers in any blocks that have just been reached
+			// down a level, working from the top so nothing is missed
+			int level = 0;
+			while ((level < LEVELS - 1) && ((now & ((1L << (SLOT_BITS * (level + 1))) - 1)) == 0)) {
+				level++;
+			}
+			for (;level>0;level--) {
+				cascade(level);
+			}
+
+			int current = (int) (now & SLOT_MASK);
+			while (head[current] != -1) {
+				int timer = head[current];
+				TimerListener target = listener[timer];
+				int value = id[timer];
+
+				unlink(timer);
+				release(timer);
+				if (target != null) {
+					target.timerExpired(manager, value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Cancel every timer without expiring them
+	 */
+	public void clear() {
+		for (int i=0;i<head.length;i++) {
+			while (head[i] != -1) {
+				int timer = head[i];
+				unlink(timer);
+				release(timer);
+			}
+		}
+	}
+
+	/**
+	 * @return The time in milliseconds the wheel has been advanced by
+	 */
+	public long getTime() {
+		return now;
+	}
+
+	/**
+	 * @return The number of timers waiting to expire
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Move the timers in the current slot of a level down to the levels
+	 * below
+	 *
+	 * @param level The level to move timers out of
+	 */
+	private void cascade(int level) {
+		int index = (level * SLOTS) + (int) ((now >>> (SLOT_BITS * level)) & SLOT_MASK);
+
+		while (head[index] != -1) {
+			int timer = head[index];
+			unlink(timer);
+			insert(timer);
+		}
+	}
+
+	/**
+	 * Place a timer in the slot its deadline falls in
+	 *
+	 * @param timer The index of the timer
+	 */
+	private void insert(int timer) {
+		long when = deadline[timer];
+		long delay = when - now;
+		if (delay > SPAN) {
+			// too far off for the wheel, wait in the last slot to come
+			// round and be placed again from there
+			when = now + SPAN;
+			delay = SPAN;
+		}
+
+		int level = 0;
+		while ((level < LEVELS - 1) && (delay >= (1L << (SLOT_BITS * (level + 1))))) {
+			level++;
+		}
+
+		int index = (level * SLOTS) + (int) ((when >>> (SLOT_BITS * level)) & SLOT_MASK);
+		slot[timer] = index;
+		next[timer] = -1;
+		prev[timer] = tail[index];
+		if (tail[index] == -1) {
+			head[index] = timer;
+		} else {
+			next[tail[index]] = timer;
+		}
+		tail[index] = timer;
+	}
+
+	/**
+	 * Take a timer out of the slot it's in
+	 *
+	 * @param timer The index of the timer
+	 */
+	private void unlink(int timer) {
+		int index = slot[timer];
+
+		if (prev[timer] == -1) {
+			head[index] = next[timer];
+		} else {
+			next[prev[timer]] = next[timer];
+		}
+		if (next[timer] == -1) {
+			tail[index] = prev[timer];
+		} else {
+			prev[next[timer]] = prev[timer];
+		}
+	}
+
+	/**
+	 * Get a timer that isn't in use, growing the arrays if needed
+	 *
+	 * @return The index of the timer
+	 */
+	private int allocate() {
+		if (free != -1) {
+			int timer = free;
+			free = next[timer];
+			return timer;
+		}
+
+		if (used == deadline.length) {
+			if (used > INDEX_MASK) {
+				throw new IllegalStateException("Too many timers: "+used);
+			}
+
+			int capacity = used * 2;
+			deadline = Arrays.copyOf(deadline, capacity);
+			listener = Arrays.copyOf(listener, capacity);
+			id = Arrays.copyOf(id, capacity);
+			generation = Arrays.copyOf(generation, capacity);
+			next = Arrays.copyOf(next, capacity);
+			prev = Arrays.copyOf(prev, capacity);
+			slot = Arrays.copyOf(slot, capacity);
+		}
+
+		generation[used] = 1;
+		return used++;
+	}
+
+	/**
+	 * Free a timer that has been taken out of its slot, killing its handle
+	 *
+	 * @param timer The index of the timer
+	 */
+	private void release(int timer) {
+		listener[timer] = null;
+		slot[timer] = -1;
+		generation[timer] = (generation[timer] + 1) & GENERATION_MASK;
+		if (generation[timer] == 0) {
+			generation[timer] = 1;
+		}
+
+		next[timer] = free;
+		free = timer;
+		size--;
+	}
+
+	/**
+	 * Get the handle of a timer
+	 *
+	 * @param timer The index of the timer
+	 * @return The handle refering to the timer in its current generation
+	 */
+	private int handle(int timer) {
+		return (generation[timer] << INDEX_BITS) | timer;
+	}
+
+	/**
+	 * Find the timer a handle refers to
+	 *
+	 * @param handle The handle of the timer
+	 * @return The index of the timer, or -1 if the handle is dead
+	 */
+	private int find(int handle) {
+		if (handle == NONE) {
+			return -1;
+		}
+
+		int timer = handle & INDEX_MASK;
+		if ((timer >= used) || (slot[timer] == -1) || (handle(timer) != handle)) {
+			return -1;
+		}
+
+		return timer;
+	}
+}
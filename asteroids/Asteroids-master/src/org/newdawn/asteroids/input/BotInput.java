@@ -0,0 +1,148 @@
+package org.newdawn.asteroids.input;
+
+import org.newdawn.asteroids.util.GameRandom;
+
+/**
+ * A simple bot that flies the player's ship without anyone at the 
+ * controls. It holds the fire button down and every so often picks a 
+ * new direction to turn in, whether to use the engine and which weapon 
+ * to use. Two bots created with the same seed fly exactly the same way.
+ * 
+ * This is used to drive the game when running without a window, i.e.
+ * for benchmarking and soak testing.
+ * 
+ * @author Drew Murphy
+ */
+public class BotInput implements PlayerInput {
+	/** The shortest time the bot sticks with a decision for (in ms) */
+	private static final int MIN_DECISION_TIME = 200;
+	/** The longest time the bot sticks with a decision for (in ms) */
+	private static final int MAX_DECISION_TIME = 1500;
+	/** The chance of the bot changing weapon when it makes a decision */
+	private static final float WEAPON_CHANGE_CHANCE = 0.1f;
+	
+	/** The source of the bot's decisions */
+	private GameRandom random;
+	/** The time until the bot makes its next decision */
+	private int nextDecision;
+	/** The direction being turned, -1 for right, 1 for left, 0 for neither */
+	private int turn;
+	/** True if the bot is using the engine */
+	private boolean thrust;
+	/** True if the bot is slowing down */
+	private boolean brake;
+	/** The weapon the bot has just chosen, or -1 if it hasn't */
+	private int weapon = -1;
+	
+	/**
+	 * Create a new bot
+	 * 
+	 * @param seed The seed for the bot's decisions
+	 */
+	public BotInput(long seed) {
+		random = new GameRandom(seed);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#update(int)
+	 */
+	public void update(int delta) {
+		weapon = -1;
+		nextDecision -= delta;
+		if (nextDecision > 0) {
+			return;
+		}
+		
+		nextDecision = MIN_DECISION_TIME + random.nextInt(MAX_DECISION_TIME - MIN_DECISION_TIME);
+		turn = random.nextInt(3) - 1;
+		thrust = random.nextFloat() < 0.4f;
+		brake = !thrust && (random.nextFloat() < 0.3f);
+		if (random.nextFloat() < WEAPON_CHANGE_CHANCE) {
+			weapon = random.nextInt(6);
+		}
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isTurningLeft()
+	 */
+	public boolean isTurningLeft() {
+		return turn > 0;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isTurningRight()
+	 */
+	public boolean isTurningRight() {
+		return turn < 0;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isThrusting()
+	 */
+	public boolean isThrusting() {
+		return thrust;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isBraking()
+	 */
+	public boolean isBraking() {
+		return brake;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isFiring()
+	 */
+	public boolean isFiring() {
+		return true;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#getWeaponSelected()
+	 */
+	public int getWeaponSelected() {
+		return weapon;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#getWeaponScroll()
+	 */
+	public int getWeaponScroll() {
+		return 0;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isAimToggled()
+	 */
+	public boolean isAimToggled() {
+		return false;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isTestModeToggled()
+	 */
+	public boolean isTestModeToggled() {
+		return false;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#hasAim()
+	 */
+	public boolean hasAim() {
+		return false;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#getAimX()
+	 */
+	public float getAimX() {
+		return 0;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#getAimY()
+	 */
+	public float getAimY() {
+		return 0;
+	}
+}
@@ -0,0 +1,131 @@
+package org.newdawn.asteroids.input;
+
+import org.lwjgl.input.Keyboard;
+import org.lwjgl.input.Mouse;
+
+/**
+ * The player input read from the keyboard and mouse through LWJGL. This
+ * needs the game window to have been created.
+ * 
+ * @author Drew Murphy
+ */
+public class LwjglInput implements PlayerInput {
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#update(int)
+	 */
+	public void update(int delta) {
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isTurningLeft()
+	 */
+	public boolean isTurningLeft() {
+		return Keyboard.isKeyDown(Keyboard.KEY_LEFT) || Keyboard.isKeyDown(Keyboard.KEY_A);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isTurningRight()
+	 */
+	public boolean isTurningRight() {
+		return Keyboard.isKeyDown(Keyboard.KEY_RIGHT) || Keyboard.isKeyDown(Keyboard.KEY_D);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isThrusting()
+	 */
+	public boolean isThrusting() {
+		return Keyboard.isKeyDown(Keyboard.KEY_UP) || Keyboard.isKeyDown(Keyboard.KEY_W) || Mouse.isButtonDown(1);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isBraking()
+	 */
+	public boolean isBraking() {
+		return Keyboard.isKeyDown(Keyboard.KEY_DOWN) || Keyboard.isKeyDown(Keyboard.KEY_S) || Mouse.isButtonDown(2);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isFiring()
+	 */
+	public boolean isFiring() {
+		return Keyboard.isKeyDown(Keyboard.KEY_SPACE) || Mouse.isButtonDown(0);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#getWeaponSelected()
+	 */
+	public int getWeaponSelected() {
+		int selected = -1;
+		
+		// if more than one key is held the highest wins, as it always has
+		if (Keyboard.isKeyDown(Keyboard.KEY_1)) {
+			selected = 0;
+		}
+		if (Keyboard.isKeyDown(Keyboard.KEY_2)) {
+			selected = 1;
+		}
+		if (Keyboard.isKeyDown(Keyboard.KEY_3)) {
+			selected = 2;
+		}
+		if (Keyboard.isKeyDown(Keyboard.KEY_4)) {
+			selected = 3;
+		}
+		if (Keyboard.isKeyDown(Keyboard.KEY_5)) {
+			selected = 4;
+		}
+		if (Keyboard.isKeyDown(Keyboard.KEY_6)) {
+			selected = 5;
+		}
+		
+		return selected;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#getWeaponScroll()
+	 */
+	public int getWeaponScroll() {
+		if (Mouse.hasWheel()) {
+			return Mouse.getDWheel();
+		}
+		
+		return 0;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isAimToggled()
+	 */
+	public boolean isAimToggled() {
+		return Keyboard.isKeyDown(Keyboard.KEY_TAB);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#isTestModeToggled()
+	 */
+	public boolean isTestModeToggled() {
+		return Keyboard.isKeyDown(Keyboard.KEY_LCONTROL) && Keyboard.isKeyDown(Keyboard.KEY_LSHIFT)
+				&& Keyboard.isKeyDown(Keyboard.KEY_T);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#hasAim()
+	 */
+	public boolean hasAim() {
+		return true;
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#getAimX()
+	 */
+	public float getAimX() {
+		// convert from screen coordinates into the play area
+		return ((float)Mouse.getX() - 400) / (400.0f/26.0f);
+	}
+
+	/**
+	 * @see org.newdawn.asteroids.input.PlayerInput#getAimY()
+	 */
+	public float getAimY() {
+		// convert from screen coordinates into the play area
+		return ((float)Mouse.getY() - 300) / (400.0f/23.0f);
+	}
+}
@@ -0,0 +1,87 @@
+package org.newdawn.asteroids.input;
+
+/**
+ * The description of something controlling the player's ship. This sits
+ * between the player entity and whatever is driving it, be that the 
+ * keyboard and mouse or a bot, so the game logic doesn't need to know 
+ * which it is.
+ * 
+ * @author Drew Murphy
+ */
+public interface PlayerInput {
+	/**
+	 * Notification that the player is being updated. This gives the
+	 * input a chance to update any state it keeps over time.
+	 * 
+	 * @param delta The amount of time in milliseconds since the last update
+	 */
+	public void update(int delta);
+	
+	/**
+	 * @return True if the ship should turn anti-clockwise
+	 */
+	public boolean isTurningLeft();
+	
+	/**
+	 * @return True if the ship should turn clockwise
+	 */
+	public boolean isTurningRight();
+	
+	/**
+	 * @return True if the ship's engine should be firing
+	 */
+	public boolean isThrusting();
+	
+	/**
+	 * @return True if the ship should be slowing down
+	 */
+	public boolean isBraking();
+	
+	/**
+	 * @return True if the ship should fire its current weapon
+	 */
+	public boolean isFiring();
+	
+	/**
+	 * Get the weapon that has been directly selected
+	 * 
+	 * @return The weapon selected (0=default, 1=shotgun, 2=shield, 3=laser,
+	 * 4=multi-shot, 5=shrapnel) or -1 if no weapon has been selected
+	 */
+	public int getWeaponSelected();
+	
+	/**
+	 * Get the amount the player has scrolled through the weapons since
+	 * the last time this was called
+	 * 
+	 * @return Positive to move to the next weapon, negative to move to
+	 * the previous one, or zero to stay on the current weapon
+	 */
+	public int getWeaponScroll();
+	
+	/**
+	 * @return True if the player wants to switch between aiming with
+	 * the mouse and turning with the keys
+	 */
+	public boolean isAimToggled();
+	
+	/**
+	 * @return True if the player wants to switch test mode on or off
+	 */
+	public boolean isTestModeToggled();
+	
+	/**
+	 * @return True if this input provides a point for the ship to aim at
+	 */
+	public boolean hasAim();
+	
+	/**
+	 * @return The x coordinate in the play area the ship should aim at
+	 */
+	public float getAimX();
+	
+	/**
+	 * @return The y coordinate in the play area the ship should aim at
+	 */
+	public float getAimY();
+}
@@ -1,5 +1,7 @@
 package org.newdawn.asteroids.particles;
 
+import java.util.Arrays;
+
 import org.lwjgl.opengl.GL11;
 
 /**
@@ -10,8 +12,10 @@ import org.lwjgl.opengl.GL11;
  * @author Kevin Glass
  */
 public class ParticleGroup {
-	/** The positions of the particles being rendered */
-	private float[][] pos;
+	/** The x coordinate of each particle being rendered */
+	private float[] x;
+	/** The y coordinate of each particle being rendered */
+	private float[] y;
 	/** The life left in each particle being rendered */
 	private int[] life;
 	/** The initial size of each particle */
@@ -41,7 +45,8 @@ public class ParticleGroup {
 	 * @param b The blue component of the colour of each particle
 	 */
 	public ParticleGroup(int count, int fadeOut, float r, float g, float b) {
-		pos = new float[count][2];
+		x = new float[count];
+		y = new float[count];
 		life = new int[count];
 		size = new float[count];
 		initialSize = new float[count];
@@ -53,6 +58,33 @@ public class ParticleGroup {
 		this.b = b;
 	}
 	
+	/**
+	 * @return The most particles the group can hold at once
+	 */
+	public int getCapacity() {
+		return x.length;
+	}
+	
+	/**
+	 * Clear out all the particles in the group and change how new ones
+	 * look, leaving the group as it would be if it had just been created.
+	 * This lets a group be reused rather than creating a new one.
+	 * 
+	 * @param fadeOut The amount of time it takes for particles to fade
+	 * @param r The red component of the colour of each particle
+	 * @param g The green component of the colour of each particle
+	 * @param b The blue component of the colour of each particle
+	 */
+	public void reset(int fadeOut, float r, float g, float b) {
+		Arrays.fill(life, 0);
+		next = 0;
+		
+		this.fadeOut = fadeOut;
+		this.r = r;
+		this.g = g;
+		this.b = b;
+	}
+	
 	/**
 	 * Render the particles in the group
 	 */
@@ -68,13 +100,13 @@ public class ParticleGroup {
 						       alpha[i]);
 				
 				GL11.glTexCoord2f(0,0);
-				GL11.glVertex3f(pos[i][0]-size[i],pos[i][1]-size[i],-0.3f);
+				GL11.glVertex3f(x[i]-size[i],y[i]-size[i],-0.3f);
 				GL11.glTexCoord2f(1,0);
-				GL11.glVertex3f(pos[i][0]+size[i],pos[i][1]-size[i],-0.3f);
+				GL11.glVertex3f(x[i]+size[i],y[i]-size[i],-0.3f);
 				GL11.glTexCoord2f(1,1);
-				GL11.glVertex3f(pos[i][0]+size[i],pos[i][1]+size[i],-0.3f);
+				GL11.glVertex3f(x[i]+size[i],y[i]+size[i],-0.3f);
 				GL11.glTexCoord2f(0,1);
-				GL11.glVertex3f(pos[i][0]-size[i],pos[i][1]+size[i],-0.3f);
+				GL11.glVertex3f(x[i]-size[i],y[i]+size[i],-0.3f);
 			}
 		}
 		GL11.glEnd();
@@ -111,8 +143,8 @@ public class ParticleGroup {
 	 * @param life The time the particle will last for (in milliseconds)
 	 */
 	public void addParticle(float x, float y, float size, int life) {
-		pos[next][0] = x;
-		pos[next][1] = y;
+		this.x[next] = x;
+		this.y[next] = y;
 		this.size[next] = size;
 		this.initialSize[next] = size;
 		this.life[next] = life;
@@ -0,0 +1,151 @@
+package org.newdawn.asteroids.schedule;
+
+/**
+ * One named step of a game tick, i.e. finding the pairs of entities that
+ * might collide or moving everything along its velocity. Each phase
+ * declares the parts of the game it reads and writes, which is what lets
+ * the scheduler find neighbouring phases that have nothing to do with each
+ * other and so could run at the same time.
+ *
+ * The parts of the game are given as a set of bits. A phase that writes
+ * something is taken to read it too. The declarations are trusted, a
+ * phase that touches more than it declares may end up grouped with
+ * a phase it interferes with.
+ *
+ * Each phase keeps track of how long it takes, so the time of a tick can
+ * be broken down phase by phase.
+ *
+ * @author Drew Murphy
+ * @see PhaseScheduler
+ */
+public abstract class Phase {
+	/** The window, the keyboard and mouse, OpenGL and sound, which can only be used from the thread that created them */
+	public static final int DISPLAY = 1;
+	/** The state of whatever is controlling the player's ship */
+	public static final int INPUT = 2;
+	/** The list of entities in the game */
+	public static final int ENTITIES = 4;
+	/** The entities waiting to enter or leave the game, and those used up this tick */
+	public static final int CHANGES = 8;
+	/** The state of the entities themselves, i.e. their positions and velocities */
+	public static final int STATE = 16;
+	/** The pairs of entities that might be touching */
+	public static final int PAIRS = 32;
+	/** The pairs of entities found touching and the contacts remembered from last tick */
+	public static final int CONTACTS = 64;
+	/** The lifetimes and cooldowns waiting to run out */
+	public static final int TIMERS = 128;
+	/** The score, lives, level and ammo, and the events that change them */
+	public static final int SCORE = 256;
+	/** The game's random numbers, which must be drawn in the same order every time */
+	public static final int RANDOM = 512;
+
+	/** The name of the phase */
+	private String name;
+	/** The parts of the game the phase reads */
+	private int reads;
+	/** The parts of the game the phase writes */
+	private int writes;
+
+	/** The time the phase took the last time it ran, in nanoseconds */
+	private long lastTime;
+	/** The time the phase has taken over all the times it has run, in nanoseconds */
+	private long totalTime;
+	/** The number of times the phase has run */
+	private long runs;
+
+	/**
+	 * Create a new phase
+	 *
+	 * @param name The name of the phase
+	 * @param reads The parts of the game the phase reads
+	 * @param writes The parts of the game the phase writes
+	 */
+	protected Phase(String name, int reads, int writes) {
+		this.name = name;
+		this.writes = writes;
+		this.reads = reads | writes;
+	}
+
+	/**
+	 * Carry out the phase's part of a tick
+	 *
+	 * @param delta The amount of time that has passed in milliseconds
+	 */
+	public abstract void run(int delta);
+
+	/**
+	 * Run the phase, timing it
+	 *
+	 * @param delta The amount of time that has passed in milliseconds
+	 */
+	void execute(int delta) {
+		long start = System.nanoTime();
+		run(delta);
+		lastTime = System.nanoTime() - start;
+		totalTime += lastTime;
+		runs++;
+	}
+
+	/**
+	 * Check if this phase and another can't run at the same time, because
+	 * one writes something the other uses
+	 *
+	 * @param other The phase to check against
+	 * @return True if the two phases must run one after the other
+	 */
+	public boolean conflicts(Phase other) {
+		return ((writes & other.reads) != 0) || ((other.writes & reads) != 0);
+	}
+
+	/**
+	 * @return True if the phase has to run on the thread that created the
+	 * display
+	 */
+	public boolean usesDisplay() {
+		return (reads & DISPLAY) != 0;
+	}
+
+	/**
+	 * @return The name of the phase
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The parts of the game the phase reads, including those it writes
+	 */
+	public int getReads() {
+		return reads;
+	}
+
+	/**
+	 * @return The parts of the game the phase writes
+	 */
+	public int getWrites() {
+		return writes;
+	}
+
+	/**
+	 * @return The time the phase took the last time it ran, in nanoseconds
+	 */
+	public long getLastTime() {
+		return lastTime;
+	}
+
+	/**
+	 * @return The time the phase has taken over all the times it has run,
+	 * in nanoseconds
+	 */
+	public long getTotalTime() {
+		return totalTime;
+	}
+
+	/**
+	 * @return The number of times the phase has run
+	 */
+	public long getRuns() {
+		return runs;
+	}
+}
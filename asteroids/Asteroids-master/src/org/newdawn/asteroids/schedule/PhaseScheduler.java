@@ -0,0 +1,88 @@
+package org.newdawn.asteroids.schedule;
+
+import java.util.ArrayList;
+
+/**
+ * Runs the phases of a tick in the order they were added.
+ *
+ * As the phases are added they're gathered into groups of neighbours that
+ * don't conflict, that is none of them writes anything another in the
+ * group reads. The phases of a group could run in any order, or all at
+ * once, and the game would come out the same.
+ *
+ * Today every phase runs one after another on the calling thread. The
+ * only group of more than one phase is lifetime and input, which together
+ * take around a microsecond a tick, far less than handing either of them
+ * to another thread costs. The groups are still worked out, and shown in
+ * the breakdown of a tick, so a pair of phases that is worth running at
+ * once can be spotted as the game grows.
+ *
+ * @author Drew Murphy
+ */
+public class PhaseScheduler {
+	/** The phases in the order they run */
+	private ArrayList<Phase> phases = new ArrayList<Phase>();
+	/** The index of the first phase of the group each phase is in */
+	private ArrayList<Integer> groupStart = new ArrayList<Integer>();
+
+	/**
+	 * Add a phase to the end of the tick. It joins the group of the phases
+	 * before it if it doesn't conflict with any of them.
+	 *
+	 * @param phase The phase to add
+	 */
+	public void add(Phase phase) {
+		int start = phases.size();
+		if (!phases.isEmpty()) {
+			int last = groupStart.get(phases.size() - 1);
+			boolean independent = true;
+			for (int i=last;i<phases.size();i++) {
+				independent &= !phases.get(i).conflicts(phase);
+			}
+			if (independent) {
+				start = last;
+			}
+		}
+
+		phases.add(phase);
+		groupStart.add(start);
+	}
+
+	/**
+	 * Run a tick through every phase
+	 *
+	 * @param delta The amount of time that has passed in milliseconds
+	 */
+	public void run(int delta) {
+		for (int i=0;i<phases.size();i++) {
+			phases.get(i).execute(delta);
+		}
+	}
+
+	/**
+	 * @return The number of phases in a tick
+	 */
+	public int getPhaseCount() {
+		return phases.size();
+	}
+
+	/**
+	 * Get one of the phases of a tick
+	 *
+	 * @param index The index of the phase, in the order they run
+	 * @return The phase
+	 */
+	public Phase getPhase(int index) {
+		return phases.get(index);
+	}
+
+	/**
+	 * Check if a phase could run at the same time as the phases before it
+	 *
+	 * @param index The index of the phase
+	 * @return True if the phase is in the same group as the phase before it
+	 */
+	public boolean isConcurrent(int index) {
+		return (index > 0) && (groupStart.get(index) != index);
+	}
+}
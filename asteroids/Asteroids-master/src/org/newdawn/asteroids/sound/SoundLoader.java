@@ -121,7 +121,9 @@ public class SoundLoader {
 	 * Stops all sounds being played
 	 */
 	void stop() {
-		AL10.alSourceStop(sources);
+		if (soundWorks) {
+			AL10.alSourceStop(sources);
+		}
 	}
 	
 	/**
@@ -0,0 +1,135 @@
+package org.newdawn.asteroids.util;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A range of work (i.e. the entities in the game) cut into fixed size
+ * chunks that can be run across the threads of a fork/join pool.
+ *
+ * The chunks are the same size however many threads there are, so work
+ * whose results are joined back up in chunk order comes out exactly the
+ * same on one thread or many. With no pool the chunks are simply run one
+ * after another on the calling thread. The tasks that process each chunk
+ * are kept and reused from one run to the next.
+ *
+ * @author Drew Murphy
+ */
+public abstract class ChunkedWork<T extends ChunkedWork.ChunkTask> {
+	/** The number of items processed by each task */
+	public static final int CHUNK_SIZE = 512;
+	/** The fewest items that will be split across threads */
+	public static final int THRESHOLD = 2048;
+
+	/** The tasks used to process each chunk, reused from run to run */
+	private ArrayList<T> chunks = new ArrayList<T>();
+	/** The number of chunks in use in the current run */
+	private int chunkCount;
+	/** The task that starts off all the chunk tasks */
+	private Stage stage = new Stage();
+
+	/**
+	 * Create the task for a new chunk, called as more chunks are needed
+	 *
+	 * @return The newly created task
+	 */
+	protected abstract T createChunk();
+
+	/**
+	 * Cut a range of work into chunks, ready to be run. The chunks can be
+	 * given anything else they need through get() before they're run.
+	 *
+	 * @param size The number of items to process
+	 * @return The number of chunks the work was cut into
+	 */
+	public int split(int size) {
+		chunkCount = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		while (chunks.size() < chunkCount) {
+			chunks.add(createChunk());
+		}
+
+		for (int i=0;i<chunkCount;i++) {
+			T chunk = chunks.get(i);
+
+			chunk.reinitialize();
+			chunk.start = i * CHUNK_SIZE;
+			chunk.end = Math.min(size, chunk.start + CHUNK_SIZE);
+		}
+
+		return chunkCount;
+	}
+
+	/**
+	 * @return The number of chunks in use in the current run
+	 */
+	public int size() {
+		return chunkCount;
+	}
+
+	/**
+	 * Get one of the chunks in use
+	 *
+	 * @param index The index of the chunk, in the order of the work
+	 * @return The chunk
+	 */
+	public T get(int index) {
+		return chunks.get(index);
+	}
+
+	/**
+	 * Run the chunks the work was last split into, returning once every
+	 * one of them is complete
+	 *
+	 * @param pool The pool to run the chunks on, or null to run them one
+	 * after another on the calling thread
+	 */
+	public void run(ForkJoinPool pool) {
+		if (pool == null) {
+			for (int i=0;i<chunkCount;i++) {
+				chunks.get(i).compute();
+			}
+			return;
+		}
+
+		stage.reinitialize();
+		pool.invoke(stage);
+	}
+
+	/**
+	 * The task that forks off each of the chunks in use and waits for
+	 * them all to complete
+	 */
+	private class Stage extends RecursiveAction {
+		/** The version of the serialised form, which is never used */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute() {
+			ForkJoinTask.invokeAll(chunks.subList(0, chunkCount));
+		}
+	}
+
+	/**
+	 * The task that processes a single chunk of the work
+	 */
+	public abstract static class ChunkTask extends RecursiveAction {
+		/** The version of the serialised form, which is never used */
+		private static final long serialVersionUID = 1L;
+
+		/** The index of the first item in the chunk */
+		protected int start;
+		/** The index after the last item in the chunk */
+		protected int end;
+
+		/**
+		 * Process the items from start to end
+		 *
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected abstract void compute();
+	}
+}
@@ -0,0 +1,188 @@
+package org.newdawn.asteroids.util;
+
+/**
+ * A source of random numbers for the game that can be seeded, so a game
+ * can be played out exactly the same again, and split, so separate parts
+ * of the game (or separate threads) can each have a stream of their own
+ * without sharing or locking a single generator.
+ *
+ * This is the SplitMix64 generator, the same as that behind
+ * java.util.SplittableRandom. Unlike that class a stream can be split into
+ * an existing generator, so handing out new streams each update doesn't
+ * create anything.
+ *
+ * A single generator isn't thread safe, each thread should be given its
+ * own stream.
+ *
+ * @author Drew Murphy
+ */
+public class GameRandom {
+	/** The system property used to fix the seed of the game */
+	public static final String SEED_PROPERTY = "asteroids.seed";
+	/** The step used by generators that weren't split from another */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/** The current state of the generator */
+	private long seed;
+	/** The amount the state moves on each step, always odd */
+	private long gamma;
+
+	/**
+	 * Create a new generator
+	 *
+	 * @param seed The seed that determines the numbers generated
+	 */
+	public GameRandom(long seed) {
+		setSeed(seed);
+	}
+
+	/**
+	 * Get the seed a game session should use. This is taken from the
+	 * "asteroids.seed" system property if it's set, otherwise it's based on
+	 * the current time so each session is different.
+	 *
+	 * @return The seed for the session
+	 */
+	public static long getSessionSeed() {
+		String value = System.getProperty(SEED_PROPERTY);
+		if (value != null) {
+			try {
+				return Long.parseLong(value.trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid seed: "+value);
+			}
+		}
+
+		return System.nanoTime() ^ System.currentTimeMillis();
+	}
+
+	/**
+	 * Restart the generator from a given seed
+	 *
+	 * @param seed The seed that determines the numbers generated
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+		this.gamma = GOLDEN_GAMMA;
+	}
+
+	/**
+	 * Create a new generator whose numbers are independent of this one's
+	 *
+	 * @return The new generator
+	 */
+	public GameRandom split() {
+		GameRandom stream = new GameRandom(0);
+		split(stream);
+		return stream;
+	}
+
+	/**
+	 * Restart an existing generator with a stream independent of this
+	 * one's. This moves this generator on, so splitting twice gives two
+	 * different streams.
+	 *
+	 * @param stream The generator to restart
+	 */
+	public void split(GameRandom stream) {
+		stream.seed = nextLong();
+		stream.gamma = mixGamma(nextSeed());
+	}
+
+	/**
+	 * @return A random long, any value being equally likely
+	 */
+	public long nextLong() {
+		return mix64(nextSeed());
+	}
+
+	/**
+	 * @return A random int, any value being equally likely
+	 */
+	public int nextInt() {
+		return (int) (mix64(nextSeed()) >>> 32);
+	}
+
+	/**
+	 * Get a random int from zero up to (but not including) a limit
+	 *
+	 * @param bound The limit on the number returned, must be positive
+	 * @return A random int from 0 to bound - 1
+	 */
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("Bound must be positive: "+bound);
+		}
+
+		return (int) (((mix64(nextSeed()) >>> 32) * bound) >>> 32);
+	}
+
+	/**
+	 * @return A random float from 0 up to (but not including) 1
+	 */
+	public float nextFloat() {
+		return (mix64(nextSeed()) >>> 40) * 0x1.0p-24f;
+	}
+
+	/**
+	 * Get a random float within a range
+	 *
+	 * @param min The lowest value that can be returned
+	 * @param max The value above the highest that can be returned
+	 * @return A random float from min up to (but not including) max
+	 */
+	public float nextFloat(float min, float max) {
+		return min + (nextFloat() * (max - min));
+	}
+
+	/**
+	 * @return A random double from 0 up to (but not including) 1
+	 */
+	public double nextDouble() {
+		return (mix64(nextSeed()) >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * @return True or false, each being equally likely
+	 */
+	public boolean nextBoolean() {
+		return mix64(nextSeed()) < 0;
+	}
+
+	/**
+	 * Move the state of the generator on a step
+	 *
+	 * @return The new state
+	 */
+	private long nextSeed() {
+		return seed += gamma;
+	}
+
+	/**
+	 * Scramble the bits of a state into a random number
+	 *
+	 * @param z The state to scramble
+	 * @return The scrambled value
+	 */
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Scramble a state into the step of a new stream. The step must be odd
+	 * and have enough bits changing to give good numbers.
+	 *
+	 * @param z The state to scramble
+	 * @return The step for the new stream
+	 */
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+
+		int flips = Long.bitCount(z ^ (z >>> 1));
+		return (flips < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+}
@@ -0,0 +1,188 @@
+package org.newdawn.asteroids.util;
+
+/**
+ * The direction something is facing, held as a unit vector rather than an
+ * angle. Turning a vector by one of the fixed angles the weapons spread
+ * their shots over is a handful of multiplies using the sines and cosines
+ * below, where working from the angle would mean a sin() and cos() for
+ * every shot.
+ *
+ * Directions follow the game's convention for rotations: a rotation of 0
+ * degrees faces down the screen (0, -1), and turning by a positive angle
+ * turns anti-clockwise.
+ *
+ * Where a direction does have to be worked out from an angle (i.e. as the
+ * ship turns) the sine is taken from a lookup table. The table is
+ * interpolated, so it's as accurate as a float can hold anyway.
+ *
+ * @author Drew Murphy
+ */
+public class Heading {
+	/** The cosine of the 15 degree spread of the shotgun */
+	public static final float COS_15 = (float) Math.cos(Math.toRadians(15));
+	/** The sine of the 15 degree spread of the shotgun */
+	public static final float SIN_15 = (float) Math.sin(Math.toRadians(15));
+	/** The cosine of a quarter turn */
+	public static final float COS_90 = 0;
+	/** The sine of a quarter turn */
+	public static final float SIN_90 = 1;
+	/** The cosine of a half turn */
+	public static final float COS_180 = -1;
+	/** The sine of a half turn */
+	public static final float SIN_180 = 0;
+
+	/** The number of entries in the sine table covering a full turn */
+	private static final int TABLE_SIZE = 4096;
+	/** The mask used to wrap an index into the table */
+	private static final int TABLE_MASK = TABLE_SIZE - 1;
+	/** The number of table entries per degree */
+	private static final float ENTRIES_PER_DEGREE = TABLE_SIZE / 360.0f;
+	/** The sine of each step round a full turn, plus one extra to interpolate towards */
+	private static final float[] SINE = new float[TABLE_SIZE + 1];
+
+	static {
+		for (int i=0;i<=TABLE_SIZE;i++) {
+			SINE[i] = (float) Math.sin((i * 2 * Math.PI) / TABLE_SIZE);
+		}
+	}
+
+	/** The x component of the direction */
+	private float x;
+	/** The y component of the direction */
+	private float y;
+
+	/**
+	 * Create a new heading at a rotation of 0 degrees
+	 */
+	public Heading() {
+		this(0, -1);
+	}
+
+	/**
+	 * Create a new heading
+	 *
+	 * @param x The x component of the direction, which must be a unit vector
+	 * @param y The y component of the direction
+	 */
+	public Heading(float x, float y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Get the sine of an angle from the lookup table
+	 *
+	 * @param degrees The angle in degrees, which can be any size
+	 * @return The sine of the angle
+	 */
+	public static float sin(float degrees) {
+		float position = degrees * ENTRIES_PER_DEGREE;
+		float floor = (float) Math.floor(position);
+		int index = ((int) floor) & TABLE_MASK;
+
+		float low = SINE[index];
+		return low + ((SINE[index+1] - low) * (position - floor));
+	}
+
+	/**
+	 * Get the cosine of an angle from the lookup table
+	 *
+	 * @param degrees The angle in degrees, which can be any size
+	 * @return The cosine of the angle
+	 */
+	public static float cos(float degrees) {
+		return sin(degrees + 90);
+	}
+
+	/**
+	 * Get the x component of a direction turned through an angle
+	 *
+	 * @param x The x component of the direction to turn
+	 * @param y The y component of the direction to turn
+	 * @param cos The cosine of the angle to turn through
+	 * @param sin The sine of the angle to turn through
+	 * @return The x component of the turned direction
+	 */
+	public static float rotateX(float x, float y, float cos, float sin) {
+		return (x * cos) - (y * sin);
+	}
+
+	/**
+	 * Get the y component of a direction turned through an angle
+	 *
+	 * @param x The x component of the direction to turn
+	 * @param y The y component of the direction to turn
+	 * @param cos The cosine of the angle to turn through
+	 * @param sin The sine of the angle to turn through
+	 * @return The y component of the turned direction
+	 */
+	public static float rotateY(float x, float y, float cos, float sin) {
+		return (y * cos) + (x * sin);
+	}
+
+	/**
+	 * Face this heading at a given rotation
+	 *
+	 * @param degrees The rotation in degrees
+	 */
+	public void setRotation(float degrees) {
+		x = sin(degrees);
+		y = -cos(degrees);
+	}
+
+	/**
+	 * Face this heading along a vector. A vector of no length leaves the
+	 * heading as it was.
+	 *
+	 * @param dx The x component of the vector, which can be any length
+	 * @param dy The y component of the vector
+	 */
+	public void setDirection(float dx, float dy) {
+		float length = (float) Math.sqrt((dx*dx) + (dy*dy));
+		if (length == 0) {
+			return;
+		}
+
+		x = dx / length;
+		y = dy / length;
+	}
+
+	/**
+	 * Face this heading the way another is turned through an angle
+	 *
+	 * @param from The heading to turn
+	 * @param cos The cosine of the angle to turn through
+	 * @param sin The sine of the angle to turn through
+	 */
+	public void rotate(Heading from, float cos, float sin) {
+		float fx = from.x;
+		float fy = from.y;
+
+		x = rotateX(fx, fy, cos, sin);
+		y = rotateY(fx, fy, cos, sin);
+	}
+
+	/**
+	 * Get the rotation this heading faces. This isn't free, it should only
+	 * be used where the angle itself is needed.
+	 *
+	 * @return The rotation in degrees
+	 */
+	public float getRotation() {
+		return (float) Math.toDegrees(Math.atan2(y, x)) + 90;
+	}
+
+	/**
+	 * @return The x component of the direction
+	 */
+	public float getX() {
+		return x;
+	}
+
+	/**
+	 * @return The y component of the direction
+	 */
+	public float getY() {
+		return y;
+	}
+}